@@ -7,7 +7,11 @@ import android.util.Log;
 import com.faceunity.pta_art.constant.ColorConstant;
 import com.faceunity.pta_art.core.FUPTARenderer;
 import com.faceunity.pta_art.core.authpack;
+import com.faceunity.pta_art.core.base.BundleCache;
+import com.faceunity.pta_art.core.base.StartupTimeline;
+import com.faceunity.pta_art.core.base.WarmUpManifest;
 import com.faceunity.pta_art.core.client.PTAClientWrapper;
+import com.faceunity.pta_art.utils.FrameTracer;
 import com.faceunity.pta_art.utils.sta.TtsEngineUtils;
 import com.faceunity.pta_art.web.OkHttpUtils;
 import com.faceunity.pta_helper.FUAuthCheck;
@@ -32,8 +36,13 @@ public class FUApplication extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
+        StartupTimeline.mark("applicationCreate");
         closeAndroidPDialog();
         fuApplication = this;
+        //记录本次启动加载的bundle，用于下次启动预热
+        WarmUpManifest.getInstance().init(this);
+        //存在tmp/trace.enable时记录启动后的耗时追踪
+        FrameTracer.startIfRequested();
 
         /**
          * 初始化dsp设备
@@ -71,6 +80,14 @@ public class FUApplication extends Application {
 
         //风格选择后初始化 P2A client
         ColorConstant.init(this);
+        StartupTimeline.mark("applicationReady");
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        //释放bundle缓存
+        BundleCache.getInstance().onTrimMemory(level);
     }
 
     //
@@ -19,6 +19,8 @@ import android.widget.EditText;
 import android.widget.TextView;
 
 import com.faceunity.pta_art.constant.Constant;
+import com.faceunity.pta_art.core.base.StartupTimeline;
+import com.faceunity.pta_art.core.base.WarmUpManifest;
 import com.faceunity.pta_art.utils.FileUtil;
 import com.faceunity.pta_art.web.OkHttpUtils;
 
@@ -53,6 +55,9 @@ public class GuideActivity extends AppCompatActivity implements View.OnClickList
             finish();
             return;
         }
+        StartupTimeline.mark("guideCreate");
+        //引导页显示期间预热上次启动使用的bundle
+        WarmUpManifest.getInstance().warmUp();
         if (!TextUtils.isEmpty(Constant.web_url_check)) {
             setContentView(R.layout.activity_guide);
             preferences = getSharedPreferences(TAG, Context.MODE_PRIVATE);
@@ -31,6 +31,7 @@ import com.faceunity.pta_art.constant.FilePathFactory;
 import com.faceunity.pta_art.core.AvatarHandle;
 import com.faceunity.pta_art.core.FUPTARenderer;
 import com.faceunity.pta_art.core.PTACore;
+import com.faceunity.pta_art.core.base.StartupTimeline;
 import com.faceunity.pta_art.core.driver.text.PTATextDriveCore;
 import com.faceunity.pta_art.entity.AvatarPTA;
 import com.faceunity.pta_art.entity.BundleRes;
@@ -103,10 +104,15 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
      * 驱动界面显示的模型index
      */
     private int drivenAvatarShowIndex = -1;
+    /**
+     * 启动后形象加载完成，下一帧为首帧显示形象
+     */
+    private volatile boolean isFirstAvatarFrame = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupTimeline.mark("mainCreate");
         setContentView(R.layout.activity_main);
         getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
         FuEventBus.getDefault().register(this);
@@ -136,9 +142,12 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         mP2ACore = new PTACore(this, mFUP2ARenderer);
         mFUP2ARenderer.setFUCore(mP2ACore);
         mAvatarHandle = mP2ACore.createAvatarHandle();
+        StartupTimeline.mark("ptaCoreCreated");
         mAvatarHandle.setAvatar(getShowAvatarP2A(), new Runnable() {
             @Override
             public void run() {
+                StartupTimeline.mark("avatarLoaded");
+                isFirstAvatarFrame = true;
                 mAvatarHandle.openLight(FilePathFactory.BUNDLE_light);
                 mHomeFragment.checkGuide();
             }
@@ -220,6 +229,7 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
             mCameraRenderer.openCamera();
         }
         cameraIsOpen = false;
+        mCameraRenderer.onResume();
         mSensorManager.registerListener(this, mSensor, SensorManager.SENSOR_DELAY_NORMAL);
     }
 
@@ -227,6 +237,7 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     public void onPause() {
         super.onPause();
         mSensorManager.unregisterListener(this);
+        mCameraRenderer.onPause();
         mCameraRenderer.releaseCamera();
     }
 
@@ -363,6 +374,13 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
             mCameraRenderer.refreshLandmarks(mP2ACore.getLandmarksData());
         }
         int fuTextureId = mFUP2ARenderer.onDrawFrame(cameraNV21Byte, cameraTextureId, cameraWidth, cameraHeight, rotation);
+        mCameraRenderer.setFrameRate(mFUP2ARenderer.getTargetFps(), mFUP2ARenderer.isContinuousRender());
+        mFUP2ARenderer.setQualityTier(mCameraRenderer.getQualityTier());
+        mFUP2ARenderer.setAsyncTracking(mCameraRenderer.isAsyncTracking());
+        if (isFirstAvatarFrame) {
+            isFirstAvatarFrame = false;
+            StartupTimeline.finish("firstAvatarFrame");
+        }
         return fuTextureId;
     }
 
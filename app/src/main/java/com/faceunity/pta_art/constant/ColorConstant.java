@@ -4,11 +4,11 @@ import android.content.Context;
 
 import com.faceunity.pta_art.entity.StaBsBlendBean;
 import com.faceunity.pta_art.ui.seekbar.ColorPickGradient;
+import com.faceunity.pta_art.utils.AssetPack;
 import com.google.gson.Gson;
 
 import org.json.JSONObject;
 
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -32,10 +32,7 @@ public abstract class ColorConstant {
 
     public static void init(Context context) {
         try {
-            InputStream is = context.getAssets().open(FilePathFactory.jsonColor());
-            byte[] itemData = new byte[is.available()];
-            is.read(itemData);
-            is.close();
+            byte[] itemData = AssetPack.readBytes(context, FilePathFactory.jsonColor());
             String json = new String(itemData);
             JSONObject jsonObject = new JSONObject(json);
 
@@ -53,10 +50,7 @@ public abstract class ColorConstant {
             /**
              * sta bs blend json
              */
-            InputStream isSta = context.getAssets().open("new/sta_bs_blend_weight.json");
-            byte[] itemStaData = new byte[isSta.available()];
-            isSta.read(itemStaData);
-            isSta.close();
+            byte[] itemStaData = AssetPack.readBytes(context, "new/sta_bs_blend_weight.json");
             String jsonSta = new String(itemStaData);
             Gson gson = new Gson();
             sta_bs_blend = gson.fromJson(jsonSta, StaBsBlendBean.class);
@@ -97,6 +91,30 @@ public abstract class ColorConstant {
         return c;
     }
 
+    /**
+     * 与getColor相同，结果写入out，不分配对象
+     *
+     * @param out 长度与色卡中的颜色相同
+     * @return out
+     */
+    public static double[] getColor(double[][] colors, double value, double[] out) {
+        int index = (int) value;
+        if (index >= colors.length - 1) {
+            System.arraycopy(colors[colors.length - 1], 0, out, 0, out.length);
+            return out;
+        }
+        if (index < 0) {
+            System.arraycopy(colors[0], 0, out, 0, out.length);
+            return out;
+        }
+        double v = value - index;
+        System.arraycopy(colors[index], 0, out, 0, out.length);
+        out[0] = colors[index][0] + v * (colors[index + 1][0] - colors[index][0]);
+        out[1] = colors[index][1] + v * (colors[index + 1][1] - colors[index][1]);
+        out[2] = colors[index][2] + v * (colors[index + 1][2] - colors[index][2]);
+        return out;
+    }
+
     public static double[] getMakeupColor(double[][] colors, double value) {
         int index = (int) value;
         if (index >= colors.length - 1) {
@@ -118,6 +136,16 @@ public abstract class ColorConstant {
         return ColorPickGradient.getColor(radio);
     }
 
+    /**
+     * 与getRadioColor相同，结果写入out，不分配对象
+     *
+     * @param out 长度为3
+     * @return out
+     */
+    public static double[] getRadioColor(double radio, double[] out) {
+        return ColorPickGradient.getColor(radio, out);
+    }
+
     public static void release() {
         skin_color = null;
         lip_color = null;
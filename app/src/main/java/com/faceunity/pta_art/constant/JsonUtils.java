@@ -7,13 +7,14 @@ import com.faceunity.pta_art.FUApplication;
 import com.faceunity.pta_art.entity.BundleRes;
 import com.faceunity.pta_art.entity.Scenes;
 import com.faceunity.pta_art.entity.SpecialBundleRes;
+import com.faceunity.pta_art.renderer.QualityGovernor;
+import com.faceunity.pta_art.utils.AssetPack;
 
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
@@ -56,10 +57,7 @@ public class JsonUtils {
             jsonDecorationList.clear();
         }
         try {
-            InputStream inputStream = context.getAssets().open(path);
-            byte[] data = new byte[inputStream.available()];
-            inputStream.read(data);
-            inputStream.close();
+            byte[] data = AssetPack.readBytes(context, path);
             String jsonStr = new String(data);
             JSONObject jsonObject = new JSONObject(jsonStr);
             JSONArray jsonArray = (JSONArray) (jsonObject.opt(jsonObject.keys().next()));
@@ -143,10 +141,7 @@ public class JsonUtils {
         }
         scenesList.clear();
         try {
-            InputStream inputStream = context.getAssets().open(path);
-            byte[] data = new byte[inputStream.available()];
-            inputStream.read(data);
-            inputStream.close();
+            byte[] data = AssetPack.readBytes(context, path);
             String jsonStr = new String(data);
             JSONObject jsonObject = new JSONObject(jsonStr);
             Iterator iterator = jsonObject.keys();
@@ -231,10 +226,7 @@ public class JsonUtils {
     public String[] readNetWorkJson(String path) {
         List<String> urlList = new ArrayList<>();
         try {
-            InputStream inputStream = context.getAssets().open(path);
-            byte[] data = new byte[inputStream.available()];
-            inputStream.read(data);
-            inputStream.close();
+            byte[] data = AssetPack.readBytes(context, path);
             String jsonStr = new String(data);
             JSONObject jsonObject = new JSONObject(jsonStr);
             Iterator iterator = jsonObject.keys();
@@ -258,10 +250,7 @@ public class JsonUtils {
     public String[] readFacePupJson(String path) {
         List<String> facePupList = new ArrayList<>();
         try {
-            InputStream inputStream = context.getAssets().open(path);
-            byte[] data = new byte[inputStream.available()];
-            inputStream.read(data);
-            inputStream.close();
+            byte[] data = AssetPack.readBytes(context, path);
             String jsonStr = new String(data);
             JSONObject jsonObject = new JSONObject(jsonStr);
             Iterator iterator = jsonObject.keys();
@@ -290,10 +279,7 @@ public class JsonUtils {
     public List<String[]> readSta(String path) {
         List<String[]> result = new ArrayList<>();
         try {
-            InputStream inputStream = context.getAssets().open(path);
-            byte[] data = new byte[inputStream.available()];
-            inputStream.read(data);
-            inputStream.close();
+            byte[] data = AssetPack.readBytes(context, path);
             String jsonStr = new String(data);
             JSONArray jsonArray = new JSONArray(jsonStr);
             String[] speakers = new String[jsonArray.length()];
@@ -324,10 +310,7 @@ public class JsonUtils {
     public List<float[]> readStaExpression(String path) {
         List<float[]> result = new ArrayList<>();
         try {
-            InputStream inputStream = context.getAssets().open(path);
-            byte[] data = new byte[inputStream.available()];
-            inputStream.read(data);
-            inputStream.close();
+            byte[] data = AssetPack.readBytes(context, path);
             String jsonStr = new String(data);
             JSONArray jsonArray = new JSONArray(jsonStr);
 
@@ -349,4 +332,47 @@ public class JsonUtils {
         }
         return result;
     }
+
+    /**
+     * 读取画质档位配置，default为默认配置，models中与机型同名的配置覆盖默认配置
+     *
+     * @param path  配置文件路径
+     * @param model 机型（Build.MODEL）
+     * @return 读取失败时返回默认配置
+     */
+    public QualityGovernor.Config readQualityConfig(String path, String model) {
+        QualityGovernor.Config config = new QualityGovernor.Config();
+        try {
+            byte[] data = AssetPack.readBytes(context, path);
+            String jsonStr = new String(data);
+            JSONObject jsonObject = new JSONObject(jsonStr);
+            readQualityConfig(config, jsonObject.optJSONObject("default"));
+            JSONObject models = jsonObject.optJSONObject("models");
+            if (models != null) {
+                readQualityConfig(config, models.optJSONObject(model));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            Log.e("IOException", e.getMessage());
+        } catch (JSONException e) {
+            e.printStackTrace();
+            Log.e("JSONException", e.getMessage());
+        }
+        return config;
+    }
+
+    private void readQualityConfig(QualityGovernor.Config config, JSONObject jsonObject) {
+        if (jsonObject == null) {
+            return;
+        }
+        config.maxTier = jsonObject.optInt("max_tier", config.maxTier);
+        config.startTier = jsonObject.optInt("start_tier", config.startTier);
+        config.degradeRatio = (float) jsonObject.optDouble("degrade_ratio", config.degradeRatio);
+        config.restoreRatio = (float) jsonObject.optDouble("restore_ratio", config.restoreRatio);
+        config.degradeWindows = jsonObject.optInt("degrade_windows", config.degradeWindows);
+        config.restoreWindows = jsonObject.optInt("restore_windows", config.restoreWindows);
+        config.thermalDegradeCelsius = (float) jsonObject.optDouble("thermal_degrade", config.thermalDegradeCelsius);
+        config.thermalRestoreCelsius = (float) jsonObject.optDouble("thermal_restore", config.thermalRestoreCelsius);
+        config.asyncTrackingTier = jsonObject.optInt("async_tracking_tier", config.asyncTrackingTier);
+    }
 }
@@ -1,7 +1,6 @@
 package com.faceunity.pta_art.core;
 
 import android.graphics.Point;
-import android.os.Message;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -10,13 +9,11 @@ import com.faceunity.pta_art.core.base.BaseCore;
 import com.faceunity.pta_art.core.base.BasePTAHandle;
 import com.faceunity.pta_art.core.base.FUItem;
 import com.faceunity.pta_art.core.base.FUItemHandler;
+import com.faceunity.pta_art.core.base.FUItemPool;
 import com.faceunity.pta_art.entity.AvatarPTA;
 import com.faceunity.pta_art.entity.BundleRes;
 import com.faceunity.wrapper.faceunity;
 
-import org.json.JSONException;
-import org.json.JSONObject;
-
 import java.util.Arrays;
 import java.util.concurrent.CountDownLatch;
 
@@ -26,6 +23,8 @@ import java.util.concurrent.CountDownLatch;
  */
 public class AvatarHandle extends BasePTAHandle {
     private static final String TAG = AvatarHandle.class.getSimpleName();
+    // 打印绑定的道具列表，拼接日志会分配对象，默认关闭
+    private static final boolean DEBUG = false;
 
     private boolean mIsNeedTrack;
     private boolean mIsNeedFacePUP;
@@ -104,10 +103,15 @@ public class AvatarHandle extends BasePTAHandle {
         setAvatar(avatar, mustLoadHead, false, completeListener);
     }
 
+    /**
+     * 加载Avatar，新的请求会替代还未完成的请求
+     *
+     * @param completeListener 在GL线程中执行，被替代的请求的回调与最新请求的回调一起，在最新的Avatar提交后按请求顺序执行
+     */
     public void setAvatar(final AvatarPTA avatar, final boolean mustLoadHead, final boolean mistLoadHair,
                           final Runnable completeListener) {
-        mFUItemHandler.removeMessages(FUItemHandler_what);
-        Message msg = Message.obtain(mFUItemHandler, new Runnable() {
+        final long sequence = addCompleteListener(completeListener);
+        mFUItemHandler.submitLoadTask(new FUItemHandler.LoadTask(FUItemHandler_what, FUItemHandler.PRIORITY_VISIBLE) {
             @Override
             public void run() {
                 loadItem(headItem, avatar.getHeadFile(), mustLoadHead);
@@ -150,29 +154,23 @@ public class AvatarHandle extends BasePTAHandle {
                     if (others != null && i < others.length) {
                         loadItem(otherItem[i], others[i]);
                     } else if (otherItem[i] != null) {
-                        final int finalI = i;
-                        mBaseCore.queueEvent(new Runnable() {
-                            @Override
-                            public void run() {
-                                faceunity.fuUnBindItems(controllerItem, new int[]{otherItem[finalI].handle});
-                                mBaseCore.destroyItem(otherItem[finalI].handle).run();
-                                otherItem[finalI].clear();
-                            }
-                        });
+                        // 卸载多余的道具
+                        loadItem(otherItem[i], "");
                     }
                 }
-                commitItem(avatar);
-                if (completeListener != null) {
+                if (!commitItem(avatar, this)) {
+                    // 已经有新的Avatar需要加载，回调由新的加载执行
+                    return;
+                }
+                for (Runnable listener : takeCompleteListeners(sequence)) {
                     if (needNextEventCallback) {
-                        mBaseCore.queueNextEvent(completeListener);
+                        mBaseCore.queueNextEvent(listener);
                     } else {
-                        mBaseCore.queueEvent(completeListener);
+                        mBaseCore.queueEvent(listener);
                     }
                 }
             }
         });
-        msg.what = FUItemHandler_what;
-        mFUItemHandler.sendMessage(msg);
     }
 
     private String loadExpressionBundle(AvatarPTA avatar) {
@@ -210,48 +208,77 @@ public class AvatarHandle extends BasePTAHandle {
         }
     }
 
+    // bindAll、unBindAll中复用的道具句柄数组与事件，只在GL线程中访问
+    private final int[] mAllItems = new int[29];
+
+    /**
+     * 将当前所有道具句柄填入mAllItems
+     */
+    private int[] fillAllItems() {
+        int i = 0;
+        mAllItems[i++] = backgroundItem.handle;
+        mAllItems[i++] = headItem.handle;
+        mAllItems[i++] = hairItem.handle;
+        mAllItems[i++] = glassItem.handle;
+        mAllItems[i++] = beardItem.handle;
+        mAllItems[i++] = eyebrowItem.handle;
+        mAllItems[i++] = eyelashItem.handle;
+        mAllItems[i++] = hatItem.handle;
+        mAllItems[i++] = bodyItem.handle;
+        mAllItems[i++] = clothesItem.handle;
+        mAllItems[i++] = clothesUpperItem.handle;
+        mAllItems[i++] = clothesLowerItem.handle;
+        mAllItems[i++] = shoeItem.handle;
+        mAllItems[i++] = decorationsEarItem.handle;
+        mAllItems[i++] = decorationsFootItem.handle;
+        mAllItems[i++] = decorationsHandItem.handle;
+        mAllItems[i++] = decorationsHeadItem.handle;
+        mAllItems[i++] = decorationsNeckItem.handle;
+        mAllItems[i++] = eyelinerItem.handle;
+        mAllItems[i++] = eyeshadowItem.handle;
+        mAllItems[i++] = facemakeupItem.handle;
+        mAllItems[i++] = lipglossItem.handle;
+        mAllItems[i++] = pupilItem.handle;
+        mAllItems[i++] = expressionItem.handle;
+        for (int j = 0; j < 5; j++) {
+            mAllItems[i++] = otherItem[j] == null ? 0 : otherItem[j].handle;
+        }
+        return mAllItems;
+    }
+
+    private final Runnable mBindAllEvent = new Runnable() {
+        @Override
+        public void run() {
+            int[] items = fillAllItems();
+            if (DEBUG) {
+                Log.i(TAG, "bundle avatarBindItem controlItem " + controllerItem + " bindAll " + Arrays.toString(items));
+            }
+            faceunity.fuBindItems(controllerItem, items);
+            setAvatarColor();
+        }
+    };
+
+    private final Runnable mUnBindAllEvent = new Runnable() {
+        @Override
+        public void run() {
+            int[] items = fillAllItems();
+            if (DEBUG) {
+                Log.i(TAG, "bundle avatarBindItem controlItem " + controllerItem + " unBindAll " + Arrays.toString(items));
+            }
+            faceunity.fuUnBindItems(controllerItem, items);
+        }
+    };
+
     @Override
     protected void bindAll() {
         if (controllerItem > 0)
-            mBaseCore.queueEvent(new Runnable() {
-                @Override
-                public void run() {
-                    int[] items = new int[]{
-                            backgroundItem.handle,
-                            headItem.handle, hairItem.handle, glassItem.handle, beardItem.handle,
-                            eyebrowItem.handle, eyelashItem.handle, hatItem.handle, bodyItem.handle, clothesItem.handle,
-                            clothesUpperItem.handle, clothesLowerItem.handle, shoeItem.handle, decorationsEarItem.handle,
-                            decorationsFootItem.handle, decorationsHandItem.handle, decorationsHeadItem.handle, decorationsNeckItem.handle,
-                            eyelinerItem.handle, eyeshadowItem.handle, facemakeupItem.handle, lipglossItem.handle, pupilItem.handle,
-                            expressionItem.handle, otherItem[0] == null ? 0 : otherItem[0].handle, otherItem[1] == null ? 0 : otherItem[1].handle, otherItem[2] == null ? 0 : otherItem[2].handle, otherItem[3] == null ? 0 : otherItem[3].handle, otherItem[4] == null ? 0 : otherItem[4].handle};
-                    Log.i(TAG, "bundle avatarBindItem controlItem " + controllerItem + " bindAll " + Arrays.toString(items));
-                    faceunity.fuBindItems(controllerItem, items);
-                    setAvatarColor();
-                }
-            });
+            mBaseCore.queueEvent(mBindAllEvent);
     }
 
     @Override
     protected void unBindAll() {
         if (controllerItem > 0)
-            mBaseCore.queueEvent(new Runnable() {
-                @Override
-                public void run() {
-                    int[] items = new int[]{backgroundItem.handle, headItem.handle, hairItem.handle, glassItem.handle, beardItem.handle,
-                            eyebrowItem.handle, eyelashItem.handle, hatItem.handle, bodyItem.handle, clothesItem.handle,
-                            clothesUpperItem.handle, clothesLowerItem.handle, shoeItem.handle, decorationsEarItem.handle,
-                            decorationsFootItem.handle, decorationsHandItem.handle, decorationsHeadItem.handle, decorationsNeckItem.handle,
-                            eyelinerItem.handle, eyeshadowItem.handle, facemakeupItem.handle, lipglossItem.handle,
-                            pupilItem.handle, expressionItem.handle,
-                            otherItem[0] == null ? 0 : otherItem[0].handle,
-                            otherItem[1] == null ? 0 : otherItem[1].handle,
-                            otherItem[2] == null ? 0 : otherItem[2].handle,
-                            otherItem[3] == null ? 0 : otherItem[3].handle,
-                            otherItem[4] == null ? 0 : otherItem[4].handle};
-                    Log.i(TAG, "bundle avatarBindItem controlItem " + controllerItem + " unBindAll " + Arrays.toString(items));
-                    faceunity.fuUnBindItems(controllerItem, items);
-                }
-            });
+            mBaseCore.queueEvent(mUnBindAllEvent);
     }
 
     @Override
@@ -355,12 +382,7 @@ public class AvatarHandle extends BasePTAHandle {
      * @param rotDelta 水平方向旋转角度增量
      */
     public void setRotDelta(final float rotDelta) {
-        mBaseCore.queueEvent(new Runnable() {
-            @Override
-            public void run() {
-                faceunity.fuItemSetParam(controllerItem, "rot_delta", rotDelta);
-            }
-        });
+        mBaseCore.accumulateItemParam(controllerItem, "rot_delta", rotDelta);
     }
 
     /**
@@ -369,12 +391,7 @@ public class AvatarHandle extends BasePTAHandle {
      * @param translateDelta avatar所在位置高度增量
      */
     public void setTranslateDelta(final float translateDelta) {
-        mBaseCore.queueEvent(new Runnable() {
-            @Override
-            public void run() {
-                faceunity.fuItemSetParam(controllerItem, "translate_delta", translateDelta);
-            }
-        });
+        mBaseCore.accumulateItemParam(controllerItem, "translate_delta", translateDelta);
     }
 
     /**
@@ -383,12 +400,7 @@ public class AvatarHandle extends BasePTAHandle {
      * @param scaleDelta avatar缩放比例增量
      */
     public void setScaleDelta(final float scaleDelta) {
-        mBaseCore.queueEvent(new Runnable() {
-            @Override
-            public void run() {
-                faceunity.fuItemSetParam(controllerItem, "scale_delta", scaleDelta);
-            }
-        });
+        mBaseCore.accumulateItemParam(controllerItem, "scale_delta", scaleDelta);
     }
 
     /**
@@ -506,6 +518,7 @@ public class AvatarHandle extends BasePTAHandle {
 
     public void setGroupPhoto(boolean groupPhoto) {
         isGroupPhoto = groupPhoto;
+        setShareItem(!groupPhoto);
     }
 
     public void setNeedNextEventCallback(boolean needNextEventCallback) {
@@ -600,23 +613,26 @@ public class AvatarHandle extends BasePTAHandle {
         });
     }
 
+    // getAnimateProgress中缓存的动画句柄与参数名，只在GL线程访问
+    private int mAnimateProgressId;
+    private String mAnimateProgressKey;
+
     /**
      * 获取某个动画的播放进度
      * 进度0-0.9999为第一次循环，1-1.9999为第二次循环，以此类推
      * 即使play_animation_once,进度也会突破1.0，照常运行
+     * <p>
+     * 每帧在GL线程中调用，参数名按动画缓存，动画不变时不分配对象
      *
      * @param anim_id 当前动画的句柄
      * @return
      */
     public float getAnimateProgress(final int anim_id) {
-        JSONObject jsonObject = new JSONObject();
-        try {
-            jsonObject.put("name", "get_animation_progress");
-            jsonObject.put("anim_id", anim_id);
-        } catch (JSONException e) {
-            e.printStackTrace();
+        if (mAnimateProgressKey == null || mAnimateProgressId != anim_id) {
+            mAnimateProgressKey = "{\"name\":\"get_animation_progress\",\"anim_id\":" + anim_id + "}";
+            mAnimateProgressId = anim_id;
         }
-        float progress = (float) faceunity.fuItemGetParam(controllerItem, jsonObject.toString());
+        float progress = (float) faceunity.fuItemGetParam(controllerItem, mAnimateProgressKey);
         return progress;
     }
     //--------------------------------------捏脸----------------------------------------
@@ -636,12 +652,7 @@ public class AvatarHandle extends BasePTAHandle {
             Log.e(TAG, "fuItemSetParamFaceShape error key " + key + " values " + values);
             return;
         }
-        mBaseCore.queueEvent(new Runnable() {
-            @Override
-            public void run() {
-                faceunity.fuItemSetParam(controllerItem, "{\"name\":\"facepup\",\"param\":\"" + key + "\"}", values);
-            }
-        });
+        mBaseCore.setItemParam(controllerItem, "{\"name\":\"facepup\",\"param\":\"" + key + "\"}", values);
     }
 
     /**
@@ -811,7 +822,7 @@ public class AvatarHandle extends BasePTAHandle {
                 public void run() {
                     if (lightItem > 0) {
                         faceunity.fuUnBindItems(controllerItem, new int[]{lightItem});
-                        faceunity.fuDestroyItem(lightItem);
+                        FUItemPool.getInstance().destroy(lightItem);
                         lightItem = 0;
                     }
                 }
@@ -10,13 +10,19 @@ import com.faceunity.p2a_client.fuPTAClient;
 import com.faceunity.pta_art.constant.FilePathFactory;
 import com.faceunity.pta_art.core.base.BaseCore;
 import com.faceunity.pta_art.core.base.FUItemHandler;
+import com.faceunity.pta_art.core.base.FUItemPool;
+import com.faceunity.pta_art.core.base.ItemParamTable;
+import com.faceunity.pta_art.core.base.RenderEventQueue;
+import com.faceunity.pta_art.core.base.StatusSampler;
+import com.faceunity.pta_art.utils.AssetPack;
+import com.faceunity.pta_art.utils.FileUtil;
+import com.faceunity.pta_art.utils.FrameMetrics;
+import com.faceunity.pta_art.utils.FrameTracer;
 import com.faceunity.wrapper.faceunity;
 
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 /**
@@ -75,17 +81,35 @@ public class FUPTARenderer {
     private FUItemHandler mFUItemHandler;
 
     private BaseCore mFUCore;
-
-    private List<Runnable> mEventQueue;
-    private List<Runnable> mNextEventQueue;
+    // 画质档位，只在GL线程访问
+    private int mQualityTier;
+    // 人脸跟踪是否与渲染解耦，只在GL线程访问
+    private boolean isAsyncTracking;
+    // 已经应用了mQualityTier的模式
+    private BaseCore mQualityTierCore;
+
+    private RenderEventQueue mEventQueue;
+    private ItemParamTable mItemParamTable;
+    /**
+     * 每帧执行queueEvent事件的默认时间预算（毫秒），超出后剩余事件在下一帧执行
+     */
+    public static final long DEFAULT_EVENT_BUDGET_MS = 8;
 
     /**
      * FURenderer构造函数
      */
     public FUPTARenderer(Context context) {
         mContext = context.getApplicationContext();
-        mEventQueue = Collections.synchronizedList(new ArrayList<Runnable>());
-        mNextEventQueue = Collections.synchronizedList(new ArrayList<Runnable>());
+        mEventQueue = new RenderEventQueue();
+        mEventQueue.setBudget(DEFAULT_EVENT_BUDGET_MS);
+        mItemParamTable = new ItemParamTable(mEventQueue);
+        // 道具销毁时丢弃还未设置的参数，避免设置到已经销毁或者复用了句柄的道具上
+        FUItemPool.getInstance().setOnItemDestroyedListener(new FUItemPool.OnItemDestroyedListener() {
+            @Override
+            public void onItemDestroyed(int handle) {
+                removeItemParams(handle);
+            }
+        });
 
         mFUItemHandlerThread = new HandlerThread("FUItemHandlerThread");
         mFUItemHandlerThread.start();
@@ -98,6 +122,41 @@ public class FUPTARenderer {
 
     public void setFUCore(@NonNull BaseCore core) {
         this.mFUCore = core;
+        mStatusSampler.requestPoll();
+    }
+
+    /**
+     * 设置画质档位，在GL线程中调用，下一次渲染前应用到当前模式
+     */
+    public void setQualityTier(int tier) {
+        if (mQualityTier != tier) {
+            mQualityTier = tier;
+            mQualityTierCore = null;
+        }
+    }
+
+    /**
+     * 设置人脸跟踪是否与渲染解耦，在GL线程中调用，下一次渲染前与画质档位一起应用到当前模式
+     */
+    public void setAsyncTracking(boolean asyncTracking) {
+        if (isAsyncTracking != asyncTracking) {
+            isAsyncTracking = asyncTracking;
+            mQualityTierCore = null;
+        }
+    }
+
+    /**
+     * 当前模式的目标帧率
+     */
+    public int getTargetFps() {
+        return mFUCore.getTargetFps();
+    }
+
+    /**
+     * 当前模式是否需要连续渲染
+     */
+    public boolean isContinuousRender() {
+        return mFUCore.isContinuousRender();
     }
 
     /**
@@ -137,7 +196,7 @@ public class FUPTARenderer {
     private static byte[] readFile(Context context, String path) {
         InputStream is = null;
         try {
-            is = context.getAssets().open(path);
+            is = AssetPack.open(context, path);
         } catch (IOException e1) {
             Log.w(TAG, "readFile: e1", e1);
             // open assets failed, then try sdcard
@@ -149,13 +208,18 @@ public class FUPTARenderer {
         }
         if (is != null) {
             try {
-                byte[] buffer = new byte[is.available()];
-                int length = is.read(buffer);
-                Log.v(TAG, "readFile. path: " + path + ", length: " + length + " Byte");
-                is.close();
+                // available()不保证是整个文件的长度，一次read也不保证读满
+                byte[] buffer = FileUtil.readFully(is);
+                Log.v(TAG, "readFile. path: " + path + ", length: " + buffer.length + " Byte");
                 return buffer;
             } catch (IOException e3) {
                 Log.e(TAG, "readFile: e3", e3);
+            } finally {
+                try {
+                    is.close();
+                } catch (IOException e4) {
+                    Log.w(TAG, "readFile: e4", e4);
+                }
             }
         }
         return null;
@@ -189,11 +253,27 @@ public class FUPTARenderer {
             Log.e(TAG, "onDrawFrame date error");
             return 0;
         }
-        prepareDrawFrame();
-        if (mNeedBenchmark) mFuCallStartTime = System.nanoTime();
-        int fuTex = mFUCore.onDrawFrame(img, tex, w, h, rotation);
-        if (mNeedBenchmark) mOneHundredFrameFUTime += System.nanoTime() - mFuCallStartTime;
-        return fuTex;
+        FrameTracer.begin("FUPTARenderer.onDrawFrame");
+        try {
+            prepareDrawFrame();
+            if (mQualityTierCore != mFUCore) {
+                mQualityTierCore = mFUCore;
+                mFUCore.setQualityTier(mQualityTier);
+                mFUCore.setAsyncTracking(isAsyncTracking);
+            }
+            long fuCallStartTime = System.nanoTime();
+            int fuTex;
+            FrameTracer.begin("fuRenderBundles");
+            try {
+                fuTex = mFUCore.onDrawFrame(img, tex, w, h, rotation);
+            } finally {
+                FrameTracer.end();
+            }
+            FrameMetrics.getInstance().recordStage(FrameMetrics.STAGE_SDK, fuCallStartTime);
+            return fuTex;
+        } finally {
+            FrameTracer.end();
+        }
     }
 
 
@@ -201,10 +281,12 @@ public class FUPTARenderer {
      * 销毁faceunity相关的资源
      */
     public void onSurfaceDestroyed() {
+        Log.i(TAG, FrameMetrics.getInstance().toString());
         mFUCore.unBind();
         mFUCore.release();
         fuPTAClient.fuPTAReleaseData();
         faceunity.fuDestroyAllItems();
+        FUItemPool.getInstance().clear();
         faceunity.fuOnDeviceLost();
         faceunity.fuDone();
         release();
@@ -221,7 +303,9 @@ public class FUPTARenderer {
     }
 
     public void release() {
+        FUItemPool.getInstance().setOnItemDestroyedListener(null);
         if (mFUItemHandlerThread != null) {
+            mFUItemHandler.release();
             mFUItemHandlerThread.quitSafely();
             mFUItemHandlerThread = null;
             mFUItemHandler = null;
@@ -231,9 +315,10 @@ public class FUPTARenderer {
             mEventQueue.clear();
             mEventQueue = null;
         }
-        if (mNextEventQueue != null) {
-            mNextEventQueue.clear();
-            mNextEventQueue = null;
+        if (mItemParamTable != null) {
+            Log.i(TAG, mItemParamTable.toString());
+            mItemParamTable.clear();
+            mItemParamTable = null;
         }
     }
 
@@ -241,32 +326,33 @@ public class FUPTARenderer {
      * 每帧处理画面时被调用
      */
     private void prepareDrawFrame() {
-        //计算FPS等数据
-        benchmarkFPS();
+        //回调FPS等数据
+        notifyDebugListener();
 
-        //获取人脸是否识别，并调用回调接口
-        int isTracking = mFUCore.isTracking();
-        if (mOnTrackingStatusChangedListener != null && mTrackingStatus != isTracking) {
-            mOnTrackingStatusChangedListener.onTrackingStatusChanged(mTrackingStatus = isTracking);
-        }
+        //按间隔采样人脸是否识别与faceunity错误信息，变化时调用回调接口
+        mStatusSampler.onFrame(mFUCore);
 
-        //获取faceunity错误信息，并调用回调接口
-        int error = faceunity.fuGetSystemError();
-        if (error != 0 && !TextUtils.isEmpty(faceunity.fuGetSystemErrorString(error))) {
-            Log.e(TAG, "fuGetSystemErrorString " + faceunity.fuGetSystemErrorString(error));
-        }
-        if (mOnSystemErrorListener != null && error != 0) {
-            mOnSystemErrorListener.onSystemError(error == 0 ? "" : faceunity.fuGetSystemErrorString(error));
-        }
+        drainEvents();
 
-        //queueEvent的Runnable在此处被调用
-        while (mEventQueue != null && !mEventQueue.isEmpty()) {
-            Runnable r = mEventQueue.remove(0);
-            if (r != null)
-                r.run();
+        //销毁道具池中超过延迟时间的道具
+        FUItemPool.getInstance().destroyExpired();
+    }
+
+    /**
+     * 执行queueEvent的Runnable，queueNextEvent的Runnable在下一帧被执行，在GL线程中每帧调用
+     */
+    void drainEvents() {
+        RenderEventQueue eventQueue = mEventQueue;
+        if (eventQueue != null) {
+            long drainStartTime = System.nanoTime();
+            FrameTracer.begin("eventDrain");
+            try {
+                eventQueue.drain();
+            } finally {
+                FrameTracer.end();
+            }
+            FrameMetrics.getInstance().recordStage(FrameMetrics.STAGE_EVENT_DRAIN, drainStartTime);
         }
-        mEventQueue.addAll(mNextEventQueue);
-        mNextEventQueue.clear();
     }
 
     //--------------------------------------对外可使用的接口----------------------------------------
@@ -275,29 +361,147 @@ public class FUPTARenderer {
      * 类似GLSurfaceView的queueEvent机制
      */
     public void queueEvent(@NonNull Runnable r) {
-        if (mEventQueue != null)
-            mEventQueue.add(r);
+        RenderEventQueue eventQueue = mEventQueue;
+        if (eventQueue != null)
+            eventQueue.queueEvent(r);
     }
 
     /**
      * 类似GLSurfaceView的queueEvent机制
      */
     public void queueEvent(@NonNull List<Runnable> rs) {
-        if (mEventQueue != null && !rs.isEmpty())
-            mEventQueue.addAll(rs);
+        RenderEventQueue eventQueue = mEventQueue;
+        if (eventQueue != null) {
+            for (int i = 0; i < rs.size(); i++) {
+                eventQueue.queueEvent(rs.get(i));
+            }
+        }
     }
 
     /**
      * 相较于queueEvent，延后一次render被调用
      */
     public void queueNextEvent(@NonNull Runnable r) {
-        if (mNextEventQueue != null)
-            mNextEventQueue.add(r);
+        RenderEventQueue eventQueue = mEventQueue;
+        if (eventQueue != null)
+            eventQueue.queueNextEvent(r);
+    }
+
+    /**
+     * 设置道具参数，同一帧内对同一参数的多次设置只保留最后一次
+     *
+     * @param item  道具句柄
+     * @param key   参数名
+     * @param value 参数值
+     */
+    public void setItemParam(int item, String key, double value) {
+        ItemParamTable itemParamTable = mItemParamTable;
+        if (itemParamTable != null)
+            itemParamTable.set(item, key, value);
+    }
+
+    /**
+     * 设置道具数组参数，同一帧内对同一参数的多次设置只保留最后一次
+     *
+     * @param item   道具句柄
+     * @param key    参数名
+     * @param values 参数值
+     */
+    public void setItemParam(int item, String key, double[] values) {
+        ItemParamTable itemParamTable = mItemParamTable;
+        if (itemParamTable != null)
+            itemParamTable.set(item, key, values);
+    }
+
+    /**
+     * 设置道具增量参数（如rot_delta），同一帧内的多次设置合并为增量之和
+     *
+     * @param item  道具句柄
+     * @param key   参数名
+     * @param delta 参数增量
+     */
+    public void accumulateItemParam(int item, String key, double delta) {
+        ItemParamTable itemParamTable = mItemParamTable;
+        if (itemParamTable != null)
+            itemParamTable.accumulate(item, key, delta);
+    }
+
+    /**
+     * 丢弃道具暂存的参数，销毁道具时调用
+     */
+    public void removeItemParams(int item) {
+        ItemParamTable itemParamTable = mItemParamTable;
+        if (itemParamTable != null)
+            itemParamTable.remove(item);
+    }
+
+    /**
+     * 设置每帧执行queueEvent事件的时间预算
+     *
+     * @param budgetMs 毫秒，0表示每帧执行所有事件
+     */
+    public void setEventBudget(long budgetMs) {
+        RenderEventQueue eventQueue = mEventQueue;
+        if (eventQueue != null)
+            eventQueue.setBudget(budgetMs);
+    }
+
+    /**
+     * 上一帧因超出时间预算而留到下一帧的事件数
+     */
+    public int getDeferredEventCount() {
+        RenderEventQueue eventQueue = mEventQueue;
+        return eventQueue == null ? 0 : eventQueue.getLastDeferredCount();
     }
 
     //--------------------------------------IsTracking（人脸识别回调相关定义）----------------------------------------
 
-    private int mTrackingStatus = 0;
+    private final StatusSampler mStatusSampler = new StatusSampler(new StatusSampler.Listener() {
+        @Override
+        public void onTrackingChanged(int status) {
+            if (mOnTrackingStatusChangedListener != null) {
+                mOnTrackingStatusChangedListener.onTrackingStatusChanged(status);
+            }
+        }
+
+        @Override
+        public void onSystemError(int error, String message) {
+            if (!TextUtils.isEmpty(message)) {
+                Log.e(TAG, "fuGetSystemErrorString " + message);
+            }
+            if (mOnSystemErrorListener != null) {
+                mOnSystemErrorListener.onSystemError(message);
+            }
+        }
+    });
+
+    /**
+     * 最近一次采样的人脸跟踪状态，最多延迟StatusSampler的采样间隔
+     */
+    public int getTrackingStatus() {
+        return mStatusSampler.getTrackingStatus();
+    }
+
+    /**
+     * 下一帧立即采样跟踪状态与错误信息
+     */
+    public void requestStatusPoll() {
+        mStatusSampler.requestPoll();
+    }
+
+    /**
+     * 设置状态采样间隔
+     *
+     * @param frames 间隔帧数，1表示每帧采样
+     * @param millis 间隔毫秒，0表示只按帧数采样
+     */
+    public void setStatusPollInterval(int frames, long millis) {
+        mStatusSampler.setInterval(frames, millis);
+    }
+
+    public int getStatusPollIntervalFrames() {
+        return mStatusSampler.getIntervalFrames();
+    }
 
     public interface OnTrackingStatusChangedListener {
         void onTrackingStatusChanged(int status);
@@ -334,13 +538,11 @@ public class FUPTARenderer {
     }
 //--------------------------------------FPS（FPS相关定义）----------------------------------------
 
-    private static final float NANO_IN_ONE_MILLI_SECOND = 1000000.0f;
-    private static final float TIME = 10f;
+    /**
+     * 每隔多少帧回调一次OnFUDebugListener
+     */
+    private static final int DEBUG_INTERVAL_FRAMES = 10;
     private int mCurrentFrameCnt = 0;
-    private long mLastOneHundredFrameTimeStamp = 0;
-    private long mOneHundredFrameFUTime = 0;
-    private boolean mNeedBenchmark = true;
-    private long mFuCallStartTime = 0;
 
     private OnFUDebugListener mOnFUDebugListener;
 
@@ -352,19 +554,19 @@ public class FUPTARenderer {
         this.mOnFUDebugListener = mOnFUDebugListener;
     }
 
-    private void benchmarkFPS() {
-        if (!mNeedBenchmark) return;
-        if (++mCurrentFrameCnt == TIME) {
-            mCurrentFrameCnt = 0;
-            long tmp = System.nanoTime();
-            double fps = (1000.0f * NANO_IN_ONE_MILLI_SECOND / ((tmp - mLastOneHundredFrameTimeStamp) / TIME));
-            mLastOneHundredFrameTimeStamp = tmp;
-            double renderTime = mOneHundredFrameFUTime / TIME / NANO_IN_ONE_MILLI_SECOND;
-            mOneHundredFrameFUTime = 0;
-
-            if (mOnFUDebugListener != null) {
-                mOnFUDebugListener.onFpsChange(fps, renderTime);
-            }
+    /**
+     * 每DEBUG_INTERVAL_FRAMES帧将最近的平均帧率与SDK渲染耗时回调给OnFUDebugListener，
+     * 详细的耗时统计见FrameMetrics
+     */
+    private void notifyDebugListener() {
+        if (mOnFUDebugListener == null || ++mCurrentFrameCnt < DEBUG_INTERVAL_FRAMES) {
+            return;
+        }
+        mCurrentFrameCnt = 0;
+        FrameMetrics frameMetrics = FrameMetrics.getInstance();
+        double fps = frameMetrics.getRecentFps(DEBUG_INTERVAL_FRAMES);
+        if (fps > 0) {
+            mOnFUDebugListener.onFpsChange(fps, frameMetrics.getRecentMeanMs(FrameMetrics.STAGE_SDK, DEBUG_INTERVAL_FRAMES));
         }
     }
 }
@@ -13,6 +13,8 @@ public class NamaCore extends BaseCore {
     
     private static final String TAG = NamaCore.class.getSimpleName();
 
+    private static final int[] EMPTY_ITEMS = new int[0];
+
     private final int controllerItem;
     int flags = faceunity.FU_ADM_FLAG_EXTERNAL_OES_TEXTURE;
 
@@ -24,7 +26,7 @@ public class NamaCore extends BaseCore {
 
     @Override
     public int[] itemsArray() {
-        return new int[0];
+        return EMPTY_ITEMS;
     }
 
     @Override
@@ -33,6 +35,19 @@ public class NamaCore extends BaseCore {
         return faceunity.fuRenderBundlesWithCamera(img, tex, flags, w, h, mFrameId++, itemsArray());
     }
 
+    /**
+     * 拍照的画面由相机帧驱动，只在有新的相机帧时渲染
+     */
+    @Override
+    public int getTargetFps() {
+        return 30;
+    }
+
+    @Override
+    public boolean isContinuousRender() {
+        return false;
+    }
+
     @Override
     public void unBind() {
 
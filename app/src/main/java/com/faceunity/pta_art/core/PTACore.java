@@ -3,7 +3,9 @@ package com.faceunity.pta_art.core;
 import android.content.Context;
 
 import com.faceunity.pta_art.constant.FilePathFactory;
+import com.faceunity.pta_art.core.base.AsyncFaceTracker;
 import com.faceunity.pta_art.core.base.BaseCore;
+import com.faceunity.pta_art.renderer.QualityGovernor;
 import com.faceunity.wrapper.faceunity;
 
 import java.util.Arrays;
@@ -25,6 +27,11 @@ public class PTACore extends BaseCore {
     public int fxaaItem;
     private int controller_config;
     private boolean isNeedTrackFace = false;
+    /**
+     * 人脸跟踪与渲染解耦：跟踪在AsyncFaceTracker的线程中以较低帧率执行，渲染时使用插值后的结果
+     */
+    private volatile boolean isAsyncTracking;
+    private AsyncFaceTracker mAsyncFaceTracker;
     // 设置即将要播放的动画位置
     private int currentHomeAnimationPosition = -1;
     // 是否可以再次设置下一个播放动画
@@ -33,7 +40,17 @@ public class PTACore extends BaseCore {
     public int defaultItem;
     // 平地阴影道具
     public int planeItemLeft, planeItemRight;
+    // 以下只在GL线程访问：界面是否需要显示阴影、画质档位是否关闭阴影、阴影是否已绑定
+    private boolean isPlaneRequested;
+    private boolean isShadowDisabled;
+    private boolean isPlaneBound;
     private int lastLoadCompletedFrameId = 0;
+    // 动画进度在结束前ANIMATION_END_RANGE内认为播放完毕
+    private static final float ANIMATION_END_RANGE = 0.05f;
+    // 距离下一次查询动画进度的帧数，以及上一次查询的进度与间隔帧数，只在GL线程访问
+    private int mProgressSkipFrames;
+    private float mLastProgress;
+    private int mLastProgressFrames = 1;
 
     public PTACore(PTACore core) {
         super(core.mContext, core.mFUP2ARenderer);
@@ -81,6 +98,46 @@ public class PTACore extends BaseCore {
         });
     }
 
+    @Override
+    public void setQualityTier(int tier) {
+        mItemsArray[ITEM_ARRAYS_FXAA] = tier >= QualityGovernor.TIER_NO_FXAA ? 0 : fxaaItem;
+        isShadowDisabled = tier >= QualityGovernor.TIER_NO_SHADOW;
+        applyPlane();
+    }
+
+    /**
+     * 切换人脸跟踪与渲染是否解耦，在GL线程中调用
+     * <p>
+     * 开启后关闭controller内部的人脸跟踪（enable_face_processor），由AsyncFaceTracker在独立线程中跟踪，
+     * 渲染使用fuRenderBundles传入插值后的AvatarInfo；关闭后恢复fuRenderBundlesWithCamera
+     */
+    @Override
+    public void setAsyncTracking(boolean asyncTracking) {
+        if (isAsyncTracking == asyncTracking) {
+            return;
+        }
+        isAsyncTracking = asyncTracking;
+        if (asyncTracking) {
+            mAsyncFaceTracker = new AsyncFaceTracker();
+            mAsyncFaceTracker.start();
+            avatarHandle.setFaceCapture(false);
+        } else {
+            stopAsyncTracking();
+            avatarHandle.setFaceCapture(isNeedTrackFace);
+        }
+    }
+
+    private void stopAsyncTracking() {
+        if (mAsyncFaceTracker != null) {
+            mAsyncFaceTracker.stop();
+            mAsyncFaceTracker = null;
+        }
+        Arrays.fill(avatarInfo.mRotation, 0.0f);
+        Arrays.fill(avatarInfo.mExpression, 0.0f);
+        Arrays.fill(avatarInfo.mPupilPos, 0.0f);
+        Arrays.fill(avatarInfo.mRotationMode, 0.0f);
+    }
+
     @Override
     public int[] itemsArray() {
         if (avatarHandle != null) {
@@ -103,9 +160,10 @@ public class PTACore extends BaseCore {
 
         int loadCount = avatarHandle.getLoadCount();
         if (loadCount != Integer.MAX_VALUE) {
-            if (avatarHandle.expressionItem.handle > 0) {
+            if (avatarHandle.expressionItem.handle > 0 && --mProgressSkipFrames <= 0) {
                 float progress = avatarHandle.getAnimateProgress(avatarHandle.expressionItem.handle);
-                if (loadCount - progress < 0.05 && loadCount - progress > 0) {
+                mProgressSkipFrames = nextProgressPollFrames(loadCount, progress);
+                if (loadCount - progress < ANIMATION_END_RANGE && loadCount - progress > 0) {
                     // progress并不是一个整型，我们这里取一个范围，也就是loadCount± 0.05 就算是播放完毕
 
                     if (aniLoadCompletedListener != null && (mFrameId - lastLoadCompletedFrameId > 1)) {
@@ -119,7 +177,12 @@ public class PTACore extends BaseCore {
             }
         }
 
-        if (isNeedTrackFace) {
+        if (isNeedTrackFace && mAsyncFaceTracker != null) {
+            long now = System.nanoTime();
+            mAsyncFaceTracker.submit(img, w, h, now);
+            mAsyncFaceTracker.sample(now, avatarInfo, landmarksData);
+            return faceunity.fuRenderBundles(avatarInfo, 0, w, h, mFrameId++, itemsArray());
+        } else if (isNeedTrackFace) {
             return faceunity.fuRenderBundlesWithCamera(img, tex, faceunity.FU_ADM_FLAG_EXTERNAL_OES_TEXTURE, w, h, mFrameId++, itemsArray());
         } else {
             return faceunity.fuRenderBundles(avatarInfo,
@@ -127,6 +190,24 @@ public class PTACore extends BaseCore {
         }
     }
 
+    /**
+     * 下一次查询动画进度前间隔的帧数：离结束较远时按状态采样的间隔查询，
+     * 按上两次查询估算的播放速度在进入结束判断区间前改为每帧查询，不会跳过判断区间
+     */
+    private int nextProgressPollFrames(int loadCount, float progress) {
+        float rate = (progress - mLastProgress) / mLastProgressFrames;
+        mLastProgress = progress;
+        int interval = mFUP2ARenderer.getStatusPollIntervalFrames();
+        int frames = 1;
+        if (interval > 1 && rate > 0) {
+            // 留出一帧的余量，避免帧间隔波动导致估算偏大
+            frames = (int) ((loadCount - ANIMATION_END_RANGE - progress) / rate) - 1;
+            frames = Math.max(1, Math.min(frames, interval));
+        }
+        mLastProgressFrames = frames;
+        return frames;
+    }
+
     public void setCurrentInstancceId(int id) {
         if (avatarHandle != null)
             avatarHandle.setCurrentInstancceId(id);
@@ -170,7 +251,8 @@ public class PTACore extends BaseCore {
         queueEvent(new Runnable() {
             @Override
             public void run() {
-                faceunity.fuBindItems(avatarHandle.controllerItem, new int[]{planeItemLeft, planeItemRight});
+                isPlaneRequested = true;
+                applyPlane();
             }
         });
     }
@@ -179,11 +261,28 @@ public class PTACore extends BaseCore {
         queueEvent(new Runnable() {
             @Override
             public void run() {
-                faceunity.fuUnBindItems(avatarHandle.controllerItem, new int[]{planeItemLeft, planeItemRight});
+                isPlaneRequested = false;
+                applyPlane();
             }
         });
     }
 
+    /**
+     * 按界面需要与画质档位绑定或解绑平地阴影，在GL线程中调用
+     */
+    private void applyPlane() {
+        boolean bind = isPlaneRequested && !isShadowDisabled;
+        if (bind == isPlaneBound || avatarHandle == null || avatarHandle.controllerItem <= 0) {
+            return;
+        }
+        isPlaneBound = bind;
+        if (bind) {
+            faceunity.fuBindItems(avatarHandle.controllerItem, new int[]{planeItemLeft, planeItemRight});
+        } else {
+            faceunity.fuUnBindItems(avatarHandle.controllerItem, new int[]{planeItemLeft, planeItemRight});
+        }
+    }
+
     @Override
     public void unBind() {
         if (avatarHandle != null) {
@@ -222,6 +321,8 @@ public class PTACore extends BaseCore {
         currentCameraItem = 0;
         canResetHomeAnimationPosition = true;
         currentHomeAnimationPosition = -1;
+        isAsyncTracking = false;
+        stopAsyncTracking();
 
         unBindPlane();
         faceunity.fuUnBindItems(avatarHandle.controllerItem, new int[]{controller_config});
@@ -243,6 +344,19 @@ public class PTACore extends BaseCore {
     public void setNeedTrackFace(boolean needTrackFace) {
         isNeedTrackFace = needTrackFace;
         avatarHandle.setCNNTrackFace(isNeedTrackFace);
+        if (isAsyncTracking) {
+            // 解耦跟踪时controller内部不跟踪
+            avatarHandle.setFaceCapture(false);
+        }
+    }
+
+    @Override
+    public int isTracking() {
+        AsyncFaceTracker tracker = mAsyncFaceTracker;
+        if (tracker != null) {
+            return tracker.getTrackingStatus();
+        }
+        return super.isTracking();
     }
 
 
@@ -345,8 +459,15 @@ public class PTACore extends BaseCore {
 
     @Override
     public float[] getLandmarksData() {
+        if (mAsyncFaceTracker != null) {
+            // 解耦跟踪时landmarksData在onDrawFrame中按渲染时间插值
+            if (!isNeedTrackFace || mAsyncFaceTracker.getTrackingStatus() == 0) {
+                Arrays.fill(landmarksData, 0.0f);
+            }
+            return landmarksData;
+        }
         Arrays.fill(landmarksData, 0.0f);
-        if (isNeedTrackFace && isTracking() > 0)
+        if (isNeedTrackFace && mFUP2ARenderer.getTrackingStatus() > 0)
             faceunity.fuGetFaceInfo(0, "landmarks", landmarksData);
         return landmarksData;
     }
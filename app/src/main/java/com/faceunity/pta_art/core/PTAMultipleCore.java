@@ -5,7 +5,9 @@ import android.util.SparseArray;
 
 import com.faceunity.pta_art.constant.FilePathFactory;
 import com.faceunity.pta_art.core.base.BaseCore;
+import com.faceunity.pta_art.core.base.FUItemPool;
 import com.faceunity.pta_art.entity.Scenes;
+import com.faceunity.pta_art.renderer.QualityGovernor;
 import com.faceunity.pta_art.utils.BackgroundUtil;
 import com.faceunity.wrapper.faceunity;
 
@@ -34,6 +36,10 @@ public class PTAMultipleCore extends BaseCore {
     private int controllerItem;
     // 平地阴影道具
     public int planeItemLeft, planeItemRight;
+    // 以下只在GL线程访问：界面是否需要显示阴影、画质档位是否关闭阴影、阴影是否已绑定
+    private boolean isPlaneRequested;
+    private boolean isShadowDisabled;
+    private boolean isPlaneBound;
 
     public PTAMultipleCore(Context context, FUPTARenderer fuP2ARenderer) {
         super(context, fuP2ARenderer);
@@ -75,6 +81,13 @@ public class PTAMultipleCore extends BaseCore {
         return mAvatarHandles;
     }
 
+    @Override
+    public void setQualityTier(int tier) {
+        mItemsArray[ITEM_ARRAYS_FXAA] = tier >= QualityGovernor.TIER_NO_FXAA ? 0 : fxaaItem;
+        isShadowDisabled = tier >= QualityGovernor.TIER_NO_SHADOW;
+        applyPlane();
+    }
+
     @Override
     public int[] itemsArray() {
         return mItemsArray;
@@ -218,7 +231,7 @@ public class PTAMultipleCore extends BaseCore {
             @Override
             public void run() {
                 faceunity.fuUnBindItems(controllerItem, bgItems);
-                faceunity.fuDestroyItem(currentBgItem);
+                FUItemPool.getInstance().destroy(currentBgItem);
                 bgItems[0] = currentBgItem = fuItem;
                 faceunity.fuBindItems(controllerItem, bgItems);
                 mBackgroundUtil.setUseBitmapBackground(false);
@@ -230,7 +243,8 @@ public class PTAMultipleCore extends BaseCore {
         queueEvent(new Runnable() {
             @Override
             public void run() {
-                faceunity.fuBindItems(controllerItem, new int[]{planeItemLeft, planeItemRight});
+                isPlaneRequested = true;
+                applyPlane();
             }
         });
     }
@@ -239,8 +253,25 @@ public class PTAMultipleCore extends BaseCore {
         queueEvent(new Runnable() {
             @Override
             public void run() {
-                faceunity.fuUnBindItems(controllerItem, new int[]{planeItemLeft, planeItemRight});
+                isPlaneRequested = false;
+                applyPlane();
             }
         });
     }
+
+    /**
+     * 按界面需要与画质档位绑定或解绑平地阴影，在GL线程中调用
+     */
+    private void applyPlane() {
+        boolean bind = isPlaneRequested && !isShadowDisabled;
+        if (bind == isPlaneBound || controllerItem <= 0) {
+            return;
+        }
+        isPlaneBound = bind;
+        if (bind) {
+            faceunity.fuBindItems(controllerItem, new int[]{planeItemLeft, planeItemRight});
+        } else {
+            faceunity.fuUnBindItems(controllerItem, new int[]{planeItemLeft, planeItemRight});
+        }
+    }
 }
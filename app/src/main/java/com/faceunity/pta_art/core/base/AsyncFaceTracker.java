@@ -0,0 +1,273 @@
+package com.faceunity.pta_art.core.base;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import com.faceunity.pta_art.utils.FrameTracer;
+import com.faceunity.pta_art.utils.yuv.YuvTransform;
+import com.faceunity.pta_art.utils.yuv.YuvUtil;
+import com.faceunity.wrapper.faceunity;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 独立线程的人脸跟踪
+ * <p>
+ * 渲染线程每帧调用submit，按跟踪帧率（默认DEFAULT_TRACKING_FPS）把相机帧缩小DOWNSCALE倍后交给跟踪线程执行fuTrackFace，
+ * 跟踪线程还在处理上一帧时直接跳过，渲染不会等待跟踪。跟踪结果写入PoseBuffer，
+ * 渲染线程通过sample按渲染时间插值、外推得到每帧的旋转、表情与点位，配合fuRenderBundles(avatarInfo)渲染，
+ * 渲染帧率不再受跟踪帧率限制。
+ * <p>
+ * 统计：跟踪延迟（提交到结果可用）、相邻两次结果间隔的抖动（间隔之差的平均绝对值）、因跟踪线程忙跳过的帧数。
+ */
+public class AsyncFaceTracker {
+    private static final String TAG = AsyncFaceTracker.class.getSimpleName();
+
+    public static final int DEFAULT_TRACKING_FPS = 20;
+    /**
+     * 跟踪图像的缩小倍数（宽高各缩小）
+     */
+    public static final int DOWNSCALE = 2;
+    /**
+     * stop时等待跟踪线程退出的最长时间
+     */
+    private static final long STOP_TIMEOUT_MS = 500;
+
+    private final PoseBuffer mPoseBuffer = new PoseBuffer();
+    private final AtomicBoolean isBusy = new AtomicBoolean(false);
+    private HandlerThread mTrackThread;
+    private Handler mTrackHandler;
+    private volatile long mIntervalNanos;
+
+    // 以下只在渲染线程访问
+    private long mLastSubmitTime;
+    // 以下在submit与跟踪线程之间通过isBusy交接
+    private byte[] mFrame;
+    private int mFrameWidth;
+    private int mFrameHeight;
+    private long mFrameTime;
+
+    // 以下只在跟踪线程访问
+    private final float[] mRotation = new float[PoseBuffer.ROTATION_SIZE];
+    private final float[] mExpression = new float[PoseBuffer.EXPRESSION_SIZE];
+    private final float[] mPupil = new float[PoseBuffer.PUPIL_SIZE];
+    private final float[] mRotationMode = new float[1];
+    private final float[] mLandmarks = new float[PoseBuffer.LANDMARKS_SIZE];
+    private long mLastResultTime;
+    private long mLastResultInterval;
+
+    private volatile int mTrackingStatus;
+    private volatile long mTrackCount;
+    private volatile long mSkippedCount;
+    private volatile long mLatencySum;
+    private volatile long mLatencyMax;
+    private volatile long mJitterSum;
+    private volatile long mJitterCount;
+
+    private final Runnable mTrackRunnable = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                track();
+            } finally {
+                isBusy.set(false);
+            }
+        }
+    };
+
+    public AsyncFaceTracker() {
+        setTrackingFps(DEFAULT_TRACKING_FPS);
+    }
+
+    /**
+     * 设置跟踪帧率，外推时间随之调整为一个跟踪间隔
+     */
+    public void setTrackingFps(int fps) {
+        mIntervalNanos = 1000000000L / Math.max(1, fps);
+        mPoseBuffer.setMaxExtrapolationNanos(mIntervalNanos);
+    }
+
+    public void start() {
+        if (mTrackThread != null) {
+            return;
+        }
+        mTrackThread = new HandlerThread("AsyncFaceTracker");
+        mTrackThread.start();
+        mTrackHandler = new Handler(mTrackThread.getLooper());
+    }
+
+    /**
+     * 停止跟踪线程并清空结果
+     * <p>
+     * 等待正在执行的fuTrackFace完成、线程退出后返回（最多STOP_TIMEOUT_MS），
+     * 调用者之后恢复同步跟踪时不会与跟踪线程同时调用SDK，停止后的结果也不会再写入PoseBuffer
+     */
+    public void stop() {
+        HandlerThread thread = mTrackThread;
+        if (thread == null) {
+            return;
+        }
+        mTrackHandler.removeCallbacks(mTrackRunnable);
+        thread.quitSafely();
+        mTrackThread = null;
+        mTrackHandler = null;
+        try {
+            thread.join(STOP_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        if (thread.isAlive()) {
+            Log.e(TAG, "track thread still running after " + STOP_TIMEOUT_MS + "ms");
+        }
+        mPoseBuffer.clear();
+        mTrackingStatus = 0;
+        Log.i("time", toString());
+    }
+
+    /**
+     * 提交一帧，在渲染线程每帧调用；未到跟踪间隔或者跟踪线程忙时返回false
+     *
+     * @param nv21   已经旋转为正向的NV21
+     * @param width  宽
+     * @param height 高
+     * @param time   图像的时间（System.nanoTime）
+     */
+    public boolean submit(byte[] nv21, int width, int height, long time) {
+        Handler handler = mTrackHandler;
+        if (handler == null || nv21 == null) {
+            return false;
+        }
+        // 允许1/4个间隔的误差，避免渲染帧时间抖动导致多等一帧
+        if (time - mLastSubmitTime < mIntervalNanos - mIntervalNanos / 4) {
+            return false;
+        }
+        if (!isBusy.compareAndSet(false, true)) {
+            mSkippedCount++;
+            return false;
+        }
+        FrameTracer.begin("AsyncFaceTracker.downscale");
+        try {
+            downscale(nv21, width, height);
+        } finally {
+            FrameTracer.end();
+        }
+        mFrameTime = time;
+        mLastSubmitTime = time;
+        handler.post(mTrackRunnable);
+        return true;
+    }
+
+    /**
+     * NV21按DOWNSCALE倍抽样缩小，宽高取偶数
+     */
+    private void downscale(byte[] nv21, int width, int height) {
+        int w = YuvTransform.getScaledSize(width, DOWNSCALE);
+        int h = YuvTransform.getScaledSize(height, DOWNSCALE);
+        int size = YuvUtil.getFrameSize(w, h);
+        if (mFrame == null || mFrame.length != size) {
+            mFrame = new byte[size];
+        }
+        YuvTransform.downscale(nv21, width, height, YuvUtil.FORMAT_NV21, DOWNSCALE, mFrame);
+        mFrameWidth = w;
+        mFrameHeight = h;
+    }
+
+    /**
+     * 在跟踪线程执行
+     */
+    private void track() {
+        FrameTracer.begin("fuTrackFace");
+        try {
+            faceunity.fuTrackFace(mFrame, 0, mFrameWidth, mFrameHeight);
+        } finally {
+            FrameTracer.end();
+        }
+        boolean valid = faceunity.fuIsTracking() > 0;
+        mTrackingStatus = valid ? 1 : 0;
+        if (valid) {
+            faceunity.fuGetFaceInfo(0, "rotation", mRotation);
+            faceunity.fuGetFaceInfo(0, "expression", mExpression);
+            faceunity.fuGetFaceInfo(0, "pupil_pos", mPupil);
+            faceunity.fuGetFaceInfo(0, "rotation_mode", mRotationMode);
+            faceunity.fuGetFaceInfo(0, "landmarks", mLandmarks);
+            // 点位换算回原图坐标
+            for (int i = 0; i < mLandmarks.length; i++) {
+                mLandmarks[i] *= DOWNSCALE;
+            }
+        } else {
+            Arrays.fill(mExpression, 0f);
+            Arrays.fill(mLandmarks, 0f);
+        }
+        mPoseBuffer.push(mFrameTime, valid, mRotation, mExpression, mPupil, mRotationMode[0], mLandmarks);
+
+        long now = System.nanoTime();
+        long latency = now - mFrameTime;
+        mLatencySum += latency;
+        if (latency > mLatencyMax) {
+            mLatencyMax = latency;
+        }
+        if (mLastResultTime > 0) {
+            long interval = now - mLastResultTime;
+            if (mLastResultInterval > 0) {
+                mJitterSum += Math.abs(interval - mLastResultInterval);
+                mJitterCount++;
+            }
+            mLastResultInterval = interval;
+        }
+        mLastResultTime = now;
+        mTrackCount++;
+    }
+
+    /**
+     * 按渲染时间取插值后的跟踪结果，在渲染线程调用
+     *
+     * @see PoseBuffer#sample(long, faceunity.AvatarInfo, float[])
+     */
+    public boolean sample(long time, faceunity.AvatarInfo info, float[] landmarks) {
+        return mPoseBuffer.sample(time, info, landmarks);
+    }
+
+    /**
+     * 最近一次跟踪是否检测到人脸
+     */
+    public int getTrackingStatus() {
+        return mTrackingStatus;
+    }
+
+    public long getTrackCount() {
+        return mTrackCount;
+    }
+
+    public long getSkippedCount() {
+        return mSkippedCount;
+    }
+
+    /**
+     * 平均跟踪延迟（纳秒）
+     */
+    public long getMeanLatencyNanos() {
+        long count = mTrackCount;
+        return count > 0 ? mLatencySum / count : 0;
+    }
+
+    public long getMaxLatencyNanos() {
+        return mLatencyMax;
+    }
+
+    /**
+     * 平均抖动（纳秒）：相邻两次结果间隔之差的平均绝对值
+     */
+    public long getMeanJitterNanos() {
+        long count = mJitterCount;
+        return count > 0 ? mJitterSum / count : 0;
+    }
+
+    @Override
+    public String toString() {
+        return TAG + " fps " + 1000000000L / mIntervalNanos + " tracked " + mTrackCount + " skipped " + mSkippedCount
+                + " latency mean " + getMeanLatencyNanos() / 1000 + "us max " + mLatencyMax / 1000
+                + "us jitter " + getMeanJitterNanos() / 1000 + "us";
+    }
+}
@@ -84,6 +84,32 @@ public abstract class BaseCore {
         });
     }
 
+    /**
+     * 该模式的目标帧率，由CameraRenderer按vsync节奏请求渲染
+     */
+    public int getTargetFps() {
+        return 60;
+    }
+
+    /**
+     * 没有新的相机、视频帧时是否也需要连续渲染（形象动画）
+     */
+    public boolean isContinuousRender() {
+        return true;
+    }
+
+    /**
+     * 应用画质档位（QualityGovernor.TIER_*），切换到该模式与档位变化时在GL线程中调用
+     */
+    public void setQualityTier(int tier) {
+    }
+
+    /**
+     * 人脸跟踪是否与渲染解耦（在独立线程中以较低帧率跟踪，渲染时插值），支持的模式覆盖，在GL线程中调用
+     */
+    public void setAsyncTracking(boolean asyncTracking) {
+    }
+
     public abstract void unBind();
 
     public abstract void bind();
@@ -104,6 +130,27 @@ public abstract class BaseCore {
         mFUP2ARenderer.queueEvent(rs);
     }
 
+    /**
+     * 设置道具参数，同一帧内对同一参数的多次设置只保留最后一次
+     */
+    public void setItemParam(int item, String key, double value) {
+        mFUP2ARenderer.setItemParam(item, key, value);
+    }
+
+    /**
+     * 设置道具数组参数，同一帧内对同一参数的多次设置只保留最后一次
+     */
+    public void setItemParam(int item, String key, double[] values) {
+        mFUP2ARenderer.setItemParam(item, key, values);
+    }
+
+    /**
+     * 设置道具增量参数，同一帧内的多次设置合并为增量之和
+     */
+    public void accumulateItemParam(int item, String key, double delta) {
+        mFUP2ARenderer.accumulateItemParam(item, key, delta);
+    }
+
     /**
      * 相较于queueEvent，延后一次render被调用
      */
@@ -173,6 +220,7 @@ public abstract class BaseCore {
     /**
      * 销毁单个道具：
      * - 通过道具句柄销毁道具，并释放相关资源
+     * - 道具池中的道具只有在引用全部释放后才会销毁
      *
      * @param oldItem 需要销毁的道具句柄
      */
@@ -180,8 +228,9 @@ public abstract class BaseCore {
         return new Runnable() {
             @Override
             public void run() {
-                if (oldItem > 0) {
-                    faceunity.fuDestroyItem(oldItem);
+                FUItemPool itemPool = FUItemPool.getInstance();
+                if (oldItem > 0 && itemPool.release(oldItem)) {
+                    itemPool.destroy(oldItem);
                     Log.i(TAG, "bundle destroyItem oldItem " + oldItem);
                 }
             }
@@ -1,5 +1,6 @@
 package com.faceunity.pta_art.core.base;
 
+import android.text.TextUtils;
 import android.util.Log;
 
 import com.faceunity.pta_art.constant.ColorConstant;
@@ -10,7 +11,6 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -28,8 +28,21 @@ public abstract class BasePTAHandle extends BaseHandle {
      */
     public int eyebrowHandleId, eyeshadowHandleId, lipglossHandleId,
             eyelashHandleId;
-    protected final List<Runnable> bindEvents = new ArrayList<>();
-    protected final List<Runnable> destroyEvents = new ArrayList<>();
+    // 本次切换产生的道具变更
+    protected ItemChangeSet changeSet = new ItemChangeSet();
+    // 是否通过道具池共用道具句柄
+    protected boolean isShareItem = true;
+    // 等待创建的道具
+    private final List<PendingItem> pendingItems = new ArrayList<>();
+    // 本次加载开始的时间
+    private long mLoadStartTime;
+    // 是否使用整体切换模式
+    protected boolean isStagedSwap = true;
+    // 最近一次整体切换的耗时
+    private volatile long mSwapLatency;
+    // 等待执行的加载完成回调，按请求的顺序
+    private final List<CompleteListener> mCompleteListeners = new ArrayList<>();
+    private long mCompleteListenerSequence;
 
     public BasePTAHandle(BaseCore baseCore, FUItemHandler FUItemHandler) {
         super(baseCore, FUItemHandler);
@@ -48,25 +61,105 @@ public abstract class BasePTAHandle extends BaseHandle {
     protected void loadItem(FUItem fuItem, String name, boolean mustLoadHead) {
         if (name == null) return;
         if (!name.equals(fuItem.name) || mustLoadHead) {
-            int item = mFUItemHandler.loadFUItem(name);
-            bindEvents.add(mBaseCore.avatarBindItem(controllerItem, fuItem.handle, item));
-            destroyEvents.add(mBaseCore.destroyItem(fuItem.handle));
-            fuItem.name = name;
-            fuItem.handle = item;
+            addPendingItem(fuItem, name, mustLoadHead, true);
         }
     }
 
     protected void loadItemNew(FUItem fuItem, String name, boolean needDestroy) {
         if (name == null) return;
         if (!name.equals(fuItem.name)) {
-            int item = mFUItemHandler.loadFUItem(name);
-            bindEvents.add(mBaseCore.avatarBindItem(controllerItem, fuItem.handle, item));
-            if (needDestroy) {
-                destroyEvents.add(mBaseCore.destroyItem(fuItem.handle));
+            addPendingItem(fuItem, name, false, needDestroy);
+        }
+    }
+
+    private void addPendingItem(FUItem fuItem, String name, boolean forceReload, boolean needDestroy) {
+        if (mLoadStartTime == 0) {
+            mLoadStartTime = System.currentTimeMillis();
+        }
+        pendingItems.add(new PendingItem(fuItem, name, forceReload, needDestroy));
+        fuItem.name = name;
+    }
+
+    /**
+     * 创建等待加载的道具：
+     * - 先使用IO线程池并行读取所有需要的bundle文件
+     * - 再按照道具的顺序依次创建道具，并记录到本次的道具变更中
+     *
+     * @param loadTask 当前的加载任务，被取消时放弃本次加载并恢复原有道具，可以为null
+     * @return 是否创建完成
+     */
+    protected boolean createPendingItems(FUItemHandler.LoadTask loadTask) {
+        if (pendingItems.isEmpty()) {
+            return true;
+        }
+        List<String> bundles = new ArrayList<>(pendingItems.size());
+        for (PendingItem pendingItem : pendingItems) {
+            if (TextUtils.isEmpty(pendingItem.name)) {
+                continue;
+            }
+            // 道具池中已有的道具不需要再读取文件
+            if (isShareItem && !pendingItem.forceReload && FUItemPool.getInstance().contains(pendingItem.name)) {
+                continue;
+            }
+            bundles.add(pendingItem.name);
+        }
+        mFUItemHandler.prefetchBundles(bundles, loadTask);
+        int createdCount = 0;
+        for (PendingItem pendingItem : pendingItems) {
+            if (loadTask != null && loadTask.isCancelled()) {
+                rollbackPendingItems(createdCount);
+                return false;
+            }
+            FUItem fuItem = pendingItem.fuItem;
+            pendingItem.oldHandle = fuItem.handle;
+            fuItem.handle = createItem(pendingItem.name, pendingItem.forceReload);
+            createdCount++;
+        }
+        for (PendingItem pendingItem : pendingItems) {
+            changeSet.add(pendingItem.oldHandle, pendingItem.fuItem.handle, pendingItem.needDestroy);
+        }
+        pendingItems.clear();
+        mFUItemHandler.clearPrefetchBundles();
+        return true;
+    }
+
+    /**
+     * 加载任务被取消，释放已经创建的道具，并恢复原有道具
+     *
+     * @param createdCount 已经创建的道具数
+     */
+    private void rollbackPendingItems(int createdCount) {
+        for (int i = pendingItems.size() - 1; i >= 0; i--) {
+            PendingItem pendingItem = pendingItems.get(i);
+            if (i < createdCount) {
+                mBaseCore.queueEvent(mBaseCore.destroyItem(pendingItem.fuItem.handle));
+                pendingItem.fuItem.handle = pendingItem.oldHandle;
             }
-            fuItem.name = name;
-            fuItem.handle = item;
+            pendingItem.fuItem.name = pendingItem.oldName;
         }
+        Log.i(TAG, "rollbackPendingItems pending " + pendingItems.size() + " created " + createdCount);
+        pendingItems.clear();
+        mFUItemHandler.clearPrefetchBundles();
+        mLoadStartTime = 0;
+    }
+
+    /**
+     * 创建道具，共享模式下通过道具池获取
+     *
+     * @param name        道具文件路径
+     * @param forceReload 是否强制重新创建道具
+     * @return 道具句柄
+     */
+    protected int createItem(String name, boolean forceReload) {
+        return isShareItem ? mFUItemHandler.acquireFUItem(name, forceReload) : mFUItemHandler.loadFUItem(name);
+    }
+
+    /**
+     * 是否与其他Controller共用道具句柄
+     * 同一个controller下的多个角色（合影）不能共用同一个道具，需要关闭
+     */
+    public void setShareItem(boolean shareItem) {
+        isShareItem = shareItem;
     }
 
     private AvatarPTA mAvatarP2A;
@@ -75,52 +168,183 @@ public abstract class BasePTAHandle extends BaseHandle {
         this.mAvatarP2A = avatarP2A;
     }
 
-    protected void commitItem(AvatarPTA avatar) {
-        mBaseCore.queueEvent(bindEvents);
-        mBaseCore.queueEvent(destroyEvents);
-        bindEvents.clear();
-        destroyEvents.clear();
-        mAvatarP2A = avatar;
-        setMakeupHandleId();
-        setAvatarColor();
+    protected void commitItem(final AvatarPTA avatar) {
+        commitItem(avatar, null);
     }
 
-    protected void setAvatarColor() {
-        mBaseCore.queueEvent(new Runnable() {
-            @Override
-            public void run() {
-                if (mAvatarP2A.getSkinColorValue() >= 0) {
-                    fuItemSetParam(PARAM_KEY_skin_color, ColorConstant.getRadioColor(mAvatarP2A.getSkinColorValue()));
-                }
-                if (mAvatarP2A.getLipColorValue() >= 0) {
-                    fuItemSetParam(PARAM_KEY_lip_color, ColorConstant.getColor(ColorConstant.lip_color, mAvatarP2A.getLipColorValue()));
-                }
-                fuItemSetParam(PARAM_KEY_iris_color, ColorConstant.getColor(ColorConstant.iris_color, mAvatarP2A.getIrisColorValue()));
-                fuItemSetParam(PARAM_KEY_hair_color, ColorConstant.getColor(ColorConstant.hair_color, mAvatarP2A.getHairColorValue()));
-                fuItemSetParam(PARAM_KEY_hair_color_intensity, ColorConstant.getColor(ColorConstant.hair_color, mAvatarP2A.getHairColorValue())[3]);
-                fuItemSetParam(PARAM_KEY_glass_color, ColorConstant.getColor(ColorConstant.glass_color, mAvatarP2A.getGlassesColorValue()));
-                fuItemSetParam(PARAM_KEY_glass_frame_color, ColorConstant.getColor(ColorConstant.glass_frame_color, mAvatarP2A.getGlassesFrameColorValue()));
-                fuItemSetParam(PARAM_KEY_beard_color, ColorConstant.getColor(ColorConstant.beard_color, mAvatarP2A.getBeardColorValue()));
-                fuItemSetParam(PARAM_KEY_hat_color, ColorConstant.getColor(ColorConstant.hat_color, mAvatarP2A.getHatColorValue()));
-
-
-                /**
-                 * 美妆色卡相关
-                 */
-                if (eyebrowHandleId > 0) {
-                    setMakeupColor(eyebrowHandleId, ColorConstant.getMakeupColor(ColorConstant.makeup_color, mAvatarP2A.getEyebrowColorValue()));
-                }
-                if (eyeshadowHandleId > 0) {
-                    setMakeupColor(eyeshadowHandleId, ColorConstant.getMakeupColor(ColorConstant.makeup_color, mAvatarP2A.getEyeshadowColorValue()));
+    /**
+     * 创建等待加载的道具并提交到GL线程
+     *
+     * @param avatar   目标Avatar
+     * @param loadTask 当前的加载任务，可以为null
+     * @return 加载任务被取消时返回false，此时不会提交任何修改
+     */
+    protected boolean commitItem(final AvatarPTA avatar, FUItemHandler.LoadTask loadTask) {
+        if (!createPendingItems(loadTask)) {
+            return false;
+        }
+        final long loadStartTime = mLoadStartTime == 0 ? System.currentTimeMillis() : mLoadStartTime;
+        final long createEndTime = System.currentTimeMillis();
+        mLoadStartTime = 0;
+        final ItemChangeSet commitChangeSet = changeSet;
+        changeSet = new ItemChangeSet();
+        mAvatarP2A = avatar;
+        setMakeupHandleId();
+        if (isStagedSwap) {
+            // 新的道具已全部创建完成，在一个事件中完成绑定新道具、解绑旧道具以及设置颜色，避免出现新旧道具混合的画面
+            final Runnable bindEvent = commitChangeSet.isEmpty() ? null : commitChangeSet.bindEvent(controllerItem);
+            mBaseCore.queueEvent(new Runnable() {
+                @Override
+                public void run() {
+                    long swapStartTime = System.currentTimeMillis();
+                    if (bindEvent != null) {
+                        bindEvent.run();
+                    }
+                    applyAvatarColor();
+                    long swapEndTime = System.currentTimeMillis();
+                    mSwapLatency = swapEndTime - loadStartTime;
+                    Log.i("time", "avatar " + avatar.getBundleDir() + "--createTime:" + (createEndTime - loadStartTime)
+                            + "ms--swapLatency:" + mSwapLatency + "ms--swapTime:" + (swapEndTime - swapStartTime) + "ms");
                 }
-                if (lipglossHandleId > 0) {
-                    setMakeupColor(lipglossHandleId, ColorConstant.getMakeupColor(ColorConstant.lip_color, mAvatarP2A.getLipglossColorValue()));
+            });
+        } else {
+            mBaseCore.queueEvent(new Runnable() {
+                @Override
+                public void run() {
+                    Log.i("time", "avatar " + avatar.getBundleDir() + "--createTime:" + (createEndTime - loadStartTime)
+                            + "ms--firstBindTime:" + (System.currentTimeMillis() - loadStartTime) + "ms");
                 }
-                if (eyelashHandleId > 0) {
-                    setMakeupColor(eyelashHandleId, ColorConstant.getMakeupColor(ColorConstant.makeup_color, mAvatarP2A.getEyelashColorValue()));
+            });
+            if (!commitChangeSet.isEmpty()) {
+                mBaseCore.queueEvent(commitChangeSet.bindEvent(controllerItem));
+            }
+            // 颜色与绑定在同一帧设置，不受每帧事件时间预算的影响
+            mBaseCore.queueEvent(new RenderEventQueue.Chained() {
+                @Override
+                public void run() {
+                    applyAvatarColor();
+                    Log.i("time", "avatar " + avatar.getBundleDir() + "--completeTime:" + (System.currentTimeMillis() - loadStartTime) + "ms");
                 }
+            });
+        }
+        if (!commitChangeSet.isEmpty()) {
+            // 被替换的道具在下一帧销毁
+            mBaseCore.queueNextEvent(commitChangeSet.destroyEvent());
+        }
+        return true;
+    }
+
+    /**
+     * 登记加载完成的回调，在提交加载任务之前（调用者线程中）调用
+     * <p>
+     * 被新的请求替代（任务被丢弃或者commitItem返回false）的加载不执行回调，
+     * 它的回调由替代它的加载在提交后通过takeCompleteListeners取出并执行，所以每个回调都会在最新的Avatar提交后执行且只执行一次
+     *
+     * @param listener 完成回调，可以为null
+     * @return 本次请求的序号
+     */
+    protected long addCompleteListener(Runnable listener) {
+        synchronized (mCompleteListeners) {
+            long sequence = ++mCompleteListenerSequence;
+            if (listener != null) {
+                mCompleteListeners.add(new CompleteListener(sequence, listener));
             }
-        });
+            return sequence;
+        }
+    }
+
+    /**
+     * 取出本次请求以及之前被替代的请求的完成回调，在commitItem成功后调用
+     *
+     * @param sequence addCompleteListener返回的序号
+     * @return 按请求顺序排列的回调
+     */
+    protected List<Runnable> takeCompleteListeners(long sequence) {
+        List<Runnable> listeners = new ArrayList<>();
+        synchronized (mCompleteListeners) {
+            while (!mCompleteListeners.isEmpty() && mCompleteListeners.get(0).sequence <= sequence) {
+                listeners.add(mCompleteListeners.remove(0).listener);
+            }
+        }
+        return listeners;
+    }
+
+    /**
+     * 是否使用整体切换模式：
+     * 新Avatar的道具全部创建完成后，在同一帧内完成绑定、解绑以及颜色设置
+     */
+    public void setStagedSwap(boolean stagedSwap) {
+        isStagedSwap = stagedSwap;
+    }
+
+    /**
+     * 最近一次整体切换的耗时：从开始加载到新Avatar被绑定（毫秒）
+     */
+    public long getSwapLatency() {
+        return mSwapLatency;
+    }
+
+    protected void setAvatarColor() {
+        mBaseCore.queueEvent(mApplyAvatarColorEvent);
+    }
+
+    private final Runnable mApplyAvatarColorEvent = new Runnable() {
+        @Override
+        public void run() {
+            applyAvatarColor();
+        }
+    };
+
+    // applyAvatarColor中复用的颜色数组，按长度索引，只在GL线程访问
+    private double[][] mColorCache = new double[5][];
+    private final double[] mSkinColor = new double[3];
+
+    private double[] getColor(double[][] colors, double value) {
+        int length = colors[0].length;
+        if (length >= mColorCache.length) {
+            mColorCache = new double[length + 1][];
+        }
+        if (mColorCache[length] == null) {
+            mColorCache[length] = new double[length];
+        }
+        return ColorConstant.getColor(colors, value, mColorCache[length]);
+    }
+
+    /**
+     * 设置Avatar颜色，需要在GL线程中调用
+     */
+    protected void applyAvatarColor() {
+        if (mAvatarP2A.getSkinColorValue() >= 0) {
+            faceunity.fuItemSetParam(controllerItem, PARAM_KEY_skin_color, ColorConstant.getRadioColor(mAvatarP2A.getSkinColorValue(), mSkinColor));
+        }
+        if (mAvatarP2A.getLipColorValue() >= 0) {
+            faceunity.fuItemSetParam(controllerItem, PARAM_KEY_lip_color, getColor(ColorConstant.lip_color, mAvatarP2A.getLipColorValue()));
+        }
+        faceunity.fuItemSetParam(controllerItem, PARAM_KEY_iris_color, getColor(ColorConstant.iris_color, mAvatarP2A.getIrisColorValue()));
+        double[] hairColor = getColor(ColorConstant.hair_color, mAvatarP2A.getHairColorValue());
+        faceunity.fuItemSetParam(controllerItem, PARAM_KEY_hair_color, hairColor);
+        faceunity.fuItemSetParam(controllerItem, PARAM_KEY_hair_color_intensity, hairColor[3]);
+        faceunity.fuItemSetParam(controllerItem, PARAM_KEY_glass_color, getColor(ColorConstant.glass_color, mAvatarP2A.getGlassesColorValue()));
+        faceunity.fuItemSetParam(controllerItem, PARAM_KEY_glass_frame_color, getColor(ColorConstant.glass_frame_color, mAvatarP2A.getGlassesFrameColorValue()));
+        faceunity.fuItemSetParam(controllerItem, PARAM_KEY_beard_color, getColor(ColorConstant.beard_color, mAvatarP2A.getBeardColorValue()));
+        faceunity.fuItemSetParam(controllerItem, PARAM_KEY_hat_color, getColor(ColorConstant.hat_color, mAvatarP2A.getHatColorValue()));
+
+
+        /**
+         * 美妆色卡相关
+         */
+        if (eyebrowHandleId > 0) {
+            setMakeupColor(eyebrowHandleId, ColorConstant.getMakeupColor(ColorConstant.makeup_color, mAvatarP2A.getEyebrowColorValue()));
+        }
+        if (eyeshadowHandleId > 0) {
+            setMakeupColor(eyeshadowHandleId, ColorConstant.getMakeupColor(ColorConstant.makeup_color, mAvatarP2A.getEyeshadowColorValue()));
+        }
+        if (lipglossHandleId > 0) {
+            setMakeupColor(lipglossHandleId, ColorConstant.getMakeupColor(ColorConstant.lip_color, mAvatarP2A.getLipglossColorValue()));
+        }
+        if (eyelashHandleId > 0) {
+            setMakeupColor(eyelashHandleId, ColorConstant.getMakeupColor(ColorConstant.makeup_color, mAvatarP2A.getEyelashColorValue()));
+        }
     }
 
     public abstract void setMakeupHandleId();
@@ -130,19 +354,15 @@ public abstract class BasePTAHandle extends BaseHandle {
             @Override
             public void run() {
                 fuItemSetParam(key, values);
-                Log.i(TAG, "fuItemSetParamFuItemHandler key " + key + " values " + Arrays.toString(values));
             }
         });
     }
 
+    /**
+     * 设置controller道具参数，同一帧内对同一参数的多次设置（如拖动颜色滑杆）只保留最后一次
+     */
     public void fuItemSetParam(final String key, final double[] values) {
-        mBaseCore.queueEvent(new Runnable() {
-            @Override
-            public void run() {
-                faceunity.fuItemSetParam(controllerItem, key, values);
-                Log.i(TAG, "fuItemSetParam key " + key + " values " + Arrays.toString(values));
-            }
-        });
+        mBaseCore.setItemParam(controllerItem, key, values);
     }
 
     public void fuItemSetParamFuItemHandler(final String key, final double values) {
@@ -150,19 +370,15 @@ public abstract class BasePTAHandle extends BaseHandle {
             @Override
             public void run() {
                 fuItemSetParam(key, values);
-                Log.i(TAG, "fuItemSetParamFuItemHandler key " + key + " values " + values);
             }
         });
     }
 
+    /**
+     * 设置controller道具参数，同一帧内对同一参数的多次设置只保留最后一次
+     */
     public void fuItemSetParam(final String key, final double values) {
-        mBaseCore.queueEvent(new Runnable() {
-            @Override
-            public void run() {
-                faceunity.fuItemSetParam(controllerItem, key, values);
-                Log.i(TAG, "fuItemSetParam key " + key + " values " + values);
-            }
-        });
+        mBaseCore.setItemParam(controllerItem, key, values);
     }
 
     /**
@@ -210,4 +426,33 @@ public abstract class BasePTAHandle extends BaseHandle {
     public static final String PARAM_KEY_glass_color = "glass_color";
     public static final String PARAM_KEY_glass_frame_color = "glass_frame_color";
 
+    private static class CompleteListener {
+        final long sequence;
+        final Runnable listener;
+
+        CompleteListener(long sequence, Runnable listener) {
+            this.sequence = sequence;
+            this.listener = listener;
+        }
+    }
+
+    /**
+     * 等待创建的道具
+     */
+    private static class PendingItem {
+        final FUItem fuItem;
+        final String name;
+        final boolean forceReload;
+        final boolean needDestroy;
+        final String oldName;
+        int oldHandle;
+
+        PendingItem(FUItem fuItem, String name, boolean forceReload, boolean needDestroy) {
+            this.fuItem = fuItem;
+            this.name = name;
+            this.oldName = fuItem.name;
+            this.forceReload = forceReload;
+            this.needDestroy = needDestroy;
+        }
+    }
 }
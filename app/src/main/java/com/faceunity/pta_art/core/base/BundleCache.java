@@ -0,0 +1,128 @@
+package com.faceunity.pta_art.core.base;
+
+import android.content.ComponentCallbacks2;
+import android.util.Log;
+import android.util.LruCache;
+
+/**
+ * 道具bundle文件内容的内存缓存
+ * <p>
+ * 按字节数计算容量，超出容量后按LRU淘汰，用于避免切换场景时重复读取同一个bundle文件。
+ * 本地文件的缓存key包含文件的修改时间与长度，文件被重新生成后不会命中旧数据。
+ */
+public class BundleCache {
+    private static final String TAG = BundleCache.class.getSimpleName();
+
+    /**
+     * 默认缓存容量上限
+     */
+    public static final int DEFAULT_MAX_BYTES = 32 * 1024 * 1024;
+
+    private volatile static BundleCache cache = null;
+
+    private final LruCache<String, byte[]> mLruCache;
+
+    private BundleCache(int maxBytes) {
+        mLruCache = new LruCache<String, byte[]>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, byte[] value) {
+                return value.length;
+            }
+        };
+    }
+
+    public static BundleCache getInstance() {
+        if (cache == null) {
+            synchronized (BundleCache.class) {
+                if (cache == null) {
+                    int maxBytes = (int) Math.min(DEFAULT_MAX_BYTES, Runtime.getRuntime().maxMemory() / 8);
+                    cache = new BundleCache(maxBytes);
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 获取缓存的bundle数据
+     *
+     * @param key 缓存key
+     * @return 未命中时返回null
+     */
+    public byte[] get(String key) {
+        return mLruCache.get(key);
+    }
+
+    /**
+     * 缓存bundle数据，超过容量上限的单个bundle不缓存
+     *
+     * @param key  缓存key
+     * @param data bundle数据
+     */
+    public void put(String key, byte[] data) {
+        if (key == null || data == null || data.length == 0 || data.length > mLruCache.maxSize()) {
+            return;
+        }
+        mLruCache.put(key, data);
+    }
+
+    public void remove(String key) {
+        mLruCache.remove(key);
+    }
+
+    /**
+     * 设置缓存容量上限
+     *
+     * @param maxBytes 字节数
+     */
+    public void setMaxSize(int maxBytes) {
+        if (maxBytes > 0) {
+            mLruCache.resize(maxBytes);
+        }
+    }
+
+    public int maxSize() {
+        return mLruCache.maxSize();
+    }
+
+    public int size() {
+        return mLruCache.size();
+    }
+
+    public int hitCount() {
+        return mLruCache.hitCount();
+    }
+
+    public int missCount() {
+        return mLruCache.missCount();
+    }
+
+    public int evictionCount() {
+        return mLruCache.evictionCount();
+    }
+
+    public void clear() {
+        mLruCache.evictAll();
+    }
+
+    /**
+     * 根据系统内存状态释放缓存
+     *
+     * @param level ComponentCallbacks2.TRIM_MEMORY_XXX
+     */
+    public void onTrimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            mLruCache.trimToSize(mLruCache.maxSize() / 2);
+        }
+        Log.i(TAG, "onTrimMemory level " + level + " " + this);
+    }
+
+    @Override
+    public String toString() {
+        return "BundleCache size " + size() + "/" + maxSize()
+                + " hit " + hitCount() + " miss " + missCount() + " eviction " + evictionCount();
+    }
+}
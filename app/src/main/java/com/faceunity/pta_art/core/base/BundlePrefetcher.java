@@ -0,0 +1,122 @@
+package com.faceunity.pta_art.core.base;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.faceunity.pta_art.constant.Constant;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 编辑形象时对当前选中道具附近道具的预读取
+ * <p>
+ * 用户在道具列表中选中某一项后，将其前后若干项的bundle文件内容读入BundleCache，
+ * 再次点击时创建道具不需要再读取文件。
+ * 预读取任务以PRIORITY_PREFETCH优先级提交，新的预读取会取消旧的预读取；
+ * 有其它加载任务等待执行时立即停止，预读取的数据总量不超过上限。
+ */
+public class BundlePrefetcher {
+    private static final String TAG = BundlePrefetcher.class.getSimpleName();
+
+    /**
+     * 默认预读取选中项前后各两项
+     */
+    public static final int DEFAULT_NEIGHBOUR_COUNT = 2;
+
+    private final int FUItemHandler_what = FUItemHandler.generateWhatIndex();
+    private final FUItemHandler mFUItemHandler;
+
+    private int mNeighbourCount = DEFAULT_NEIGHBOUR_COUNT;
+    // 一次预读取的数据总量上限，默认为BundleCache容量的四分之一，避免预读取的数据挤掉正在使用的数据
+    private int mMaxBytes;
+
+    public BundlePrefetcher(FUItemHandler fuItemHandler) {
+        mFUItemHandler = fuItemHandler;
+        mMaxBytes = BundleCache.getInstance().maxSize() / 4;
+    }
+
+    public void setNeighbourCount(int neighbourCount) {
+        mNeighbourCount = Math.max(0, neighbourCount);
+    }
+
+    public void setMaxBytes(int maxBytes) {
+        mMaxBytes = Math.max(0, maxBytes);
+    }
+
+    /**
+     * 预读取选中项附近的道具，距离选中项越近越先读取
+     *
+     * @param bundles  当前列表中所有道具的文件路径
+     * @param selected 当前选中项
+     */
+    public void prefetch(List<String> bundles, int selected) {
+        final List<String> neighbours = neighbours(bundles, selected, mNeighbourCount);
+        if (neighbours.isEmpty() || mMaxBytes <= 0) {
+            cancel();
+            return;
+        }
+        final int maxBytes = mMaxBytes;
+        mFUItemHandler.submitLoadTask(new FUItemHandler.LoadTask(FUItemHandler_what, FUItemHandler.PRIORITY_PREFETCH) {
+            @Override
+            public void run() {
+                long startTime = System.currentTimeMillis();
+                int totalBytes = 0;
+                int count = 0;
+                for (String bundle : neighbours) {
+                    // 有新的预读取或者其它加载任务时让出线程
+                    if (isCancelled() || mFUItemHandler.getQueueDepth() > 0) {
+                        Log.i(TAG, "prefetch back off " + count + "/" + neighbours.size());
+                        break;
+                    }
+                    try {
+                        totalBytes += mFUItemHandler.cacheBundle(bundle);
+                        count++;
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    }
+                    if (totalBytes >= maxBytes) {
+                        break;
+                    }
+                }
+                Log.i("time", "prefetch neighbours count:" + count + "--bytes:" + totalBytes + "--time:" + (System.currentTimeMillis() - startTime) + "ms");
+            }
+        });
+    }
+
+    public void cancel() {
+        mFUItemHandler.cancelLoadTask(FUItemHandler_what);
+    }
+
+    /**
+     * 按与选中项的距离排列附近的道具：+1, -1, +2, -2 ...
+     * 跳过空路径与尚未生成的本地文件（如还未生成的头发、发帽）
+     */
+    private static List<String> neighbours(List<String> bundles, int selected, int count) {
+        List<String> neighbours = new ArrayList<>(count * 2);
+        if (bundles == null) {
+            return neighbours;
+        }
+        for (int distance = 1; distance <= count; distance++) {
+            addBundle(neighbours, bundles, selected + distance);
+            addBundle(neighbours, bundles, selected - distance);
+        }
+        return neighbours;
+    }
+
+    private static void addBundle(List<String> neighbours, List<String> bundles, int index) {
+        if (index < 0 || index >= bundles.size()) {
+            return;
+        }
+        String bundle = bundles.get(index);
+        if (TextUtils.isEmpty(bundle) || neighbours.contains(bundle)) {
+            return;
+        }
+        if (bundle.startsWith(Constant.filePath) && !new File(bundle).isFile()) {
+            return;
+        }
+        neighbours.add(bundle);
+    }
+}
@@ -6,15 +6,27 @@ import android.os.Looper;
 import android.os.Message;
 import android.text.TextUtils;
 import android.util.Log;
+import android.util.SparseArray;
 
 import com.faceunity.pta_art.constant.Constant;
+import com.faceunity.pta_art.utils.AssetPack;
 import com.faceunity.pta_art.utils.FileUtil;
+import com.faceunity.pta_art.utils.FrameTracer;
 import com.faceunity.wrapper.faceunity;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 异步消息的处理
@@ -31,7 +43,32 @@ public class FUItemHandler extends Handler {
         return what_index++ * what_space_constant;
     }
 
+    // 并行读取bundle文件的线程数
+    private static final int IO_THREAD_COUNT = 3;
+
+    /**
+     * 加载任务优先级：当前显示的Avatar > 预加载 > 后台任务
+     */
+    public static final int PRIORITY_VISIBLE = 0;
+    public static final int PRIORITY_PREFETCH = 1;
+    public static final int PRIORITY_BACKGROUND = 2;
+
     private Context mContext;
+    // 并行读取bundle文件的线程池，在FUItemHandlerThread中创建、在GL线程中（release）关闭，由mIOExecutorLock保护
+    private final Object mIOExecutorLock = new Object();
+    private ExecutorService mIOExecutor;
+    private boolean mReleased;
+    // 已经预先读取、等待创建道具的bundle数据
+    private final Map<String, byte[]> mPrefetchBundles = new ConcurrentHashMap<>();
+
+    // 等待执行的加载任务，按优先级排序
+    private final PriorityQueue<LoadTask> mLoadTasks = new PriorityQueue<>();
+    // 每个what对应的最新加载任务，新的任务会取消旧的任务
+    private final SparseArray<LoadTask> mLatestLoadTasks = new SparseArray<>();
+    private long mLoadTaskSequence;
+    private int mMaxQueueDepth;
+    private int mCompletedCount;
+    private int mCancelledCount;
 
     public FUItemHandler(Looper looper, Context mContext) {
         super(looper);
@@ -64,6 +101,94 @@ public class FUItemHandler extends Handler {
         sendMessage(Message.obtain(this, what, loadFUItemListener));
     }
 
+    /**
+     * 提交加载任务
+     * <p>
+     * 相同what的任务只保留最新的一个：旧任务未执行时直接移出队列，正在执行时通过isCancelled通知其尽快结束
+     *
+     * @param loadTask 加载任务
+     */
+    public void submitLoadTask(LoadTask loadTask) {
+        synchronized (mLoadTasks) {
+            LoadTask oldTask = mLatestLoadTasks.get(loadTask.what);
+            if (oldTask != null) {
+                cancelLoadTask(oldTask);
+            }
+            loadTask.sequence = mLoadTaskSequence++;
+            mLatestLoadTasks.put(loadTask.what, loadTask);
+            mLoadTasks.add(loadTask);
+            mMaxQueueDepth = Math.max(mMaxQueueDepth, mLoadTasks.size());
+            Log.i(TAG, "submitLoadTask what " + loadTask.what + " priority " + loadTask.priority + " queueDepth " + mLoadTasks.size());
+        }
+        post(mRunLoadTask);
+    }
+
+    /**
+     * 取消加载任务
+     *
+     * @param what 任务的what
+     */
+    public void cancelLoadTask(int what) {
+        synchronized (mLoadTasks) {
+            LoadTask loadTask = mLatestLoadTasks.get(what);
+            if (loadTask != null) {
+                cancelLoadTask(loadTask);
+                mLatestLoadTasks.remove(what);
+            }
+        }
+    }
+
+    private void cancelLoadTask(LoadTask loadTask) {
+        if (!loadTask.cancelled) {
+            loadTask.cancelled = true;
+            mCancelledCount++;
+        }
+        mLoadTasks.remove(loadTask);
+    }
+
+    private final Runnable mRunLoadTask = new Runnable() {
+        @Override
+        public void run() {
+            LoadTask loadTask;
+            synchronized (mLoadTasks) {
+                loadTask = mLoadTasks.poll();
+            }
+            if (loadTask == null || loadTask.isCancelled()) {
+                return;
+            }
+            loadTask.run();
+            synchronized (mLoadTasks) {
+                if (mLatestLoadTasks.get(loadTask.what) == loadTask) {
+                    mLatestLoadTasks.remove(loadTask.what);
+                }
+                if (!loadTask.isCancelled()) {
+                    mCompletedCount++;
+                }
+            }
+        }
+    };
+
+    /**
+     * 当前等待执行的加载任务数
+     */
+    public int getQueueDepth() {
+        synchronized (mLoadTasks) {
+            return mLoadTasks.size();
+        }
+    }
+
+    public int getMaxQueueDepth() {
+        return mMaxQueueDepth;
+    }
+
+    public int getCompletedCount() {
+        return mCompletedCount;
+    }
+
+    public int getCancelledCount() {
+        return mCancelledCount;
+    }
+
     /**
      * 通过道具文件路径创建道具：
      *
@@ -73,32 +198,288 @@ public class FUItemHandler extends Handler {
     public int loadFUItem(String bundle) {
         int item = 0;
         long loadItemS = System.currentTimeMillis();
+        FrameTracer.begin("loadFUItem", bundle);
         try {
             if (TextUtils.isEmpty(bundle)) {
                 item = 0;
             } else {
-                InputStream is;
-                File testBundle = new File(Constant.TestFilePath + FileUtil.getLastName(bundle));
-                if (testBundle.exists()) {
-                    is = new FileInputStream(testBundle);
-                    Log.i(TAG, "~~~~~~~~~~~~~~~~~~使用本地测试bundle : " + Constant.TestFilePath + bundle);
-                } else {
-                    is = bundle.startsWith(Constant.filePath) ? new FileInputStream(new File(bundle)) : mContext.getAssets().open(bundle);
+                WarmUpManifest.getInstance().record(bundle);
+                byte[] itemData;
+                FrameTracer.begin("readBundle");
+                try {
+                    itemData = readBundle(bundle);
+                } finally {
+                    FrameTracer.end();
+                }
+                FrameTracer.begin("fuCreateItemFromPackage");
+                try {
+                    item = faceunity.fuCreateItemFromPackage(itemData);
+                } finally {
+                    FrameTracer.end();
                 }
-                byte[] itemData = new byte[is.available()];
-                is.read(itemData);
-                is.close();
-                item = faceunity.fuCreateItemFromPackage(itemData);
             }
             long loadItemE = System.currentTimeMillis();
             Log.i("time", "load item:" + bundle + "--loadTime:" + (loadItemE - loadItemS) + "ms");
             Log.i(TAG, "bundle loadFUItem " + bundle + " item " + item);
         } catch (IOException e) {
             e.printStackTrace();
+        } finally {
+            FrameTracer.end();
         }
         return item;
     }
 
+    /**
+     * 读取道具文件内容，优先从BundleCache中获取
+     *
+     * @param bundle 道具文件路径
+     * @return 道具文件内容
+     * @throws IOException
+     */
+    public byte[] readBundle(String bundle) throws IOException {
+        String cacheKey = bundleKey(bundle);
+        byte[] itemData = mPrefetchBundles.remove(cacheKey);
+        if (itemData != null) {
+            return itemData;
+        }
+        BundleCache bundleCache = BundleCache.getInstance();
+        itemData = bundleCache.get(cacheKey);
+        if (itemData != null) {
+            Log.i(TAG, "bundle readBundle hit cache " + bundle + " " + bundleCache);
+            return itemData;
+        }
+        itemData = readBundleFile(bundle);
+        bundleCache.put(cacheKey, itemData);
+        return itemData;
+    }
+
+    /**
+     * 将道具文件内容读入BundleCache，已经缓存的不再读取
+     *
+     * @param bundle 道具文件路径
+     * @return 道具文件大小（字节）
+     * @throws IOException
+     */
+    public int cacheBundle(String bundle) throws IOException {
+        return cacheBundle(mContext, bundle);
+    }
+
+    /**
+     * 将道具文件内容读入BundleCache，可以在FUItemHandler创建之前调用（如启动预热）
+     *
+     * @param context
+     * @param bundle  道具文件路径
+     * @return 道具文件大小（字节）
+     * @throws IOException
+     */
+    public static int cacheBundle(Context context, String bundle) throws IOException {
+        String cacheKey = bundleKey(bundle);
+        BundleCache bundleCache = BundleCache.getInstance();
+        byte[] itemData = bundleCache.get(cacheKey);
+        if (itemData == null) {
+            itemData = readBundleFile(context, bundle);
+            bundleCache.put(cacheKey, itemData);
+        }
+        return itemData.length;
+    }
+
+    private byte[] readBundleFile(String bundle) throws IOException {
+        return readBundleFile(mContext, bundle);
+    }
+
+    private static byte[] readBundleFile(Context context, String bundle) throws IOException {
+        File testBundle = new File(Constant.TestFilePath + FileUtil.getLastName(bundle));
+        if (testBundle.exists()) {
+            Log.i(TAG, "~~~~~~~~~~~~~~~~~~使用本地测试bundle : " + Constant.TestFilePath + bundle);
+            return FileUtil.readFully(testBundle);
+        } else if (bundle.startsWith(Constant.filePath)) {
+            return FileUtil.readFully(new File(bundle));
+        }
+        return AssetPack.readBytes(context, bundle);
+    }
+
+    /**
+     * 使用IO线程池并行读取bundle文件，读取完成后返回
+     * <p>
+     * 读取的数据在随后的loadFUItem中被使用，之后需要调用clearPrefetchBundles释放未使用的数据
+     *
+     * @param bundles 道具文件路径
+     * @return 读取耗时（毫秒）
+     */
+    public long prefetchBundles(List<String> bundles) {
+        return prefetchBundles(bundles, null);
+    }
+
+    /**
+     * 使用IO线程池并行读取bundle文件，任务被取消后不再读取剩余的文件
+     *
+     * @param bundles  道具文件路径
+     * @param loadTask 当前的加载任务，可以为null
+     * @return 读取耗时（毫秒）
+     */
+    public long prefetchBundles(List<String> bundles, final LoadTask loadTask) {
+        long startTime = System.currentTimeMillis();
+        if (bundles.isEmpty()) {
+            return 0;
+        }
+        ExecutorService executor;
+        synchronized (mIOExecutorLock) {
+            if (mReleased) {
+                return 0;
+            }
+            if (mIOExecutor == null) {
+                mIOExecutor = Executors.newFixedThreadPool(IO_THREAD_COUNT);
+            }
+            executor = mIOExecutor;
+        }
+        List<Future<?>> futures = new ArrayList<>(bundles.size());
+        for (final String bundle : bundles) {
+            if (TextUtils.isEmpty(bundle)) {
+                continue;
+            }
+            Runnable read = new Runnable() {
+                @Override
+                public void run() {
+                    if (loadTask != null && loadTask.isCancelled()) {
+                        return;
+                    }
+                    String cacheKey = bundleKey(bundle);
+                    BundleCache bundleCache = BundleCache.getInstance();
+                    byte[] itemData = bundleCache.get(cacheKey);
+                    FrameTracer.begin("prefetchBundle", bundle);
+                    try {
+                        if (itemData == null) {
+                            itemData = readBundleFile(bundle);
+                            bundleCache.put(cacheKey, itemData);
+                        }
+                        mPrefetchBundles.put(cacheKey, itemData);
+                    } catch (IOException e) {
+                        e.printStackTrace();
+                    } finally {
+                        FrameTracer.end();
+                    }
+                }
+            };
+            try {
+                futures.add(executor.submit(read));
+            } catch (RejectedExecutionException e) {
+                // 提交过程中线程池被release关闭
+                break;
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException | ExecutionException | CancellationException e) {
+                e.printStackTrace();
+            }
+        }
+        long time = System.currentTimeMillis() - startTime;
+        Log.i("time", "prefetch bundles count:" + futures.size() + "--readTime:" + time + "ms");
+        return time;
+    }
+
+    public void clearPrefetchBundles() {
+        mPrefetchBundles.clear();
+    }
+
+    public void release() {
+        synchronized (mLoadTasks) {
+            for (int i = 0; i < mLatestLoadTasks.size(); i++) {
+                mLatestLoadTasks.valueAt(i).cancelled = true;
+            }
+            mLatestLoadTasks.clear();
+            mLoadTasks.clear();
+        }
+        removeCallbacks(mRunLoadTask);
+        synchronized (mIOExecutorLock) {
+            mReleased = true;
+            if (mIOExecutor != null) {
+                // 未开始的读取不会再执行，取消它们，避免FUItemHandlerThread在prefetchBundles中一直等待
+                for (Runnable r : mIOExecutor.shutdownNow()) {
+                    if (r instanceof Future) {
+                        ((Future<?>) r).cancel(false);
+                    }
+                }
+                mIOExecutor = null;
+            }
+        }
+        mPrefetchBundles.clear();
+    }
+
+    /**
+     * 道具文件的唯一标识（路径 + 内容版本）
+     * <p>
+     * 本地文件可能被重新生成（如重新捏脸后的head.bundle），需要带上修改时间与长度
+     *
+     * @param bundle 道具文件路径
+     * @return 道具文件的唯一标识
+     */
+    public static String bundleKey(String bundle) {
+        File testBundle = new File(Constant.TestFilePath + FileUtil.getLastName(bundle));
+        if (testBundle.exists()) {
+            return fileKey(testBundle);
+        } else if (bundle.startsWith(Constant.filePath)) {
+            return fileKey(new File(bundle));
+        }
+        return bundle;
+    }
+
+    private static String fileKey(File file) {
+        return file.getAbsolutePath() + "@" + file.lastModified() + "_" + file.length();
+    }
+
+    /**
+     * 通过道具池获取道具，相同的bundle共用同一个道具句柄
+     *
+     * @param bundle      道具文件路径
+     * @param forceReload 是否强制重新创建道具
+     * @return 道具句柄
+     */
+    public int acquireFUItem(String bundle, boolean forceReload) {
+        if (TextUtils.isEmpty(bundle)) {
+            return 0;
+        }
+        return FUItemPool.getInstance().acquire(this, bundle, forceReload);
+    }
+
+    /**
+     * 可取消的加载任务
+     * <p>
+     * 每个Controller的Avatar是一个slot，用Controller的what标识：每次设置Avatar都会重新指定所有道具，
+     * 新的请求总是替代同一slot中的旧请求；取消在创建每个道具之前检查，已经创建的道具会被释放
+     */
+    public abstract static class LoadTask implements Runnable, Comparable<LoadTask> {
+        private final int what;
+        private final int priority;
+        private long sequence;
+        private volatile boolean cancelled;
+
+        /**
+         * @param what     任务类型，相同what的新任务会取消旧任务
+         * @param priority 优先级 PRIORITY_XXX
+         */
+        public LoadTask(int what, int priority) {
+            this.what = what;
+            this.priority = priority;
+        }
+
+        /**
+         * 任务是否已经被取消（被更新的任务替代）
+         */
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public int compareTo(LoadTask o) {
+            if (priority != o.priority) {
+                return priority < o.priority ? -1 : 1;
+            }
+            return sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1);
+        }
+    }
+
     /**
      * 道具创建完成的回调
      */
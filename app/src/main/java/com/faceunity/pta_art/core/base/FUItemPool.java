@@ -0,0 +1,237 @@
+package com.faceunity.pta_art.core.base;
+
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.faceunity.wrapper.faceunity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 全局共享的道具句柄池（引用计数）
+ * <p>
+ * 以bundle路径与内容版本为key，相同的bundle在各个Controller（首页、AR驱动、身体驱动、文字驱动）之间
+ * 共用同一个道具句柄，只有最后一个引用被释放时才真正销毁道具。
+ * 可以设置销毁的延迟时间，在延迟时间内再次使用同一个bundle时直接复用。
+ * <p>
+ * acquire在FUItemHandlerThread中调用，release、destroy与destroyExpired在GL线程中调用。
+ * 创建道具期间key对应一个正在创建的条目，其他线程同时acquire相同的bundle时等待创建完成后复用，不会重复创建。
+ * 所有道具（包括不在池中的）都通过destroy销毁，以便通知OnItemDestroyedListener丢弃与该句柄相关的状态。
+ */
+public class FUItemPool {
+    private static final String TAG = FUItemPool.class.getSimpleName();
+
+    private volatile static FUItemPool pool = null;
+
+    private final Map<String, Entry> mEntryByKey = new HashMap<>();
+    private final SparseArray<Entry> mEntryByHandle = new SparseArray<>();
+    private final List<Entry> mIdleEntries = new ArrayList<>();
+    private final List<Entry> mExpiredEntries = new ArrayList<>();
+
+    private long mGracePeriodMs = 0;
+    private volatile OnItemDestroyedListener mOnItemDestroyedListener;
+
+    /**
+     * 道具被销毁的回调，在GL线程中调用
+     */
+    public interface OnItemDestroyedListener {
+        void onItemDestroyed(int handle);
+    }
+
+    private FUItemPool() {
+    }
+
+    public static FUItemPool getInstance() {
+        if (pool == null) {
+            synchronized (FUItemPool.class) {
+                if (pool == null) {
+                    pool = new FUItemPool();
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * 设置引用全部释放后到销毁道具之间的延迟时间，0表示立即销毁
+     *
+     * @param gracePeriodMs 毫秒
+     */
+    public synchronized void setGracePeriod(long gracePeriodMs) {
+        mGracePeriodMs = Math.max(0, gracePeriodMs);
+    }
+
+    public void setOnItemDestroyedListener(OnItemDestroyedListener listener) {
+        mOnItemDestroyedListener = listener;
+    }
+
+    /**
+     * 获取道具句柄，引用计数加一
+     *
+     * @param itemHandler 用于创建道具
+     * @param bundle      道具文件路径
+     * @param forceReload 是否强制重新创建道具（道具被捏脸等操作修改过时使用），原有句柄在引用全部释放后销毁
+     * @return 道具句柄
+     */
+    public int acquire(FUItemHandler itemHandler, String bundle, boolean forceReload) {
+        String key = FUItemHandler.bundleKey(bundle);
+        Entry loading;
+        synchronized (this) {
+            Entry entry = mEntryByKey.get(key);
+            // 其他线程正在创建同一个bundle的道具
+            while (entry != null && entry.handle == 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    e.printStackTrace();
+                    return 0;
+                }
+                entry = mEntryByKey.get(key);
+            }
+            if (entry != null) {
+                if (!forceReload) {
+                    entry.refCount++;
+                    mIdleEntries.remove(entry);
+                    Log.i(TAG, "bundle acquire reuse " + bundle + " item " + entry.handle + " refCount " + entry.refCount);
+                    return entry.handle;
+                }
+                // 与key解除关联，旧句柄仍由现有的引用持有
+                mEntryByKey.remove(key);
+                entry.key = null;
+            }
+            loading = new Entry(key, 0);
+            mEntryByKey.put(key, loading);
+        }
+        int handle = 0;
+        try {
+            handle = itemHandler.loadFUItem(bundle);
+        } finally {
+            synchronized (this) {
+                // 创建期间道具池可能被clear
+                if (mEntryByKey.get(key) == loading) {
+                    if (handle > 0) {
+                        loading.handle = handle;
+                        mEntryByHandle.put(handle, loading);
+                    } else {
+                        mEntryByKey.remove(key);
+                    }
+                }
+                notifyAll();
+            }
+        }
+        return handle;
+    }
+
+    /**
+     * 道具池中是否已经存在（或者正在创建）该bundle创建的道具
+     *
+     * @param bundle 道具文件路径
+     */
+    public synchronized boolean contains(String bundle) {
+        return mEntryByKey.containsKey(FUItemHandler.bundleKey(bundle));
+    }
+
+    /**
+     * 释放道具句柄，引用计数减一
+     *
+     * @param handle 道具句柄
+     * @return 是否需要立即销毁该道具；不在池中的句柄始终返回true，引用已经全部释放的句柄返回false
+     */
+    public synchronized boolean release(int handle) {
+        Entry entry = mEntryByHandle.get(handle);
+        if (entry == null) {
+            return true;
+        }
+        if (entry.refCount <= 0) {
+            // 重复释放，道具已经在等待延迟销毁
+            Log.e(TAG, "bundle release item " + handle + " already released");
+            return false;
+        }
+        if (--entry.refCount > 0) {
+            Log.i(TAG, "bundle release item " + handle + " refCount " + entry.refCount);
+            return false;
+        }
+        if (mGracePeriodMs > 0 && entry.key != null) {
+            entry.releaseTime = System.currentTimeMillis();
+            mIdleEntries.add(entry);
+            return false;
+        }
+        removeEntry(entry);
+        return true;
+    }
+
+    /**
+     * 销毁道具，在GL线程中调用；池中的道具需要先通过release判断是否需要销毁
+     *
+     * @param handle 道具句柄
+     */
+    public void destroy(int handle) {
+        OnItemDestroyedListener listener = mOnItemDestroyedListener;
+        if (listener != null) {
+            listener.onItemDestroyed(handle);
+        }
+        faceunity.fuDestroyItem(handle);
+    }
+
+    /**
+     * 销毁超过延迟时间的道具，在GL线程中调用
+     */
+    public void destroyExpired() {
+        synchronized (this) {
+            if (mIdleEntries.isEmpty()) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            for (int i = mIdleEntries.size() - 1; i >= 0; i--) {
+                Entry entry = mIdleEntries.get(i);
+                if (entry.key == null || now - entry.releaseTime >= mGracePeriodMs) {
+                    mIdleEntries.remove(i);
+                    removeEntry(entry);
+                    mExpiredEntries.add(entry);
+                }
+            }
+        }
+        for (int i = 0; i < mExpiredEntries.size(); i++) {
+            int handle = mExpiredEntries.get(i).handle;
+            destroy(handle);
+            Log.i(TAG, "bundle destroyExpired item " + handle);
+        }
+        mExpiredEntries.clear();
+    }
+
+    /**
+     * 清空道具池，在所有道具被销毁（fuDestroyAllItems）时调用
+     */
+    public synchronized void clear() {
+        mEntryByKey.clear();
+        mEntryByHandle.clear();
+        mIdleEntries.clear();
+    }
+
+    public synchronized int size() {
+        return mEntryByHandle.size();
+    }
+
+    private void removeEntry(Entry entry) {
+        if (entry.key != null) {
+            mEntryByKey.remove(entry.key);
+        }
+        mEntryByHandle.remove(entry.handle);
+    }
+
+    private static class Entry {
+        String key;
+        // 0表示正在创建
+        int handle;
+        int refCount = 1;
+        long releaseTime;
+
+        Entry(String key, int handle) {
+            this.key = key;
+            this.handle = handle;
+        }
+    }
+}
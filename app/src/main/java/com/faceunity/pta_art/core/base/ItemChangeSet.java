@@ -0,0 +1,101 @@
+package com.faceunity.pta_art.core.base;
+
+import android.util.Log;
+
+import com.faceunity.wrapper.faceunity;
+
+import java.util.Arrays;
+
+/**
+ * 一次Avatar切换产生的道具变更集合
+ * <p>
+ * 逐个道具比较当前与目标Avatar后，将所有需要解绑、绑定以及销毁的道具汇总，
+ * 在GL线程中通过一次fuUnBindItems与一次fuBindItems完成切换，销毁的道具延后处理。
+ * <p>
+ * 在FUItemHandlerThread中构建，构建完成后交由GL线程使用，不再修改。
+ */
+public class ItemChangeSet {
+    private static final String TAG = ItemChangeSet.class.getSimpleName();
+
+    private int[] unbindItems = new int[8];
+    private int unbindCount;
+    private int[] bindItems = new int[8];
+    private int bindCount;
+    private int[] destroyItems = new int[8];
+    private int destroyCount;
+
+    /**
+     * 添加一个道具的变更
+     *
+     * @param oldItem     需要解绑的道具句柄
+     * @param newItem     需要绑定的道具句柄
+     * @param needDestroy 是否需要销毁旧道具
+     */
+    public void add(int oldItem, int newItem, boolean needDestroy) {
+        if (oldItem != newItem) {
+            if (oldItem > 0) {
+                unbindItems = append(unbindItems, unbindCount++, oldItem);
+            }
+            if (newItem > 0) {
+                bindItems = append(bindItems, bindCount++, newItem);
+            }
+        }
+        if (needDestroy && oldItem > 0) {
+            destroyItems = append(destroyItems, destroyCount++, oldItem);
+        }
+    }
+
+    public boolean isEmpty() {
+        return unbindCount == 0 && bindCount == 0 && destroyCount == 0;
+    }
+
+    /**
+     * 一次性解绑与绑定所有变更的道具
+     *
+     * @param controllerItem controller句柄
+     * @return 在GL线程中执行的事件
+     */
+    public Runnable bindEvent(final int controllerItem) {
+        final int[] unbind = Arrays.copyOf(unbindItems, unbindCount);
+        final int[] bind = Arrays.copyOf(bindItems, bindCount);
+        return new Runnable() {
+            @Override
+            public void run() {
+                Log.i(TAG, "bundle avatarBindItem controlItem " + controllerItem + " unbind " + unbind.length + " bind " + bind.length);
+                if (unbind.length > 0)
+                    faceunity.fuUnBindItems(controllerItem, unbind);
+                if (bind.length > 0)
+                    faceunity.fuBindItems(controllerItem, bind);
+            }
+        };
+    }
+
+    /**
+     * 销毁所有被替换的道具，道具池中的道具只有在引用全部释放后才会销毁
+     *
+     * @return 在GL线程中执行的事件
+     */
+    public Runnable destroyEvent() {
+        final int[] destroy = Arrays.copyOf(destroyItems, destroyCount);
+        return new Runnable() {
+            @Override
+            public void run() {
+                FUItemPool itemPool = FUItemPool.getInstance();
+                for (int item : destroy) {
+                    if (itemPool.release(item)) {
+                        itemPool.destroy(item);
+                    }
+                }
+                Log.i(TAG, "bundle destroyItem count " + destroy.length);
+            }
+        };
+    }
+
+    private static int[] append(int[] array, int index, int value) {
+        if (index >= array.length) {
+            array = Arrays.copyOf(array, array.length * 2);
+        }
+        array[index] = value;
+        return array;
+    }
+}
@@ -0,0 +1,250 @@
+package com.faceunity.pta_art.core.base;
+
+import android.util.Log;
+
+import com.faceunity.wrapper.faceunity;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 道具参数暂存表
+ * <p>
+ * 以（道具句柄，参数名）为键只保留最新的参数值，同一批次内的多次设置合并为一次fuItemSetParam调用。
+ * 每个批次对应GL线程事件队列中的一个flush事件：设置参数时如果最后一个批次还未执行，
+ * 并且之后没有提交过其它事件，就合并到该批次；否则提交一个新的批次。所以参数总是按提交顺序生效：
+ * 之前提交的事件（如绑定道具）先执行，之后提交的事件（如读取参数）能读到新的值。
+ * <p>
+ * 合并策略：
+ * <ul>
+ * <li>set：后设置的值覆盖之前的值（颜色、捏脸参数等）</li>
+ * <li>accumulate：增量参数（rot_delta、translate_delta、scale_delta）加到同一批次中未生效的值上，合并后不丢失手势的位移</li>
+ * </ul>
+ * 同一批次中同一个参数只能是数值或者数组中的一种，与已暂存的值类型不同的设置被丢弃并打印错误日志。
+ * 道具销毁时（FUItemPool.destroy）调用remove丢弃还未执行的批次中该道具的参数，避免设置到已经销毁或者复用了句柄的道具上。
+ * <p>
+ * 批次与参数槽位都会复用，稳定后设置参数不分配对象；不逐次打印日志，合并情况通过toString查看。
+ */
+public class ItemParamTable {
+    private static final String TAG = ItemParamTable.class.getSimpleName();
+
+    private static final int MERGE_SET = 0;
+    private static final int MERGE_ACCUMULATE = 1;
+
+    private final RenderEventQueue mEventQueue;
+    // 以下在this锁中访问
+    // 已经提交、还未执行的批次，按提交顺序
+    private final List<Batch> mQueuedBatches = new ArrayList<>();
+    private final List<Batch> mFreeBatches = new ArrayList<>();
+    // 可以继续合并的批次，及其提交后事件队列的提交计数
+    private Batch mOpenBatch;
+    private long mOpenBatchQueuedCount;
+    private long mSetCount;
+    private long mBatchCount;
+    private long mFlushParamCount;
+    // 只在GL线程访问，flush时从批次复制，在锁外调用fuItemSetParam
+    private final List<Slot> mApplySlots = new ArrayList<>();
+
+    public ItemParamTable(RenderEventQueue eventQueue) {
+        mEventQueue = eventQueue;
+    }
+
+    /**
+     * 设置参数，覆盖同一批次内之前设置的值
+     *
+     * @param item  道具句柄
+     * @param key   参数名
+     * @param value 参数值
+     */
+    public void set(int item, String key, double value) {
+        stage(item, key, value, null, MERGE_SET);
+    }
+
+    /**
+     * 设置数组参数，覆盖同一批次内之前设置的值，values会被复制，调用后可以修改
+     *
+     * @param item   道具句柄
+     * @param key    参数名
+     * @param values 参数值
+     */
+    public void set(int item, String key, double[] values) {
+        stage(item, key, 0, values, MERGE_SET);
+    }
+
+    /**
+     * 设置增量参数，与同一批次内之前设置的值相加
+     *
+     * @param item  道具句柄
+     * @param key   参数名（如rot_delta）
+     * @param delta 参数增量
+     */
+    public void accumulate(int item, String key, double delta) {
+        stage(item, key, delta, null, MERGE_ACCUMULATE);
+    }
+
+    private synchronized void stage(int item, String key, double value, double[] values, int policy) {
+        mSetCount++;
+        Batch batch = mOpenBatch;
+        if (batch == null || mEventQueue.getQueuedCount() != mOpenBatchQueuedCount) {
+            // 之后提交过其它事件，新的参数不能提前到这些事件之前
+            batch = obtainBatch();
+            long queuedCount = mEventQueue.getQueuedCount();
+            mEventQueue.queueEvent(batch);
+            mQueuedBatches.add(batch);
+            mOpenBatch = batch;
+            mOpenBatchQueuedCount = queuedCount + 1;
+            mBatchCount++;
+        }
+        Slot slot = batch.find(item, key);
+        if (slot == null) {
+            batch.add(item, key).copyFrom(value, values);
+        } else if (slot.isArray != (values != null)) {
+            // 数值与数组无法合并，保留先暂存的值
+            Log.e(TAG, "stage item " + item + " " + key + (slot.isArray ? " array" : " value")
+                    + " mixed with " + (values != null ? "array" : "value") + ", ignored");
+        } else if (policy == MERGE_ACCUMULATE) {
+            // 先set后accumulate时在set的值上累加
+            slot.value += value;
+        } else {
+            slot.copyFrom(value, values);
+        }
+    }
+
+    private Batch obtainBatch() {
+        int size = mFreeBatches.size();
+        return size > 0 ? mFreeBatches.remove(size - 1) : new Batch();
+    }
+
+    /**
+     * 将批次中的参数设置到道具上，在GL线程中由批次事件调用
+     */
+    private void flush(Batch batch) {
+        int count;
+        synchronized (this) {
+            if (!mQueuedBatches.remove(batch)) {
+                // 已经被clear丢弃
+                return;
+            }
+            if (mOpenBatch == batch) {
+                mOpenBatch = null;
+            }
+            count = batch.size;
+            while (mApplySlots.size() < count) {
+                mApplySlots.add(new Slot());
+            }
+            for (int i = 0; i < count; i++) {
+                Slot slot = batch.slots.get(i);
+                Slot apply = mApplySlots.get(i);
+                apply.item = slot.item;
+                apply.key = slot.key;
+                apply.copyFrom(slot.value, slot.isArray ? slot.values : null);
+            }
+            batch.size = 0;
+            mFreeBatches.add(batch);
+            mFlushParamCount += count;
+        }
+        for (int i = 0; i < count; i++) {
+            Slot apply = mApplySlots.get(i);
+            if (apply.isArray) {
+                faceunity.fuItemSetParam(apply.item, apply.key, apply.values);
+            } else {
+                faceunity.fuItemSetParam(apply.item, apply.key, apply.value);
+            }
+        }
+    }
+
+    /**
+     * 丢弃还未执行的批次中道具的参数，道具销毁时在GL线程中调用
+     *
+     * @param item 道具句柄
+     */
+    public synchronized void remove(int item) {
+        for (int i = 0; i < mQueuedBatches.size(); i++) {
+            mQueuedBatches.get(i).remove(item);
+        }
+    }
+
+    /**
+     * 丢弃所有暂存的参数，与RenderEventQueue.clear一起调用
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < mQueuedBatches.size(); i++) {
+            Batch batch = mQueuedBatches.get(i);
+            batch.size = 0;
+            mFreeBatches.add(batch);
+        }
+        mQueuedBatches.clear();
+        mOpenBatch = null;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return TAG + " set " + mSetCount + " flushed " + mFlushParamCount + " batches " + mBatchCount;
+    }
+
+    /**
+     * 一个flush事件中的参数，按第一次设置的顺序
+     */
+    private class Batch implements Runnable {
+        final List<Slot> slots = new ArrayList<>();
+        int size;
+
+        @Override
+        public void run() {
+            flush(this);
+        }
+
+        Slot find(int item, String key) {
+            for (int i = 0; i < size; i++) {
+                Slot slot = slots.get(i);
+                if (slot.item == item && slot.key.equals(key)) {
+                    return slot;
+                }
+            }
+            return null;
+        }
+
+        Slot add(int item, String key) {
+            if (size == slots.size()) {
+                slots.add(new Slot());
+            }
+            Slot slot = slots.get(size++);
+            slot.item = item;
+            slot.key = key;
+            return slot;
+        }
+
+        void remove(int item) {
+            int count = 0;
+            for (int i = 0; i < size; i++) {
+                Slot slot = slots.get(i);
+                if (slot.item != item) {
+                    // 保持顺序前移，被移除的槽位放到后面复用
+                    slots.set(i, slots.get(count));
+                    slots.set(count++, slot);
+                }
+            }
+            size = count;
+        }
+    }
+
+    private static class Slot {
+        int item;
+        String key;
+        boolean isArray;
+        double value;
+        // 数组参数，长度不变时复用
+        double[] values;
+
+        void copyFrom(double value, double[] values) {
+            this.value = value;
+            this.isArray = values != null;
+            if (values != null) {
+                if (this.values == null || this.values.length != values.length) {
+                    this.values = new double[values.length];
+                }
+                System.arraycopy(values, 0, this.values, 0, values.length);
+            }
+        }
+    }
+}
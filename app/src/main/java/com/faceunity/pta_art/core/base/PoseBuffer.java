@@ -0,0 +1,210 @@
+package com.faceunity.pta_art.core.base;
+
+import com.faceunity.wrapper.faceunity;
+
+/**
+ * 人脸跟踪结果的环形缓存，按时间插值、外推
+ * <p>
+ * 跟踪线程按较低的频率push跟踪结果（旋转四元数、表情系数、瞳孔位置、点位），
+ * 渲染线程每帧按渲染时间sample：目标时间落在两次结果之间时线性插值（旋转使用球面插值），
+ * 晚于最新结果时按最近两次结果外推，最多外推maxExtrapolationNanos，之后保持不变。
+ * 没有检测到人脸的结果不参与插值，直接使用时间上最近的结果。
+ * <p>
+ * 数据保存在预分配的基本类型数组中，push、sample不分配对象，读写通过对象锁同步（跟踪频率低，临界区只有拷贝）。
+ */
+public class PoseBuffer {
+
+    public static final int CAPACITY = 8;
+    public static final int ROTATION_SIZE = 4;
+    public static final int EXPRESSION_SIZE = 57;
+    public static final int PUPIL_SIZE = 2;
+    public static final int LANDMARKS_SIZE = 150;
+
+    private final long[] mTimes = new long[CAPACITY];
+    private final boolean[] mValid = new boolean[CAPACITY];
+    private final float[] mRotationModes = new float[CAPACITY];
+    private final float[] mRotations = new float[CAPACITY * ROTATION_SIZE];
+    private final float[] mExpressions = new float[CAPACITY * EXPRESSION_SIZE];
+    private final float[] mPupils = new float[CAPACITY * PUPIL_SIZE];
+    private final float[] mLandmarks = new float[CAPACITY * LANDMARKS_SIZE];
+    private long mCount;
+    private long mMaxExtrapolationNanos = 50 * 1000000L;
+
+    /**
+     * 最多外推的时间，0表示不外推（只插值，晚于最新结果时保持最新结果）
+     */
+    public synchronized void setMaxExtrapolationNanos(long nanos) {
+        mMaxExtrapolationNanos = Math.max(0, nanos);
+    }
+
+    /**
+     * 写入一次跟踪结果，在跟踪线程调用
+     *
+     * @param time         跟踪的图像对应的时间（System.nanoTime），应单调递增
+     * @param valid        是否检测到人脸
+     * @param rotation     旋转四元数，长度4
+     * @param expression   表情系数，长度57
+     * @param pupil        瞳孔位置，长度2
+     * @param rotationMode 人脸方向
+     * @param landmarks    点位，长度150
+     */
+    public synchronized void push(long time, boolean valid, float[] rotation, float[] expression, float[] pupil,
+                                  float rotationMode, float[] landmarks) {
+        int index = (int) (mCount % CAPACITY);
+        mTimes[index] = time;
+        mValid[index] = valid;
+        mRotationModes[index] = rotationMode;
+        System.arraycopy(rotation, 0, mRotations, index * ROTATION_SIZE, ROTATION_SIZE);
+        System.arraycopy(expression, 0, mExpressions, index * EXPRESSION_SIZE, EXPRESSION_SIZE);
+        System.arraycopy(pupil, 0, mPupils, index * PUPIL_SIZE, PUPIL_SIZE);
+        System.arraycopy(landmarks, 0, mLandmarks, index * LANDMARKS_SIZE, LANDMARKS_SIZE);
+        mCount++;
+    }
+
+    /**
+     * 清空所有结果（如停止跟踪）
+     */
+    public synchronized void clear() {
+        mCount = 0;
+    }
+
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    /**
+     * 最新一次结果的时间，没有结果时返回0
+     */
+    public synchronized long getLatestTime() {
+        return mCount == 0 ? 0 : mTimes[(int) ((mCount - 1) % CAPACITY)];
+    }
+
+    /**
+     * 按时间取插值（外推）后的结果，在渲染线程调用
+     *
+     * @param time      渲染时间（System.nanoTime）
+     * @param info      写入mRotation、mExpression、mPupilPos、mRotationMode与mIsValid
+     * @param landmarks 写入点位，可以为null
+     * @return 是否检测到人脸，没有任何结果时返回false并且不修改输出
+     */
+    public synchronized boolean sample(long time, faceunity.AvatarInfo info, float[] landmarks) {
+        if (mCount == 0) {
+            return false;
+        }
+        int size = (int) Math.min(mCount, CAPACITY);
+        int newest = (int) ((mCount - 1) % CAPACITY);
+        int a;
+        int b;
+        float t;
+        if (time >= mTimes[newest]) {
+            // 外推：使用最近两次结果
+            b = newest;
+            a = (newest + CAPACITY - 1) % CAPACITY;
+            if (size < 2 || mTimes[b] <= mTimes[a]) {
+                return copy(b, info, landmarks);
+            }
+            long ahead = Math.min(time - mTimes[b], mMaxExtrapolationNanos);
+            t = 1f + (float) ahead / (mTimes[b] - mTimes[a]);
+        } else {
+            // 插值：从新到旧找到time所在的区间
+            b = newest;
+            a = -1;
+            for (int i = 1; i < size; i++) {
+                int index = (newest + CAPACITY - i) % CAPACITY;
+                if (mTimes[index] <= time) {
+                    a = index;
+                    break;
+                }
+                b = index;
+            }
+            if (a < 0 || mTimes[b] <= mTimes[a]) {
+                // 早于最旧的结果
+                return copy(b, info, landmarks);
+            }
+            t = (float) (time - mTimes[a]) / (mTimes[b] - mTimes[a]);
+        }
+        if (!mValid[a] || !mValid[b]) {
+            return copy(t < 0.5f ? a : b, info, landmarks);
+        }
+        slerp(mRotations, a * ROTATION_SIZE, b * ROTATION_SIZE, t, info.mRotation);
+        lerp(mExpressions, a * EXPRESSION_SIZE, b * EXPRESSION_SIZE, EXPRESSION_SIZE, t, info.mExpression, true);
+        lerp(mPupils, a * PUPIL_SIZE, b * PUPIL_SIZE, PUPIL_SIZE, t, info.mPupilPos, false);
+        if (landmarks != null) {
+            lerp(mLandmarks, a * LANDMARKS_SIZE, b * LANDMARKS_SIZE, LANDMARKS_SIZE, t, landmarks, false);
+        }
+        info.mRotationMode[0] = mRotationModes[b];
+        info.mIsValid = true;
+        return true;
+    }
+
+    private boolean copy(int index, faceunity.AvatarInfo info, float[] landmarks) {
+        System.arraycopy(mRotations, index * ROTATION_SIZE, info.mRotation, 0, ROTATION_SIZE);
+        System.arraycopy(mExpressions, index * EXPRESSION_SIZE, info.mExpression, 0, EXPRESSION_SIZE);
+        System.arraycopy(mPupils, index * PUPIL_SIZE, info.mPupilPos, 0, PUPIL_SIZE);
+        if (landmarks != null) {
+            System.arraycopy(mLandmarks, index * LANDMARKS_SIZE, landmarks, 0, LANDMARKS_SIZE);
+        }
+        info.mRotationMode[0] = mRotationModes[index];
+        info.mIsValid = mValid[index];
+        return mValid[index];
+    }
+
+    /**
+     * 线性插值，t大于1时外推
+     *
+     * @param clamp 结果是否限制在0~1（表情系数）
+     */
+    private static void lerp(float[] src, int a, int b, int length, float t, float[] out, boolean clamp) {
+        for (int i = 0; i < length; i++) {
+            float value = src[a + i] + (src[b + i] - src[a + i]) * t;
+            if (clamp) {
+                value = value < 0f ? 0f : (value > 1f ? 1f : value);
+            }
+            out[i] = value;
+        }
+    }
+
+    /**
+     * 四元数球面插值（取最短路径），t大于1时沿同一方向外推，结果归一化
+     */
+    private static void slerp(float[] src, int a, int b, float t, float[] out) {
+        float ax = src[a], ay = src[a + 1], az = src[a + 2], aw = src[a + 3];
+        float bx = src[b], by = src[b + 1], bz = src[b + 2], bw = src[b + 3];
+        float dot = ax * bx + ay * by + az * bz + aw * bw;
+        if (dot < 0f) {
+            dot = -dot;
+            bx = -bx;
+            by = -by;
+            bz = -bz;
+            bw = -bw;
+        }
+        float wa;
+        float wb;
+        if (dot > 0.9995f) {
+            // 角度很小时直接线性插值
+            wa = 1f - t;
+            wb = t;
+        } else {
+            double theta = Math.acos(Math.min(dot, 1f));
+            double sin = Math.sin(theta);
+            wa = (float) (Math.sin((1 - t) * theta) / sin);
+            wb = (float) (Math.sin(t * theta) / sin);
+        }
+        float x = ax * wa + bx * wb;
+        float y = ay * wa + by * wb;
+        float z = az * wa + bz * wb;
+        float w = aw * wa + bw * wb;
+        float length = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+        if (length < 1e-6f) {
+            out[0] = bx;
+            out[1] = by;
+            out[2] = bz;
+            out[3] = bw;
+            return;
+        }
+        out[0] = x / length;
+        out[1] = y / length;
+        out[2] = z / length;
+        out[3] = w / length;
+    }
+}
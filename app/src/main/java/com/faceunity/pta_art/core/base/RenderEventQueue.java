@@ -0,0 +1,278 @@
+package com.faceunity.pta_art.core.base;
+
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * GL线程的事件队列（多生产者、单消费者）
+ * <p>
+ * 所有线程（包括GL线程自己）都通过同一个无锁的环形数组提交事件，GL线程在每帧开始时调用drain按提交顺序执行，
+ * 执行过程中新提交的事件排在队尾，在本次drain中继续执行。
+ * <p>
+ * queueNextEvent提交的事件先放入另一个环形数组，在上一次drain结束前提交的事件于下一次drain开始时移到队尾，
+ * 所以总是在之前提交的事件之后执行（如先绑定新道具、再销毁旧道具），并且至少延后一帧。
+ * <p>
+ * 可以设置每帧执行事件的时间预算，超出预算后剩余的事件留到下一帧继续执行，顺序不变；
+ * 实现了Chained的事件不检查预算，总是与前一个事件在同一帧执行。延后的事件每帧都会移入队列，不会因为队列一直不空而被饿死。
+ * <p>
+ * 提交与执行都不分配对象（环形数组溢出时除外）。
+ */
+public class RenderEventQueue {
+    private static final String TAG = RenderEventQueue.class.getSimpleName();
+
+    /**
+     * 环形数组的默认容量，切换一次形象产生的事件远小于该值
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final Ring mEvents;
+    private final Ring mNextEvents;
+    // 进入mEvents的事件数
+    private final AtomicLong mQueuedCount = new AtomicLong();
+    // 以下只在GL线程访问
+    // 超出预算时已经取出但未执行的事件
+    private Runnable mCarriedEvent;
+    // 上一次drain结束时mNextEvents中的事件数，下一次drain开始时移入队列
+    private int mPromoteCount;
+
+    private long mBudgetNanos;
+    private int mLastDeferredCount;
+    private long mDeferredFrameCount;
+
+    /**
+     * 与前一个事件在同一帧执行的事件，执行前不检查时间预算
+     */
+    public interface Chained extends Runnable {
+    }
+
+    public RenderEventQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 环形数组容量，向上取整为2的幂
+     */
+    public RenderEventQueue(int capacity) {
+        mEvents = new Ring(capacity);
+        mNextEvents = new Ring(capacity);
+    }
+
+    /**
+     * 提交在下一次drain中执行的事件
+     */
+    public void queueEvent(Runnable r) {
+        mEvents.offer(r);
+        mQueuedCount.incrementAndGet();
+    }
+
+    /**
+     * 进入队列的事件总数，在放入队列之后增加，用于判断某个事件之后是否还提交过其它事件（见ItemParamTable）
+     */
+    public long getQueuedCount() {
+        return mQueuedCount.get();
+    }
+
+    /**
+     * 提交在下下次drain中执行的事件（相较于queueEvent延后一帧）
+     */
+    public void queueNextEvent(Runnable r) {
+        mNextEvents.offer(r);
+    }
+
+    /**
+     * 设置每帧执行事件的时间预算
+     *
+     * @param budgetMs 毫秒，0表示不限制
+     */
+    public void setBudget(long budgetMs) {
+        mBudgetNanos = Math.max(0, budgetMs) * 1000000L;
+    }
+
+    /**
+     * 在GL线程中执行已提交的事件，包括执行过程中新提交的事件，超出时间预算后剩余的事件留到下一帧。
+     * 开始时先将上一次drain结束前queueNextEvent提交的事件移到队尾
+     *
+     * @return 执行的事件数
+     */
+    public int drain() {
+        long startTime = System.nanoTime();
+        promoteNextEvents();
+        int count = 0;
+        Runnable r;
+        while ((r = poll()) != null) {
+            // 每帧至少执行一个事件
+            if (mBudgetNanos > 0 && count > 0 && !(r instanceof Chained)
+                    && System.nanoTime() - startTime >= mBudgetNanos) {
+                mCarriedEvent = r;
+                mLastDeferredCount = size();
+                mDeferredFrameCount++;
+                mPromoteCount = mNextEvents.size();
+                Log.i(TAG, "drain over budget, run " + count + " deferred " + mLastDeferredCount
+                        + " time " + (System.nanoTime() - startTime) / 1000 + "us");
+                return count;
+            }
+            r.run();
+            count++;
+        }
+        mLastDeferredCount = 0;
+        mPromoteCount = mNextEvents.size();
+        return count;
+    }
+
+    /**
+     * 在GL线程中取出下一个事件，没有事件时返回null
+     */
+    private Runnable poll() {
+        Runnable r = mCarriedEvent;
+        if (r != null) {
+            mCarriedEvent = null;
+            return r;
+        }
+        return mEvents.poll();
+    }
+
+    /**
+     * 等待执行的事件数（不包括queueNextEvent提交的事件），在GL线程中调用
+     */
+    public int size() {
+        return (mCarriedEvent != null ? 1 : 0) + mEvents.size();
+    }
+
+    /**
+     * 上一帧因超出时间预算而留到下一帧的事件数
+     */
+    public int getLastDeferredCount() {
+        return mLastDeferredCount;
+    }
+
+    /**
+     * 超出时间预算的帧数
+     */
+    public long getDeferredFrameCount() {
+        return mDeferredFrameCount;
+    }
+
+    /**
+     * 将上一次drain结束前queueNextEvent提交的事件按提交顺序移到队尾，在GL线程中调用
+     */
+    private void promoteNextEvents() {
+        for (; mPromoteCount > 0; mPromoteCount--) {
+            Runnable r = mNextEvents.poll();
+            if (r == null) {
+                break;
+            }
+            mEvents.offer(r);
+            mQueuedCount.incrementAndGet();
+        }
+        mPromoteCount = 0;
+    }
+
+    /**
+     * 丢弃所有未执行的事件，在GL线程中或者GL线程结束后调用
+     */
+    public void clear() {
+        mCarriedEvent = null;
+        while (mEvents.poll() != null) ;
+        while (mNextEvents.poll() != null) ;
+        mPromoteCount = 0;
+    }
+
+    /**
+     * 多生产者单消费者环形数组
+     * <p>
+     * 数组已满时（GL线程长时间没有取出事件）事件放入加锁的溢出队列，
+     * 溢出队列不为空时新的事件也放入溢出队列，保证同一线程提交的事件顺序不变。
+     */
+    private static class Ring {
+        private final int capacity;
+        private final int mask;
+        private final AtomicReferenceArray<Runnable> buffer;
+        private final AtomicLong producerIndex = new AtomicLong();
+        private final AtomicLong consumerIndex = new AtomicLong();
+        private final ArrayDeque<Runnable> overflow = new ArrayDeque<>();
+        private volatile boolean overflowing;
+
+        Ring(int capacity) {
+            int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+            this.capacity = size;
+            this.mask = size - 1;
+            this.buffer = new AtomicReferenceArray<>(size);
+        }
+
+        void offer(Runnable r) {
+            if (!overflowing && offerToBuffer(r)) {
+                return;
+            }
+            synchronized (overflow) {
+                if (!overflowing) {
+                    if (offerToBuffer(r)) {
+                        return;
+                    }
+                    overflowing = true;
+                    Log.w(TAG, "event queue overflow, capacity " + capacity);
+                }
+                overflow.addLast(r);
+            }
+        }
+
+        /**
+         * 只能在消费者线程中调用
+         */
+        Runnable poll() {
+            Runnable r = pollFromBuffer();
+            if (r == null && overflowing) {
+                synchronized (overflow) {
+                    r = overflow.pollFirst();
+                    if (overflow.isEmpty()) {
+                        overflowing = false;
+                    }
+                }
+            }
+            return r;
+        }
+
+        int size() {
+            int size = (int) (producerIndex.get() - consumerIndex.get());
+            if (overflowing) {
+                synchronized (overflow) {
+                    size += overflow.size();
+                }
+            }
+            return size;
+        }
+
+        private boolean offerToBuffer(Runnable r) {
+            while (true) {
+                long index = producerIndex.get();
+                if (index - consumerIndex.get() >= capacity) {
+                    return false;
+                }
+                if (producerIndex.compareAndSet(index, index + 1)) {
+                    buffer.lazySet((int) (index & mask), r);
+                    return true;
+                }
+            }
+        }
+
+        private Runnable pollFromBuffer() {
+            long index = consumerIndex.get();
+            int offset = (int) (index & mask);
+            Runnable r = buffer.get(offset);
+            if (r == null) {
+                if (index == producerIndex.get()) {
+                    return null;
+                }
+                // 生产者已经占用该位置但还未写入
+                do {
+                    r = buffer.get(offset);
+                } while (r == null);
+            }
+            buffer.lazySet(offset, null);
+            consumerIndex.lazySet(index + 1);
+            return r;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.faceunity.pta_art.core.base;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 启动耗时打点
+ * <p>
+ * 记录从Application.onCreate到首帧显示形象之间各个阶段的时间点，首帧显示后输出到日志（tag为time）。
+ */
+public class StartupTimeline {
+    private static final List<String> names = new ArrayList<>();
+    private static final List<Long> times = new ArrayList<>();
+    private static boolean finished = false;
+
+    /**
+     * 记录一个时间点，第一个时间点作为起点
+     *
+     * @param name 时间点名称
+     */
+    public static synchronized void mark(String name) {
+        if (finished) {
+            return;
+        }
+        names.add(name);
+        times.add(SystemClock.elapsedRealtime());
+    }
+
+    /**
+     * 首帧显示形象时调用，输出所有时间点，之后不再记录
+     *
+     * @param name 最后一个时间点名称
+     */
+    public static synchronized void finish(String name) {
+        if (finished) {
+            return;
+        }
+        mark(name);
+        finished = true;
+        if (times.isEmpty()) {
+            return;
+        }
+        long startTime = times.get(0);
+        StringBuilder timeline = new StringBuilder("startup timeline:");
+        for (int i = 0; i < names.size(); i++) {
+            timeline.append("\n  ").append(names.get(i)).append(" +").append(times.get(i) - startTime).append("ms");
+        }
+        timeline.append("\n  ").append(BundleCache.getInstance());
+        Log.i("time", timeline.toString());
+        names.clear();
+        times.clear();
+    }
+}
@@ -0,0 +1,137 @@
+package com.faceunity.pta_art.core.base;
+
+import android.os.SystemClock;
+
+import com.faceunity.wrapper.faceunity;
+
+/**
+ * SDK状态采样
+ * <p>
+ * 人脸跟踪状态（fuIsTracking）与系统错误（fuGetSystemError）不需要每帧通过JNI查询：
+ * 每隔intervalFrames帧（或者距上次采样超过intervalMs毫秒）在GL线程中采样一次并缓存，
+ * 跟踪状态变化或出现错误时回调Listener。需要最新状态时调用requestPoll，下一帧立即采样。
+ * <p>
+ * 采样在GL线程中进行，缓存的状态可以在任意线程读取。
+ */
+public class StatusSampler {
+    private static final String TAG = StatusSampler.class.getSimpleName();
+
+    public static final int DEFAULT_INTERVAL_FRAMES = 4;
+
+    public interface Listener {
+        /**
+         * 跟踪状态变化
+         *
+         * @param status fuIsTracking的返回值
+         */
+        void onTrackingChanged(int status);
+
+        /**
+         * 采样时SDK存在错误
+         *
+         * @param error   fuGetSystemError的返回值
+         * @param message 错误信息
+         */
+        void onSystemError(int error, String message);
+    }
+
+    private final Listener mListener;
+    private volatile int mIntervalFrames = DEFAULT_INTERVAL_FRAMES;
+    private volatile long mIntervalMs;
+    private volatile boolean mPollRequested = true;
+    // 以下只在GL线程访问
+    private int mFrameCount;
+    private long mLastPollTime;
+    private int mLastError;
+    private String mLastErrorMessage;
+    // 缓存的状态
+    private volatile int mTrackingStatus;
+    private volatile long mPollCount;
+
+    public StatusSampler(Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * 设置采样间隔，满足任意一个条件时采样
+     *
+     * @param frames 间隔帧数，1表示每帧采样
+     * @param millis 间隔毫秒，0表示只按帧数采样
+     */
+    public void setInterval(int frames, long millis) {
+        mIntervalFrames = Math.max(1, frames);
+        mIntervalMs = Math.max(0, millis);
+    }
+
+    public int getIntervalFrames() {
+        return mIntervalFrames;
+    }
+
+    /**
+     * 下一帧立即采样，可以在任意线程调用
+     */
+    public void requestPoll() {
+        mPollRequested = true;
+    }
+
+    /**
+     * 每帧在GL线程中调用，到达采样间隔时采样
+     *
+     * @param core 当前模式，通过core.isTracking查询跟踪状态
+     * @return 本帧是否采样
+     */
+    public boolean onFrame(BaseCore core) {
+        mFrameCount++;
+        if (!mPollRequested && mFrameCount < mIntervalFrames
+                && (mIntervalMs <= 0 || SystemClock.elapsedRealtime() - mLastPollTime < mIntervalMs)) {
+            return false;
+        }
+        poll(core);
+        return true;
+    }
+
+    private void poll(BaseCore core) {
+        mPollRequested = false;
+        mFrameCount = 0;
+        if (mIntervalMs > 0) {
+            mLastPollTime = SystemClock.elapsedRealtime();
+        }
+        mPollCount++;
+
+        int tracking = core.isTracking();
+        if (tracking != mTrackingStatus) {
+            mTrackingStatus = tracking;
+            if (mListener != null) {
+                mListener.onTrackingChanged(tracking);
+            }
+        }
+
+        int error = faceunity.fuGetSystemError();
+        if (error != 0) {
+            // 同一个错误只查询一次错误信息
+            if (error != mLastError) {
+                mLastError = error;
+                mLastErrorMessage = faceunity.fuGetSystemErrorString(error);
+            }
+            if (mListener != null) {
+                mListener.onSystemError(error, mLastErrorMessage);
+            }
+        }
+    }
+
+    /**
+     * 最近一次采样的跟踪状态
+     */
+    public int getTrackingStatus() {
+        return mTrackingStatus;
+    }
+
+    public long getPollCount() {
+        return mPollCount;
+    }
+
+    @Override
+    public String toString() {
+        return TAG + " interval " + mIntervalFrames + " frames " + mIntervalMs + "ms polls " + mPollCount;
+    }
+}
@@ -0,0 +1,163 @@
+package com.faceunity.pta_art.core.base;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.text.TextUtils;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 启动预热清单
+ * <p>
+ * 记录每次启动后前RECORD_DURATION_MS毫秒内加载过的bundle并保存，
+ * 下次启动时在引导页显示期间于后台将这些bundle读入BundleCache，进入首页后创建道具不需要再读取文件。
+ */
+public class WarmUpManifest {
+    private static final String TAG = WarmUpManifest.class.getSimpleName();
+
+    /**
+     * 记录启动后多长时间内加载的bundle
+     */
+    public static final long RECORD_DURATION_MS = 15 * 1000;
+
+    private static final String PREFERENCES_NAME = TAG;
+    private static final String BUNDLES_KEY = "bundles";
+    private static final String SEPARATOR = "\n";
+
+    private volatile static WarmUpManifest manifest = null;
+
+    private Context mContext;
+    // 本次启动加载的bundle，按加载顺序
+    private final Set<String> mRecordBundles = new LinkedHashSet<>();
+    private long mRecordEndTime;
+    private boolean mRecording;
+    private boolean mWarmUpStarted;
+
+    private WarmUpManifest() {
+    }
+
+    public static WarmUpManifest getInstance() {
+        if (manifest == null) {
+            synchronized (WarmUpManifest.class) {
+                if (manifest == null) {
+                    manifest = new WarmUpManifest();
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * 开始记录本次启动加载的bundle，在Application.onCreate中调用
+     *
+     * @param context
+     */
+    public synchronized void init(Context context) {
+        mContext = context.getApplicationContext();
+        mRecording = true;
+        mRecordEndTime = SystemClock.elapsedRealtime() + RECORD_DURATION_MS;
+        new Handler(Looper.getMainLooper()).postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                save();
+            }
+        }, RECORD_DURATION_MS);
+    }
+
+    /**
+     * 记录加载的bundle，在FUItemHandler.loadFUItem中调用
+     *
+     * @param bundle 道具文件路径
+     */
+    public synchronized void record(String bundle) {
+        if (!mRecording || TextUtils.isEmpty(bundle)) {
+            return;
+        }
+        if (SystemClock.elapsedRealtime() > mRecordEndTime) {
+            return;
+        }
+        mRecordBundles.add(bundle);
+    }
+
+    /**
+     * 停止记录并保存清单
+     */
+    public synchronized void save() {
+        if (!mRecording) {
+            return;
+        }
+        mRecording = false;
+        if (mRecordBundles.isEmpty()) {
+            return;
+        }
+        mContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE).edit()
+                .putString(BUNDLES_KEY, TextUtils.join(SEPARATOR, mRecordBundles)).apply();
+        Log.i(TAG, "save manifest count " + mRecordBundles.size());
+        mRecordBundles.clear();
+    }
+
+    /**
+     * 上次启动保存的清单
+     */
+    public List<String> load() {
+        SharedPreferences preferences = mContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        String bundles = preferences.getString(BUNDLES_KEY, "");
+        List<String> list = new ArrayList<>();
+        if (!TextUtils.isEmpty(bundles)) {
+            for (String bundle : bundles.split(SEPARATOR)) {
+                if (!TextUtils.isEmpty(bundle)) {
+                    list.add(bundle);
+                }
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 在后台将上次启动清单中的bundle读入BundleCache，只执行一次
+     * <p>
+     * 读取的数据总量不超过BundleCache容量的一半，不存在的文件（如已删除的形象）直接跳过。
+     * 在单独的后台优先级线程中读取，不占用AsyncTask的串行队列，也不与引导页的UI线程抢占CPU
+     */
+    public void warmUp() {
+        synchronized (this) {
+            if (mWarmUpStarted || mContext == null) {
+                return;
+            }
+            mWarmUpStarted = true;
+        }
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                StartupTimeline.mark("warmUpStart");
+                List<String> bundles = load();
+                int maxBytes = BundleCache.getInstance().maxSize() / 2;
+                int totalBytes = 0;
+                int count = 0;
+                for (String bundle : bundles) {
+                    try {
+                        totalBytes += FUItemHandler.cacheBundle(mContext, bundle);
+                        count++;
+                    } catch (IOException e) {
+                        Log.i(TAG, "warmUp skip " + bundle + " " + e.getMessage());
+                    }
+                    if (totalBytes >= maxBytes) {
+                        break;
+                    }
+                }
+                StartupTimeline.mark("warmUpEnd");
+                Log.i("time", "warm up bundles count:" + count + "/" + bundles.size() + "--bytes:" + totalBytes);
+            }
+        }, "WarmUpManifest").start();
+    }
+}
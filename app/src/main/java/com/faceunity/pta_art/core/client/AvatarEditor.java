@@ -10,6 +10,7 @@ import com.faceunity.pta_art.entity.AvatarPTA;
 import com.faceunity.pta_art.entity.BundleRes;
 import com.faceunity.pta_art.entity.DBHelper;
 import com.faceunity.pta_art.fragment.editface.core.shape.EditFaceParameter;
+import com.faceunity.pta_art.utils.AssetPack;
 import com.faceunity.pta_art.utils.DateUtil;
 import com.faceunity.pta_art.utils.FileUtil;
 
@@ -53,9 +54,9 @@ public class AvatarEditor {
                 List<BundleRes> hairBundles = FilePathFactory.hairBundleRes(newAvatarP2A.getGender());
                 try {
                     if (editFaceParameter.isShapeChangeValues()) {
-                        head = PTAClientWrapper.deformAvatarHead(isCreateAvatar ? new FileInputStream(new File(avatarP2A.getHeadFile())) : mContext.getAssets().open(avatarP2A.getHeadFile()), newAvatarP2A.getHeadFile(), editFaceParameter.getEditFaceParameters());
+                        head = PTAClientWrapper.deformAvatarHead(isCreateAvatar ? new FileInputStream(new File(avatarP2A.getHeadFile())) : AssetPack.open(mContext, avatarP2A.getHeadFile()), newAvatarP2A.getHeadFile(), editFaceParameter.getEditFaceParameters());
                     } else if (!isCreateAvatar) {
-                        FileUtil.copyFileTo(mContext.getAssets().open(avatarP2A.getHeadFile()), new File(newAvatarP2A.getHeadFile()));
+                        FileUtil.copyFileTo(AssetPack.open(mContext, avatarP2A.getHeadFile()), new File(newAvatarP2A.getHeadFile()));
                     }
 
                     if (!isCreateAvatar) {
@@ -67,10 +68,10 @@ public class AvatarEditor {
                         String hair = avatarP2A.getBundleDir() + hairRes.name;
                         String hairNew = newAvatarP2A.getBundleDir() + hairRes.name;
 //                        if (editFaceParameter.isHeadShapeChangeValues() && Constant.style == Constant.style_new) {
-//                            PTAClientWrapper.deformHairByHead(head, mContext.getAssets().open(hairRes.path), hairNew);
+//                            PTAClientWrapper.deformHairByHead(head, AssetPack.open(mContext, hairRes.path), hairNew);
 //                        } else
                         if (!isCreateAvatar) {
-                            FileUtil.copyFileTo(mContext.getAssets().open(hair), new File(hairNew));
+                            FileUtil.copyFileTo(AssetPack.open(mContext, hair), new File(hairNew));
                         }
                     }
 
@@ -80,7 +81,7 @@ public class AvatarEditor {
                         String hat = avatarP2A.getBundleDir() + hatRes.name;
                         String hatNew = newAvatarP2A.getBundleDir() + hatRes.name;
                         if (!isCreateAvatar) {
-                            FileUtil.copyFileTo(mContext.getAssets().open(hat), new File(hatNew));
+                            FileUtil.copyFileTo(AssetPack.open(mContext, hat), new File(hatNew));
                         }
                     }
 
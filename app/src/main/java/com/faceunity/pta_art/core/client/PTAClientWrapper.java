@@ -11,6 +11,7 @@ import com.faceunity.pta_art.constant.FUPTAClient;
 import com.faceunity.pta_art.constant.FilePathFactory;
 import com.faceunity.pta_art.core.authpack;
 import com.faceunity.pta_art.entity.AvatarPTA;
+import com.faceunity.pta_art.utils.AssetPack;
 import com.faceunity.pta_art.utils.FileUtil;
 
 import java.io.IOException;
@@ -27,9 +28,8 @@ public abstract class PTAClientWrapper {
      */
     public static void setupData(Context context) {
         try {
-            InputStream clientCore = context.getAssets().open(FilePathFactory.BUNDLE_client_core);
-            byte[] clientCoreData = new byte[clientCore.available()];
-            clientCore.read(clientCoreData);
+            InputStream clientCore = AssetPack.open(context, FilePathFactory.BUNDLE_client_core);
+            byte[] clientCoreData = FileUtil.readFully(clientCore);
             clientCore.close();
             // 数据初始化
             boolean retData = FUPTAClient.setupData(clientCoreData);
@@ -46,9 +46,8 @@ public abstract class PTAClientWrapper {
      */
     public static void setupStyleData(Context context) {
         try {
-            InputStream clientBin = context.getAssets().open(FilePathFactory.bundleClientBin());
-            byte[] clientBinData = new byte[clientBin.available()];
-            clientBin.read(clientBinData);
+            InputStream clientBin = AssetPack.open(context, FilePathFactory.bundleClientBin());
+            byte[] clientBinData = FileUtil.readFully(clientBin);
             clientBin.close();
             // 数据初始化
             boolean ret = FUPTAClient.setupStyleData(clientBinData);
@@ -118,9 +117,8 @@ public abstract class PTAClientWrapper {
 
     public static void deformHairByServer(Context context, byte[] server, @NonNull String src, @NonNull String dst) throws IOException {
         if (TextUtils.isEmpty(src) || TextUtils.isEmpty(dst)) return;
-        InputStream hairIS = context.getAssets().open(src);
-        byte[] hairData = new byte[hairIS.available()];
-        hairIS.read(hairData);
+        InputStream hairIS = AssetPack.open(context, src);
+        byte[] hairData = FileUtil.readFully(hairIS);
         hairIS.close();
         byte[] hair = FUPTAClient.createAvatarHairWithServerData(server, hairData);
         FileUtil.saveDataToFile(dst, hair);
@@ -129,8 +127,7 @@ public abstract class PTAClientWrapper {
     public static void deformHairByHead(byte[] head, @NonNull InputStream hairIS, @NonNull String dst) throws IOException {
         if (TextUtils.isEmpty(dst)) return;
         Log.e(TAG, "deformHairByHead " + head + " " + dst);
-        byte[] hairData = new byte[hairIS.available()];
-        hairIS.read(hairData);
+        byte[] hairData = FileUtil.readFully(hairIS);
         hairIS.close();
         byte[] hair = FUPTAClient.createAvatarHairWithHeadData(head, hairData);
         FileUtil.saveDataToFile(dst, hair);
@@ -143,8 +140,7 @@ public abstract class PTAClientWrapper {
                 values[i] = 0;
             }
         }
-        byte[] headBundle = new byte[headIS.available()];
-        headIS.read(headBundle);
+        byte[] headBundle = FileUtil.readFully(headIS);
         headIS.close();
         fuPTAClient.HeadData headData = new fuPTAClient.HeadData();
         FUPTAClient.deformAvatarHeadWithHeadData(headData, headBundle, values);
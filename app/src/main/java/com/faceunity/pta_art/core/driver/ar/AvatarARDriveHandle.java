@@ -1,7 +1,6 @@
 package com.faceunity.pta_art.core.driver.ar;
 
 import android.hardware.Camera;
-import android.os.Message;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -58,8 +57,8 @@ public class AvatarARDriveHandle extends BasePTAHandle {
     }
 
     public void setARAvatar(final AvatarPTA avatar, boolean needDestory, Runnable runnable) {
-        mFUItemHandler.removeMessages(FUItemHandler_what);
-        Message msg = Message.obtain(mFUItemHandler, new Runnable() {
+        final long sequence = addCompleteListener(runnable);
+        mFUItemHandler.submitLoadTask(new FUItemHandler.LoadTask(FUItemHandler_what, FUItemHandler.PRIORITY_VISIBLE) {
             @Override
             public void run() {
                 loadItemNew(headItem, avatar.getHeadFile(), needDestory);
@@ -84,14 +83,15 @@ public class AvatarARDriveHandle extends BasePTAHandle {
                 loadItem(lipglossItem, avatar.getLipglossFile());
                 loadItem(pupilItem, avatar.getPupilFile());
 
-                commitItem(avatar);
-                if (runnable != null) {
-                    runnable.run();
+                if (!commitItem(avatar, this)) {
+                    // 已经有新的Avatar需要加载，回调由新的加载执行
+                    return;
+                }
+                for (Runnable listener : takeCompleteListeners(sequence)) {
+                    listener.run();
                 }
             }
         });
-        msg.what = FUItemHandler_what;
-        mFUItemHandler.sendMessage(msg);
     }
 
     public void setFilter(final String filter) {
@@ -176,6 +176,8 @@ public class AvatarARDriveHandle extends BasePTAHandle {
                 @Override
                 public void run() {
                     faceunity.fuItemSetParam(controllerItem, "enter_ar_mode", 1);
+                    //进入ar模式后重新设置屏幕方向
+                    mScreenOrientation = -1;
                     faceunity.fuBindItems(controllerItem, new int[]{hairMask});
                     //3.设置enable_face_processor，说明启用或者关闭面部追踪，value = 1.0表示开启，value = 0.0表示关闭
                     faceunity.fuItemSetParam(controllerItem, "enable_face_processor", 1.0);
@@ -266,7 +268,18 @@ public class AvatarARDriveHandle extends BasePTAHandle {
      *
      * @param screen_orientation
      */
+    private int mScreenOrientation = -1;
+    private int mScreenOrientationItem;
+
+    /**
+     * 每帧在GL线程中调用，方向与道具不变时不再设置
+     */
     public void setScreenOrientation(int screen_orientation) {
+        if (mScreenOrientation == screen_orientation && mScreenOrientationItem == controllerItem) {
+            return;
+        }
+        mScreenOrientation = screen_orientation;
+        mScreenOrientationItem = controllerItem;
         faceunity.fuItemSetParam(controllerItem, "screen_orientation", screen_orientation);
     }
 
@@ -6,6 +6,7 @@ import com.faceunity.pta_art.MainActivity;
 import com.faceunity.pta_art.constant.FilePathFactory;
 import com.faceunity.pta_art.core.FUPTARenderer;
 import com.faceunity.pta_art.core.base.BaseCore;
+import com.faceunity.pta_art.renderer.QualityGovernor;
 import com.faceunity.wrapper.faceunity;
 
 import java.lang.ref.WeakReference;
@@ -40,6 +41,11 @@ public class PTAARDriveCore extends BaseCore {
         return avatarARHandle = new AvatarARDriveHandle(this, mFUItemHandler, controller);
     }
 
+    @Override
+    public void setQualityTier(int tier) {
+        mItemsArray[ITEM_ARRAYS_FXAA] = tier >= QualityGovernor.TIER_NO_FXAA ? 0 : fxaaItem;
+    }
+
     @Override
     public int[] itemsArray() {
         if (avatarARHandle != null) {
@@ -83,6 +89,19 @@ public class PTAARDriveCore extends BaseCore {
         avatarARHandle.onCameraChange(currentCameraType, inputImageOrientation);
     }
 
+    /**
+     * AR驱动的画面由相机帧驱动，只在有新的相机帧时渲染
+     */
+    @Override
+    public int getTargetFps() {
+        return 30;
+    }
+
+    @Override
+    public boolean isContinuousRender() {
+        return false;
+    }
+
     @Override
     public void unBind() {
         if (avatarARHandle != null)
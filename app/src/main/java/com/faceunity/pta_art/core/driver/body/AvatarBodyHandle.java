@@ -1,7 +1,6 @@
 package com.faceunity.pta_art.core.driver.body;
 
 import android.hardware.Camera;
-import android.os.Message;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -78,8 +77,8 @@ public class AvatarBodyHandle extends BasePTAHandle {
     }
 
     public void setAvatar(final AvatarPTA avatar, Runnable runnable) {
-        mFUItemHandler.removeMessages(FUItemHandler_what);
-        Message msg = Message.obtain(mFUItemHandler, new Runnable() {
+        final long sequence = addCompleteListener(runnable);
+        mFUItemHandler.submitLoadTask(new FUItemHandler.LoadTask(FUItemHandler_what, FUItemHandler.PRIORITY_VISIBLE) {
             @Override
             public void run() {
                 loadItem(headItem, avatar.getHeadFile());
@@ -122,15 +121,8 @@ public class AvatarBodyHandle extends BasePTAHandle {
                     if (others != null && i < others.length) {
                         loadItem(otherItem[i], others[i]);
                     } else if (otherItem[i] != null) {
-                        final int finalI = i;
-                        mBaseCore.queueEvent(new Runnable() {
-                            @Override
-                            public void run() {
-                                faceunity.fuUnBindItems(controllerItem, new int[]{otherItem[finalI].handle});
-                                mBaseCore.destroyItem(otherItem[finalI].handle).run();
-                                otherItem[finalI].clear();
-                            }
-                        });
+                        // 卸载多余的道具
+                        loadItem(otherItem[i], "");
                     }
                 }
 
@@ -140,14 +132,15 @@ public class AvatarBodyHandle extends BasePTAHandle {
                     }
                     loadItem(gestureItem[j], gestures[j]);
                 }
-                commitItem(avatar);
-                if (runnable != null) {
-                    runnable.run();
+                if (!commitItem(avatar, this)) {
+                    // 已经有新的Avatar需要加载，回调由新的加载执行
+                    return;
+                }
+                for (Runnable listener : takeCompleteListeners(sequence)) {
+                    listener.run();
                 }
             }
         });
-        msg.what = FUItemHandler_what;
-        mFUItemHandler.sendMessage(msg);
     }
 
     private void unBindGestureItem() {
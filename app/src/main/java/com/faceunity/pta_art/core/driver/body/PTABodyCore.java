@@ -6,6 +6,7 @@ import com.faceunity.pta_art.MainActivity;
 import com.faceunity.pta_art.constant.FilePathFactory;
 import com.faceunity.pta_art.core.FUPTARenderer;
 import com.faceunity.pta_art.core.base.BaseCore;
+import com.faceunity.pta_art.renderer.QualityGovernor;
 import com.faceunity.wrapper.faceunity;
 
 import java.lang.ref.WeakReference;
@@ -44,6 +45,11 @@ public class PTABodyCore extends BaseCore {
         return avatarBodyHandle;
     }
 
+    @Override
+    public void setQualityTier(int tier) {
+        mItemsArray[ITEM_ARRAYS_FXAA] = tier >= QualityGovernor.TIER_NO_FXAA ? 0 : fxaaItem;
+    }
+
     @Override
     public int[] itemsArray() {
         if (avatarBodyHandle != null) {
@@ -86,6 +92,19 @@ public class PTABodyCore extends BaseCore {
         avatarBodyHandle.onCameraChange(currentCameraType, inputImageOrientation);
     }
 
+    /**
+     * 身体驱动的画面由相机（视频）帧驱动，只在有新的相机、视频帧时渲染
+     */
+    @Override
+    public int getTargetFps() {
+        return 30;
+    }
+
+    @Override
+    public boolean isContinuousRender() {
+        return false;
+    }
+
     @Override
     public void unBind() {
         if (avatarBodyHandle != null)
@@ -1,6 +1,5 @@
 package com.faceunity.pta_art.core.driver.text;
 
-import android.os.Message;
 import android.text.TextUtils;
 import android.util.Log;
 
@@ -59,8 +58,8 @@ public class AvatarTextDriveHandle extends BasePTAHandle {
     }
 
     public void setAvatarForVoice(final AvatarPTA avatar, final Runnable completeListener) {
-        mFUItemHandler.removeMessages(FUItemHandler_what);
-        Message msg = Message.obtain(mFUItemHandler, new Runnable() {
+        final long sequence = addCompleteListener(completeListener);
+        mFUItemHandler.submitLoadTask(new FUItemHandler.LoadTask(FUItemHandler_what, FUItemHandler.PRIORITY_VISIBLE) {
             @Override
             public void run() {
                 loadItem(headItem, avatar.getHeadFile());
@@ -100,24 +99,19 @@ public class AvatarTextDriveHandle extends BasePTAHandle {
                     if (others != null && i < others.length) {
                         loadItem(otherItem[i], others[i]);
                     } else if (otherItem[i] != null) {
-                        final int finalI = i;
-                        mBaseCore.queueEvent(new Runnable() {
-                            @Override
-                            public void run() {
-                                faceunity.fuUnBindItems(controllerItem, new int[]{otherItem[finalI].handle});
-                                mBaseCore.destroyItem(otherItem[finalI].handle).run();
-                                otherItem[finalI].clear();
-                            }
-                        });
+                        // 卸载多余的道具
+                        loadItem(otherItem[i], "");
                     }
                 }
-                commitItem(avatar);
-                if (completeListener != null)
-                    completeListener.run();
+                if (!commitItem(avatar, this)) {
+                    // 已经有新的Avatar需要加载，回调由新的加载执行
+                    return;
+                }
+                for (Runnable listener : takeCompleteListeners(sequence)) {
+                    listener.run();
+                }
             }
         });
-        msg.what = FUItemHandler_what;
-        mFUItemHandler.sendMessage(msg);
     }
 
     @Override
@@ -6,6 +6,7 @@ import com.faceunity.pta_art.MainActivity;
 import com.faceunity.pta_art.constant.FilePathFactory;
 import com.faceunity.pta_art.core.FUPTARenderer;
 import com.faceunity.pta_art.core.base.BaseCore;
+import com.faceunity.pta_art.renderer.QualityGovernor;
 import com.faceunity.wrapper.faceunity;
 
 import java.lang.ref.WeakReference;
@@ -97,6 +98,11 @@ public class PTATextDriveCore extends BaseCore {
         });
     }
 
+    @Override
+    public void setQualityTier(int tier) {
+        mItemsArray[ITEM_ARRAYS_FXAA] = tier >= QualityGovernor.TIER_NO_FXAA ? 0 : fxaaItem;
+    }
+
     @Override
     public int[] itemsArray() {
         if (avatarTextDriveHandle != null) {
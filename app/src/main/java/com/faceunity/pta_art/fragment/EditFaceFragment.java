@@ -29,6 +29,7 @@ import com.faceunity.pta_art.constant.Constant;
 import com.faceunity.pta_art.constant.FilePathFactory;
 import com.faceunity.pta_art.core.AvatarHandle;
 import com.faceunity.pta_art.core.PTACore;
+import com.faceunity.pta_art.core.base.BundlePrefetcher;
 import com.faceunity.pta_art.core.client.AvatarEditor;
 import com.faceunity.pta_art.core.client.PTAClientWrapper;
 import com.faceunity.pta_art.entity.AvatarPTA;
@@ -63,6 +64,7 @@ import com.faceunity.pta_art.utils.ToastUtil;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -128,6 +130,8 @@ public class EditFaceFragment extends BaseFragment
     private SparseArray<EditFaceBaseFragment> mEditFaceBaseFragments = new SparseArray<>();
 
     private EditFaceItemManager mEditFaceItemManager;
+    //预读取当前选中道具附近的道具
+    private BundlePrefetcher mBundlePrefetcher;
     //侧边栏
     private LinearLayout ll_slide_title;
     private TextView tv_slide_edit_face, tv_slide_makeup, tv_slide_apparel;
@@ -203,6 +207,7 @@ public class EditFaceFragment extends BaseFragment
 
         mEditFaceItemManager = new EditFaceItemManager();
         mEditFaceItemManager.init(mAvatarP2A.getGender());
+        mBundlePrefetcher = new BundlePrefetcher(mFUP2ARenderer.getFUItemHandler());
         int[][] titleIdAndIcons = mEditFaceItemManager.getTitleIdAndIcons(EDIT_FACE_TYPE_PINCH);
         mEditFaceTitle.setResIcon(titleIdAndIcons[1], titleIdAndIcons[0], mEditFaceSelectBottomId);
 
@@ -366,6 +371,7 @@ public class EditFaceFragment extends BaseFragment
 
     public void backToHome(AvatarPTA avatarP2A) {
         helper.clearRevoke();
+        mBundlePrefetcher.cancel();
         mAvatarHandle.clearExpression(avatarP2A, false);
         mActivity.showHomeFragment();
         mAvatarHandle.setNeedFacePUP(false);
@@ -664,6 +670,7 @@ public class EditFaceFragment extends BaseFragment
             if (id != -1) {
                 mEditFaceItemManager.setSelectedFragmentID(id);
             }
+            prefetchNeighbourItems(id);
             if (id == -1) {
                 mP2ACore.loadWholeBodyCamera();
             } else if (id == TITLE_CLOTHES_INDEX
@@ -950,10 +957,71 @@ public class EditFaceFragment extends BaseFragment
                     break;
             }
             mAvatarHandle.setAvatar(mAvatarP2A);
+            prefetchNeighbourItems(id);
             updateSaveBtn();
         }
     };
 
+    /**
+     * 预读取当前道具列表中选中项附近的道具
+     *
+     * @param id 道具列表的id
+     */
+    private void prefetchNeighbourItems(int id) {
+        List<BundleRes> bundleRes;
+        int selected;
+        boolean inBundleDir = false;
+        switch (id) {
+            case TITLE_HAIR_INDEX:
+                bundleRes = FilePathFactory.hairBundleRes(mAvatarP2A.getGender());
+                selected = mAvatarP2A.getHairIndex();
+                inBundleDir = true;
+                break;
+            case TITLE_BEARD_INDEX:
+                bundleRes = FilePathFactory.beardBundleRes(mAvatarP2A.getGender());
+                selected = mAvatarP2A.getBeardIndex();
+                break;
+            case TITLE_GLASSES_INDEX:
+                bundleRes = FilePathFactory.glassesBundleRes(mAvatarP2A.getGender());
+                selected = mAvatarP2A.getGlassesIndex();
+                break;
+            case TITLE_HAT_INDEX:
+                bundleRes = FilePathFactory.hatBundleRes(mAvatarP2A.getGender());
+                selected = mAvatarP2A.getHatIndex();
+                inBundleDir = true;
+                break;
+            case TITLE_CLOTHES_INDEX:
+                bundleRes = FilePathFactory.clothesBundleRes(mAvatarP2A.getGender());
+                selected = mAvatarP2A.getClothesIndex();
+                break;
+            case TITLE_CLOTHES_UPPER_INDEX:
+                bundleRes = FilePathFactory.clothUpperBundleRes();
+                selected = mAvatarP2A.getClothesUpperIndex();
+                break;
+            case TITLE_CLOTHES_LOWER_INDEX:
+                bundleRes = FilePathFactory.clothLowerBundleRes();
+                selected = mAvatarP2A.getClothesLowerIndex();
+                break;
+            case TITLE_SHOE_INDEX:
+                bundleRes = FilePathFactory.shoeBundleRes(mAvatarP2A.getGender());
+                selected = mAvatarP2A.getShoeIndex();
+                break;
+            case TITLE_SCENES_2D:
+                bundleRes = FilePathFactory.scenes2DBundleRes();
+                selected = mAvatarP2A.getBackground2DIndex();
+                break;
+            default:
+                mBundlePrefetcher.cancel();
+                return;
+        }
+        List<String> bundles = new ArrayList<>(bundleRes.size());
+        for (BundleRes res : bundleRes) {
+            // 头发与发帽使用形象目录下生成的道具
+            bundles.add(inBundleDir ? (TextUtils.isEmpty(res.name) ? "" : mAvatarP2A.getBundleDir() + res.name) : res.path);
+        }
+        mBundlePrefetcher.prefetch(bundles, selected);
+    }
+
     private boolean deformHair(int pos) {
 
         if (pos > 0 && mAvatarP2A.getHairFile().startsWith(Constant.filePath)) {
@@ -184,7 +184,7 @@ public class GroupPhotoFragment extends BaseFragment {
                 } else {
                     mCameraRenderer.takePic(new CameraRenderer.TakePhotoCallBack() {
                         @Override
-                        public void takePhotoCallBack(final Bitmap bmp) {
+                        public void takePhotoCallBack(final Bitmap bmp, int isTracking, float[] faceRect) {
                             mCameraRenderer.setNeedStopDrawFrame(false);
                             mActivity.runOnUiThread(new Runnable() {
                                 @Override
@@ -144,7 +144,7 @@ public class TakePhotoFragment extends BaseFragment implements View.OnClickListe
                 mCameraRenderer.changeCamera();
                 break;
             case R.id.take_photo_select:
-                if (mCameraRenderer.isNeedStopDrawFrame()) return;
+                if (isTakingPhoto || mCameraRenderer.isNeedStopDrawFrame()) return;
                 Intent intent2 = new Intent();
                 intent2.addCategory(Intent.CATEGORY_OPENABLE);
                 intent2.setType("image/*");
@@ -156,31 +156,48 @@ public class TakePhotoFragment extends BaseFragment implements View.OnClickListe
                 startActivityForResult(intent2, IMAGE_REQUEST_CODE);
                 break;
             case R.id.take_photo_btn:
+                if (isTakingPhoto) return;
                 if (isTracking > 0) {
-                    mCameraRenderer.takePic(new CameraRenderer.TakePhotoCallBack() {
+                    isTakingPhoto = mCameraRenderer.takePic(new CameraRenderer.TakePhotoCallBack() {
                         @Override
-                        public void takePhotoCallBack(final Bitmap bmp) {
+                        public void takePhotoCallBack(final Bitmap bmp, int photoTracking, float[] photoFaceRect) {
                             mCameraRenderer.setNeedStopDrawFrame(false);
-                            float[] faceRect = isTracking == 1 ? mFaceRect : null;
-                            if (Constant.is_debug) {
-                                createAvatarDebug(bmp, faceRect);
+                            if (photoTracking <= 0) {
+                                showTakePhotoFailed();
                             } else {
-                                createAvatar(bmp, faceRect);
+                                //使用拍下的那一帧的人脸框，而不是回调时最新一帧的
+                                float[] faceRect = photoTracking == 1 ? photoFaceRect : null;
+                                if (Constant.is_debug) {
+                                    createAvatarDebug(bmp, faceRect);
+                                } else {
+                                    createAvatar(bmp, faceRect);
+                                }
                             }
+                            //排在显示CreateAvatarDialog之后
+                            mActivity.runOnUiThread(new Runnable() {
+                                @Override
+                                public void run() {
+                                    isTakingPhoto = false;
+                                }
+                            });
                         }
                     });
                 } else {
-                    mActivity.runOnUiThread(new Runnable() {
-                        @Override
-                        public void run() {
-                            ToastUtil.showCenterToast(mActivity, "面部识别失败，请重新尝试");
-                        }
-                    });
+                    showTakePhotoFailed();
                 }
                 break;
         }
     }
 
+    private void showTakePhotoFailed() {
+        mActivity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                ToastUtil.showCenterToast(mActivity, "面部识别失败，请重新尝试");
+            }
+        });
+    }
+
     @Override
     public void onBackPressed() {
         onBackPressed(mCreateAvatarDialog);
@@ -536,6 +553,8 @@ public class TakePhotoFragment extends BaseFragment implements View.OnClickListe
 
     private int isTracking;
     private float[] mFaceRect;
+    //拍照还未返回结果（异步读取时渲染不会停止，不能再用isNeedStopDrawFrame判断），只在主线程访问
+    private boolean isTakingPhoto;
     private int mFrameId = 0;
 
     private void checkPic(int w, int h) {
@@ -6,11 +6,11 @@ import com.faceunity.pta_art.constant.Constant;
 import com.faceunity.pta_art.constant.FilePathFactory;
 import com.faceunity.pta_art.entity.AvatarPTA;
 import com.faceunity.pta_art.fragment.editface.core.EditFaceItemManager;
+import com.faceunity.pta_art.utils.AssetPack;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -72,10 +72,7 @@ public abstract class EditFacePointFactory {
 
     public static void init(Context context) {
         try {
-            InputStream is = context.getAssets().open(FilePathFactory.jsonMeshPoint());
-            byte[] itemData = new byte[is.available()];
-            is.read(itemData);
-            is.close();
+            byte[] itemData = AssetPack.readBytes(context, FilePathFactory.jsonMeshPoint());
             String json = new String(itemData);
             JSONObject jsonObject = new JSONObject(json);
 
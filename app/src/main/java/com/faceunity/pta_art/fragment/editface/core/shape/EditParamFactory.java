@@ -4,11 +4,11 @@ import android.content.Context;
 
 import com.faceunity.pta_art.R;
 import com.faceunity.pta_art.constant.FilePathFactory;
+import com.faceunity.pta_art.utils.AssetPack;
 
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
@@ -34,10 +34,7 @@ public abstract class EditParamFactory {
 
     public static void init(Context context) {
         try {
-            InputStream is = context.getAssets().open(FilePathFactory.jsonShapeParam());
-            byte[] itemData = new byte[is.available()];
-            is.read(itemData);
-            is.close();
+            byte[] itemData = AssetPack.readBytes(context, FilePathFactory.jsonShapeParam());
             String json = new String(itemData);
             JSONObject jsonObject = new JSONObject(json);
 
@@ -0,0 +1,321 @@
+package com.faceunity.pta_art.gles;
+
+import android.graphics.Bitmap;
+import android.opengl.GLES20;
+import android.opengl.GLES30;
+import android.os.AsyncTask;
+import android.util.Log;
+
+import com.faceunity.pta_art.gles.core.GlUtil;
+import com.faceunity.pta_helper.pic.PictureEncoder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 异步读取纹理为Bitmap（拍照、缩略图）
+ * <p>
+ * 与PictureEncoder.encoderPicture相比不阻塞GL线程：
+ * <ul>
+ * <li>request：把纹理绘制到复用的FBO，glReadPixels读入像素缓冲对象（PBO）并插入fence，立即返回</li>
+ * <li>poll：每帧检查fence，GPU完成后映射PBO拷贝出像素；两个PBO轮流使用，前一张还未取回时可以再发起一张</li>
+ * <li>RGBA转ARGB、上下翻转与创建Bitmap在后台线程完成，回调也在后台线程</li>
+ * <li>fence多次等待超时或者等待失败时放弃该次读取，由调用者在之后的帧通过readAbandoned用PictureEncoder同步读取</li>
+ * </ul>
+ * 结果与PictureEncoder一致（非预乘的ARGB_8888，行序翻转为从上到下）。需要OpenGL ES 3.0，所有方法在GL线程中调用。
+ */
+public class AsyncPictureReader {
+    private static final String TAG = AsyncPictureReader.class.getSimpleName();
+
+    private static final int PBO_COUNT = 2;
+    /**
+     * 发起后超过该帧数还未完成时阻塞等待，避免停止渲染后一直没有结果
+     */
+    private static final int MAX_PENDING_FRAMES = 4;
+    private static final long WAIT_TIMEOUT_NS = 100 * 1000000L;
+    /**
+     * 阻塞等待超时的次数达到该值时放弃，改用PictureEncoder读取
+     */
+    private static final int MAX_TIMEOUTS = 3;
+
+    public interface OnPictureListener {
+        /**
+         * 在后台线程回调
+         */
+        void onPicture(Bitmap bitmap);
+    }
+
+    private static class Request {
+        long fence;
+        int width;
+        int height;
+        float[] texMatrix;
+        int pendingFrames;
+        int timeouts;
+        OnPictureListener listener;
+    }
+
+    private ProgramTexture2d mProgram;
+    private final int[] mFboId = new int[1];
+    private final int[] mFboTex = new int[1];
+    private int mFboWidth;
+    private int mFboHeight;
+    private final int[] mPbo = new int[PBO_COUNT];
+    private final int[] mPboSize = new int[PBO_COUNT];
+    private final Request[] mRequests = new Request[PBO_COUNT];
+    //放弃的读取，等待readAbandoned改用PictureEncoder读取
+    private final Request[] mAbandoned = new Request[PBO_COUNT];
+    private int mNextPbo;
+    private final int[] mOriginFbo = new int[1];
+    private final int[] mOriginViewport = new int[4];
+
+    private long mRequestCount;
+    private long mBlockedNanos;
+    private long mMaxBlockedNanos;
+
+    /**
+     * 当前GL环境是否支持（OpenGL ES 3.0以上）
+     */
+    public static boolean isSupported() {
+        String version = GLES20.glGetString(GLES20.GL_VERSION);
+        return version != null && version.startsWith("OpenGL ES ") && version.length() > 10
+                && version.charAt(10) >= '3';
+    }
+
+    /**
+     * 发起读取
+     *
+     * @param textureId 2D纹理
+     * @param texMatrix 纹理矩阵
+     * @param width     输出宽
+     * @param height    输出高
+     * @return 两个PBO都在使用中时返回false，调用者下一帧再试
+     */
+    public boolean request(int textureId, float[] texMatrix, int width, int height, OnPictureListener listener) {
+        int index = mNextPbo;
+        if (mRequests[index] != null) {
+            return false;
+        }
+        long startTime = System.nanoTime();
+        if (mProgram == null) {
+            mProgram = new ProgramTexture2d();
+        }
+        if (mFboWidth != width || mFboHeight != height) {
+            deleteFbo();
+            GlUtil.createFBO(mFboTex, mFboId, width, height);
+            mFboWidth = width;
+            mFboHeight = height;
+        }
+        int size = width * height * 4;
+        if (mPbo[index] == 0) {
+            GLES30.glGenBuffers(1, mPbo, index);
+        }
+        GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, mPbo[index]);
+        if (mPboSize[index] != size) {
+            GLES30.glBufferData(GLES30.GL_PIXEL_PACK_BUFFER, size, null, GLES30.GL_STREAM_READ);
+            mPboSize[index] = size;
+        }
+
+        GLES20.glGetIntegerv(GLES20.GL_FRAMEBUFFER_BINDING, mOriginFbo, 0);
+        GLES20.glGetIntegerv(GLES20.GL_VIEWPORT, mOriginViewport, 0);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mFboId[0]);
+        GLES20.glViewport(0, 0, width, height);
+        mProgram.drawFrame(textureId, texMatrix, GlUtil.IDENTITY_MATRIX);
+        GLES20.glPixelStorei(GLES20.GL_PACK_ALIGNMENT, 4);
+        // 绑定了PIXEL_PACK_BUFFER时最后一个参数为PBO中的偏移，读取异步进行
+        GLES30.glReadPixels(0, 0, width, height, GLES20.GL_RGBA, GLES20.GL_UNSIGNED_BYTE, 0);
+        GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+        GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, mOriginFbo[0]);
+        GLES20.glViewport(mOriginViewport[0], mOriginViewport[1], mOriginViewport[2], mOriginViewport[3]);
+
+        Request request = new Request();
+        request.fence = GLES30.glFenceSync(GLES30.GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+        request.width = width;
+        request.height = height;
+        request.texMatrix = texMatrix.clone();
+        request.listener = listener;
+        // 提交命令，保证fence之后能够被触发
+        GLES20.glFlush();
+        mRequests[index] = request;
+        mNextPbo = (index + 1) % PBO_COUNT;
+        mRequestCount++;
+        recordBlocked("request", startTime);
+        return true;
+    }
+
+    /**
+     * 检查已经完成的读取，每帧调用
+     *
+     * @return 是否还有未完成或者放弃的读取（调用者需要继续请求渲染）
+     */
+    public boolean poll() {
+        boolean pending = false;
+        for (int i = 0; i < PBO_COUNT; i++) {
+            Request request = mRequests[i];
+            if (request == null) {
+                //之前放弃的读取还没有用PictureEncoder读取
+                pending |= mAbandoned[i] != null;
+                continue;
+            }
+            boolean force = ++request.pendingFrames >= MAX_PENDING_FRAMES;
+            int status = GLES30.glClientWaitSync(request.fence, 0, force ? WAIT_TIMEOUT_NS : 0);
+            if (status == GLES30.GL_TIMEOUT_EXPIRED) {
+                if (force && ++request.timeouts >= MAX_TIMEOUTS) {
+                    Log.e(TAG, "glClientWaitSync timeout " + request.timeouts + " times, fall back to PictureEncoder");
+                    abandon(i);
+                }
+                //GPU还未完成，下一帧再检查
+                pending = true;
+                continue;
+            }
+            if (status == GLES30.GL_WAIT_FAILED) {
+                Log.e(TAG, "glClientWaitSync failed " + GLES20.glGetError() + ", fall back to PictureEncoder");
+                abandon(i);
+                pending = true;
+                continue;
+            }
+            finish(i);
+        }
+        return pending;
+    }
+
+    /**
+     * 放弃读取，PBO中的像素不再使用
+     */
+    private void abandon(int index) {
+        Request request = mRequests[index];
+        mRequests[index] = null;
+        GLES30.glDeleteSync(request.fence);
+        mAbandoned[index] = request;
+    }
+
+    /**
+     * 用PictureEncoder同步读取放弃的请求，读取的是当前帧的纹理，每帧绘制完成后调用
+     *
+     * @param textureId 当前帧的2D纹理
+     */
+    public void readAbandoned(int textureId) {
+        for (int i = 0; i < PBO_COUNT; i++) {
+            Request request = mAbandoned[i];
+            if (request == null) {
+                continue;
+            }
+            mAbandoned[i] = null;
+            long startTime = System.nanoTime();
+            final OnPictureListener listener = request.listener;
+            PictureEncoder.encoderPicture(textureId, request.texMatrix, GlUtil.IDENTITY_MATRIX,
+                    request.width, request.height, new PictureEncoder.OnEncoderPictureListener() {
+                        @Override
+                        public void onEncoderPictureListener(Bitmap bitmap) {
+                            if (listener != null) {
+                                listener.onPicture(bitmap);
+                            }
+                        }
+                    });
+            recordBlocked("fallback", startTime);
+        }
+    }
+
+    /**
+     * 映射PBO拷贝像素，交给后台线程转换
+     */
+    private void finish(int index) {
+        long startTime = System.nanoTime();
+        Request request = mRequests[index];
+        mRequests[index] = null;
+        GLES30.glDeleteSync(request.fence);
+        final int width = request.width;
+        final int height = request.height;
+        final int[] pixels = new int[width * height];
+        GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, mPbo[index]);
+        ByteBuffer buffer = (ByteBuffer) GLES30.glMapBufferRange(GLES30.GL_PIXEL_PACK_BUFFER, 0, width * height * 4,
+                GLES30.GL_MAP_READ_BIT);
+        if (buffer != null) {
+            buffer.order(ByteOrder.nativeOrder()).asIntBuffer().get(pixels);
+            GLES30.glUnmapBuffer(GLES30.GL_PIXEL_PACK_BUFFER);
+        } else {
+            Log.e(TAG, "glMapBufferRange failed " + GLES20.glGetError());
+        }
+        GLES30.glBindBuffer(GLES30.GL_PIXEL_PACK_BUFFER, 0);
+        recordBlocked("map", startTime);
+
+        final OnPictureListener listener = request.listener;
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                Bitmap bitmap = toBitmap(pixels, width, height);
+                if (listener != null) {
+                    listener.onPicture(bitmap);
+                }
+            }
+        });
+    }
+
+    /**
+     * glReadPixels的RGBA（小端int为ABGR）转为ARGB，并且上下翻转，在后台线程调用
+     */
+    private static Bitmap toBitmap(int[] pixels, int width, int height) {
+        int[] argb = new int[width * height];
+        for (int row = 0; row < height; row++) {
+            int in = row * width;
+            int out = (height - 1 - row) * width;
+            for (int col = 0; col < width; col++) {
+                int pixel = pixels[in + col];
+                argb[out + col] = (pixel & 0xff00ff00) | ((pixel << 16) & 0x00ff0000) | ((pixel >> 16) & 0xff);
+            }
+        }
+        return Bitmap.createBitmap(argb, width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    private void recordBlocked(String stage, long startTime) {
+        long blocked = System.nanoTime() - startTime;
+        mBlockedNanos += blocked;
+        if (blocked > mMaxBlockedNanos) {
+            mMaxBlockedNanos = blocked;
+        }
+        Log.i("time", TAG + " " + stage + " gl blocked " + blocked / 1000 + "us");
+    }
+
+    /**
+     * 释放GL资源，未完成的读取等待完成后回调，放弃的读取不再回调，在GL线程中调用
+     */
+    public void release() {
+        for (int i = 0; i < PBO_COUNT; i++) {
+            mAbandoned[i] = null;
+            Request request = mRequests[i];
+            if (request != null) {
+                GLES30.glClientWaitSync(request.fence, GLES30.GL_SYNC_FLUSH_COMMANDS_BIT, WAIT_TIMEOUT_NS);
+                finish(i);
+            }
+        }
+        for (int i = 0; i < PBO_COUNT; i++) {
+            if (mPbo[i] != 0) {
+                GLES30.glDeleteBuffers(1, mPbo, i);
+                mPbo[i] = 0;
+                mPboSize[i] = 0;
+            }
+        }
+        deleteFbo();
+        if (mProgram != null) {
+            mProgram.release();
+            mProgram = null;
+        }
+        Log.i("time", toString());
+    }
+
+    private void deleteFbo() {
+        if (mFboId[0] != 0) {
+            GlUtil.deleteFBO(mFboTex, mFboId);
+            mFboId[0] = 0;
+            mFboTex[0] = 0;
+        }
+        mFboWidth = 0;
+        mFboHeight = 0;
+    }
+
+    @Override
+    public String toString() {
+        return TAG + " requests " + mRequestCount + " gl blocked total " + mBlockedNanos / 1000
+                + "us max " + mMaxBlockedNanos / 1000 + "us";
+    }
+}
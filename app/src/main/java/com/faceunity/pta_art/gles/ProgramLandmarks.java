@@ -22,7 +22,6 @@ import com.faceunity.pta_art.gles.core.Drawable2d;
 import com.faceunity.pta_art.gles.core.GlUtil;
 import com.faceunity.pta_art.gles.core.Program;
 
-import java.util.Arrays;
 
 public class ProgramLandmarks extends Program {
 
@@ -157,6 +156,7 @@ public class ProgramLandmarks extends Program {
         }
 //        Matrix.setIdentityM(mvpMtx, 0);
 
-        updateVertexArray(Arrays.copyOf(landmarksData, landmarksData.length));
+        // 顶点数据复制到复用的FloatBuffer中，不需要再复制数组
+        updateVertexArray(landmarksData);
     }
 }
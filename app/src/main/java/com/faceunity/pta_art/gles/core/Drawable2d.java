@@ -45,8 +45,18 @@ public class Drawable2d {
         updateTexCoordArray(FULL_RECTANGLE_TEX_COORDS);
     }
 
+    /**
+     * Updates the vertices.  Reuses the current buffer when the length is unchanged, so
+     * per-frame updates (e.g. landmarks) don't allocate a new direct buffer.
+     */
     public void updateVertexArray(float[] FULL_RECTANGLE_COORDS) {
-        mVertexArray = GlUtil.createFloatBuffer(FULL_RECTANGLE_COORDS);
+        if (mVertexArray != null && mVertexArray.capacity() == FULL_RECTANGLE_COORDS.length) {
+            mVertexArray.clear();
+            mVertexArray.put(FULL_RECTANGLE_COORDS);
+            mVertexArray.position(0);
+        } else {
+            mVertexArray = GlUtil.createFloatBuffer(FULL_RECTANGLE_COORDS);
+        }
         mVertexCount = FULL_RECTANGLE_COORDS.length / COORDS_PER_VERTEX;
     }
 
@@ -57,12 +57,13 @@ public abstract class Program {
         drawFrame(textureId, GlUtil.IDENTITY_MATRIX, mvp);
     }
 
+    private final int[] mOriginalViewport = new int[4];
+
     public void drawFrame(int textureId, float[] texMatrix, float[] mvpMatrix, int x, int y, int width, int height) {
-        int[] originalViewport = new int[4];
-        GLES20.glGetIntegerv(GLES20.GL_VIEWPORT, originalViewport, 0);
+        GLES20.glGetIntegerv(GLES20.GL_VIEWPORT, mOriginalViewport, 0);
         GLES20.glViewport(x, y, width, height);
         drawFrame(textureId, texMatrix, mvpMatrix);
-        GLES20.glViewport(originalViewport[0], originalViewport[1], originalViewport[2], originalViewport[3]);
+        GLES20.glViewport(mOriginalViewport[0], mOriginalViewport[1], mOriginalViewport[2], mOriginalViewport[3]);
     }
 
     /**
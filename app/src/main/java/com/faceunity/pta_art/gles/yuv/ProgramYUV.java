@@ -3,6 +3,8 @@ package com.faceunity.pta_art.gles.yuv;
 import android.opengl.GLES20;
 import android.util.Log;
 
+import com.faceunity.pta_art.utils.yuv.YuvUtil;
+
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
@@ -68,9 +70,9 @@ public class ProgramYUV {
     /**
      * 绘制的类型
      */
-    private final int I420 = 0;
-    private final int NV12 = 1;
-    private final int NV21 = 2;
+    private final int I420 = YuvUtil.FORMAT_I420;
+    private final int NV12 = YuvUtil.FORMAT_NV12;
+    private final int NV21 = YuvUtil.FORMAT_NV21;
 
     // vertices buffer
     private FloatBuffer mVertexBuffer;
@@ -190,23 +192,23 @@ public class ProgramYUV {
      * 预览YUV格式数据
      *
      * @param yuvdata yuv格式的数据
-     * @param type    YUV数据的格式 0 -> I420  1 -> NV12  2 -> NV21
+     * @param type    YUV数据的格式 YuvUtil.FORMAT_I420、FORMAT_NV12、FORMAT_NV21
      */
     public void feedData(byte[] yuvdata, int type) {
         synchronized (this) {
             if (hasVisibility) {
-                if (type == I420) {
-                    y.clear();
+                int ySize = rendWidth * rendHeight;
+                int chromaSize = ySize / 4;
+                y.clear();
+                y.put(yuvdata, 0, ySize);
+                if (YuvUtil.isSemiPlanar(type)) {
+                    uv.clear();
+                    uv.put(yuvdata, ySize, chromaSize * 2);
+                } else {
                     u.clear();
                     v.clear();
-                    y.put(yuvdata, 0, rendWidth * rendHeight);
-                    u.put(yuvdata, rendWidth * rendHeight, rendWidth * rendHeight / 4);
-                    v.put(yuvdata, rendWidth * rendHeight * 5 / 4, rendWidth * rendHeight / 4);
-                } else {
-                    y.clear();
-                    uv.clear();
-                    y.put(yuvdata, 0, rendWidth * rendHeight);
-                    uv.put(yuvdata, rendWidth * rendHeight, rendWidth * rendHeight / 2);
+                    u.put(yuvdata, ySize, chromaSize);
+                    v.put(yuvdata, ySize + chromaSize, chromaSize);
                 }
             }
         }
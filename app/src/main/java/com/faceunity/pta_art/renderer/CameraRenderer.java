@@ -1,23 +1,38 @@
 package com.faceunity.pta_art.renderer;
 
 import android.app.Activity;
+import android.content.BroadcastReceiver;
+import android.content.Context;
 import android.content.DialogInterface;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.graphics.Bitmap;
 import android.graphics.SurfaceTexture;
 import android.hardware.Camera;
 import android.opengl.GLES11Ext;
 import android.opengl.GLES20;
 import android.opengl.GLSurfaceView;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.SystemClock;
 import androidx.appcompat.app.AlertDialog;
 import android.text.TextUtils;
+import android.util.Log;
 
+import com.faceunity.pta_art.constant.JsonUtils;
+import com.faceunity.pta_art.gles.AsyncPictureReader;
 import com.faceunity.pta_art.gles.FBOUtils;
 import com.faceunity.pta_art.gles.ProgramLandmarks;
 import com.faceunity.pta_art.gles.ProgramTexture2d;
 import com.faceunity.pta_art.gles.ProgramTextureOES;
 import com.faceunity.pta_art.gles.core.GlUtil;
-import com.faceunity.pta_art.utils.CameraUtils;
-import com.faceunity.pta_art.utils.FPSUtil;
+import com.faceunity.pta_art.renderer.camera.Camera2Capture;
+import com.faceunity.pta_art.renderer.camera.CameraCapture;
+import com.faceunity.pta_art.renderer.camera.CameraFrame;
+import com.faceunity.pta_art.renderer.camera.FrameExchanger;
+import com.faceunity.pta_art.renderer.camera.LegacyCameraCapture;
+import com.faceunity.pta_art.utils.FrameMetrics;
+import com.faceunity.pta_art.utils.FrameTracer;
 import com.faceunity.pta_art.utils.SmallCameraPositionManager;
 import com.faceunity.pta_art.utils.ToastUtil;
 import com.faceunity.pta_helper.pic.PictureEncoder;
@@ -32,13 +47,13 @@ import javax.microedition.khronos.opengles.GL10;
 
 /**
  * Camera相关处理
- * Camera.PreviewCallback camera数据回调
+ * CameraCapture.Callback camera数据回调（Camera2Capture，不支持时使用LegacyCameraCapture）
  * GLSurfaceView.Renderer GLSurfaceView相应的创建销毁与绘制回调
  * <p>
  * Created by tujh on 2018/3/2.
  */
 
-public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Renderer {
+public class CameraRenderer implements CameraCapture.Callback, GLSurfaceView.Renderer {
     public final static String TAG = CameraRenderer.class.getSimpleName();
 
     private Activity mActivity;
@@ -69,19 +84,28 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
     private boolean isOpenCamera;
     private boolean isChangeCamera;
     private final Object mCameraLock = new Object();
-    private Camera mCamera;
-    private static final int PREVIEW_BUFFER_COUNT = 3;
-    private byte[][] previewCallbackBuffer;
+    private CameraCapture mCameraCapture;
+    //Camera2打开或预览失败后改用Camera1
+    private boolean isCamera2Disabled;
+    //采集线程放入最新的相机帧，GL线程渲染完才归还
+    private final FrameExchanger mFrameExchanger = new FrameExchanger();
     private int mCameraOrientation;
     private int mCurrentCameraType = Camera.CameraInfo.CAMERA_FACING_FRONT;
     private int mCameraWidth = 1280;
     private int mCameraHeight = 720;
+    private static final int DEFAULT_PREVIEW_WIDTH = CameraCapture.DEFAULT_PREVIEW_WIDTH;
+    private static final int DEFAULT_PREVIEW_HEIGHT = CameraCapture.DEFAULT_PREVIEW_HEIGHT;
+    //请求的预览尺寸，画质档位为TIER_LOW时降低
+    //相机预览尺寸，只在主线程中修改
+    private int mPreviewWidth = DEFAULT_PREVIEW_WIDTH;
+    private int mPreviewHeight = DEFAULT_PREVIEW_HEIGHT;
     private int arTextureHeight = 1280;
     private int arTextureWidth = 720;
 //    private HandlerThread mCameraThread;
 //    private Handler mCameraHandler;
 
-    private byte[] mCameraNV21Byte;
+    // 相机打开后是否已经收到帧，只用于UI线程判断能否切换相机，帧数据只在GL线程中从mFrameExchanger获取
+    private volatile boolean isCameraFrameReceived;
     private faceunity.RotatedImage mRotatedImage;//cpu buffer
     private SurfaceTexture mSurfaceTexture;
     private int mCameraTextureId;
@@ -99,17 +123,71 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
     private boolean isNeedStopDrawFrame = false;
     private boolean isNeedStopDrawToScreen = false;
 
-    private FPSUtil mFPSUtil;
+    //按vsync节奏请求渲染
+    private final FramePacer mFramePacer;
+    //当前模式没有新的相机帧时是否需要连续渲染
+    private volatile boolean isContinuousRender = true;
+    //根据SDK渲染耗时调整输出分辨率，绘制到屏幕时放大
+    private final ResolutionGovernor mResolutionGovernor = new ResolutionGovernor();
+    private int mLinearFilterTextureId;
+    //根据帧耗时与温度调整画质档位
+    public static final String QUALITY_CONFIG = "quality_tiers.json";
+    private static final long THERMAL_CHECK_INTERVAL_MS = 10 * 1000;
+    private final QualityGovernor mQualityGovernor;
+    private final Context mAppContext;
+    private final IntentFilter mBatteryFilter = new IntentFilter(Intent.ACTION_BATTERY_CHANGED);
+    //电池温度（摄氏度），由粘性广播ACTION_BATTERY_CHANGED在主线程中更新，GL线程只读取该值，无法获取时为0
+    private volatile float mBatteryTemperature;
+    private boolean isBatteryReceiverRegistered;
+    private long mLastThermalCheckTime;
+    //画质档位是否要求降低相机预览尺寸，在GL线程中更新，在主线程中重新打开相机
+    private volatile boolean isLowPreview;
+    private volatile boolean isPreviewUpdatePosted;
+    private volatile int mQualityTier;
+    private volatile boolean isAsyncTracking;
+    private int mModeTargetFps = FramePacer.DEFAULT_TARGET_FPS;
 
     public CameraRenderer(Activity activity, GLSurfaceView GLSurfaceView) {
         mActivity = activity;
         mGLSurfaceView = GLSurfaceView;
+        mFramePacer = new FramePacer(mGLSurfaceView, activity.getWindowManager().getDefaultDisplay().getRefreshRate());
+        mAppContext = activity.getApplicationContext();
+        QualityGovernor.Config qualityConfig = new JsonUtils().readQualityConfig(QUALITY_CONFIG, Build.MODEL);
+        Log.i(TAG, "quality config " + Build.MODEL + " " + qualityConfig);
+        mQualityGovernor = new QualityGovernor(qualityConfig);
+        mQualityTier = mQualityGovernor.getTier();
+        isAsyncTracking = mQualityGovernor.isAsyncTracking();
         //视频渲染接口
-        videoRenderer = new VideoRenderer(mGLSurfaceView);
+        videoRenderer = new VideoRenderer(mGLSurfaceView, mFramePacer);
         mSmallCameraPositionManager = new SmallCameraPositionManager(mViewHeight, mViewWidth);
     }
 
+    public void onResume() {
+        mFramePacer.start();
+        if (!isBatteryReceiverRegistered) {
+            //粘性广播，注册时立即回调一次当前的电池状态
+            mAppContext.registerReceiver(mBatteryReceiver, mBatteryFilter);
+            isBatteryReceiverRegistered = true;
+        }
+    }
+
+    public void onPause() {
+        mFramePacer.stop();
+        if (isBatteryReceiverRegistered) {
+            mAppContext.unregisterReceiver(mBatteryReceiver);
+            isBatteryReceiverRegistered = false;
+        }
+    }
+
+    private final BroadcastReceiver mBatteryReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            mBatteryTemperature = intent.getIntExtra(BatteryManager.EXTRA_TEMPERATURE, 0) / 10f;
+        }
+    };
+
     public void onDestroy() {
+        mFramePacer.stop();
         final CountDownLatch count = new CountDownLatch(1);
         mGLSurfaceView.queueEvent(new Runnable() {
             @Override
@@ -128,14 +206,41 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
     }
 
     @Override
-    public void onPreviewFrame(byte[] data, Camera camera) {
-        mCameraNV21Byte = data;
-        mCamera.addCallbackBuffer(data);
+    public void onFrame(CameraFrame frame) {
+        mFrameExchanger.offer(frame);
+        isCameraFrameReceived = true;
         if (!isNeedStopDrawFrame && !isShowVideo) {
-            mGLSurfaceView.requestRender();
+            mFramePacer.requestFrame();
         }
     }
 
+    @Override
+    public void onError(final CameraCapture capture, String message) {
+        final Activity activity = mActivity;
+        if (activity == null || !(capture instanceof Camera2Capture)) {
+            return;
+        }
+        //Camera2异步出错时改用Camera1重新打开
+        activity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (capture != mCameraCapture || !isOpenCamera || mActivity == null) {
+                    return;
+                }
+                isCamera2Disabled = true;
+                reopenCamera();
+            }
+        });
+    }
+
+    /**
+     * 清空待渲染的相机帧并归还
+     */
+    private void clearCameraFrame() {
+        isCameraFrameReceived = false;
+        mFrameExchanger.clear();
+    }
+
     @Override
     public void onSurfaceCreated(GL10 gl, EGLConfig config) {
         mFullFrameRectTexture2D = new ProgramTexture2d();
@@ -144,10 +249,10 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
         mCameraTextureId = GlUtil.createTextureObject(GLES11Ext.GL_TEXTURE_EXTERNAL_OES);
         videoRenderer.onSurfaceCreated();
         mRotatedImage = new faceunity.RotatedImage();
+        mPictureReader = AsyncPictureReader.isSupported() ? new AsyncPictureReader() : null;
         cameraStartPreview();
 
         mOnCameraRendererStatusListener.onSurfaceCreated(gl, config);
-        mFPSUtil = new FPSUtil();
     }
 
     @Override
@@ -160,26 +265,185 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
         mvp = GlUtil.changeMVPMatrix(GlUtil.IDENTITY_MATRIX, mViewWidth, mViewHeight, mCameraHeight, mCameraWidth);
         videoRenderer.onSurfaceChange(width, height);
         mOnCameraRendererStatusListener.onSurfaceChanged(gl, width, height);
-        mFPSUtil.resetLimit();
     }
 
     private int rendWidth, rendHeight;//渲染的宽和高
+    private CameraFrame mRenderedFrame;//本帧SDK渲染的相机帧
     private boolean isBodyDrive = false;//是否是身体驱动
 
     @Override
     public void onDrawFrame(GL10 gl) {
-        if (mFullFrameRectTexture2D == null) return;
-        if (isChangeCamera || mCameraNV21Byte == null) {
-            if (!isShowVideo) {
-                drawToScreen();
+        if (mFullFrameRectTexture2D == null) {
+            mFramePacer.onFrameRendered(false);
+            return;
+        }
+        FrameMetrics frameMetrics = FrameMetrics.getInstance();
+        boolean continuous = false;
+        boolean sdkRendered = false;
+        long startTime = System.nanoTime();
+        frameMetrics.beginFrame();
+        FrameTracer.begin("CameraRenderer.onDrawFrame");
+        try {
+            if (mPictureReader != null && mPictureReader.poll()) {
+                //还有未完成的拍照读取，继续渲染以便下一帧检查
+                mFramePacer.requestFrame();
+            }
+            continuous = drawFrame() && !isNeedStopDrawFrame && isContinuousRender;
+            sdkRendered = frameMetrics.getStageNanos(FrameMetrics.STAGE_SDK) > 0;
+            //相机帧从采集到渲染完成的延迟，同一帧重复渲染时只记录第一次
+            CameraFrame renderedFrame = mRenderedFrame;
+            if (sdkRendered && renderedFrame != null && mFrameExchanger.isNewFrame()) {
+                frameMetrics.recordStage(FrameMetrics.STAGE_CAPTURE_LATENCY, renderedFrame.captureTimeNanos);
+            }
+        } finally {
+            frameMetrics.endFrame();
+            FrameTracer.end();
+            mFramePacer.onFrameRendered(continuous);
+        }
+        if (sdkRendered) {
+            updateQualityTier(System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * 根据帧耗时与电池温度更新画质档位，在GL线程中每帧调用
+     */
+    private void updateQualityTier(long frameNanos) {
+        mQualityGovernor.setTargetFps(mModeTargetFps);
+        boolean changed = mQualityGovernor.onFrame(frameNanos);
+        long now = SystemClock.elapsedRealtime();
+        if (now - mLastThermalCheckTime >= THERMAL_CHECK_INTERVAL_MS) {
+            mLastThermalCheckTime = now;
+            changed |= mQualityGovernor.onThermal(mBatteryTemperature);
+        }
+        if (changed) {
+            onQualityTierChanged();
+        }
+        updatePreviewSize();
+    }
+
+    private void onQualityTierChanged() {
+        int tier = mQualityTier = mQualityGovernor.getTier();
+        isAsyncTracking = mQualityGovernor.isAsyncTracking();
+        Log.i(TAG, mQualityGovernor.toString());
+        FrameTracer.instant("qualityTier");
+        FrameMetrics.getInstance().recordQualityTier(tier, QualityGovernor.getTierName(tier), mQualityGovernor.getLastReason());
+        int fps = mQualityGovernor.limitFps(mModeTargetFps, isContinuousRender);
+        mFramePacer.setTargetFps(fps);
+        FrameMetrics.getInstance().setTargetFps(fps);
+        isLowPreview = tier >= QualityGovernor.TIER_LOW;
+    }
+
+    /**
+     * 档位要求的预览尺寸与当前不同时，通知主线程重新打开相机，在GL线程中调用
+     * <p>
+     * 渲染线程中只做判断；拍照过程中（包括异步读取还未返回）不重新打开相机，拍照完成后的帧中再通知
+     */
+    private void updatePreviewSize() {
+        int previewWidth = isLowPreview ? QualityGovernor.LOW_TIER_PREVIEW_WIDTH : DEFAULT_PREVIEW_WIDTH;
+        if (previewWidth == mPreviewWidth || isPreviewUpdatePosted || mTakePicing) {
+            return;
+        }
+        final Activity activity = mActivity;
+        if (activity == null) {
+            return;
+        }
+        isPreviewUpdatePosted = true;
+        activity.runOnUiThread(mApplyPreviewSize);
+    }
+
+    private final Runnable mApplyPreviewSize = new Runnable() {
+        @Override
+        public void run() {
+            isPreviewUpdatePosted = false;
+            if (mTakePicing) {
                 return;
             }
-        } else if (!isShowVideo) {
+            boolean lowPreview = isLowPreview;
+            int previewWidth = lowPreview ? QualityGovernor.LOW_TIER_PREVIEW_WIDTH : DEFAULT_PREVIEW_WIDTH;
+            int previewHeight = lowPreview ? QualityGovernor.LOW_TIER_PREVIEW_HEIGHT : DEFAULT_PREVIEW_HEIGHT;
+            if (previewWidth == mPreviewWidth && previewHeight == mPreviewHeight) {
+                return;
+            }
+            mPreviewWidth = previewWidth;
+            mPreviewHeight = previewHeight;
+            reopenCamera();
+        }
+    };
+
+    /**
+     * 在主线程中按新的预览尺寸重新打开相机
+     */
+    private void reopenCamera() {
+        final Activity activity = mActivity;
+        if (activity == null) {
+            return;
+        }
+        activity.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                if (!isOpenCamera || mActivity == null) {
+                    return;
+                }
+                isChangeCamera = true;
+                releaseCamera();
+                openCamera(mCurrentCameraType);
+                isChangeCamera = false;
+            }
+        });
+    }
+
+    /**
+     * 当前画质档位（QualityGovernor.TIER_*）
+     */
+    public int getQualityTier() {
+        return mQualityTier;
+    }
+
+    /**
+     * 当前画质档位下人脸跟踪是否与渲染解耦
+     */
+    public boolean isAsyncTracking() {
+        return isAsyncTracking;
+    }
+
+    /**
+     * 获取最新的相机帧，没有新帧时为上一帧，相机关闭或重新打开后还没有收到帧时为null，在GL线程中调用
+     */
+    private CameraFrame acquireCameraFrame() {
+        CameraFrame cameraFrame = mFrameExchanger.acquire();
+        if (mFrameExchanger.isNewFrame()) {
+            FrameMetrics.getInstance().recordCameraFrame(cameraFrame.captureTimeNanos,
+                    mFrameExchanger.isLate(), mFrameExchanger.getDroppedSinceLastAcquire());
+        }
+        return cameraFrame;
+    }
+
+    /**
+     * 绘制一帧
+     *
+     * @return 是否完整绘制了相机画面（视频帧由解码线程驱动，返回false）
+     */
+    private boolean drawFrame() {
+        mRenderedFrame = null;
+        //本帧使用的相机帧，在下一次acquire之前不会被相机复用
+        CameraFrame cameraFrame = null;
+        if (!isShowVideo) {
+            if (!isChangeCamera) {
+                cameraFrame = acquireCameraFrame();
+            }
+            if (cameraFrame == null) {
+                drawToScreen();
+                return false;
+            }
+            FrameTracer.begin("updateTexImage");
             try {
                 mSurfaceTexture.updateTexImage();
                 mSurfaceTexture.getTransformMatrix(mtx);
             } catch (Exception e) {
-                return;
+                return false;
+            } finally {
+                FrameTracer.end();
             }
         }
 
@@ -191,10 +455,13 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
         int rotateMode = faceunity.FU_ROTATION_MODE_0;
         int flipX;
         int flipY;
+        //拍照时固定为原始分辨率
+        mResolutionGovernor.setPinned(mIsNeedTakePic);
+        mResolutionGovernor.setTargetFps(mFramePacer.getTargetFps());
         if (!isNeedStopDrawFrame) {
             if (isShowVideo) {
                 if (videoRenderer.getVideoNV21Byte() == null) {
-                    return;
+                    return false;
                 }
                 //绘制视频YUV
                 int videoRotation = 0;
@@ -213,7 +480,7 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
                     default:
                         break;
                 }
-                faceunity.fuSetOutputResolution(mCameraHeight, mCameraWidth);
+                faceunity.fuSetOutputResolution(mResolutionGovernor.scale(mCameraHeight), mResolutionGovernor.scale(mCameraWidth));
                 faceunity.fuSetInputCameraMatrix(flipX, flipY, videoRenderer.getVideoRotation());
                 if (rotateMode == 0) {
                     mFuTextureId = mOnCameraRendererStatusListener.onDrawFrame(videoRenderer.getVideoNV21Byte(), 0, videoRenderer.getVideoWidth(), videoRenderer.getVideoHeight(),
@@ -224,20 +491,28 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
                             videoRotation);
                 }
             } else {
-                if (mCameraNV21Byte == null) {
-                    return;
+                if (cameraFrame.width != mCameraWidth || cameraFrame.height != mCameraHeight) {
+                    //重新打开相机时可能还是之前尺寸的帧，与没有相机帧时一样只绘制上一帧的结果
+                    drawToScreen();
+                    return false;
                 }
+                mRenderedFrame = cameraFrame;
                 rotateMode = mCurrentCameraType == Camera.CameraInfo.CAMERA_FACING_FRONT ? faceunity.FU_ROTATION_MODE_270 : faceunity.FU_ROTATION_MODE_90;
                 flipX = mCurrentCameraType == Camera.CameraInfo.CAMERA_FACING_FRONT ? 1 : 0;
                 flipY = 0;
 
-                faceunity.fuRotateImage(mRotatedImage, mCameraNV21Byte, NVFormat, mCameraWidth, mCameraHeight, rotateMode, flipX, flipY);
+                FrameTracer.begin("fuRotateImage");
+                try {
+                    faceunity.fuRotateImage(mRotatedImage, cameraFrame.data, NVFormat, mCameraWidth, mCameraHeight, rotateMode, flipX, flipY);
+                } finally {
+                    FrameTracer.end();
+                }
                 //设置texture的绘制方式
                 faceunity.fuSetInputCameraMatrix(flipX, flipY, rotateMode);
 
                 rendWidth = mRotatedImage.mWidth;
                 rendHeight = mRotatedImage.mHeight;
-                faceunity.fuSetOutputResolution(rendWidth, rendHeight);
+                faceunity.fuSetOutputResolution(mResolutionGovernor.scale(rendWidth), mResolutionGovernor.scale(rendHeight));
                 if (offlineNum >= 0 && mIsNeedTakePic) {
                     rendWidth = offlineW;
                     rendHeight = offlineH;
@@ -246,10 +521,13 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
                     mFuTextureId = mOnCameraRendererStatusListener.onDrawFrame(mRotatedImage.mData, mCameraTextureId, rendWidth, rendHeight, 0);
                 }
             }
+            if (mResolutionGovernor.onFrame(FrameMetrics.getInstance().getStageNanos(FrameMetrics.STAGE_SDK))) {
+                Log.i(TAG, mResolutionGovernor.toString());
+            }
         }
         drawToScreen();
 
-        if (isShowCamera && mCameraNV21Byte != null) {
+        if (isShowCamera && (isShowVideo || cameraFrame != null)) {
             if (!isShowVideo)
                 mFullFrameRectTextureOES.drawFrame(mCameraTextureId, mtx, mvp,
                         mSmallCameraPositionManager.getStartX(),
@@ -277,21 +555,31 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
                 checkPicOffline(mFuTextureId, mtx, mCameraHeight, mCameraWidth);
             }
         }
-
-        if (!isNeedStopDrawFrame && !isShowVideo) {
-            mGLSurfaceView.requestRender();
-        }
-        if (!isShowVideo) {
-            mFPSUtil.limit();
+        if (mPictureReader != null) {
+            //异步读取多次超时或者失败时，改为同步读取本帧
+            mPictureReader.readAbandoned(mFuTextureId);
         }
+
+        return !isShowVideo;
     }
 
     private void drawToScreen() {
+        long startTime = System.nanoTime();
+        FrameTracer.begin("drawToScreen");
+        try {
+            drawToScreenInternal();
+        } finally {
+            FrameTracer.end();
+        }
+        FrameMetrics.getInstance().recordStage(FrameMetrics.STAGE_DRAW_TO_SCREEN, startTime);
+    }
+
+    private void drawToScreenInternal() {
         /**
-         * 拍照时停止绘制纹理到屏幕
-         * 拍照完成后恢复渲染
+         * 同步拍照（PictureEncoder）时停止绘制纹理到屏幕
+         * 拍照完成后恢复渲染；异步读取时照常绘制
          */
-        if (mIsNeedTakePic) {
+        if (mIsNeedTakePic && mPictureReader == null) {
             return;
         }
         if (offlineNum >= 0) {
@@ -316,6 +604,7 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
             videoRenderer.drawVideo(videoRenderer.getVideoRotation() == 0 ?
                     videoRenderer.getVideoNV21Byte() : mRotatedImage.mData);
         } else if (mFuTextureId > 0) {
+            setLinearFilter(mFuTextureId);
             //纹理矩阵传单位阵接口，因为已经预先把纹理和buffer旋转成竖直的
             mFullFrameRectTexture2D.drawFrame(mFuTextureId, GlUtil.IDENTITY_MATRIX, mvp);
             if (isBodyDrive) {
@@ -326,7 +615,22 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
         }
     }
 
+    /**
+     * 降低输出分辨率后SDK的纹理需要线性过滤放大到屏幕，每个纹理只设置一次
+     */
+    private void setLinearFilter(int textureId) {
+        if (textureId == mLinearFilterTextureId || mResolutionGovernor.getScale() >= 1f) {
+            return;
+        }
+        mLinearFilterTextureId = textureId;
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, textureId);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MAG_FILTER, GLES20.GL_LINEAR);
+        GLES20.glTexParameteri(GLES20.GL_TEXTURE_2D, GLES20.GL_TEXTURE_MIN_FILTER, GLES20.GL_LINEAR);
+        GLES20.glBindTexture(GLES20.GL_TEXTURE_2D, 0);
+    }
+
     private void onSurfaceDestroy() {
+        mFrameExchanger.releaseCurrent();
         if (mSurfaceTexture != null) {
             mSurfaceTexture.release();
             mSurfaceTexture = null;
@@ -356,56 +660,40 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
             fboUtils.deleteFBO();
             fboUtils = null;
         }
+        if (mPictureReader != null) {
+            mPictureReader.release();
+            mPictureReader = null;
+        }
         mOnCameraRendererStatusListener.onSurfaceDestroy();
+        mFramePacer.logStatistics();
+        Log.i("time", mResolutionGovernor.toString());
+        Log.i("time", mQualityGovernor.toString());
+        CameraCapture capture = mCameraCapture;
+        if (capture != null) {
+            Log.i("time", capture.getName() + " dropped " + capture.getDroppedCount());
+        }
+        Log.i("time", mFrameExchanger.toString());
+        mLinearFilterTextureId = 0;
     }
 
     public void openCamera() {
         openCamera(mCurrentCameraType);
     }
 
-    @SuppressWarnings("deprecation")
     public void openCamera(final int cameraType) {
         try {
             synchronized (mCameraLock) {
                 isOpenCamera = true;
-                mCameraNV21Byte = null;
-                Camera.CameraInfo info = new Camera.CameraInfo();
-                int cameraId = 0;
-                int numCameras = Camera.getNumberOfCameras();
-                for (int i = 0; i < numCameras; i++) {
-                    Camera.getCameraInfo(i, info);
-                    Camera.getCameraInfo(i, info);
-                    if (info.facing == cameraType) {
-                        cameraId = i;
-                        mCamera = Camera.open(i);
-                        mCurrentCameraType = cameraType;
-                        break;
-                    }
-                }
-                if (mCamera == null) {
-                    cameraId = Camera.CameraInfo.CAMERA_FACING_BACK;
-                    Camera.getCameraInfo(cameraId, info);
-                    mCamera = Camera.open(cameraId);
-                    mCurrentCameraType = cameraId;
-                }
-                if (mCamera == null) {
-                    throw new RuntimeException("No cameras");
-                }
-
-
-                mCameraOrientation = CameraUtils.getCameraOrientation(cameraId);
-                CameraUtils.setCameraDisplayOrientation(mActivity, cameraId, mCamera);
-
-                Camera.Parameters parameters = mCamera.getParameters();
-                CameraUtils.setFocusModes(parameters);
-
-                int[] size = CameraUtils.choosePreviewSize(parameters, mCameraWidth, mCameraHeight);
-                mCameraWidth = size[0];
-                mCameraHeight = size[1];
+                clearCameraFrame();
+                mCameraCapture = createCameraCapture(cameraType);
+                mCurrentCameraType = mCameraCapture.getFacing();
+                mCameraOrientation = mCameraCapture.getOrientation();
+                mCameraWidth = mCameraCapture.getWidth();
+                mCameraHeight = mCameraCapture.getHeight();
                 mvp = GlUtil.changeMVPMatrix(GlUtil.IDENTITY_MATRIX, mViewWidth, mViewHeight, mCameraHeight, mCameraWidth);
                 if (cameraType == Camera.CameraInfo.CAMERA_FACING_FRONT)
                     System.arraycopy(mtxAvatar, 0, mtx, 0, mtx.length);
-                mCamera.setParameters(parameters);
+                Log.i(TAG, "open camera " + mCameraCapture.getName() + " " + mCameraWidth + "x" + mCameraHeight);
 
                 cameraStartPreview();
             }
@@ -435,46 +723,62 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
         }
     }
 
-    private void cameraStartPreview() {
+    /**
+     * 优先使用Camera2，硬件级别为LEGACY或者打开失败时使用Camera1
+     */
+    private CameraCapture createCameraCapture(int cameraType) throws Exception {
+        if (!isCamera2Disabled && Camera2Capture.isSupported(mActivity, cameraType)) {
+            CameraCapture capture = new Camera2Capture(mActivity, this);
+            try {
+                capture.open(cameraType, mPreviewWidth, mPreviewHeight);
+                return capture;
+            } catch (SecurityException e) {
+                //没有相机权限时Camera1同样无法打开
+                capture.close();
+                throw e;
+            } catch (Exception e) {
+                Log.e(TAG, "open camera2 failed, use camera1 " + e.getMessage());
+                capture.close();
+                isCamera2Disabled = true;
+            }
+        }
+        CameraCapture capture = new LegacyCameraCapture(mActivity, this);
         try {
-            if (mCameraTextureId == 0 || mCamera == null) {
+            capture.open(cameraType, mPreviewWidth, mPreviewHeight);
+        } catch (Exception e) {
+            capture.close();
+            throw e;
+        }
+        return capture;
+    }
+
+    private void cameraStartPreview() {
+        if (mCameraTextureId == 0) {
+            return;
+        }
+        synchronized (mCameraLock) {
+            if (mCameraCapture == null) {
                 return;
             }
-            synchronized (mCameraLock) {
-                previewCallbackBuffer = new byte[PREVIEW_BUFFER_COUNT][mCameraWidth * mCameraHeight * 3 / 2];
-                mCamera.setPreviewCallbackWithBuffer(this);
-                for (int i = 0; i < PREVIEW_BUFFER_COUNT; i++)
-                    mCamera.addCallbackBuffer(previewCallbackBuffer[i]);
-                if (mSurfaceTexture != null)
-                    mSurfaceTexture.release();
-                mCamera.setPreviewTexture(mSurfaceTexture = new SurfaceTexture(mCameraTextureId));
-                mCamera.startPreview();
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+            if (mSurfaceTexture != null)
+                mSurfaceTexture.release();
+            mCameraCapture.startPreview(mSurfaceTexture = new SurfaceTexture(mCameraTextureId));
         }
     }
 
     public void releaseCamera() {
-        try {
-            synchronized (mCameraLock) {
-                isOpenCamera = false;
-                mCameraNV21Byte = null;
-                if (mCamera != null) {
-                    mCamera.stopPreview();
-                    mCamera.setPreviewTexture(null);
-                    mCamera.setPreviewCallbackWithBuffer(null);
-                    mCamera.release();
-                    mCamera = null;
-                }
+        synchronized (mCameraLock) {
+            isOpenCamera = false;
+            if (mCameraCapture != null) {
+                mCameraCapture.close();
+                mCameraCapture = null;
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            clearCameraFrame();
         }
     }
 
     public void changeCamera() {
-        if (mCameraNV21Byte == null) {
+        if (!isCameraFrameReceived) {
             return;
         }
         isChangeCamera = true;
@@ -507,7 +811,7 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
         isNeedStopDrawFrame = needStopDrawFrame;
         if (!isNeedStopDrawFrame) {
             if (!isShowVideo)
-                mGLSurfaceView.requestRender();
+                mFramePacer.requestFrame();
         }
     }
 
@@ -551,17 +855,25 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
         return isShowLandmarks;
     }
 
-    private boolean mTakePicing = false;
+    private volatile boolean mTakePicing = false;
     private boolean mIsNeedTakePic = false;
+    //异步读取拍照结果，只在GL线程访问
+    private AsyncPictureReader mPictureReader;
     private TakePhotoCallBack mTakePhotoCallBack;
 
-    public void takePic(TakePhotoCallBack takePhotoCallBack) {
+    /**
+     * 拍照，回调在后台线程
+     *
+     * @return 上一次拍照还未完成时返回false，不会回调
+     */
+    public boolean takePic(TakePhotoCallBack takePhotoCallBack) {
         if (mTakePicing) {
-            return;
+            return false;
         }
         mTakePhotoCallBack = takePhotoCallBack;
         mIsNeedTakePic = true;
         mTakePicing = true;
+        return true;
     }
 
     private int offlineNum = -1;
@@ -594,17 +906,36 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
         if (!mIsNeedTakePic) {
             return;
         }
-        mIsNeedTakePic = false;
-        setNeedStopDrawFrame(true);
-        PictureEncoder.encoderPicture(textureId, mtx, GlUtil.IDENTITY_MATRIX, texWidth, texHeight, new PictureEncoder.OnEncoderPictureListener() {
-            @Override
-            public void onEncoderPictureListener(Bitmap bitmap) {
-                if (mTakePhotoCallBack != null) {
-                    mTakePhotoCallBack.takePhotoCallBack(bitmap);
+        if (mResolutionGovernor.getScale() < 1f) {
+            //本帧渲染时还未固定分辨率，下一帧再拍照
+            return;
+        }
+        if (mPictureReader == null) {
+            //同步读取时停止渲染，调用者收到Bitmap后恢复
+            setNeedStopDrawFrame(true);
+        }
+        boolean requested;
+        FrameTracer.begin("checkPic");
+        try {
+            //异步读取的结果在之后的帧才返回，在请求读取时记录本帧的人脸跟踪状态，与读取的画面对应
+            final int isTracking = faceunity.fuIsTracking();
+            final float[] faceRect = new float[4];
+            faceunity.fuGetFaceInfo(0, "face_rect", faceRect);
+            requested = readPicture(textureId, mtx, texWidth, texHeight, new AsyncPictureReader.OnPictureListener() {
+                @Override
+                public void onPicture(Bitmap bitmap) {
+                    if (mTakePhotoCallBack != null) {
+                        mTakePhotoCallBack.takePhotoCallBack(bitmap, isTracking, faceRect);
+                    }
+                    mTakePicing = false;
                 }
-                mTakePicing = false;
-            }
-        });
+            });
+        } finally {
+            FrameTracer.end();
+        }
+        if (requested) {
+            mIsNeedTakePic = false;
+        }
     }
 
     private void checkPicOffline(int textureId, float[] mtx, final int texWidth, final int texHeight) {
@@ -615,23 +946,68 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
             offlineNum++;
             return;
         }
+        if (mResolutionGovernor.getScale() < 1f) {
+            //本帧渲染时还未固定分辨率，下一帧再拍照
+            return;
+        }
+        boolean requested;
+        FrameTracer.begin("checkPicOffline");
+        try {
+            requested = readPicture(textureId, mtx, texWidth, texHeight, new AsyncPictureReader.OnPictureListener() {
+                @Override
+                public void onPicture(Bitmap bitmap) {
+                    if (takePhotoCallBackOffline != null) {
+                        takePhotoCallBackOffline.takePhotoCallBack(bitmap);
+                    }
+                    mTakePicing = false;
+                }
+            });
+        } finally {
+            FrameTracer.end();
+        }
+        if (!requested) {
+            return;
+        }
         mIsNeedTakePic = false;
         if (takePhotoCallBackOffline != null) {
             takePhotoCallBackOffline.endTackPhoto();
         }
+    }
+
+    /**
+     * 读取纹理为Bitmap，回调在后台线程
+     * <p>
+     * 支持OpenGL ES 3.0时通过AsyncPictureReader异步读取，渲染不停止；否则使用PictureEncoder同步读取
+     *
+     * @return 是否已经发起读取，返回false时下一帧再试
+     */
+    private boolean readPicture(int textureId, float[] mtx, int texWidth, int texHeight,
+                                final AsyncPictureReader.OnPictureListener listener) {
+        if (mPictureReader != null) {
+            if (!mPictureReader.request(textureId, mtx, texWidth, texHeight, listener)) {
+                return false;
+            }
+            //等待下一帧检查读取结果
+            mFramePacer.requestFrame();
+            return true;
+        }
+        long startTime = System.nanoTime();
         PictureEncoder.encoderPicture(textureId, mtx, GlUtil.IDENTITY_MATRIX, texWidth, texHeight, new PictureEncoder.OnEncoderPictureListener() {
             @Override
             public void onEncoderPictureListener(Bitmap bitmap) {
-                if (takePhotoCallBackOffline != null) {
-                    takePhotoCallBackOffline.takePhotoCallBack(bitmap);
-                }
-                mTakePicing = false;
+                listener.onPicture(bitmap);
             }
         });
+        Log.i("time", "PictureEncoder gl blocked " + (System.nanoTime() - startTime) / 1000 + "us");
+        return true;
     }
 
     public interface TakePhotoCallBack {
-        void takePhotoCallBack(Bitmap bmp);
+        /**
+         * @param isTracking 拍下的那一帧的人脸跟踪状态（fuIsTracking）
+         * @param faceRect   拍下的那一帧的人脸框
+         */
+        void takePhotoCallBack(Bitmap bmp, int isTracking, float[] faceRect);
     }
 
     public interface TakePhotoCallBackOffline {
@@ -714,6 +1090,23 @@ public class CameraRenderer implements Camera.PreviewCallback, GLSurfaceView.Ren
         videoRenderer.setShowLandmarks(isShowLandmarks);
     }
 
+    /**
+     * 设置当前模式的目标帧率与是否连续渲染，在GL线程中每帧调用
+     *
+     * @param targetFps  目标帧率
+     * @param continuous 没有新的相机帧时是否也需要连续渲染（形象动画）
+     */
+    public void setFrameRate(int targetFps, boolean continuous) {
+        mModeTargetFps = targetFps;
+        isContinuousRender = continuous;
+        int fps = mQualityGovernor.limitFps(targetFps, continuous);
+        mFramePacer.setTargetFps(fps);
+        //目标帧率变化时重新统计卡顿阈值
+        FrameMetrics.getInstance().setTargetFps(fps);
+        //到达后超过一个渲染间隔才被渲染的帧计为延迟
+        mFrameExchanger.setLateThresholdNanos(1000000000L / Math.max(1, fps));
+    }
+
     public void setBodyDrive(boolean isBodyDrive) {
         this.isBodyDrive = isBodyDrive;
     }
@@ -0,0 +1,183 @@
+package com.faceunity.pta_art.renderer;
+
+import android.opengl.GLSurfaceView;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 按屏幕vsync节奏请求渲染（GLSurfaceView需要设置为RENDERMODE_WHEN_DIRTY）
+ * <p>
+ * 相机、视频有新的数据时调用requestFrame，形象动画需要连续渲染时在每帧结束后通过onFrameRendered告知。
+ * 只有存在待渲染的内容时才注册Choreographer回调，在vsync时间戳上按目标帧率决定是否requestRender，
+ * 没有新内容时不唤醒GL线程。
+ * <p>
+ * 上一帧还没有渲染完（GL线程过载）时不再requestRender，直接丢弃这次vsync，
+ * 待渲染的内容合并到之后的一帧，不会在GL线程中堆积。
+ * <p>
+ * 除onFrameRendered在GL线程调用外，其它方法可以在任意线程调用，doFrame在主线程执行，不分配对象。
+ */
+public class FramePacer implements Choreographer.FrameCallback {
+    private static final String TAG = FramePacer.class.getSimpleName();
+
+    public static final int DEFAULT_TARGET_FPS = 60;
+    private static final float DEFAULT_REFRESH_RATE = 60f;
+    /**
+     * requestRender之后超过该帧数还没有onFrameRendered（如GLSurfaceView已经onPause），认为这一帧不会再渲染
+     */
+    private static final int RENDER_TIMEOUT_FRAMES = 8;
+
+    private final GLSurfaceView mGLSurfaceView;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private Choreographer mChoreographer;
+    private final long mVsyncPeriodNanos;
+
+    private volatile long mTargetIntervalNanos;
+    private volatile boolean mContinuous;
+    private volatile boolean mPendingFrame;
+    private volatile boolean mRendering;
+    private volatile boolean mStopped = true;
+    private final AtomicBoolean mCallbackPosted = new AtomicBoolean(false);
+    // 以下只在主线程访问
+    private long mLastRenderVsyncNanos;
+    private long mRenderRequestVsyncNanos;
+
+    private volatile long mRenderedCount;
+    private volatile long mDroppedCount;
+
+    private final Runnable mPostCallbackRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (mChoreographer == null) {
+                mChoreographer = Choreographer.getInstance();
+            }
+            mChoreographer.postFrameCallback(FramePacer.this);
+        }
+    };
+
+    /**
+     * @param glSurfaceView 渲染的GLSurfaceView
+     * @param refreshRate   屏幕刷新率，小于等于0时按60处理
+     */
+    public FramePacer(GLSurfaceView glSurfaceView, float refreshRate) {
+        mGLSurfaceView = glSurfaceView;
+        mVsyncPeriodNanos = (long) (1000000000L / (refreshRate > 0 ? refreshRate : DEFAULT_REFRESH_RATE));
+        setTargetFps(DEFAULT_TARGET_FPS);
+    }
+
+    /**
+     * 设置目标帧率，超过屏幕刷新率时按屏幕刷新率渲染
+     *
+     * @param fps 目标帧率
+     */
+    public void setTargetFps(int fps) {
+        mTargetIntervalNanos = 1000000000L / Math.max(1, fps);
+    }
+
+    public int getTargetFps() {
+        return (int) (1000000000L / mTargetIntervalNanos);
+    }
+
+    /**
+     * 有新的内容（相机、视频帧）需要渲染，多次调用在下一次渲染时合并
+     */
+    public void requestFrame() {
+        mPendingFrame = true;
+        scheduleCallback();
+    }
+
+    /**
+     * 开始按vsync请求渲染，在GLSurfaceView.onResume后调用
+     */
+    public void start() {
+        mStopped = false;
+        mRendering = false;
+        mPendingFrame = true;
+        scheduleCallback();
+    }
+
+    /**
+     * 停止请求渲染，在GLSurfaceView.onPause前调用
+     */
+    public void stop() {
+        mStopped = true;
+    }
+
+    /**
+     * 一帧渲染结束，在GL线程onDrawFrame的最后调用
+     *
+     * @param continuous 是否需要继续渲染下一帧（形象动画）
+     */
+    public void onFrameRendered(boolean continuous) {
+        mContinuous = continuous;
+        mRendering = false;
+        mRenderedCount++;
+        if (continuous || mPendingFrame) {
+            scheduleCallback();
+        }
+    }
+
+    private void scheduleCallback() {
+        if (mStopped || !mCallbackPosted.compareAndSet(false, true)) {
+            return;
+        }
+        if (mChoreographer != null) {
+            mChoreographer.postFrameCallback(this);
+        } else {
+            // Choreographer.getInstance需要在有Looper的线程中获取，第一次统一在主线程中注册
+            mMainHandler.post(mPostCallbackRunnable);
+        }
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        mCallbackPosted.set(false);
+        if (mStopped) {
+            return;
+        }
+        if (!mPendingFrame && !mContinuous) {
+            // 没有需要渲染的内容，不再注册回调，等待requestFrame
+            return;
+        }
+        if (mRendering) {
+            if (frameTimeNanos - mRenderRequestVsyncNanos < RENDER_TIMEOUT_FRAMES * mVsyncPeriodNanos) {
+                // 上一帧还在渲染，丢弃这次vsync，待渲染的内容留到之后的一帧
+                mDroppedCount++;
+                scheduleCallback();
+                return;
+            }
+            mRendering = false;
+        }
+        // 允许半个vsync的误差，避免vsync时间戳抖动导致多等一个vsync
+        if (frameTimeNanos - mLastRenderVsyncNanos < mTargetIntervalNanos - mVsyncPeriodNanos / 2) {
+            scheduleCallback();
+            return;
+        }
+        mLastRenderVsyncNanos = frameTimeNanos;
+        mRenderRequestVsyncNanos = frameTimeNanos;
+        mPendingFrame = false;
+        mRendering = true;
+        mGLSurfaceView.requestRender();
+    }
+
+    /**
+     * 已渲染的帧数
+     */
+    public long getRenderedCount() {
+        return mRenderedCount;
+    }
+
+    /**
+     * GL线程过载时丢弃的vsync数
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    public void logStatistics() {
+        Log.i("time", TAG + " target fps " + getTargetFps() + " rendered " + mRenderedCount + " dropped " + mDroppedCount);
+    }
+}
@@ -0,0 +1,236 @@
+package com.faceunity.pta_art.renderer;
+
+/**
+ * 画质档位策略
+ * <p>
+ * 帧耗时持续超出目标帧间隔或者温度过高时逐档降低画质，恢复后逐档升回：
+ * <ul>
+ * <li>TIER_HIGH：全部效果</li>
+ * <li>TIER_NO_FXAA：不渲染fxaa道具</li>
+ * <li>TIER_NO_SHADOW：再解绑平地阴影道具</li>
+ * <li>TIER_LOW：再降低相机预览尺寸，相机驱动的模式限制帧率（降低跟踪频率）</li>
+ * </ul>
+ * 档位达到asyncTrackingTier后，人脸驱动的模式把跟踪移出渲染线程（见AsyncFaceTracker）。
+ * <p>
+ * 每WINDOW_FRAMES帧计算一次平均帧耗时，连续degradeWindows个窗口超过目标帧间隔的degradeRatio时降一档，
+ * 连续restoreWindows个窗口低于restoreRatio并且温度已回落时升一档；每次温度检查超过thermalDegradeCelsius时降一档，
+ * 低于thermalRestoreCelsius才认为温度已回落。档位变化后丢弃一个窗口等待耗时稳定。
+ * <p>
+ * 只包含策略，不依赖Android与GL，可以直接用录制的耗时序列测试；所有方法在同一线程（GL线程）中调用。
+ * 阈值由Config提供，可以按机型配置（见assets/quality_tiers.json）。
+ */
+public class QualityGovernor {
+
+    public static final int TIER_HIGH = 0;
+    public static final int TIER_NO_FXAA = 1;
+    public static final int TIER_NO_SHADOW = 2;
+    public static final int TIER_LOW = 3;
+    private static final String[] TIER_NAMES = {"high", "noFxaa", "noShadow", "low"};
+
+    public static final int WINDOW_FRAMES = 60;
+    /**
+     * TIER_LOW的相机预览尺寸
+     */
+    public static final int LOW_TIER_PREVIEW_WIDTH = 960;
+    public static final int LOW_TIER_PREVIEW_HEIGHT = 540;
+    /**
+     * TIER_LOW时相机驱动的模式（每帧跟踪）的最高帧率
+     */
+    public static final int LOW_TIER_TRACKING_FPS = 20;
+
+    public static final String REASON_FRAME_TIME = "frameTime";
+    public static final String REASON_THERMAL = "thermal";
+    public static final String REASON_RECOVERED = "recovered";
+
+    /**
+     * 策略阈值
+     */
+    public static class Config {
+        // 允许降到的最低档位
+        public int maxTier = TIER_LOW;
+        // 初始档位
+        public int startTier = TIER_HIGH;
+        // 窗口平均帧耗时与目标帧间隔之比
+        public float degradeRatio = 1.0f;
+        public float restoreRatio = 0.6f;
+        public int degradeWindows = 2;
+        public int restoreWindows = 5;
+        // 电池温度（摄氏度）
+        public float thermalDegradeCelsius = 43f;
+        public float thermalRestoreCelsius = 39f;
+        // 达到该档位时人脸跟踪与渲染解耦，-1表示不解耦；
+        // 跟踪线程与GL线程同时调用SDK的线程安全还未在设备上验证，默认不解耦，验证后可以按机型在quality_tiers.json中开启
+        public int asyncTrackingTier = -1;
+
+        @Override
+        public String toString() {
+            return "maxTier " + maxTier + " startTier " + startTier + " degradeRatio " + degradeRatio
+                    + " restoreRatio " + restoreRatio + " thermal " + thermalDegradeCelsius + "/" + thermalRestoreCelsius
+                    + " asyncTrackingTier " + asyncTrackingTier;
+        }
+    }
+
+    private final Config mConfig;
+    private int mTier;
+    private long mFrameIntervalNanos;
+    private boolean isHot;
+
+    private long mWindowSum;
+    private int mWindowCount;
+    private int mDegradeWindows;
+    private int mRestoreWindows;
+    private int mSettleWindows;
+    private long mLastWindowMeanNanos;
+    private float mLastCelsius;
+    private String mLastReason = "";
+    private int mChangeCount;
+
+    public QualityGovernor(Config config) {
+        mConfig = config != null ? config : new Config();
+        mConfig.maxTier = clamp(mConfig.maxTier, TIER_HIGH, TIER_LOW);
+        mTier = clamp(mConfig.startTier, TIER_HIGH, mConfig.maxTier);
+        setTargetFps(FramePacer.DEFAULT_TARGET_FPS);
+    }
+
+    /**
+     * 设置目标帧率，阈值按目标帧间隔计算
+     */
+    public void setTargetFps(int fps) {
+        long interval = 1000000000L / Math.max(1, fps);
+        if (interval != mFrameIntervalNanos) {
+            mFrameIntervalNanos = interval;
+            resetWindow();
+        }
+    }
+
+    /**
+     * 记录一帧的耗时
+     *
+     * @param frameNanos 整帧耗时，小于等于0时忽略
+     * @return 档位是否变化
+     */
+    public boolean onFrame(long frameNanos) {
+        if (frameNanos <= 0) {
+            return false;
+        }
+        mWindowSum += frameNanos;
+        if (++mWindowCount < WINDOW_FRAMES) {
+            return false;
+        }
+        long mean = mWindowSum / mWindowCount;
+        mWindowSum = 0;
+        mWindowCount = 0;
+        mLastWindowMeanNanos = mean;
+        if (mSettleWindows > 0) {
+            mSettleWindows--;
+            return false;
+        }
+        if (mean > mFrameIntervalNanos * mConfig.degradeRatio) {
+            mRestoreWindows = 0;
+            if (++mDegradeWindows >= mConfig.degradeWindows) {
+                return changeTier(mTier + 1, REASON_FRAME_TIME);
+            }
+            return false;
+        }
+        mDegradeWindows = 0;
+        if (!isHot && mTier > TIER_HIGH && mean < mFrameIntervalNanos * mConfig.restoreRatio) {
+            if (++mRestoreWindows >= mConfig.restoreWindows) {
+                return changeTier(mTier - 1, REASON_RECOVERED);
+            }
+        } else {
+            mRestoreWindows = 0;
+        }
+        return false;
+    }
+
+    /**
+     * 记录一次温度检查，调用方定期（如每10秒）调用
+     *
+     * @param celsius 电池温度，小于等于0表示无法获取
+     * @return 档位是否变化
+     */
+    public boolean onThermal(float celsius) {
+        if (celsius <= 0) {
+            return false;
+        }
+        mLastCelsius = celsius;
+        if (celsius >= mConfig.thermalDegradeCelsius) {
+            isHot = true;
+            return changeTier(mTier + 1, REASON_THERMAL);
+        }
+        if (celsius <= mConfig.thermalRestoreCelsius) {
+            isHot = false;
+        }
+        return false;
+    }
+
+    private boolean changeTier(int tier, String reason) {
+        tier = clamp(tier, TIER_HIGH, mConfig.maxTier);
+        mDegradeWindows = 0;
+        mRestoreWindows = 0;
+        if (tier == mTier) {
+            return false;
+        }
+        mTier = tier;
+        mLastReason = reason;
+        mSettleWindows = 1;
+        mChangeCount++;
+        return true;
+    }
+
+    private void resetWindow() {
+        mWindowSum = 0;
+        mWindowCount = 0;
+        mDegradeWindows = 0;
+        mRestoreWindows = 0;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(value, max));
+    }
+
+    public int getTier() {
+        return mTier;
+    }
+
+    /**
+     * 最近一次档位变化的原因（REASON_*）
+     */
+    public String getLastReason() {
+        return mLastReason;
+    }
+
+    public int getChangeCount() {
+        return mChangeCount;
+    }
+
+    /**
+     * 在当前档位下限制模式的目标帧率
+     *
+     * @param targetFps  模式的目标帧率
+     * @param continuous 是否连续渲染，只有相机驱动（非连续渲染）的模式需要降低跟踪频率
+     */
+    public int limitFps(int targetFps, boolean continuous) {
+        if (mTier >= TIER_LOW && !continuous) {
+            return Math.min(targetFps, LOW_TIER_TRACKING_FPS);
+        }
+        return targetFps;
+    }
+
+    /**
+     * 当前档位下人脸跟踪是否与渲染解耦
+     */
+    public boolean isAsyncTracking() {
+        return mConfig.asyncTrackingTier >= 0 && mTier >= mConfig.asyncTrackingTier;
+    }
+
+    public static String getTierName(int tier) {
+        return TIER_NAMES[clamp(tier, TIER_HIGH, TIER_LOW)];
+    }
+
+    @Override
+    public String toString() {
+        return "QualityGovernor tier " + getTierName(mTier) + " reason " + mLastReason + " changes " + mChangeCount
+                + " window mean " + mLastWindowMeanNanos / 1000 + "us temperature " + mLastCelsius;
+    }
+}
@@ -0,0 +1,174 @@
+package com.faceunity.pta_art.renderer;
+
+/**
+ * 动态渲染分辨率策略
+ * <p>
+ * 根据每帧SDK渲染耗时（fuRenderBundles）调整输出分辨率的缩放档位：
+ * 每WINDOW_FRAMES帧计算一次平均耗时，超过目标帧间隔的HIGH_RATIO时降一档；
+ * 连续UP_WINDOWS个窗口低于LOW_RATIO，并且按面积估算升档后的耗时仍低于HIGH_RATIO * UP_MARGIN时升一档。
+ * 降档快、升档慢，档位变化后丢弃一个窗口等待耗时稳定，避免在两档之间来回切换。
+ * <p>
+ * 拍照时固定为原始分辨率（setPinned），固定期间的耗时不参与统计。
+ * 只包含策略，不依赖Android与GL，可以直接用录制的耗时序列测试；所有方法在同一线程（GL线程）中调用。
+ */
+public class ResolutionGovernor {
+
+    /**
+     * 分辨率缩放档位，第0档为原始分辨率
+     */
+    public static final float[] SCALES = {1f, 0.85f, 0.75f, 0.6f, 0.5f};
+    public static final int WINDOW_FRAMES = 30;
+    public static final float HIGH_RATIO = 0.75f;
+    public static final float LOW_RATIO = 0.45f;
+    public static final int UP_WINDOWS = 3;
+    public static final float UP_MARGIN = 0.8f;
+
+    private final int mMaxLevel;
+    private long mFrameIntervalNanos;
+    private int mLevel;
+    private boolean mPinned;
+
+    private long mWindowSum;
+    private int mWindowCount;
+    private int mLowWindows;
+    // 档位变化后需要丢弃的窗口数
+    private int mSettleWindows;
+    private long mLastWindowMeanNanos;
+    private int mChangeCount;
+
+    public ResolutionGovernor() {
+        this(SCALES.length - 1);
+    }
+
+    /**
+     * @param maxLevel 允许降到的最低档位（SCALES的下标）
+     */
+    public ResolutionGovernor(int maxLevel) {
+        mMaxLevel = Math.max(0, Math.min(maxLevel, SCALES.length - 1));
+        setTargetFps(FramePacer.DEFAULT_TARGET_FPS);
+    }
+
+    /**
+     * 设置目标帧率，阈值按目标帧间隔计算
+     */
+    public void setTargetFps(int fps) {
+        long interval = 1000000000L / Math.max(1, fps);
+        if (interval != mFrameIntervalNanos) {
+            mFrameIntervalNanos = interval;
+            resetWindow();
+        }
+    }
+
+    /**
+     * 固定为原始分辨率（拍照），取消后从之前的档位继续
+     */
+    public void setPinned(boolean pinned) {
+        if (mPinned != pinned) {
+            mPinned = pinned;
+            resetWindow();
+        }
+    }
+
+    /**
+     * 记录一帧的SDK渲染耗时
+     *
+     * @param sdkNanos SDK渲染耗时，小于等于0时忽略
+     * @return 档位是否变化
+     */
+    public boolean onFrame(long sdkNanos) {
+        if (mPinned || sdkNanos <= 0) {
+            return false;
+        }
+        mWindowSum += sdkNanos;
+        if (++mWindowCount < WINDOW_FRAMES) {
+            return false;
+        }
+        long mean = mWindowSum / mWindowCount;
+        mWindowSum = 0;
+        mWindowCount = 0;
+        mLastWindowMeanNanos = mean;
+        if (mSettleWindows > 0) {
+            mSettleWindows--;
+            return false;
+        }
+        if (mean > mFrameIntervalNanos * HIGH_RATIO) {
+            mLowWindows = 0;
+            return changeLevel(mLevel + 1);
+        }
+        if (mLevel > 0 && mean < mFrameIntervalNanos * LOW_RATIO) {
+            // 耗时近似与像素数成正比
+            float ratio = SCALES[mLevel - 1] / SCALES[mLevel];
+            if (mean * ratio * ratio < mFrameIntervalNanos * HIGH_RATIO * UP_MARGIN && ++mLowWindows >= UP_WINDOWS) {
+                mLowWindows = 0;
+                return changeLevel(mLevel - 1);
+            }
+        } else {
+            mLowWindows = 0;
+        }
+        return false;
+    }
+
+    private boolean changeLevel(int level) {
+        level = Math.max(0, Math.min(level, mMaxLevel));
+        if (level == mLevel) {
+            return false;
+        }
+        mLevel = level;
+        mSettleWindows = 1;
+        mChangeCount++;
+        return true;
+    }
+
+    private void resetWindow() {
+        mWindowSum = 0;
+        mWindowCount = 0;
+        mLowWindows = 0;
+    }
+
+    /**
+     * 恢复到原始分辨率并清空统计
+     */
+    public void reset() {
+        resetWindow();
+        mLevel = 0;
+        mSettleWindows = 0;
+        mLastWindowMeanNanos = 0;
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * 当前使用的缩放比例，固定时为1
+     */
+    public float getScale() {
+        return mPinned ? 1f : SCALES[mLevel];
+    }
+
+    /**
+     * 按当前缩放比例计算输出尺寸，取偶数
+     *
+     * @param size 原始尺寸
+     */
+    public int scale(int size) {
+        if (mPinned || mLevel == 0) {
+            return size;
+        }
+        return Math.max(2, (int) (size * SCALES[mLevel]) & ~1);
+    }
+
+    public long getLastWindowMeanNanos() {
+        return mLastWindowMeanNanos;
+    }
+
+    public int getChangeCount() {
+        return mChangeCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ResolutionGovernor level " + mLevel + " scale " + getScale() + " changes " + mChangeCount
+                + " window mean " + mLastWindowMeanNanos / 1000 + "us";
+    }
+}
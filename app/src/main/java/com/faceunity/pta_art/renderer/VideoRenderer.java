@@ -9,6 +9,7 @@ import com.faceunity.pta_art.R;
 import com.faceunity.pta_art.gles.ProgramLandmarks;
 import com.faceunity.pta_art.gles.core.GlUtil;
 import com.faceunity.pta_art.gles.yuv.ProgramYUV;
+import com.faceunity.pta_art.utils.FrameTracer;
 import com.faceunity.pta_art.utils.SmallCameraPositionManager;
 import com.faceunity.pta_art.utils.mediacoder.AvcDecoder;
 
@@ -25,6 +26,7 @@ public class VideoRenderer implements AvcDecoder.DecodeListener {
     private int mGLSurfaceViewWidth, mGLSurfaceViewHeight;
 
     private GLSurfaceView mGLSurfaceView;
+    private final FramePacer mFramePacer;
     protected int mViewWidth = 720;
     protected int mViewHeight = 1280;
     protected int mVideoWidth = 720;
@@ -45,8 +47,9 @@ public class VideoRenderer implements AvcDecoder.DecodeListener {
     private ProgramLandmarks mProgramLandmarks;
     private boolean isShowLandmarks = true;//是否显示点位
 
-    public VideoRenderer(GLSurfaceView glSurfaceView) {
+    public VideoRenderer(GLSurfaceView glSurfaceView, FramePacer framePacer) {
         mGLSurfaceView = glSurfaceView;
+        mFramePacer = framePacer;
         avcDecoder = new AvcDecoder();
         temp20 = mGLSurfaceView.getContext().getResources().getDimensionPixelSize(R.dimen.x20);
         temp180 = mGLSurfaceView.getContext().getResources().getDimensionPixelSize(R.dimen.x180);
@@ -116,7 +119,7 @@ public class VideoRenderer implements AvcDecoder.DecodeListener {
         }
         System.arraycopy(data, 0, mVideoNV21Byte, 0, data.length);
         if (!isNeedStopDrawFrame) {
-            mGLSurfaceView.requestRender();
+            mFramePacer.requestFrame();
         }
     }
 
@@ -198,8 +201,13 @@ public class VideoRenderer implements AvcDecoder.DecodeListener {
             return;
         }
         cropY = mSmallCameraPositionManager.getStartY();
-        programYUV.feedDataNV21(img);
-        programYUV.drawNV21(cropX, cropY, mViewWidth, mViewHeight, mvp);
+        FrameTracer.begin("VideoRenderer.drawVideo");
+        try {
+            programYUV.feedDataNV21(img);
+            programYUV.drawNV21(cropX, cropY, mViewWidth, mViewHeight, mvp);
+        } finally {
+            FrameTracer.end();
+        }
         if (isShowLandmarks) {
             mProgramLandmarks.drawFrame(cropX, cropY, mViewWidth, mViewHeight);
         }
@@ -0,0 +1,470 @@
+package com.faceunity.pta_art.renderer.camera;
+
+import android.content.Context;
+import android.graphics.ImageFormat;
+import android.graphics.SurfaceTexture;
+import android.hardware.Camera;
+import android.hardware.camera2.CameraAccessException;
+import android.hardware.camera2.CameraCaptureSession;
+import android.hardware.camera2.CameraCharacteristics;
+import android.hardware.camera2.CameraDevice;
+import android.hardware.camera2.CameraManager;
+import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureRequest;
+import android.hardware.camera2.params.StreamConfigurationMap;
+import android.media.Image;
+import android.media.ImageReader;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.Range;
+import android.util.Size;
+import android.view.Surface;
+
+import com.faceunity.pta_art.utils.yuv.ImageYuvReader;
+import com.faceunity.pta_art.utils.yuv.YuvUtil;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Camera2采集
+ * <p>
+ * 一个会话同时输出到预览SurfaceTexture（OES纹理）与ImageReader(YUV_420_888)：
+ * <ul>
+ * <li>ImageReader只保留最新的一帧（acquireLatestImage），按rowStride/pixelStride拷贝为NV21后立即close，
+ * 不会因为使用方处理慢而阻塞相机</li>
+ * <li>NV21写入BUFFER_COUNT个循环使用的CameraFrame，使用方没有归还时丢弃新的帧并计数</li>
+ * <li>采集时间使用Image.getTimestamp（传感器曝光开始时间），换算到System.nanoTime的时间基准</li>
+ * </ul>
+ * 相机回调与拷贝都在独立的相机线程中执行。
+ */
+public class Camera2Capture implements CameraCapture, CameraFrame.Owner {
+    private static final String TAG = Camera2Capture.class.getSimpleName();
+
+    private static final int MAX_IMAGES = 3;
+    private static final int BUFFER_COUNT = 3;
+    private static final int TARGET_FPS = 30;
+    private static final long CLOSE_TIMEOUT_MS = 1000;
+    /**
+     * 时间戳来源未知时，与到达时间相差在该范围内才认为是System.nanoTime的时间基准
+     */
+    private static final long MAX_TIMESTAMP_DELAY_NS = 1000000000L;
+
+    private final Context mContext;
+    private final Callback mCallback;
+    private HandlerThread mCameraThread;
+    private Handler mCameraHandler;
+    private volatile boolean isClosed;
+
+    private int mFacing;
+    private int mOrientation;
+    private int mWidth;
+    private int mHeight;
+    private Range<Integer> mFpsRange;
+    private boolean isRealtimeTimestamp;
+    private CameraFrame[] mFrames;
+    private volatile long mDroppedCount;
+
+    // 以下只在相机线程访问
+    private CameraDevice mCameraDevice;
+    private CameraCaptureSession mCaptureSession;
+    private ImageReader mImageReader;
+    private SurfaceTexture mSurfaceTexture;
+    private Surface mPreviewSurface;
+    private long mSequence;
+    // 只在相机线程使用
+    private final ImageYuvReader mYuvReader = new ImageYuvReader();
+
+    public Camera2Capture(Context context, Callback callback) {
+        mContext = context.getApplicationContext();
+        mCallback = callback;
+    }
+
+    /**
+     * 该摄像头是否可以使用Camera2（硬件级别不是LEGACY）
+     *
+     * @param facing Camera.CameraInfo.CAMERA_FACING_*
+     */
+    public static boolean isSupported(Context context, int facing) {
+        try {
+            CameraManager manager = (CameraManager) context.getSystemService(Context.CAMERA_SERVICE);
+            String cameraId = findCameraId(manager, facing);
+            if (cameraId == null) {
+                return false;
+            }
+            Integer level = manager.getCameraCharacteristics(cameraId).get(CameraCharacteristics.INFO_SUPPORTED_HARDWARE_LEVEL);
+            return level != null && level != CameraMetadata.INFO_SUPPORTED_HARDWARE_LEVEL_LEGACY;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String findCameraId(CameraManager manager, int facing) throws CameraAccessException {
+        int lensFacing = facing == Camera.CameraInfo.CAMERA_FACING_FRONT ?
+                CameraMetadata.LENS_FACING_FRONT : CameraMetadata.LENS_FACING_BACK;
+        for (String cameraId : manager.getCameraIdList()) {
+            Integer value = manager.getCameraCharacteristics(cameraId).get(CameraCharacteristics.LENS_FACING);
+            if (value != null && value == lensFacing) {
+                return cameraId;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void open(int facing, int width, int height) throws Exception {
+        CameraManager manager = (CameraManager) mContext.getSystemService(Context.CAMERA_SERVICE);
+        mFacing = facing;
+        String cameraId = findCameraId(manager, facing);
+        if (cameraId == null) {
+            mFacing = facing == Camera.CameraInfo.CAMERA_FACING_FRONT ?
+                    Camera.CameraInfo.CAMERA_FACING_BACK : Camera.CameraInfo.CAMERA_FACING_FRONT;
+            cameraId = findCameraId(manager, mFacing);
+        }
+        if (cameraId == null) {
+            throw new RuntimeException("No cameras");
+        }
+        CameraCharacteristics characteristics = manager.getCameraCharacteristics(cameraId);
+        Integer orientation = characteristics.get(CameraCharacteristics.SENSOR_ORIENTATION);
+        mOrientation = orientation == null ? 0 : orientation;
+        Integer timestampSource = characteristics.get(CameraCharacteristics.SENSOR_INFO_TIMESTAMP_SOURCE);
+        isRealtimeTimestamp = timestampSource != null
+                && timestampSource == CameraMetadata.SENSOR_INFO_TIMESTAMP_SOURCE_REALTIME;
+        mFpsRange = chooseFpsRange(characteristics.get(CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES));
+
+        StreamConfigurationMap map = characteristics.get(CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+        if (map == null) {
+            throw new RuntimeException("No stream configuration");
+        }
+        Size size = choosePreviewSize(map, width, height);
+        mWidth = size.getWidth();
+        mHeight = size.getHeight();
+        mFrames = new CameraFrame[BUFFER_COUNT];
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            mFrames[i] = new CameraFrame(this, mWidth, mHeight);
+        }
+
+        mCameraThread = new HandlerThread("Camera2Capture");
+        mCameraThread.start();
+        mCameraHandler = new Handler(mCameraThread.getLooper());
+        mImageReader = ImageReader.newInstance(mWidth, mHeight, ImageFormat.YUV_420_888, MAX_IMAGES);
+        mImageReader.setOnImageAvailableListener(mOnImageAvailableListener, mCameraHandler);
+        manager.openCamera(cameraId, mStateCallback, mCameraHandler);
+    }
+
+    /**
+     * 预览纹理与ImageReader都支持的尺寸：优先期望的尺寸，其次默认尺寸，最后选择同比例中面积最接近的
+     */
+    private static Size choosePreviewSize(StreamConfigurationMap map, int width, int height) {
+        Size[] yuvSizes = map.getOutputSizes(ImageFormat.YUV_420_888);
+        Size[] textureSizes = map.getOutputSizes(SurfaceTexture.class);
+        if (yuvSizes == null || textureSizes == null) {
+            throw new RuntimeException("No preview sizes");
+        }
+        if (containsSize(yuvSizes, textureSizes, width, height)) {
+            return new Size(width, height);
+        }
+        Log.e(TAG, "Unable to set preview size to " + width + "x" + height);
+        if (containsSize(yuvSizes, textureSizes, DEFAULT_PREVIEW_WIDTH, DEFAULT_PREVIEW_HEIGHT)) {
+            return new Size(DEFAULT_PREVIEW_WIDTH, DEFAULT_PREVIEW_HEIGHT);
+        }
+        Size best = null;
+        long bestDiff = Long.MAX_VALUE;
+        long area = (long) DEFAULT_PREVIEW_WIDTH * DEFAULT_PREVIEW_HEIGHT;
+        for (Size size : yuvSizes) {
+            if (size.getWidth() * DEFAULT_PREVIEW_HEIGHT != size.getHeight() * DEFAULT_PREVIEW_WIDTH
+                    || !containsSize(textureSizes, textureSizes, size.getWidth(), size.getHeight())) {
+                continue;
+            }
+            long diff = Math.abs((long) size.getWidth() * size.getHeight() - area);
+            if (diff < bestDiff) {
+                bestDiff = diff;
+                best = size;
+            }
+        }
+        if (best == null) {
+            throw new RuntimeException("No 16:9 preview size");
+        }
+        return best;
+    }
+
+    private static boolean containsSize(Size[] first, Size[] second, int width, int height) {
+        boolean inFirst = false;
+        for (Size size : first) {
+            if (size.getWidth() == width && size.getHeight() == height) {
+                inFirst = true;
+                break;
+            }
+        }
+        if (!inFirst) {
+            return false;
+        }
+        for (Size size : second) {
+            if (size.getWidth() == width && size.getHeight() == height) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 上限为TARGET_FPS的范围中下限最高的（帧率最稳定），没有时使用默认值
+     */
+    private static Range<Integer> chooseFpsRange(Range<Integer>[] ranges) {
+        if (ranges == null) {
+            return null;
+        }
+        Range<Integer> best = null;
+        for (Range<Integer> range : ranges) {
+            if (range.getUpper() == TARGET_FPS && (best == null || range.getLower() > best.getLower())) {
+                best = range;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public void startPreview(final SurfaceTexture surfaceTexture) {
+        Handler handler = mCameraHandler;
+        if (surfaceTexture == null || handler == null) {
+            return;
+        }
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                mSurfaceTexture = surfaceTexture;
+                createCaptureSession();
+            }
+        });
+    }
+
+    private final CameraDevice.StateCallback mStateCallback = new CameraDevice.StateCallback() {
+        @Override
+        public void onOpened(CameraDevice camera) {
+            if (isClosed) {
+                camera.close();
+                return;
+            }
+            mCameraDevice = camera;
+            createCaptureSession();
+        }
+
+        @Override
+        public void onDisconnected(CameraDevice camera) {
+            camera.close();
+            if (camera == mCameraDevice) {
+                mCameraDevice = null;
+            }
+            notifyError("camera disconnected");
+        }
+
+        @Override
+        public void onError(CameraDevice camera, int error) {
+            camera.close();
+            if (camera == mCameraDevice) {
+                mCameraDevice = null;
+            }
+            notifyError("camera error " + error);
+        }
+    };
+
+    /**
+     * 相机已打开并且有预览纹理时创建会话，在相机线程调用
+     */
+    private void createCaptureSession() {
+        if (isClosed || mCameraDevice == null || mSurfaceTexture == null) {
+            return;
+        }
+        if (mCaptureSession != null) {
+            mCaptureSession.close();
+            mCaptureSession = null;
+        }
+        if (mPreviewSurface != null) {
+            mPreviewSurface.release();
+        }
+        mSurfaceTexture.setDefaultBufferSize(mWidth, mHeight);
+        final Surface previewSurface = mPreviewSurface = new Surface(mSurfaceTexture);
+        try {
+            mCameraDevice.createCaptureSession(Arrays.asList(previewSurface, mImageReader.getSurface()),
+                    new CameraCaptureSession.StateCallback() {
+                        @Override
+                        public void onConfigured(CameraCaptureSession session) {
+                            if (isClosed || mCameraDevice == null || previewSurface != mPreviewSurface) {
+                                // 已关闭或者已经换了新的预览纹理
+                                session.close();
+                                return;
+                            }
+                            mCaptureSession = session;
+                            startRepeatingRequest(previewSurface);
+                        }
+
+                        @Override
+                        public void onConfigureFailed(CameraCaptureSession session) {
+                            if (previewSurface == mPreviewSurface) {
+                                notifyError("configure session failed");
+                            }
+                        }
+                    }, mCameraHandler);
+        } catch (CameraAccessException | IllegalArgumentException | IllegalStateException e) {
+            notifyError("create session failed " + e.getMessage());
+        }
+    }
+
+    private void startRepeatingRequest(Surface previewSurface) {
+        try {
+            CaptureRequest.Builder builder = mCameraDevice.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+            builder.addTarget(previewSurface);
+            builder.addTarget(mImageReader.getSurface());
+            builder.set(CaptureRequest.CONTROL_AF_MODE, CaptureRequest.CONTROL_AF_MODE_CONTINUOUS_VIDEO);
+            if (mFpsRange != null) {
+                builder.set(CaptureRequest.CONTROL_AE_TARGET_FPS_RANGE, mFpsRange);
+            }
+            mCaptureSession.setRepeatingRequest(builder.build(), null, mCameraHandler);
+        } catch (CameraAccessException | IllegalStateException e) {
+            notifyError("start preview failed " + e.getMessage());
+        }
+    }
+
+    private void notifyError(String message) {
+        Log.e(TAG, message);
+        if (!isClosed) {
+            mCallback.onError(this, message);
+        }
+    }
+
+    private final ImageReader.OnImageAvailableListener mOnImageAvailableListener = new ImageReader.OnImageAvailableListener() {
+        @Override
+        public void onImageAvailable(ImageReader reader) {
+            // 只处理最新的一帧，积压的旧帧直接丢弃
+            Image image = reader.acquireLatestImage();
+            if (image == null) {
+                return;
+            }
+            try {
+                if (isClosed) {
+                    return;
+                }
+                long now = System.nanoTime();
+                CameraFrame frame = acquireFrame();
+                if (frame == null) {
+                    mDroppedCount++;
+                    return;
+                }
+                mYuvReader.read(image, YuvUtil.FORMAT_NV21, frame.data);
+                frame.sequence = ++mSequence;
+                frame.arrivalTimeNanos = now;
+                frame.captureTimeNanos = toNanoTime(image.getTimestamp(), now);
+                mCallback.onFrame(frame);
+            } finally {
+                image.close();
+            }
+        }
+    };
+
+    private CameraFrame acquireFrame() {
+        for (CameraFrame frame : mFrames) {
+            if (frame.acquire()) {
+                return frame;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 传感器时间戳换算到System.nanoTime的时间基准
+     *
+     * @param timestamp Image.getTimestamp
+     * @param arrival   到达时间，无法换算时使用
+     */
+    private long toNanoTime(long timestamp, long arrival) {
+        long time = timestamp;
+        if (isRealtimeTimestamp) {
+            // REALTIME为elapsedRealtimeNanos的时间基准（包括休眠时间）
+            time = timestamp - (SystemClock.elapsedRealtimeNanos() - System.nanoTime());
+        }
+        // 来源未知时大多数设备也是System.nanoTime的时间基准，超出合理范围则使用到达时间
+        if (time <= 0 || time > arrival || arrival - time > MAX_TIMESTAMP_DELAY_NS) {
+            return arrival;
+        }
+        return time;
+    }
+
+    @Override
+    public void recycle(CameraFrame frame) {
+        // 归还后acquireFrame即可再次使用，不需要额外处理
+    }
+
+    @Override
+    public void close() {
+        isClosed = true;
+        Handler handler = mCameraHandler;
+        if (handler == null) {
+            return;
+        }
+        final CountDownLatch count = new CountDownLatch(1);
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (mCaptureSession != null) {
+                    mCaptureSession.close();
+                    mCaptureSession = null;
+                }
+                if (mCameraDevice != null) {
+                    mCameraDevice.close();
+                    mCameraDevice = null;
+                }
+                if (mImageReader != null) {
+                    mImageReader.close();
+                    mImageReader = null;
+                }
+                if (mPreviewSurface != null) {
+                    mPreviewSurface.release();
+                    mPreviewSurface = null;
+                }
+                mSurfaceTexture = null;
+                count.countDown();
+            }
+        });
+        try {
+            // 等待相机关闭后再返回，避免紧接着打开另一个摄像头失败
+            count.await(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+        }
+        mCameraThread.quitSafely();
+        mCameraHandler = null;
+    }
+
+    @Override
+    public int getFacing() {
+        return mFacing;
+    }
+
+    @Override
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    @Override
+    public String getName() {
+        return TAG;
+    }
+}
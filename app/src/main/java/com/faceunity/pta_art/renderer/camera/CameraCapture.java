@@ -0,0 +1,80 @@
+package com.faceunity.pta_art.renderer.camera;
+
+import android.graphics.SurfaceTexture;
+
+/**
+ * 相机采集
+ * <p>
+ * 同时输出两路数据：预览纹理（startPreview传入的SurfaceTexture，OES纹理）与NV21的CameraFrame（Callback.onFrame）。
+ * 前后摄像头统一使用Camera.CameraInfo.CAMERA_FACING_*表示。
+ * <p>
+ * 实现：
+ * <ul>
+ * <li>Camera2Capture：Camera2 + ImageReader(YUV_420_888)，带传感器时间戳，硬件级别不是LEGACY时优先使用</li>
+ * <li>LegacyCameraCapture：Camera1 + setPreviewCallbackWithBuffer，作为兼容方案</li>
+ * </ul>
+ * open、close在主线程调用，startPreview可以在任意线程（如GL线程）调用。
+ */
+public interface CameraCapture {
+    /**
+     * 期望的预览尺寸不支持时使用的尺寸
+     */
+    int DEFAULT_PREVIEW_WIDTH = 1280;
+    int DEFAULT_PREVIEW_HEIGHT = 720;
+
+    interface Callback {
+        /**
+         * 新的一帧数据，在采集线程回调；使用完毕后必须调用frame.release
+         */
+        void onFrame(CameraFrame frame);
+
+        /**
+         * 相机打开或预览失败（异步），在采集线程回调
+         *
+         * @param capture 出错的采集端
+         * @param message 错误信息
+         */
+        void onError(CameraCapture capture, String message);
+    }
+
+    /**
+     * 打开相机并确定预览尺寸，方向、尺寸在返回后可以查询
+     *
+     * @param facing 前后摄像头，Camera.CameraInfo.CAMERA_FACING_*，不存在时使用另一个
+     * @param width  期望的预览宽（横屏方向），不支持时使用DEFAULT_PREVIEW_WIDTH
+     * @param height 期望的预览高，不支持时使用DEFAULT_PREVIEW_HEIGHT
+     * @throws Exception 无法打开相机
+     */
+    void open(int facing, int width, int height) throws Exception;
+
+    /**
+     * 开始预览，surfaceTexture在GL线程中创建，open之前或之后调用都可以
+     */
+    void startPreview(SurfaceTexture surfaceTexture);
+
+    /**
+     * 关闭相机，之后不再回调onFrame；已经交出的CameraFrame仍然可以使用和release
+     */
+    void close();
+
+    /**
+     * 实际打开的摄像头，Camera.CameraInfo.CAMERA_FACING_*
+     */
+    int getFacing();
+
+    /**
+     * 传感器方向
+     */
+    int getOrientation();
+
+    int getWidth();
+
+    int getHeight();
+
+    /**
+     * 因为没有空闲buffer而丢弃的帧数
+     */
+    long getDroppedCount();
+
+    String getName();
+}
@@ -0,0 +1,72 @@
+package com.faceunity.pta_art.renderer.camera;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 一帧相机数据（NV21）
+ * <p>
+ * data由采集端预先分配并循环使用：采集端写入后通过Callback.onFrame交给使用方，
+ * 使用方用完后必须调用release归还，归还之前采集端不会再写入该buffer；没有空闲buffer时采集端丢弃新的帧。
+ * <p>
+ * 时间戳统一为System.nanoTime的时间基准，可以直接与渲染线程的时间比较。
+ */
+public class CameraFrame {
+
+    interface Owner {
+        /**
+         * 使用方归还buffer
+         */
+        void recycle(CameraFrame frame);
+    }
+
+    /**
+     * NV21数据，长度为width * height * 3 / 2
+     */
+    public final byte[] data;
+    public final int width;
+    public final int height;
+    /**
+     * 帧序号，每个采集端从1开始递增
+     */
+    public long sequence;
+    /**
+     * 采集时间：传感器曝光时间戳（换算到System.nanoTime），无法获取时为到达时间
+     */
+    public long captureTimeNanos;
+    /**
+     * 数据到达应用（回调）的时间
+     */
+    public long arrivalTimeNanos;
+
+    private final Owner mOwner;
+    private final AtomicBoolean isInUse = new AtomicBoolean(false);
+
+    CameraFrame(Owner owner, int width, int height) {
+        mOwner = owner;
+        this.width = width;
+        this.height = height;
+        data = new byte[width * height * 3 / 2];
+    }
+
+    /**
+     * 采集端占用buffer准备写入
+     *
+     * @return false表示使用方还没有归还
+     */
+    boolean acquire() {
+        return isInUse.compareAndSet(false, true);
+    }
+
+    boolean isInUse() {
+        return isInUse.get();
+    }
+
+    /**
+     * 使用完毕，归还给采集端；重复调用只有第一次有效
+     */
+    public void release() {
+        if (isInUse.compareAndSet(true, false)) {
+            mOwner.recycle(this);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.faceunity.pta_art.renderer.camera;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 相机帧交换
+ * <p>
+ * 采集线程通过offer放入最新的帧，GL线程通过acquire取出：
+ * <ul>
+ * <li>只保留一个待渲染的帧，offer时原子替换，还没有被取出的旧帧直接归还并计为丢弃</li>
+ * <li>GL线程取出的帧在下一次取到新帧（或clear后的acquire、releaseCurrent）时才归还，
+ * 保证fuRotateImage读取期间采集端不会写入</li>
+ * <li>取出新帧时计算帧龄（距采集时间），到达后超过lateThreshold才被取出的帧计为延迟</li>
+ * </ul>
+ * 采集端最多同时被占用两个buffer（待渲染、渲染中），因此采集端至少需要三个buffer才不会阻塞。
+ */
+public class FrameExchanger {
+
+    public static final long DEFAULT_LATE_THRESHOLD_NS = 1000000000L / 30;
+
+    private final AtomicReference<CameraFrame> mPending = new AtomicReference<>();
+    private final AtomicInteger mGeneration = new AtomicInteger();
+    private final AtomicLong mOfferedCount = new AtomicLong();
+    private final AtomicLong mDroppedCount = new AtomicLong();
+    private volatile long mLateThresholdNanos = DEFAULT_LATE_THRESHOLD_NS;
+
+    // 以下只在GL线程访问
+    private CameraFrame mCurrent;
+    private int mCurrentGeneration;
+    private boolean isNewFrame;
+    private boolean isLate;
+    private long mDroppedAtLastAcquire;
+    private int mDroppedSinceLastAcquire;
+
+    private volatile long mAcquiredCount;
+    private volatile long mLateCount;
+    private volatile long mLastAgeNanos;
+
+    /**
+     * 放入最新的帧，在采集线程调用；之后帧的所有权属于FrameExchanger
+     */
+    public void offer(CameraFrame frame) {
+        mOfferedCount.incrementAndGet();
+        CameraFrame stale = mPending.getAndSet(frame);
+        if (stale != null) {
+            mDroppedCount.incrementAndGet();
+            stale.release();
+        }
+    }
+
+    /**
+     * 取出最新的帧，在GL线程调用；没有新的帧时返回上一次取出的帧，之前取出的帧在取到新帧时归还
+     *
+     * @return clear之后还没有新的帧时返回null
+     */
+    public CameraFrame acquire() {
+        isNewFrame = false;
+        int generation = mGeneration.get();
+        if (generation != mCurrentGeneration) {
+            mCurrentGeneration = generation;
+            releaseCurrent();
+        }
+        CameraFrame frame = mPending.getAndSet(null);
+        if (frame == null) {
+            return mCurrent;
+        }
+        releaseCurrent();
+        mCurrent = frame;
+        isNewFrame = true;
+
+        long now = System.nanoTime();
+        mLastAgeNanos = now - frame.captureTimeNanos;
+        isLate = now - frame.arrivalTimeNanos > mLateThresholdNanos;
+        if (isLate) {
+            mLateCount++;
+        }
+        mAcquiredCount++;
+        long dropped = mDroppedCount.get();
+        mDroppedSinceLastAcquire = (int) (dropped - mDroppedAtLastAcquire);
+        mDroppedAtLastAcquire = dropped;
+        return frame;
+    }
+
+    /**
+     * 最近一次acquire是否取到了新的帧
+     */
+    public boolean isNewFrame() {
+        return isNewFrame;
+    }
+
+    /**
+     * 最近一次取到的新帧是否延迟
+     */
+    public boolean isLate() {
+        return isLate;
+    }
+
+    /**
+     * 最近一次取到新帧之前丢弃的帧数
+     */
+    public int getDroppedSinceLastAcquire() {
+        return mDroppedSinceLastAcquire;
+    }
+
+    /**
+     * 归还GL线程正在使用的帧，在GL线程调用（如GL环境销毁时）
+     */
+    public void releaseCurrent() {
+        if (mCurrent != null) {
+            mCurrent.release();
+            mCurrent = null;
+        }
+    }
+
+    /**
+     * 清空待渲染的帧（如关闭相机），可以在任意线程调用；GL线程正在使用的帧在下一次acquire时归还
+     */
+    public void clear() {
+        mGeneration.incrementAndGet();
+        CameraFrame pending = mPending.getAndSet(null);
+        if (pending != null) {
+            pending.release();
+        }
+    }
+
+    /**
+     * 帧到达后超过该时间才被取出计为延迟，一般为一个渲染间隔
+     */
+    public void setLateThresholdNanos(long nanos) {
+        mLateThresholdNanos = nanos;
+    }
+
+    public long getOfferedCount() {
+        return mOfferedCount.get();
+    }
+
+    /**
+     * 被更新的帧替换、没有渲染就丢弃的帧数
+     */
+    public long getDroppedCount() {
+        return mDroppedCount.get();
+    }
+
+    public long getAcquiredCount() {
+        return mAcquiredCount;
+    }
+
+    public long getLateCount() {
+        return mLateCount;
+    }
+
+    /**
+     * 最近一次取到的新帧的帧龄（纳秒）
+     */
+    public long getLastAgeNanos() {
+        return mLastAgeNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameExchanger offered " + getOfferedCount() + " acquired " + mAcquiredCount
+                + " dropped " + getDroppedCount() + " late " + mLateCount + " last age " + mLastAgeNanos / 1000 + "us";
+    }
+}
@@ -0,0 +1,193 @@
+package com.faceunity.pta_art.renderer.camera;
+
+import android.app.Activity;
+import android.graphics.SurfaceTexture;
+import android.hardware.Camera;
+
+import com.faceunity.pta_art.utils.CameraUtils;
+
+/**
+ * Camera1采集
+ * <p>
+ * 使用setPreviewCallbackWithBuffer，BUFFER_COUNT个CameraFrame的data作为回调buffer：
+ * 回调时交给使用方，release时再addCallbackBuffer，使用方持有期间相机不会写入。
+ * Camera1没有传感器时间戳，采集时间使用回调到达的时间。
+ */
+@SuppressWarnings("deprecation")
+public class LegacyCameraCapture implements CameraCapture, Camera.PreviewCallback, CameraFrame.Owner {
+    private static final String TAG = LegacyCameraCapture.class.getSimpleName();
+
+    private static final int BUFFER_COUNT = 3;
+
+    private final Activity mActivity;
+    private final Callback mCallback;
+    private final Object mLock = new Object();
+    private Camera mCamera;
+    private CameraFrame[] mFrames;
+    private int mFacing;
+    private int mOrientation;
+    private int mWidth;
+    private int mHeight;
+    private long mSequence;
+
+    public LegacyCameraCapture(Activity activity, Callback callback) {
+        mActivity = activity;
+        mCallback = callback;
+    }
+
+    @Override
+    public void open(int facing, int width, int height) throws Exception {
+        synchronized (mLock) {
+            Camera.CameraInfo info = new Camera.CameraInfo();
+            int cameraId = 0;
+            int numCameras = Camera.getNumberOfCameras();
+            for (int i = 0; i < numCameras; i++) {
+                Camera.getCameraInfo(i, info);
+                if (info.facing == facing) {
+                    cameraId = i;
+                    mCamera = Camera.open(i);
+                    mFacing = facing;
+                    break;
+                }
+            }
+            if (mCamera == null) {
+                cameraId = Camera.CameraInfo.CAMERA_FACING_BACK;
+                Camera.getCameraInfo(cameraId, info);
+                mCamera = Camera.open(cameraId);
+                mFacing = cameraId;
+            }
+            if (mCamera == null) {
+                throw new RuntimeException("No cameras");
+            }
+
+            mOrientation = CameraUtils.getCameraOrientation(cameraId);
+            CameraUtils.setCameraDisplayOrientation(mActivity, cameraId, mCamera);
+
+            Camera.Parameters parameters = mCamera.getParameters();
+            CameraUtils.setFocusModes(parameters);
+            if (!CameraUtils.hasPreviewSize(parameters, width, height)) {
+                width = DEFAULT_PREVIEW_WIDTH;
+                height = DEFAULT_PREVIEW_HEIGHT;
+            }
+            int[] size = CameraUtils.choosePreviewSize(parameters, width, height);
+            mWidth = size[0];
+            mHeight = size[1];
+            mCamera.setParameters(parameters);
+
+            mFrames = new CameraFrame[BUFFER_COUNT];
+            for (int i = 0; i < BUFFER_COUNT; i++) {
+                mFrames[i] = new CameraFrame(this, mWidth, mHeight);
+            }
+        }
+    }
+
+    @Override
+    public void startPreview(SurfaceTexture surfaceTexture) {
+        if (surfaceTexture == null) {
+            return;
+        }
+        try {
+            synchronized (mLock) {
+                if (mCamera == null) {
+                    return;
+                }
+                mCamera.stopPreview();
+                // 清空之前排队的buffer，避免同一个buffer重复排队
+                mCamera.setPreviewCallbackWithBuffer(null);
+                mCamera.setPreviewCallbackWithBuffer(this);
+                for (CameraFrame frame : mFrames) {
+                    if (!frame.isInUse()) {
+                        mCamera.addCallbackBuffer(frame.data);
+                    }
+                }
+                mCamera.setPreviewTexture(surfaceTexture);
+                mCamera.startPreview();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public void onPreviewFrame(byte[] data, Camera camera) {
+        long now = System.nanoTime();
+        CameraFrame frame = null;
+        synchronized (mLock) {
+            if (mCamera == null || data == null) {
+                return;
+            }
+            for (CameraFrame f : mFrames) {
+                if (f.data == data) {
+                    frame = f;
+                    break;
+                }
+            }
+            if (frame == null || !frame.acquire()) {
+                return;
+            }
+            frame.sequence = ++mSequence;
+        }
+        frame.arrivalTimeNanos = now;
+        frame.captureTimeNanos = now;
+        mCallback.onFrame(frame);
+    }
+
+    @Override
+    public void recycle(CameraFrame frame) {
+        synchronized (mLock) {
+            if (mCamera != null) {
+                mCamera.addCallbackBuffer(frame.data);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            synchronized (mLock) {
+                if (mCamera != null) {
+                    mCamera.stopPreview();
+                    mCamera.setPreviewTexture(null);
+                    mCamera.setPreviewCallbackWithBuffer(null);
+                    mCamera.release();
+                    mCamera = null;
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public int getFacing() {
+        return mFacing;
+    }
+
+    @Override
+    public int getOrientation() {
+        return mOrientation;
+    }
+
+    @Override
+    public int getWidth() {
+        return mWidth;
+    }
+
+    @Override
+    public int getHeight() {
+        return mHeight;
+    }
+
+    /**
+     * Camera1没有空闲buffer时在内部丢弃，无法统计
+     */
+    @Override
+    public long getDroppedCount() {
+        return 0;
+    }
+
+    @Override
+    public String getName() {
+        return TAG;
+    }
+}
@@ -78,23 +78,37 @@ public class ColorPickGradient {
      * @return
      */
     public static double[] getColor(double radio) {
+        return getColor(radio, new double[3]);
+    }
+
+    /**
+     * 获取某个百分比位置的颜色，结果写入out
+     *
+     * @param radio 取值[0,1]
+     * @param out   长度为3
+     * @return out
+     */
+    public static double[] getColor(double radio, double[] out) {
         int startColor;
         int endColor;
         if (radio >= mColorPosition[mColorPosition.length - 1]) {
-            return getColorForRGB(mColorArr[mColorArr.length - 1]);
+            return getColorForRGB(mColorArr[mColorArr.length - 1], out);
         }
         for (int i = 0; i < mColorPosition.length; i++) {
             if (radio <= mColorPosition[i]) {
                 if (i == 0) {
-                    return getColorForRGB(mColorArr[0]);
+                    return getColorForRGB(mColorArr[0], out);
                 }
                 startColor = mColorArr[i - 1];
                 endColor = mColorArr[i];
                 double areaRadio = getAreaRadio(radio, mColorPosition[i - 1], mColorPosition[i]);
-                return getColorFrom(startColor, endColor, areaRadio);
+                return getColorFrom(startColor, endColor, areaRadio, out);
             }
         }
-        return new double[]{0, 0, 0};
+        out[0] = 0;
+        out[1] = 0;
+        out[2] = 0;
+        return out;
     }
 
     public static double getAreaRadio(double radio, double startPosition, double endPosition) {
@@ -110,6 +124,10 @@ public class ColorPickGradient {
      * @return
      */
     public static double[] getColorFrom(int startColor, int endColor, double radio) {
+        return getColorFrom(startColor, endColor, radio, new double[3]);
+    }
+
+    public static double[] getColorFrom(int startColor, int endColor, double radio, double[] out) {
         int redStart = Color.red(startColor);
         int blueStart = Color.blue(startColor);
         int greenStart = Color.green(startColor);
@@ -120,14 +138,21 @@ public class ColorPickGradient {
         double red = redStart + ((redEnd - redStart) * radio);
         double greed = greenStart + ((greenEnd - greenStart) * radio);
         double blue = blueStart + ((blueEnd - blueStart) * radio);
-        return new double[]{red, greed, blue};
+        out[0] = red;
+        out[1] = greed;
+        out[2] = blue;
+        return out;
     }
 
     public static double[] getColorForRGB(int color) {
-        int red = Color.red(color);
-        int blue = Color.blue(color);
-        int green = Color.green(color);
-        return new double[]{red, green, blue};
+        return getColorForRGB(color, new double[3]);
+    }
+
+    public static double[] getColorForRGB(int color, double[] out) {
+        out[0] = Color.red(color);
+        out[1] = Color.green(color);
+        out[2] = Color.blue(color);
+        return out;
     }
 
     public static int[] getmColorArr() {
@@ -0,0 +1,174 @@
+package com.faceunity.pta_art.utils;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * src/main/assets_pack目录（new/...）打包后的资源文件（assets.pack）的读取
+ * <p>
+ * assets.pack由app/build.gradle中的packAssets任务生成，不压缩存放在apk中，格式为：
+ * <pre>
+ * int magic, int version, int count
+ * count * (short pathLength, byte[] path(UTF-8), long offset, int length, int crc32)
+ * 按页对齐的文件数据
+ * </pre>
+ * 通过AssetFileDescriptor随机读取，不需要逐个打开、解压assets中的文件。
+ * 没有打包的文件（或者没有assets.pack时）通过AssetManager读取。
+ */
+public class AssetPack {
+    private static final String TAG = AssetPack.class.getSimpleName();
+
+    public static final String PACK_NAME = "assets.pack";
+    private static final int MAGIC = 0x4655504B;
+    private static final int VERSION = 1;
+
+    private volatile static AssetPack assetPack = null;
+
+    private final Map<String, Entry> mEntries = new HashMap<>();
+    private AssetFileDescriptor mFileDescriptor;
+    private FileChannel mChannel;
+    private long mStartOffset;
+
+    private AssetPack(Context context) {
+        try {
+            mFileDescriptor = context.getAssets().openFd(PACK_NAME);
+            mStartOffset = mFileDescriptor.getStartOffset();
+            mChannel = new FileInputStream(mFileDescriptor.getFileDescriptor()).getChannel();
+            mChannel.position(mStartOffset);
+            readIndex(new DataInputStream(new BufferedInputStream(Channels.newInputStream(mChannel))));
+            Log.i(TAG, "AssetPack entries " + mEntries.size() + " length " + mFileDescriptor.getLength());
+        } catch (IOException e) {
+            // 没有打包时逐个读取assets中的文件
+            Log.i(TAG, "AssetPack not found " + e.getMessage());
+            mEntries.clear();
+            closeQuietly();
+        }
+    }
+
+    public static AssetPack getInstance(Context context) {
+        if (assetPack == null) {
+            synchronized (AssetPack.class) {
+                if (assetPack == null) {
+                    assetPack = new AssetPack(context.getApplicationContext());
+                }
+            }
+        }
+        return assetPack;
+    }
+
+    /**
+     * 打开assets中的文件，优先从assets.pack中读取
+     *
+     * @param context
+     * @param path    assets中的路径
+     * @return 输入流
+     * @throws IOException
+     */
+    public static InputStream open(Context context, String path) throws IOException {
+        AssetPack pack = getInstance(context);
+        if (pack.contains(path)) {
+            return new ByteArrayInputStream(pack.read(path));
+        }
+        return context.getAssets().open(path);
+    }
+
+    /**
+     * 读取assets中文件的全部内容，优先从assets.pack中读取
+     *
+     * @param context
+     * @param path    assets中的路径
+     * @return 文件内容
+     * @throws IOException
+     */
+    public static byte[] readBytes(Context context, String path) throws IOException {
+        AssetPack pack = getInstance(context);
+        if (pack.contains(path)) {
+            return pack.read(path);
+        }
+        InputStream is = context.getAssets().open(path);
+        try {
+            return FileUtil.readFully(is);
+        } finally {
+            is.close();
+        }
+    }
+
+    public boolean contains(String path) {
+        return mEntries.containsKey(path);
+    }
+
+    /**
+     * 从assets.pack中读取文件，并校验crc32
+     *
+     * @param path assets中的路径
+     * @return 文件内容
+     * @throws IOException 文件不在assets.pack中或者数据校验失败
+     */
+    public byte[] read(String path) throws IOException {
+        Entry entry = mEntries.get(path);
+        if (entry == null || mChannel == null) {
+            throw new IOException("not in " + PACK_NAME + " " + path);
+        }
+        byte[] bytes = FileUtil.readFully(mChannel, mStartOffset + entry.offset, entry.length, path);
+        CRC32 crc32 = new CRC32();
+        crc32.update(bytes, 0, bytes.length);
+        if ((int) crc32.getValue() != entry.crc32) {
+            throw new IOException("crc32 mismatch " + path);
+        }
+        return bytes;
+    }
+
+    /**
+     * 读取索引，不关闭输入流（关闭会同时关闭mChannel）
+     */
+    private void readIndex(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+            throw new IOException("bad " + PACK_NAME + " header");
+        }
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            byte[] path = new byte[in.readUnsignedShort()];
+            in.readFully(path);
+            Entry entry = new Entry(in.readLong(), in.readInt(), in.readInt());
+            mEntries.put(new String(path, "UTF-8"), entry);
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            // mChannel与mFileDescriptor共用同一个文件描述符
+            if (mFileDescriptor != null) {
+                mFileDescriptor.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        mChannel = null;
+        mFileDescriptor = null;
+    }
+
+    private static class Entry {
+        final long offset;
+        final int length;
+        final int crc32;
+
+        Entry(long offset, int length, int crc32) {
+            this.offset = offset;
+            this.length = length;
+            this.crc32 = crc32;
+        }
+    }
+}
@@ -18,6 +18,9 @@ public class BackgroundUtil {
     private int width, height;
     private int[] fboTexs;
     private int[] fboIds;
+    // 每帧查询当前framebuffer与viewport时复用
+    private final int[] fboIdNow = new int[1];
+    private final int[] viewPortNow = new int[4];
 
     private int backgroundTexId;
     private float[] backgroundMVP;
@@ -46,9 +49,7 @@ public class BackgroundUtil {
         if (!useBitmapBackground) {
             return texId;
         }
-        int[] fboIdNow = new int[1];
         GLES20.glGetIntegerv(GLES20.GL_FRAMEBUFFER_BINDING, fboIdNow, 0);
-        int[] viewPortNow = new int[4];
         GLES20.glGetIntegerv(GLES20.GL_VIEWPORT, viewPortNow, 0);
         GLES20.glBindFramebuffer(GLES20.GL_FRAMEBUFFER, fboIds[0]);
         GLES20.glViewport(0, 0, width, height);
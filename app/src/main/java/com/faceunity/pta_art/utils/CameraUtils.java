@@ -118,6 +118,18 @@ public class CameraUtils {
         parameters.setPreviewFpsRange(bestFramerate[0], bestFramerate[1]);
     }
 
+    /**
+     * 相机是否支持该预览尺寸
+     */
+    public static boolean hasPreviewSize(Camera.Parameters parms, int width, int height) {
+        for (Camera.Size size : parms.getSupportedPreviewSizes()) {
+            if (size.width == width && size.height == height) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Attempts to find a preview size that matches the provided width and height (which
      * specify the dimensions of the encoded video).  If it fails to find a match it just
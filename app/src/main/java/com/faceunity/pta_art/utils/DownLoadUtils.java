@@ -12,8 +12,6 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
@@ -96,13 +94,7 @@ public class DownLoadUtils {
             return null;
         }
         try {
-            FileInputStream inputStream = new FileInputStream(file);
-            byte[] bytes = new byte[inputStream.available()];
-            inputStream.read(bytes);
-            inputStream.close();
-            return bytes;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            return FileUtil.readFully(file);
         } catch (IOException e) {
             e.printStackTrace();
         }
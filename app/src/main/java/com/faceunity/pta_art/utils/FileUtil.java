@@ -15,6 +15,7 @@ import com.faceunity.pta_art.constant.Constant;
 import com.faceunity.pta_art.entity.AvatarPTA;
 
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -22,6 +23,10 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
 
 import static com.faceunity.pta_art.constant.Constant.filePath;
 
@@ -64,19 +69,95 @@ public abstract class FileUtil {
             return null;
         }
         try {
-            FileInputStream inputStream = new FileInputStream(file);
-            byte[] bytes = new byte[inputStream.available()];
-            inputStream.read(bytes);
-            inputStream.close();
-            return bytes;
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
+            return readFully(file);
         } catch (IOException e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * 超过该大小的文件使用内存映射读取
+     */
+    private static final int MAP_THRESHOLD = 256 * 1024;
+
+    /**
+     * 通过FileChannel完整读取文件内容
+     * <p>
+     * 较大的文件（如形象的head.bundle、生成的头发）通过内存映射直接拷贝到结果数组中，
+     * 不经过FileInputStream的中间缓冲；读取的长度与文件长度不一致时抛出异常，不会返回不完整的数据。
+     *
+     * @param file 文件
+     * @return 文件内容
+     * @throws IOException
+     */
+    public static byte[] readFully(File file) throws IOException {
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            FileChannel channel = inputStream.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("file too large " + file + " " + size);
+            }
+            return readFully(channel, 0, (int) size, file.toString());
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * 按位置完整读取FileChannel中的一段数据（如assets.pack中的一个文件），不改变channel的位置，多个线程可以同时读取
+     *
+     * @param channel  文件
+     * @param position 起始位置
+     * @param length   长度
+     * @param name     出错时显示的名称
+     * @return 读取的数据
+     * @throws IOException
+     */
+    public static byte[] readFully(FileChannel channel, long position, int length, String name) throws IOException {
+        byte[] bytes = new byte[length];
+        if (length >= MAP_THRESHOLD) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            buffer.get(bytes);
+        } else {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("read " + buffer.position() + "/" + length + " " + name);
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 完整读取输入流（如assets中的文件）的内容，不关闭输入流
+     * <p>
+     * available()只作为初始容量，一直读取到流结束为止
+     *
+     * @param inputStream 输入流
+     * @return 输入流的内容
+     * @throws IOException
+     */
+    public static byte[] readFully(InputStream inputStream) throws IOException {
+        byte[] bytes = new byte[Math.max(inputStream.available(), 1024)];
+        int length = 0;
+        int read;
+        while ((read = inputStream.read(bytes, length, bytes.length - length)) >= 0) {
+            length += read;
+            if (length == bytes.length) {
+                int next = inputStream.read();
+                if (next < 0) {
+                    return bytes;
+                }
+                bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                bytes[length++] = (byte) next;
+            }
+        }
+        return length == bytes.length ? bytes : Arrays.copyOf(bytes, length);
+    }
+
 
     public static void saveBitmapToFile(final String path, final Bitmap bitmap) {
         try {
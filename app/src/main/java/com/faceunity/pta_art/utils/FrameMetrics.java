@@ -0,0 +1,636 @@
+package com.faceunity.pta_art.utils;
+
+import android.os.Build;
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 渲染帧耗时统计
+ * <p>
+ * 在GL线程中记录每帧各阶段的耗时（事件执行、SDK渲染、绘制到屏幕、整帧）、帧间隔与相机帧的帧龄、采集到渲染延迟：
+ * <ul>
+ * <li>每个阶段一个固定分桶的耗时直方图，可查询p50/p95/p99/max</li>
+ * <li>帧间隔超过最近JANK_WINDOW帧间隔中位数JANK_FACTOR倍的帧计为卡顿，目标帧率变化（setTargetFps）时重新统计</li>
+ * <li>最近RECENT_CAPACITY帧的记录保存在环形数组中</li>
+ * </ul>
+ * 只有GL线程写入，写入不加锁、不分配对象；其它线程可以随时查询或导出为JSON（toJson、dump），
+ * 查询时被覆盖的记录会被丢弃。
+ * <p>
+ * 画质档位的变化（recordQualityTier）也记录在这里，与帧耗时一起导出。
+ */
+public class FrameMetrics {
+    private static final String TAG = FrameMetrics.class.getSimpleName();
+
+    /**
+     * 执行queueEvent事件
+     */
+    public static final int STAGE_EVENT_DRAIN = 0;
+    /**
+     * BaseCore.onDrawFrame（SDK渲染）
+     */
+    public static final int STAGE_SDK = 1;
+    /**
+     * CameraRenderer.drawToScreen
+     */
+    public static final int STAGE_DRAW_TO_SCREEN = 2;
+    /**
+     * 整帧（CameraRenderer.onDrawFrame，不包括帧率限制的等待）
+     */
+    public static final int STAGE_FRAME = 3;
+    /**
+     * 相邻两帧开始时间的间隔
+     */
+    public static final int STAGE_FRAME_INTERVAL = 4;
+    /**
+     * 相机帧从采集（传感器时间戳）到渲染完成的延迟，只在第一次渲染该帧时记录
+     */
+    public static final int STAGE_CAPTURE_LATENCY = 5;
+    /**
+     * 相机帧被GL线程取出时距采集的时间（帧龄）
+     */
+    public static final int STAGE_CAMERA_FRAME_AGE = 6;
+    public static final int STAGE_COUNT = 7;
+    private static final String[] STAGE_NAMES = {"eventDrain", "sdk", "drawToScreen", "frame", "frameInterval", "captureLatency",
+            "cameraFrameAge"};
+
+    /**
+     * 最近帧记录的数量
+     */
+    public static final int RECENT_CAPACITY = 256;
+    /**
+     * 帧间隔超过中位数的多少倍计为卡顿
+     */
+    public static final float JANK_FACTOR = 2f;
+    /**
+     * 计算卡顿阈值（中位数）的最近帧间隔数
+     */
+    public static final int JANK_WINDOW = 120;
+    // 统计卡顿前至少需要的帧间隔数，也是更新卡顿阈值的间隔
+    private static final int JANK_WARM_UP_FRAMES = 30;
+    // 超过该间隔认为渲染暂停过（如切到后台），不计入帧间隔
+    private static final long PAUSE_INTERVAL_NS = 1000 * 1000000L;
+
+    private volatile static FrameMetrics frameMetrics = null;
+
+    private final Histogram[] mHistograms = new Histogram[STAGE_COUNT];
+    private final AtomicLong mFrameCount = new AtomicLong();
+    private final AtomicLong mJankCount = new AtomicLong();
+    // 渲染、丢弃（没有渲染就被更新的帧替换）、延迟的相机帧数
+    private final AtomicLong mCameraFrameCount = new AtomicLong();
+    private final AtomicLong mCameraDroppedCount = new AtomicLong();
+    private final AtomicLong mCameraLateCount = new AtomicLong();
+
+    // 环形数组，只有GL线程写入，mRecentSeq发布后其它线程可读
+    private final long[] mRecentStart = new long[RECENT_CAPACITY];
+    private final long[] mRecentStages = new long[RECENT_CAPACITY * STAGE_COUNT];
+    private final boolean[] mRecentJank = new boolean[RECENT_CAPACITY];
+    private final AtomicLong mRecentSeq = new AtomicLong();
+
+    // 以下只在GL线程访问
+    private final long[] mFrameStages = new long[STAGE_COUNT];
+    private boolean mInFrame;
+    private long mFrameStartTime;
+    private long mLastFrameStartTime;
+    private long mJankThresholdNs;
+    // 最近JANK_WINDOW个帧间隔的环形数组与排序用的副本
+    private final long[] mIntervalWindow = new long[JANK_WINDOW];
+    private final long[] mSortedIntervals = new long[JANK_WINDOW];
+    private int mIntervalIndex;
+    private int mIntervalSize;
+    private int mIntervalsSinceUpdate;
+    private int mTargetFps;
+
+    private volatile boolean mResetRequested;
+
+    /**
+     * 最多保存的画质档位变化记录数
+     */
+    public static final int QUALITY_EVENT_CAPACITY = 32;
+    // 画质档位变化很少发生，加锁访问
+    private final ArrayDeque<QualityEvent> mQualityEvents = new ArrayDeque<>();
+    private volatile int mQualityTier;
+
+    // 测试中直接创建
+    FrameMetrics() {
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            mHistograms[i] = new Histogram();
+        }
+    }
+
+    public static FrameMetrics getInstance() {
+        if (frameMetrics == null) {
+            synchronized (FrameMetrics.class) {
+                if (frameMetrics == null) {
+                    frameMetrics = new FrameMetrics();
+                }
+            }
+        }
+        return frameMetrics;
+    }
+
+    //--------------------------------------GL线程记录----------------------------------------
+
+    /**
+     * 一帧开始，在GL线程中调用
+     */
+    public void beginFrame() {
+        if (mResetRequested) {
+            doReset();
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            mFrameStages[i] = 0;
+        }
+        if (mLastFrameStartTime > 0 && now - mLastFrameStartTime < PAUSE_INTERVAL_NS) {
+            mFrameStages[STAGE_FRAME_INTERVAL] = now - mLastFrameStartTime;
+        }
+        mLastFrameStartTime = now;
+        mFrameStartTime = now;
+        mInFrame = true;
+    }
+
+    /**
+     * 记录阶段耗时，在GL线程中调用；同一帧内多次记录的耗时相加
+     *
+     * @param stage     STAGE_*
+     * @param startTime 阶段开始时的System.nanoTime
+     */
+    public void recordStage(int stage, long startTime) {
+        long duration = System.nanoTime() - startTime;
+        if (mInFrame) {
+            mFrameStages[stage] += duration;
+        } else {
+            mHistograms[stage].record(duration);
+        }
+    }
+
+    /**
+     * 当前帧已记录的阶段耗时（纳秒），在GL线程中beginFrame与endFrame之间调用
+     *
+     * @param stage STAGE_*
+     */
+    public long getStageNanos(int stage) {
+        return mInFrame ? mFrameStages[stage] : 0;
+    }
+
+    /**
+     * 一帧结束，在GL线程中调用
+     */
+    public void endFrame() {
+        if (!mInFrame) {
+            return;
+        }
+        mInFrame = false;
+        mFrameStages[STAGE_FRAME] = System.nanoTime() - mFrameStartTime;
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            if (mFrameStages[i] > 0) {
+                mHistograms[i].record(mFrameStages[i]);
+            }
+        }
+        mFrameCount.incrementAndGet();
+
+        boolean jank = recordInterval(mFrameStages[STAGE_FRAME_INTERVAL]);
+        if (jank) {
+            mJankCount.incrementAndGet();
+        }
+
+        long seq = mRecentSeq.get();
+        int index = (int) (seq % RECENT_CAPACITY);
+        mRecentStart[index] = mFrameStartTime;
+        mRecentJank[index] = jank;
+        System.arraycopy(mFrameStages, 0, mRecentStages, index * STAGE_COUNT, STAGE_COUNT);
+        mRecentSeq.lazySet(seq + 1);
+    }
+
+    /**
+     * 设置目标帧率，在GL线程中调用；帧率变化时之前的帧间隔不再代表正常帧间隔，清空窗口重新统计卡顿阈值
+     *
+     * @param fps 目标帧率
+     */
+    public void setTargetFps(int fps) {
+        if (fps == mTargetFps) {
+            return;
+        }
+        mTargetFps = fps;
+        clearJankWindow();
+    }
+
+    /**
+     * 判断帧间隔是否卡顿（与之前的阈值比较），并加入窗口，每JANK_WARM_UP_FRAMES个帧间隔更新一次阈值
+     *
+     * @param interval 帧间隔（纳秒），0表示没有帧间隔（第一帧或者暂停后）
+     * @return 是否卡顿
+     */
+    boolean recordInterval(long interval) {
+        if (interval <= 0) {
+            return false;
+        }
+        boolean jank = mJankThresholdNs > 0 && interval > mJankThresholdNs;
+        mIntervalWindow[mIntervalIndex] = interval;
+        mIntervalIndex = (mIntervalIndex + 1) % JANK_WINDOW;
+        mIntervalSize = Math.min(mIntervalSize + 1, JANK_WINDOW);
+        if (++mIntervalsSinceUpdate >= JANK_WARM_UP_FRAMES) {
+            mIntervalsSinceUpdate = 0;
+            // 排序副本不分配对象
+            System.arraycopy(mIntervalWindow, 0, mSortedIntervals, 0, mIntervalSize);
+            Arrays.sort(mSortedIntervals, 0, mIntervalSize);
+            mJankThresholdNs = (long) (mSortedIntervals[mIntervalSize / 2] * JANK_FACTOR);
+        }
+        return jank;
+    }
+
+    /**
+     * 当前的卡顿阈值（纳秒），0表示帧数不足还未开始统计卡顿，在GL线程中调用
+     */
+    long getJankThresholdNanos() {
+        return mJankThresholdNs;
+    }
+
+    private void clearJankWindow() {
+        mIntervalIndex = 0;
+        mIntervalSize = 0;
+        mIntervalsSinceUpdate = 0;
+        mJankThresholdNs = 0;
+    }
+
+    /**
+     * 记录GL线程取出的一个新的相机帧，在GL线程中调用
+     *
+     * @param captureTime 采集时间（System.nanoTime的时间基准），记录为帧龄
+     * @param late        是否延迟
+     * @param dropped     取出该帧之前丢弃的帧数
+     */
+    public void recordCameraFrame(long captureTime, boolean late, int dropped) {
+        recordStage(STAGE_CAMERA_FRAME_AGE, captureTime);
+        mCameraFrameCount.lazySet(mCameraFrameCount.get() + 1);
+        if (late) {
+            mCameraLateCount.lazySet(mCameraLateCount.get() + 1);
+        }
+        if (dropped > 0) {
+            mCameraDroppedCount.lazySet(mCameraDroppedCount.get() + dropped);
+        }
+    }
+
+    /**
+     * 记录画质档位变化
+     *
+     * @param tier     档位
+     * @param tierName 档位名称
+     * @param reason   变化原因
+     */
+    public void recordQualityTier(int tier, String tierName, String reason) {
+        mQualityTier = tier;
+        synchronized (mQualityEvents) {
+            if (mQualityEvents.size() >= QUALITY_EVENT_CAPACITY) {
+                mQualityEvents.pollFirst();
+            }
+            mQualityEvents.addLast(new QualityEvent(System.nanoTime(), getFrameCount(), tier, tierName, reason));
+        }
+        Log.i(TAG, "quality tier " + tierName + " reason " + reason);
+    }
+
+    //--------------------------------------查询----------------------------------------
+
+    public int getQualityTier() {
+        return mQualityTier;
+    }
+
+    public long getFrameCount() {
+        return mFrameCount.get();
+    }
+
+    public long getJankCount() {
+        return mJankCount.get();
+    }
+
+    public long getCameraFrameCount() {
+        return mCameraFrameCount.get();
+    }
+
+    public long getCameraDroppedCount() {
+        return mCameraDroppedCount.get();
+    }
+
+    public long getCameraLateCount() {
+        return mCameraLateCount.get();
+    }
+
+    public long getCount(int stage) {
+        return mHistograms[stage].count();
+    }
+
+    /**
+     * 阶段耗时的百分位数（毫秒），取所在分桶的上界
+     *
+     * @param stage      STAGE_*
+     * @param percentile 0~100
+     */
+    public double getPercentileMs(int stage, double percentile) {
+        return mHistograms[stage].percentile(percentile) / 1000000.0;
+    }
+
+    /**
+     * 阶段耗时的最大值（毫秒）
+     */
+    public double getMaxMs(int stage) {
+        return mHistograms[stage].max() / 1000000.0;
+    }
+
+    /**
+     * 阶段耗时的平均值（毫秒）
+     */
+    public double getMeanMs(int stage) {
+        return mHistograms[stage].mean() / 1000000.0;
+    }
+
+    /**
+     * 最近frames帧中阶段耗时的平均值（毫秒），没有记录时返回0
+     */
+    public double getRecentMeanMs(int stage, int frames) {
+        long end = mRecentSeq.get();
+        long start = Math.max(0, end - Math.min(frames, RECENT_CAPACITY - 1));
+        long total = 0;
+        int count = 0;
+        for (long seq = start; seq < end; seq++) {
+            long value = mRecentStages[(int) (seq % RECENT_CAPACITY) * STAGE_COUNT + stage];
+            if (value > 0) {
+                total += value;
+                count++;
+            }
+        }
+        // 读取过程中被覆盖的记录不可信
+        if (count == 0 || mRecentSeq.get() - start >= RECENT_CAPACITY) {
+            return 0;
+        }
+        return total / count / 1000000.0;
+    }
+
+    /**
+     * 最近frames帧的平均帧率
+     */
+    public double getRecentFps(int frames) {
+        double interval = getRecentMeanMs(STAGE_FRAME_INTERVAL, frames);
+        return interval > 0 ? 1000 / interval : 0;
+    }
+
+    /**
+     * 清空所有统计，在下一帧开始时于GL线程中执行
+     */
+    public void reset() {
+        mResetRequested = true;
+    }
+
+    private void doReset() {
+        mResetRequested = false;
+        for (Histogram histogram : mHistograms) {
+            histogram.clear();
+        }
+        mFrameCount.set(0);
+        mJankCount.set(0);
+        mCameraFrameCount.set(0);
+        mCameraDroppedCount.set(0);
+        mCameraLateCount.set(0);
+        mRecentSeq.set(0);
+        mLastFrameStartTime = 0;
+        clearJankWindow();
+    }
+
+    /**
+     * 导出为JSON，包括设备信息、各阶段的直方图统计、卡顿数与最近的帧记录（毫秒）
+     */
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("device", Build.MANUFACTURER + " " + Build.MODEL);
+        json.put("sdkInt", Build.VERSION.SDK_INT);
+        json.put("frames", getFrameCount());
+        json.put("jank", getJankCount());
+        json.put("jankFactor", JANK_FACTOR);
+        json.put("cameraFrames", getCameraFrameCount());
+        json.put("cameraDropped", getCameraDroppedCount());
+        json.put("cameraLate", getCameraLateCount());
+
+        JSONObject stages = new JSONObject();
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            JSONObject stage = new JSONObject();
+            stage.put("count", getCount(i));
+            stage.put("mean", round(getMeanMs(i)));
+            stage.put("p50", round(getPercentileMs(i, 50)));
+            stage.put("p95", round(getPercentileMs(i, 95)));
+            stage.put("p99", round(getPercentileMs(i, 99)));
+            stage.put("max", round(getMaxMs(i)));
+            stages.put(STAGE_NAMES[i], stage);
+        }
+        json.put("stages", stages);
+
+        JSONArray recent = new JSONArray();
+        long end = mRecentSeq.get();
+        long start = Math.max(0, end - RECENT_CAPACITY);
+        long[] stageValues = new long[STAGE_COUNT];
+        for (long seq = start; seq < end; seq++) {
+            int index = (int) (seq % RECENT_CAPACITY);
+            long startTime = mRecentStart[index];
+            boolean jank = mRecentJank[index];
+            System.arraycopy(mRecentStages, index * STAGE_COUNT, stageValues, 0, STAGE_COUNT);
+            // GL线程可能已经覆盖了该记录
+            if (mRecentSeq.get() - seq >= RECENT_CAPACITY) {
+                continue;
+            }
+            JSONObject frame = new JSONObject();
+            frame.put("seq", seq);
+            frame.put("start", startTime / 1000);
+            for (int i = 0; i < STAGE_COUNT; i++) {
+                frame.put(STAGE_NAMES[i], round(stageValues[i] / 1000000.0));
+            }
+            frame.put("jank", jank);
+            recent.put(frame);
+        }
+        json.put("recent", recent);
+
+        json.put("qualityTier", mQualityTier);
+        JSONArray qualityEvents = new JSONArray();
+        synchronized (mQualityEvents) {
+            for (QualityEvent event : mQualityEvents) {
+                JSONObject item = new JSONObject();
+                item.put("time", event.time / 1000);
+                item.put("frame", event.frame);
+                item.put("tier", event.tier);
+                item.put("name", event.tierName);
+                item.put("reason", event.reason);
+                qualityEvents.put(item);
+            }
+        }
+        json.put("qualityEvents", qualityEvents);
+        return json;
+    }
+
+    /**
+     * 将统计导出为JSON文件
+     *
+     * @param path 文件路径
+     * @return 是否成功
+     */
+    public boolean dump(String path) {
+        FileOutputStream fos = null;
+        try {
+            File file = new File(path);
+            File dir = file.getParentFile();
+            if (dir != null && !dir.exists()) {
+                dir.mkdirs();
+            }
+            fos = new FileOutputStream(file);
+            fos.write(toJson().toString().getBytes("UTF-8"));
+            Log.i(TAG, "dump " + path);
+            return true;
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "dump error " + e.getMessage());
+            return false;
+        } finally {
+            if (fos != null) {
+                try {
+                    fos.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(TAG).append(" frames ").append(getFrameCount())
+                .append(" jank ").append(getJankCount()).append(" qualityTier ").append(mQualityTier)
+                .append(" cameraFrames ").append(getCameraFrameCount()).append(" dropped ").append(getCameraDroppedCount())
+                .append(" late ").append(getCameraLateCount());
+        for (int i = 0; i < STAGE_COUNT; i++) {
+            builder.append(" ").append(STAGE_NAMES[i])
+                    .append(" p50 ").append(round(getPercentileMs(i, 50)))
+                    .append(" p99 ").append(round(getPercentileMs(i, 99)))
+                    .append(" max ").append(round(getMaxMs(i)));
+        }
+        return builder.toString();
+    }
+
+    private static double round(double ms) {
+        return Math.round(ms * 100) / 100.0;
+    }
+
+    private static class QualityEvent {
+        final long time;
+        final long frame;
+        final int tier;
+        final String tierName;
+        final String reason;
+
+        QualityEvent(long time, long frame, int tier, String tierName, String reason) {
+            this.time = time;
+            this.frame = frame;
+            this.tier = tier;
+            this.tierName = tierName;
+            this.reason = reason;
+        }
+    }
+
+    /**
+     * 固定分桶的耗时直方图：10ms以内每0.1ms一个桶，10ms~200ms每1ms一个桶，其余放入最后一个桶
+     * <p>
+     * 只有一个线程写入，其它线程读取
+     */
+    private static class Histogram {
+        private static final long FINE_LIMIT_NS = 10 * 1000000L;
+        private static final long FINE_WIDTH_NS = 100 * 1000L;
+        private static final long COARSE_LIMIT_NS = 200 * 1000000L;
+        private static final long COARSE_WIDTH_NS = 1000000L;
+        private static final int FINE_BUCKETS = (int) (FINE_LIMIT_NS / FINE_WIDTH_NS);
+        private static final int BUCKETS = FINE_BUCKETS + (int) ((COARSE_LIMIT_NS - FINE_LIMIT_NS) / COARSE_WIDTH_NS) + 1;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong max = new AtomicLong();
+
+        void record(long ns) {
+            int bucket = bucket(ns);
+            counts.lazySet(bucket, counts.get(bucket) + 1);
+            total.lazySet(total.get() + ns);
+            if (ns > max.get()) {
+                max.lazySet(ns);
+            }
+            count.lazySet(count.get() + 1);
+        }
+
+        long count() {
+            return count.get();
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        double mean() {
+            long n = count.get();
+            return n == 0 ? 0 : (double) total.get() / n;
+        }
+
+        /**
+         * @return 百分位所在分桶的上界（纳秒），最后一个桶返回最大值
+         */
+        long percentile(double percentile) {
+            long n = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                n += counts.get(i);
+            }
+            if (n == 0) {
+                return 0;
+            }
+            long target = (long) Math.ceil(n * percentile / 100);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts.get(i);
+                if (seen >= target && seen > 0) {
+                    return Math.min(upperBound(i), max.get());
+                }
+            }
+            return max.get();
+        }
+
+        void clear() {
+            for (int i = 0; i < BUCKETS; i++) {
+                counts.set(i, 0);
+            }
+            count.set(0);
+            total.set(0);
+            max.set(0);
+        }
+
+        private static int bucket(long ns) {
+            if (ns < FINE_LIMIT_NS) {
+                return (int) (ns / FINE_WIDTH_NS);
+            }
+            if (ns < COARSE_LIMIT_NS) {
+                return FINE_BUCKETS + (int) ((ns - FINE_LIMIT_NS) / COARSE_WIDTH_NS);
+            }
+            return BUCKETS - 1;
+        }
+
+        private static long upperBound(int bucket) {
+            if (bucket < FINE_BUCKETS) {
+                return (bucket + 1) * FINE_WIDTH_NS;
+            }
+            if (bucket < BUCKETS - 1) {
+                return FINE_LIMIT_NS + (bucket - FINE_BUCKETS + 1) * COARSE_WIDTH_NS;
+            }
+            return Long.MAX_VALUE;
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.faceunity.pta_art.utils;
+
+import android.os.AsyncTask;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import com.faceunity.pta_art.constant.Constant;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 渲染耗时追踪，导出Chrome trace-event格式（chrome://tracing、ui.perfetto.dev可以直接打开）
+ * <p>
+ * 在需要追踪的代码前后调用begin、end（必须在同一线程中成对调用），start后开始记录，
+ * stop后写入Constant.TmpPath下的trace_时间.json。
+ * 未开启时begin、end只读取一个volatile变量；开启后每个线程的事件写入该线程独占的预分配数组，不加锁、不分配对象，
+ * 数组写满后丢弃之后的事件。名称应使用常量字符串。已经结束的线程（如线程池中回收的线程）的数组在写入文件后
+ * 或者下一次start时释放。
+ * <p>
+ * 启动时如果Constant.TmpPath下存在ENABLE_FILE文件，则自动记录ENABLE_DURATION_MS毫秒，
+ * 例如：adb shell touch /sdcard/FaceUnity/.../tmp/trace.enable
+ */
+public class FrameTracer {
+    private static final String TAG = FrameTracer.class.getSimpleName();
+
+    public static final String ENABLE_FILE = "trace.enable";
+    public static final long ENABLE_DURATION_MS = 10 * 1000;
+    /**
+     * 每个线程最多记录的事件数
+     */
+    public static final int THREAD_CAPACITY = 64 * 1024;
+
+    private static final byte PHASE_BEGIN = 'B';
+    private static final byte PHASE_END = 'E';
+    private static final byte PHASE_INSTANT = 'i';
+
+    private static volatile boolean enabled = false;
+    // 每次start加一，线程第一次记录时发现与自己的不同则清空之前的事件
+    private static volatile int generation = 0;
+    private static final List<ThreadBuffer> buffers = new CopyOnWriteArrayList<>();
+    private static final ThreadLocal<ThreadBuffer> threadBuffer = new ThreadLocal<ThreadBuffer>() {
+        @Override
+        protected ThreadBuffer initialValue() {
+            ThreadBuffer buffer = new ThreadBuffer();
+            buffers.add(buffer);
+            return buffer;
+        }
+    };
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 开始一段追踪
+     *
+     * @param name 名称，应使用常量字符串
+     */
+    public static void begin(String name) {
+        if (!enabled) {
+            return;
+        }
+        threadBuffer.get().add(PHASE_BEGIN, name, null);
+    }
+
+    /**
+     * 开始一段带参数的追踪
+     *
+     * @param name 名称，应使用常量字符串
+     * @param arg  参数（如道具路径），导出为args.arg
+     */
+    public static void begin(String name, String arg) {
+        if (!enabled) {
+            return;
+        }
+        threadBuffer.get().add(PHASE_BEGIN, name, arg);
+    }
+
+    /**
+     * 结束当前线程最近一次begin的追踪
+     */
+    public static void end() {
+        if (!enabled) {
+            return;
+        }
+        threadBuffer.get().add(PHASE_END, null, null);
+    }
+
+    /**
+     * 记录一个瞬时事件
+     *
+     * @param name 名称，应使用常量字符串
+     */
+    public static void instant(String name) {
+        if (!enabled) {
+            return;
+        }
+        threadBuffer.get().add(PHASE_INSTANT, name, null);
+    }
+
+    /**
+     * 开始记录，清空之前的记录
+     */
+    public static synchronized void start() {
+        generation++;
+        enabled = true;
+        removeDeadThreads();
+        Log.i(TAG, "start trace");
+    }
+
+    /**
+     * 开始记录，durationMs毫秒后停止并写入文件
+     */
+    public static void start(long durationMs) {
+        start();
+        new Handler(Looper.getMainLooper()).postDelayed(new Runnable() {
+            @Override
+            public void run() {
+                stop();
+            }
+        }, durationMs);
+    }
+
+    /**
+     * 启动时如果存在ENABLE_FILE则开始记录，在Application.onCreate中调用
+     */
+    public static void startIfRequested() {
+        if (new File(Constant.TmpPath, ENABLE_FILE).exists()) {
+            start(ENABLE_DURATION_MS);
+        }
+    }
+
+    /**
+     * 停止记录并在后台写入Constant.TmpPath
+     */
+    public static synchronized void stop() {
+        if (!enabled) {
+            return;
+        }
+        enabled = false;
+        final int traceGeneration = generation;
+        final String path = Constant.TmpPath + "trace_" + DateUtil.getCurrentDate() + ".json";
+        AsyncTask.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int count = write(path, traceGeneration);
+                    Log.i(TAG, "write trace " + path + " events " + count);
+                } catch (IOException e) {
+                    Log.e(TAG, "write trace error " + e.getMessage());
+                } finally {
+                    removeDeadThreads();
+                }
+            }
+        });
+    }
+
+    /**
+     * 释放已经结束的线程的数组，这些线程不会再写入；正在记录的这一次追踪中的事件保留到写入文件
+     */
+    private static void removeDeadThreads() {
+        for (ThreadBuffer buffer : buffers) {
+            if (!buffer.thread.isAlive() && !(enabled && buffer.generation == generation)) {
+                buffers.remove(buffer);
+            }
+        }
+    }
+
+    private static int write(String path, int traceGeneration) throws IOException {
+        FileUtil.createFile(Constant.TmpPath);
+        int pid = Process.myPid();
+        int count = 0;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(path), "UTF-8"), 64 * 1024);
+        try {
+            StringBuilder builder = new StringBuilder(256);
+            writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[");
+            boolean first = true;
+            for (ThreadBuffer buffer : buffers) {
+                if (buffer.generation != traceGeneration) {
+                    continue;
+                }
+                int size = buffer.size;
+                builder.setLength(0);
+                builder.append(first ? "" : ",").append("\n{\"ph\":\"M\",\"name\":\"thread_name\",\"pid\":").append(pid)
+                        .append(",\"tid\":").append(buffer.tid).append(",\"args\":{\"name\":");
+                appendString(builder, buffer.threadName).append("}}");
+                writer.write(builder.toString());
+                first = false;
+                for (int i = 0; i < size; i++) {
+                    builder.setLength(0);
+                    builder.append(",\n{\"ph\":\"").append((char) buffer.phases[i])
+                            .append("\",\"pid\":").append(pid)
+                            .append(",\"tid\":").append(buffer.tid)
+                            .append(",\"ts\":").append(buffer.times[i] / 1000);
+                    if (buffer.names[i] != null) {
+                        builder.append(",\"name\":");
+                        appendString(builder, buffer.names[i]);
+                    }
+                    if (buffer.phases[i] == PHASE_INSTANT) {
+                        builder.append(",\"s\":\"t\"");
+                    }
+                    if (buffer.args[i] != null) {
+                        builder.append(",\"args\":{\"arg\":");
+                        appendString(builder, buffer.args[i]).append("}");
+                    }
+                    builder.append("}");
+                    writer.write(builder.toString());
+                }
+                count += size;
+                if (buffer.dropped > 0) {
+                    Log.w(TAG, "thread " + buffer.threadName + " dropped events " + buffer.dropped);
+                }
+            }
+            writer.write("\n]}\n");
+        } finally {
+            writer.close();
+        }
+        return count;
+    }
+
+    private static StringBuilder appendString(StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(' ');
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.append('"');
+    }
+
+    /**
+     * 单个线程的事件，只有所属线程写入，size发布后写文件的线程可读
+     */
+    private static class ThreadBuffer {
+        final Thread thread = Thread.currentThread();
+        final int tid = Process.myTid();
+        final String threadName = thread.getName();
+        final long[] times = new long[THREAD_CAPACITY];
+        final byte[] phases = new byte[THREAD_CAPACITY];
+        final String[] names = new String[THREAD_CAPACITY];
+        final String[] args = new String[THREAD_CAPACITY];
+        volatile int size;
+        volatile int generation;
+        int dropped;
+
+        void add(byte phase, String name, String arg) {
+            int currentGeneration = FrameTracer.generation;
+            if (generation != currentGeneration) {
+                size = 0;
+                dropped = 0;
+                generation = currentGeneration;
+            }
+            int index = size;
+            if (index >= THREAD_CAPACITY) {
+                dropped++;
+                return;
+            }
+            times[index] = System.nanoTime();
+            phases[index] = phase;
+            names[index] = name;
+            args[index] = arg;
+            size = index + 1;
+        }
+    }
+}
@@ -16,6 +16,9 @@ import android.util.Log;
 import android.view.Surface;
 
 import com.faceunity.pta_art.FUApplication;
+import com.faceunity.pta_art.utils.FrameTracer;
+import com.faceunity.pta_art.utils.yuv.ImageYuvReader;
+import com.faceunity.pta_art.utils.yuv.YuvUtil;
 
 import java.io.File;
 import java.io.FileOutputStream;
@@ -60,6 +63,9 @@ public class AvcDecoder {
     private int coverFaceHeight = 0;
     private ExecutorService executorPools = Executors.newCachedThreadPool();
     private boolean isRawFile = false;
+    // 只在解码线程使用
+    private final ImageYuvReader mYuvReader = new ImageYuvReader();
+    private byte[] mImageData;
 
     public void setDecoderParams(String mp4Path, int fileType) throws IOException {
 
@@ -259,15 +265,22 @@ public class AvcDecoder {
             if (!sawInputEOS) {
                 int inputBufferId = decoder.dequeueInputBuffer(DEFAULT_TIMEOUT_US);
                 if (inputBufferId >= 0) {
-                    ByteBuffer inputBuffer = decoder.getInputBuffer(inputBufferId);
-                    int sampleSize = extractor.readSampleData(inputBuffer, 0);
-                    if (sampleSize < 0) {
-                        decoder.queueInputBuffer(inputBufferId, 0, 0, 0L, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
-                        sawInputEOS = true;
-                    } else {
-                        long presentationTimeUs = extractor.getSampleTime();
-                        decoder.queueInputBuffer(inputBufferId, 0, sampleSize, presentationTimeUs, 0);
-                        extractor.advance();
+                    FrameTracer.begin("decodeInput");
+                    try {
+                        ByteBuffer inputBuffer = decoder.getInputBuffer(inputBufferId);
+                        int sampleSize = extractor.readSampleData(inputBuffer, 0);
+                        if (sampleSize < 0) {
+                            decoder.queueInputBuffer(inputBufferId, 0, 0, 0L, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            sawInputEOS = true;
+                        } else {
+                            long presentationTimeUs = extractor.getSampleTime();
+                            decoder.queueInputBuffer(inputBufferId, 0, sampleSize, presentationTimeUs, 0);
+                            extractor.advance();
+                        }
+                    } finally {
+                        FrameTracer.end();
+                    }
+                    if (!sawInputEOS) {
                         //控制帧率在30帧左右
                         try {
                             sleep(30);
@@ -277,30 +290,32 @@ public class AvcDecoder {
                     }
                 }
             }
-            int outputBufferId = decoder.dequeueOutputBuffer(info, DEFAULT_TIMEOUT_US);
-            if (outputBufferId >= 0) {
-                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
-                    isDecodeFinish = true;
-                    isNormalComplete = true;
+            FrameTracer.begin("decodeOutput");
+            try {
+                int outputBufferId = decoder.dequeueOutputBuffer(info, DEFAULT_TIMEOUT_US);
+                if (outputBufferId >= 0) {
+                    if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                        isDecodeFinish = true;
+                        isNormalComplete = true;
 //                    try {
 //                        fc_out.close();
 //                    } catch (IOException e) {
 //                        e.printStackTrace();
 //                    }
-                }
-                boolean doRender = (info.size != 0);
-                if (doRender) {
-                    if (surfaceTexture == null) {
-                        Image image = decoder.getOutputImage(outputBufferId);
-                        if (image != null) {
-                            //System.out.println("image format: " + image.getFormat());
-                            if (outputImageFileType != -1) {
-                                switch (outputImageFileType) {
-                                    case FILE_TypeI420:
-                                        byte[] data = getDataFromImage(image, COLOR_FormatI420);
-                                        //data = rotationYuvByOpenCV(data, width, height, 1);
-                                        //MappedByteBuffer outMappedBuffer = fc_out.map(FileChannel.MapMode.READ_WRITE, (long) outputFrameCount * data.length, (long) data.length);
-                                        //outMappedBuffer.put(data);
+                    }
+                    boolean doRender = (info.size != 0);
+                    if (doRender) {
+                        if (surfaceTexture == null) {
+                            Image image = decoder.getOutputImage(outputBufferId);
+                            if (image != null) {
+                                //System.out.println("image format: " + image.getFormat());
+                                if (outputImageFileType != -1) {
+                                    switch (outputImageFileType) {
+                                        case FILE_TypeI420:
+                                            byte[] data = getDataFromImage(image, COLOR_FormatI420);
+                                            //data = rotationYuvByOpenCV(data, width, height, 1);
+                                            //MappedByteBuffer outMappedBuffer = fc_out.map(FileChannel.MapMode.READ_WRITE, (long) outputFrameCount * data.length, (long) data.length);
+                                            //outMappedBuffer.put(data);
 //                                final int finalOutputFrameCount = outputFrameCount;
 //                                executorPools.submit(new Runnable() {
 //                                    @Override
@@ -310,33 +325,42 @@ public class AvcDecoder {
 //                                });
 //                                outputFrameCount++;
 //                                dumpFile(OUTPUT_FILE_PATH, data);
-                                        break;
-                                    case FILE_TypeNV21:
+                                            break;
+                                        case FILE_TypeNV21:
 //                                dumpFile(OUTPUT_FILE_PATH, getDataFromImage(image, COLOR_FormatNV21));
-                                        byte[] NV21 = getDataFromImage(image, COLOR_FormatNV21);
-                                        if (decodeListener != null) {
-                                            decodeListener.pushBuffer(NV21);
-                                        }
-                                        outputFrameCount++;
-                                        break;
-                                    case FILE_TypeJPEG:
-                                        compressToJpeg(OUTPUT_FILE_PATH, image);
-                                        break;
+                                            byte[] NV21;
+                                            FrameTracer.begin("getDataFromImage");
+                                            try {
+                                                NV21 = getDataFromImage(image, COLOR_FormatNV21);
+                                            } finally {
+                                                FrameTracer.end();
+                                            }
+                                            if (decodeListener != null) {
+                                                decodeListener.pushBuffer(NV21);
+                                            }
+                                            outputFrameCount++;
+                                            break;
+                                        case FILE_TypeJPEG:
+                                            compressToJpeg(OUTPUT_FILE_PATH, image);
+                                            break;
+                                    }
+                                    // Log.d(TAG, "完成第" + outputFrameCount + "帧");
+                                }
+                                image.close();
+                            } else {
+                                isDecodeFinish = true;
+                                if (decodeListener != null) {
+                                    decodeListener.onError("视频解码失败");
                                 }
-                                // Log.d(TAG, "完成第" + outputFrameCount + "帧");
-                            }
-                            image.close();
-                        } else {
-                            isDecodeFinish = true;
-                            if (decodeListener != null) {
-                                decodeListener.onError("视频解码失败");
                             }
                         }
+                        //对outputbuffer的处理完后，调用这个函数把buffer重新返回给codec类。
+                        //调用这个api之后，SurfaceView才有图像
+                        decoder.releaseOutputBuffer(outputBufferId, doRender);
                     }
-                    //对outputbuffer的处理完后，调用这个函数把buffer重新返回给codec类。
-                    //调用这个api之后，SurfaceView才有图像
-                    decoder.releaseOutputBuffer(outputBufferId, doRender);
                 }
+            } finally {
+                FrameTracer.end();
             }
         }
     }
@@ -373,6 +397,9 @@ public class AvcDecoder {
         return false;
     }
 
+    /**
+     * 读取解码后的图像，返回的数组在下一帧复用（DecodeListener.pushBuffer中同步拷贝）
+     */
     @RequiresApi(api = Build.VERSION_CODES.KITKAT)
     private byte[] getDataFromImage(Image image, int colorFormat) {
         if (colorFormat != COLOR_FormatI420 && colorFormat != COLOR_FormatNV21) {
@@ -381,76 +408,12 @@ public class AvcDecoder {
         if (!isImageFormatSupported(image)) {
             throw new RuntimeException("can't convert Image to byte array, format " + image.getFormat());
         }
-        Rect crop = image.getCropRect();
-        int format = image.getFormat();
-        int width = crop.width();
-        int height = crop.height();
-        Image.Plane[] planes = image.getPlanes();
-        byte[] data = new byte[width * height * ImageFormat.getBitsPerPixel(format) / 8];
-        byte[] rowData = new byte[planes[0].getRowStride()];
-        if (VERBOSE) Log.v(TAG, "get data from " + planes.length + " planes");
-        int channelOffset = 0;
-        int outputStride = 1;
-        for (int i = 0; i < planes.length; i++) {
-            switch (i) {
-                case 0:
-                    channelOffset = 0;
-                    outputStride = 1;
-                    break;
-                case 1:
-                    if (colorFormat == COLOR_FormatI420) {
-                        channelOffset = width * height;
-                        outputStride = 1;
-                    } else if (colorFormat == COLOR_FormatNV21) {
-                        channelOffset = width * height + 1;
-                        outputStride = 2;
-                    }
-                    break;
-                case 2:
-                    if (colorFormat == COLOR_FormatI420) {
-                        channelOffset = (int) (width * height * 1.25);
-                        outputStride = 1;
-                    } else if (colorFormat == COLOR_FormatNV21) {
-                        channelOffset = width * height;
-                        outputStride = 2;
-                    }
-                    break;
-            }
-            ByteBuffer buffer = planes[i].getBuffer();
-            int rowStride = planes[i].getRowStride();
-            int pixelStride = planes[i].getPixelStride();
-            if (VERBOSE) {
-                Log.v(TAG, "pixelStride " + pixelStride);
-                Log.v(TAG, "rowStride " + rowStride);
-                Log.v(TAG, "width " + width);
-                Log.v(TAG, "height " + height);
-                Log.v(TAG, "buffer size " + buffer.remaining());
-            }
-            int shift = (i == 0) ? 0 : 1;
-            int w = width >> shift;
-            int h = height >> shift;
-            buffer.position(rowStride * (crop.top >> shift) + pixelStride * (crop.left >> shift));
-            for (int row = 0; row < h; row++) {
-                int length;
-                if (pixelStride == 1 && outputStride == 1) {
-                    length = w;
-                    buffer.get(data, channelOffset, length);
-                    channelOffset += length;
-                } else {
-                    length = (w - 1) * pixelStride + 1;
-                    buffer.get(rowData, 0, length);
-                    for (int col = 0; col < w; col++) {
-                        data[channelOffset] = rowData[col * pixelStride];
-                        channelOffset += outputStride;
-                    }
-                }
-                if (row < h - 1) {
-                    buffer.position(buffer.position() + rowStride - length);
-                }
-            }
-            if (VERBOSE) Log.v(TAG, "Finished reading data from plane " + i);
+        int size = ImageYuvReader.getFrameSize(image);
+        if (mImageData == null || mImageData.length != size) {
+            mImageData = new byte[size];
         }
-        return data;
+        mYuvReader.read(image, colorFormat == COLOR_FormatI420 ? YuvUtil.FORMAT_I420 : YuvUtil.FORMAT_NV21, mImageData);
+        return mImageData;
     }
 
     private void compressToJpeg(String fileName, Image image) {
@@ -6,6 +6,8 @@ import android.media.MediaCodecInfo;
 import android.media.MediaFormat;
 import androidx.annotation.NonNull;
 
+import com.faceunity.pta_art.utils.yuv.YuvUtil;
+
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -22,6 +24,7 @@ public class AvcEncoderOnAsynchronous {
     private int frameSize;
     private byte[] configByte = null;
     private byte[] yuv420;
+    private byte[] yuv420sp;
     private BufferedOutputStream bos;
     private AtomicInteger index = new AtomicInteger(0);
     private RandomAccessFile randomAccessFile;
@@ -34,6 +37,7 @@ public class AvcEncoderOnAsynchronous {
         m_height = height;
         frameSize = width * height * 3 / 2;
         yuv420 = new byte[frameSize];
+        yuv420sp = new byte[frameSize];
         this.bos = new BufferedOutputStream(new FileOutputStream(new File(outPath), false));
         mediaCodec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_VIDEO_AVC);
         MediaFormat mediaFormat = MediaFormat.createVideoFormat(MediaFormat.MIMETYPE_VIDEO_AVC, width, height);
@@ -61,12 +65,10 @@ public class AvcEncoderOnAsynchronous {
                     e.printStackTrace();
                 }
                 // 420p转420sp
-                byte[] data_420sp = new byte[yuv420.length];
-                yuv420pTo420sp(yuv420, data_420sp, m_width, m_height);
-                yuv420 = data_420sp;
-                inputBuffer.put(yuv420);
+                YuvUtil.i420ToNV12(yuv420, yuv420sp, m_width, m_height);
+                inputBuffer.put(yuv420sp);
                 System.out.println(Thread.currentThread().getId() + ":输入" + index.get() + "帧");
-                mediaCodec.queueInputBuffer(inputBufferId, 0, yuv420.length, computePresentationTime(index.getAndIncrement()), 0);
+                mediaCodec.queueInputBuffer(inputBufferId, 0, yuv420sp.length, computePresentationTime(index.getAndIncrement()), 0);
             }
 
             @Override
@@ -134,20 +136,6 @@ public class AvcEncoderOnAsynchronous {
         close();
     }
 
-    private void yuv420pTo420sp(byte[] yuv420p, byte[] yuv420sp, int width, int height) {
-        if (yuv420p == null || yuv420sp == null) return;
-        int frameSize = width * height;
-        int j;
-        // Y
-        System.arraycopy(yuv420p, 0, yuv420sp, 0, frameSize);
-        for (j = 0; j < frameSize / 4; j++) {
-            // u
-            yuv420sp[frameSize + 2 * j] = yuv420p[j + frameSize];
-            // v
-            yuv420sp[frameSize + 2 * j + 1] = yuv420p[(int) (j + frameSize * 1.25)];
-        }
-    }
-
     /**
      * Generates the presentation time for frame N, in microseconds.
      */
@@ -5,6 +5,8 @@ import android.media.MediaCodec;
 import android.media.MediaCodecInfo;
 import android.media.MediaFormat;
 
+import com.faceunity.pta_art.utils.yuv.YuvUtil;
+
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -17,6 +19,7 @@ public class AvcEncoderOnSynchronous {
     private int m_width;
     private int m_height;
     private byte[] configByte = null;
+    private byte[] yuv420sp;
     private BufferedOutputStream bos;
     private long generateIndex = 0;
 
@@ -63,10 +66,11 @@ public class AvcEncoderOnSynchronous {
                 ByteBuffer inputBuffer = mediaCodec.getInputBuffer(inputBufferIndex);
                 if (inputBuffer != null) {
                     inputBuffer.clear();
-                    byte[] data_420sp = new byte[input.length];
-                    yuv420pTo420sp(input, data_420sp, m_width, m_height);
-                    input = data_420sp;
-                    inputBuffer.put(input);
+                    if (yuv420sp == null || yuv420sp.length != input.length) {
+                        yuv420sp = new byte[input.length];
+                    }
+                    YuvUtil.i420ToNV12(input, yuv420sp, m_width, m_height);
+                    inputBuffer.put(yuv420sp);
                     System.out.println("输入" + generateIndex + "帧");
                 }
                 mediaCodec.queueInputBuffer(inputBufferIndex, 0, input.length, computePresentationTime(generateIndex++), 0);
@@ -98,20 +102,6 @@ public class AvcEncoderOnSynchronous {
         }
     }
 
-
-    private void yuv420pTo420sp(byte[] yuv420p, byte[] yuv420sp, int width, int height) {
-        if (yuv420p == null || yuv420sp == null) return;
-        int frameSize = width * height;
-        int j;
-        System.arraycopy(yuv420p, 0, yuv420sp, 0, frameSize);
-        for (j = 0; j < frameSize / 4; j++) {
-            // u
-            yuv420sp[frameSize + 2 * j] = yuv420p[j + frameSize];
-            // v
-            yuv420sp[frameSize + 2 * j + 1] = yuv420p[(int) (j + frameSize * 1.25)];
-        }
-    }
-
     /**
      * Generates the presentation time for frame N, in microseconds.
      */
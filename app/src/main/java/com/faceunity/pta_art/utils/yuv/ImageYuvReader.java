@@ -0,0 +1,117 @@
+package com.faceunity.pta_art.utils.yuv;
+
+import android.graphics.Rect;
+import android.media.Image;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 把YUV_420_888的Image（相机ImageReader、MediaCodec输出）按rowStride/pixelStride读取为紧凑的NV21或者I420
+ * <p>
+ * 按Image的cropRect裁剪。内存本身就是NV21（U、V平面是同一块VUVU...内存）并且没有裁剪、行填充时整块拷贝色度，
+ * 否则逐行拷贝。行缓存在实例中复用，每个实例只能在一个线程中使用。
+ */
+public class ImageYuvReader {
+
+    private byte[] mRowScratch;
+
+    /**
+     * 输出的字节数
+     */
+    public static int getFrameSize(Image image) {
+        Rect crop = image.getCropRect();
+        return YuvUtil.getFrameSize(crop.width(), crop.height());
+    }
+
+    /**
+     * @param format YuvUtil.FORMAT_NV21、FORMAT_NV12或者FORMAT_I420
+     * @param out    输出，长度至少getFrameSize
+     */
+    public void read(Image image, int format, byte[] out) {
+        Rect crop = image.getCropRect();
+        int width = crop.width();
+        int height = crop.height();
+        int left = crop.left;
+        int top = crop.top;
+        Image.Plane[] planes = image.getPlanes();
+        Image.Plane yPlane = planes[0];
+        Image.Plane uPlane = planes[1];
+        Image.Plane vPlane = planes[2];
+        ByteBuffer y = yPlane.getBuffer();
+        ByteBuffer u = uPlane.getBuffer();
+        ByteBuffer v = vPlane.getBuffer();
+        y.rewind();
+        u.rewind();
+        v.rewind();
+
+        int ySize = width * height;
+        ensureScratch(width, yPlane.getPixelStride());
+        YuvUtil.copyPlane(y, yPlane.getRowStride(), yPlane.getPixelStride(), left, top, width, height,
+                out, 0, 1, mRowScratch);
+
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        int chromaLeft = left / 2;
+        int chromaTop = top / 2;
+        int uPixelStride = uPlane.getPixelStride();
+        int vPixelStride = vPlane.getPixelStride();
+        int chromaSize = ySize / 2;
+        if (format == YuvUtil.FORMAT_NV21 && left == 0 && top == 0 && uPixelStride == 2 && vPixelStride == 2
+                && uPlane.getRowStride() == width && vPlane.getRowStride() == width
+                && v.remaining() >= chromaSize - 1 && isInterleavedVU(u, v)) {
+            // V平面的buffer即为去掉最后一个U的NV21色度
+            v.get(out, ySize, chromaSize - 1);
+            out[ySize + chromaSize - 1] = u.get(chromaSize - 2);
+            return;
+        }
+        ensureScratch(chromaWidth, Math.max(uPixelStride, vPixelStride));
+        int uOffset;
+        int vOffset;
+        int outPixelStride;
+        if (format == YuvUtil.FORMAT_NV21) {
+            vOffset = ySize;
+            uOffset = ySize + 1;
+            outPixelStride = 2;
+        } else if (format == YuvUtil.FORMAT_NV12) {
+            uOffset = ySize;
+            vOffset = ySize + 1;
+            outPixelStride = 2;
+        } else {
+            uOffset = ySize;
+            vOffset = ySize + ySize / 4;
+            outPixelStride = 1;
+        }
+        YuvUtil.copyPlane(u, uPlane.getRowStride(), uPixelStride, chromaLeft, chromaTop, chromaWidth, chromaHeight,
+                out, uOffset, outPixelStride, mRowScratch);
+        YuvUtil.copyPlane(v, vPlane.getRowStride(), vPixelStride, chromaLeft, chromaTop, chromaWidth, chromaHeight,
+                out, vOffset, outPixelStride, mRowScratch);
+    }
+
+    private void ensureScratch(int width, int pixelStride) {
+        int size = YuvUtil.getRowScratchSize(width, pixelStride);
+        if (mRowScratch == null || mRowScratch.length < size) {
+            mRowScratch = new byte[size];
+        }
+    }
+
+    /**
+     * U、V平面是否为同一块VUVU...内存（U平面从V平面的第二个字节开始）
+     * <p>
+     * 只比较像素值时平坦的色度（如纯色画面）会误判，因此改写V平面的第二个字节，检查U平面的第一个字节是否随之改变，
+     * 然后恢复原值。只读的buffer（如部分解码器的输出）无法检查，按不是同一块内存处理。
+     */
+    private static boolean isInterleavedVU(ByteBuffer u, ByteBuffer v) {
+        if (u.remaining() != v.remaining() || v.remaining() < 2 || v.isReadOnly()) {
+            return false;
+        }
+        byte origin = v.get(1);
+        if (u.get(0) != origin) {
+            return false;
+        }
+        byte probe = (byte) ~origin;
+        v.put(1, probe);
+        boolean aliased = u.get(0) == probe;
+        v.put(1, origin);
+        return aliased;
+    }
+}
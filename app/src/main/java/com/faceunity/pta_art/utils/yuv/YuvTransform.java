@@ -0,0 +1,219 @@
+package com.faceunity.pta_art.utils.yuv;
+
+/**
+ * YUV420几何变换：旋转、镜像、裁剪、缩小
+ * <p>
+ * 输入输出都是紧凑存储的YuvUtil.FORMAT_*格式，输出格式与输入相同，由调用者分配（大小见getFrameSize）。
+ * 旋转与镜像合并为一次遍历：先按顺时针旋转，再水平镜像输出。每个平面按输出行遍历，
+ * 每行只需要计算源起点与步长，内循环只有一次读写与一次加法；交错色度按两字节的像素处理。
+ * 宽高、裁剪起点必须为偶数，所有方法都不分配内存。
+ */
+public class YuvTransform {
+
+    /**
+     * 90、270度旋转的分块大小（像素）
+     */
+    private static final int TILE_SIZE = 64;
+
+    private YuvTransform() {
+    }
+
+    /**
+     * 旋转（顺时针）并可选水平镜像
+     *
+     * @param src     输入
+     * @param width   输入宽
+     * @param height  输入高
+     * @param format  YuvUtil.FORMAT_*
+     * @param degrees 0、90、180、270
+     * @param mirror  是否水平镜像输出
+     * @param dst     输出，90、270时宽高互换；不能与src是同一个数组
+     */
+    public static void rotate(byte[] src, int width, int height, int format, int degrees, boolean mirror, byte[] dst) {
+        if (degrees != 0 && degrees != 90 && degrees != 180 && degrees != 270) {
+            throw new IllegalArgumentException("unsupported rotation " + degrees);
+        }
+        int ySize = width * height;
+        transformPlane(src, 0, width, height, 1, dst, 0, degrees, mirror);
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        if (YuvUtil.isSemiPlanar(format)) {
+            transformPlane(src, ySize, chromaWidth, chromaHeight, 2, dst, ySize, degrees, mirror);
+        } else {
+            int chromaSize = ySize / 4;
+            transformPlane(src, ySize, chromaWidth, chromaHeight, 1, dst, ySize, degrees, mirror);
+            transformPlane(src, ySize + chromaSize, chromaWidth, chromaHeight, 1, dst, ySize + chromaSize, degrees, mirror);
+        }
+    }
+
+    /**
+     * 水平镜像
+     */
+    public static void mirror(byte[] src, int width, int height, int format, byte[] dst) {
+        rotate(src, width, height, format, 0, true, dst);
+    }
+
+    /**
+     * 裁剪，left、top、cropWidth、cropHeight必须为偶数
+     *
+     * @param dst 输出，大小cropWidth * cropHeight * 3 / 2
+     */
+    public static void crop(byte[] src, int width, int height, int format,
+                            int left, int top, int cropWidth, int cropHeight, byte[] dst) {
+        if (left < 0 || top < 0 || left + cropWidth > width || top + cropHeight > height
+                || ((left | top | cropWidth | cropHeight) & 1) != 0) {
+            throw new IllegalArgumentException("invalid crop " + left + "," + top + " " + cropWidth + "x" + cropHeight);
+        }
+        int ySize = width * height;
+        int cropYSize = cropWidth * cropHeight;
+        copyRect(src, top * width + left, width, dst, 0, cropWidth, cropWidth, cropHeight);
+        if (YuvUtil.isSemiPlanar(format)) {
+            copyRect(src, ySize + top / 2 * width + left, width, dst, cropYSize, cropWidth, cropWidth, cropHeight / 2);
+        } else {
+            int chromaWidth = width / 2;
+            int cropChromaWidth = cropWidth / 2;
+            int cropChromaSize = cropYSize / 4;
+            int offset = top / 2 * chromaWidth + left / 2;
+            copyRect(src, ySize + offset, chromaWidth, dst, cropYSize, cropChromaWidth, cropChromaWidth, cropHeight / 2);
+            copyRect(src, ySize + ySize / 4 + offset, chromaWidth, dst, cropYSize + cropChromaSize, cropChromaWidth,
+                    cropChromaWidth, cropHeight / 2);
+        }
+    }
+
+    /**
+     * 缩小后的宽或高（取偶数）
+     */
+    public static int getScaledSize(int size, int factor) {
+        return size / factor & ~1;
+    }
+
+    /**
+     * 按整数倍抽样缩小（最近邻），用于跟踪等对画质不敏感的输入
+     *
+     * @param factor 缩小倍数
+     * @param dst    输出，宽高为getScaledSize(width/height, factor)
+     */
+    public static void downscale(byte[] src, int width, int height, int format, int factor, byte[] dst) {
+        int w = getScaledSize(width, factor);
+        int h = getScaledSize(height, factor);
+        int ySize = width * height;
+        int outYSize = w * h;
+        samplePlane(src, 0, width, 1, dst, 0, w, h, factor);
+        if (YuvUtil.isSemiPlanar(format)) {
+            samplePlane(src, ySize, width / 2, 2, dst, outYSize, w / 2, h / 2, factor);
+        } else {
+            samplePlane(src, ySize, width / 2, 1, dst, outYSize, w / 2, h / 2, factor);
+            samplePlane(src, ySize + ySize / 4, width / 2, 1, dst, outYSize + outYSize / 4, w / 2, h / 2, factor);
+        }
+    }
+
+    /**
+     * 旋转、镜像一个平面
+     * <p>
+     * 90、270度时源按列读取，按TILE_SIZE x TILE_SIZE分块遍历，使一个块读取的源数据留在缓存中
+     *
+     * @param pixelSize 每个像素的字节数，交错色度为2
+     */
+    private static void transformPlane(byte[] src, int srcOffset, int width, int height, int pixelSize,
+                                       byte[] dst, int dstOffset, int degrees, boolean mirror) {
+        boolean swap = degrees == 90 || degrees == 270;
+        int outWidth = swap ? height : width;
+        int outHeight = swap ? width : height;
+        if (degrees == 0 && !mirror) {
+            System.arraycopy(src, srcOffset, dst, dstOffset, width * height * pixelSize);
+            return;
+        }
+        // 步长只与角度、镜像有关
+        int step = (sourceIndex(1, 0, width, height, outWidth, degrees, mirror)
+                - sourceIndex(0, 0, width, height, outWidth, degrees, mirror)) * pixelSize;
+        int tile = swap ? TILE_SIZE : outWidth;
+        for (int tileY = 0; tileY < outHeight; tileY += tile) {
+            int endY = Math.min(tileY + tile, outHeight);
+            for (int tileX = 0; tileX < outWidth; tileX += tile) {
+                int count = Math.min(tile, outWidth - tileX);
+                for (int y = tileY; y < endY; y++) {
+                    int in = srcOffset + sourceIndex(tileX, y, width, height, outWidth, degrees, mirror) * pixelSize;
+                    int out = dstOffset + (y * outWidth + tileX) * pixelSize;
+                    if (step == pixelSize) {
+                        System.arraycopy(src, in, dst, out, count * pixelSize);
+                    } else if (pixelSize == 1) {
+                        for (int x = 0; x < count; x++) {
+                            dst[out++] = src[in];
+                            in += step;
+                        }
+                    } else {
+                        for (int x = 0; x < count; x++) {
+                            dst[out++] = src[in];
+                            dst[out++] = src[in + 1];
+                            in += step;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 输出坐标(x, y)对应的源像素下标（按像素计）
+     */
+    private static int sourceIndex(int x, int y, int width, int height, int outWidth, int degrees, boolean mirror) {
+        if (mirror) {
+            x = outWidth - 1 - x;
+        }
+        int sx;
+        int sy;
+        switch (degrees) {
+            case 90:
+                sx = y;
+                sy = height - 1 - x;
+                break;
+            case 180:
+                sx = width - 1 - x;
+                sy = height - 1 - y;
+                break;
+            case 270:
+                sx = width - 1 - y;
+                sy = x;
+                break;
+            default:
+                sx = x;
+                sy = y;
+                break;
+        }
+        return sy * width + sx;
+    }
+
+    private static void copyRect(byte[] src, int srcOffset, int srcStride, byte[] dst, int dstOffset, int dstStride,
+                                 int length, int rows) {
+        for (int row = 0; row < rows; row++) {
+            System.arraycopy(src, srcOffset + row * srcStride, dst, dstOffset + row * dstStride, length);
+        }
+    }
+
+    /**
+     * 按factor抽样一个平面
+     *
+     * @param srcWidth  源平面宽（像素）
+     * @param pixelSize 每个像素的字节数，交错色度为2
+     */
+    private static void samplePlane(byte[] src, int srcOffset, int srcWidth, int pixelSize,
+                                    byte[] dst, int dstOffset, int outWidth, int outHeight, int factor) {
+        int step = factor * pixelSize;
+        int out = dstOffset;
+        for (int y = 0; y < outHeight; y++) {
+            int in = srcOffset + y * factor * srcWidth * pixelSize;
+            if (pixelSize == 1) {
+                for (int x = 0; x < outWidth; x++) {
+                    dst[out++] = src[in];
+                    in += step;
+                }
+            } else {
+                for (int x = 0; x < outWidth; x++) {
+                    dst[out++] = src[in];
+                    dst[out++] = src[in + 1];
+                    in += step;
+                }
+            }
+        }
+    }
+}
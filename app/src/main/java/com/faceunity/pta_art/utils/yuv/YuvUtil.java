@@ -0,0 +1,170 @@
+package com.faceunity.pta_art.utils.yuv;
+
+import java.nio.ByteBuffer;
+
+/**
+ * YUV420格式转换
+ * <p>
+ * 支持三种紧凑存储（没有行填充）的YUV420格式：
+ * <ul>
+ * <li>FORMAT_I420：Y平面，U平面，V平面</li>
+ * <li>FORMAT_NV12：Y平面，UVUV...交错</li>
+ * <li>FORMAT_NV21：Y平面，VUVU...交错（相机预览格式）</li>
+ * </ul>
+ * 所有方法都不分配内存，输出由调用者提供；宽高必须为偶数。Y平面使用System.arraycopy，
+ * 色度只有简单的计数循环，便于JIT展开与消除边界检查。
+ */
+public class YuvUtil {
+
+    public static final int FORMAT_I420 = 0;
+    public static final int FORMAT_NV12 = 1;
+    public static final int FORMAT_NV21 = 2;
+
+    private YuvUtil() {
+    }
+
+    /**
+     * YUV420一帧的字节数
+     */
+    public static int getFrameSize(int width, int height) {
+        return width * height * 3 / 2;
+    }
+
+    /**
+     * 是否为色度交错的格式（NV12、NV21）
+     */
+    public static boolean isSemiPlanar(int format) {
+        return format == FORMAT_NV12 || format == FORMAT_NV21;
+    }
+
+    /**
+     * 格式转换，src与dst格式相同时直接拷贝
+     */
+    public static void convert(byte[] src, int srcFormat, byte[] dst, int dstFormat, int width, int height) {
+        if (srcFormat == dstFormat) {
+            if (src != dst) {
+                System.arraycopy(src, 0, dst, 0, getFrameSize(width, height));
+            }
+        } else if (srcFormat == FORMAT_I420) {
+            i420ToSemiPlanar(src, dst, width, height, dstFormat == FORMAT_NV21);
+        } else if (dstFormat == FORMAT_I420) {
+            semiPlanarToI420(src, dst, width, height, srcFormat == FORMAT_NV21);
+        } else {
+            swapUV(src, dst, width, height);
+        }
+    }
+
+    public static void i420ToNV21(byte[] i420, byte[] nv21, int width, int height) {
+        i420ToSemiPlanar(i420, nv21, width, height, true);
+    }
+
+    public static void i420ToNV12(byte[] i420, byte[] nv12, int width, int height) {
+        i420ToSemiPlanar(i420, nv12, width, height, false);
+    }
+
+    public static void nv21ToI420(byte[] nv21, byte[] i420, int width, int height) {
+        semiPlanarToI420(nv21, i420, width, height, true);
+    }
+
+    public static void nv12ToI420(byte[] nv12, byte[] i420, int width, int height) {
+        semiPlanarToI420(nv12, i420, width, height, false);
+    }
+
+    /**
+     * NV21与NV12互转（交换交错色度中的U、V），src与dst可以是同一个数组
+     */
+    public static void swapUV(byte[] src, byte[] dst, int width, int height) {
+        int ySize = width * height;
+        if (src != dst) {
+            System.arraycopy(src, 0, dst, 0, ySize);
+        }
+        int end = getFrameSize(width, height);
+        for (int i = ySize; i < end; i += 2) {
+            byte first = src[i];
+            dst[i] = src[i + 1];
+            dst[i + 1] = first;
+        }
+    }
+
+    /**
+     * I420转NV21（vFirst）或者NV12，src与dst不能是同一个数组
+     */
+    private static void i420ToSemiPlanar(byte[] i420, byte[] dst, int width, int height, boolean vFirst) {
+        int ySize = width * height;
+        int chromaSize = ySize / 4;
+        System.arraycopy(i420, 0, dst, 0, ySize);
+        int first = vFirst ? ySize + chromaSize : ySize;
+        int second = vFirst ? ySize : ySize + chromaSize;
+        int out = ySize;
+        for (int i = 0; i < chromaSize; i++) {
+            dst[out++] = i420[first + i];
+            dst[out++] = i420[second + i];
+        }
+    }
+
+    /**
+     * NV21（vFirst）或者NV12转I420，src与dst不能是同一个数组
+     */
+    private static void semiPlanarToI420(byte[] src, byte[] i420, int width, int height, boolean vFirst) {
+        int ySize = width * height;
+        int chromaSize = ySize / 4;
+        System.arraycopy(src, 0, i420, 0, ySize);
+        // I420中U在前、V在后，交错色度中每对的第一个字节NV21为V、NV12为U
+        int first = vFirst ? ySize + chromaSize : ySize;
+        int second = vFirst ? ySize : ySize + chromaSize;
+        int in = ySize;
+        for (int i = 0; i < chromaSize; i++) {
+            i420[first + i] = src[in++];
+            i420[second + i] = src[in++];
+        }
+    }
+
+    /**
+     * 按行、像素跨度从ByteBuffer拷贝一个平面（如Image.Plane），输出按dstPixelStride写入紧凑的行
+     *
+     * @param src            平面数据，从position 0开始
+     * @param rowStride      每行的字节数
+     * @param pixelStride    相邻像素的字节间隔
+     * @param left           起始列（平面坐标）
+     * @param top            起始行（平面坐标）
+     * @param width          拷贝的列数
+     * @param height         拷贝的行数
+     * @param dst            输出
+     * @param dstOffset      输出的起始位置
+     * @param dstPixelStride 输出相邻像素的字节间隔，1为平面，2为交错色度
+     * @param rowScratch     pixelStride不为1或者输出交错时使用的行缓存，长度至少getRowScratchSize
+     */
+    public static void copyPlane(ByteBuffer src, int rowStride, int pixelStride, int left, int top, int width, int height,
+                                 byte[] dst, int dstOffset, int dstPixelStride, byte[] rowScratch) {
+        int start = top * rowStride + left * pixelStride;
+        if (pixelStride == 1 && dstPixelStride == 1) {
+            if (rowStride == width) {
+                src.position(start);
+                src.get(dst, dstOffset, width * height);
+                return;
+            }
+            for (int row = 0; row < height; row++) {
+                src.position(start + row * rowStride);
+                src.get(dst, dstOffset + row * width, width);
+            }
+            return;
+        }
+        int length = getRowScratchSize(width, pixelStride);
+        int out = dstOffset;
+        for (int row = 0; row < height; row++) {
+            src.position(start + row * rowStride);
+            src.get(rowScratch, 0, length);
+            for (int col = 0, in = 0; col < width; col++, in += pixelStride) {
+                dst[out] = rowScratch[in];
+                out += dstPixelStride;
+            }
+        }
+    }
+
+    /**
+     * copyPlane需要的行缓存长度
+     */
+    public static int getRowScratchSize(int width, int pixelStride) {
+        return (width - 1) * pixelStride + 1;
+    }
+}
@@ -0,0 +1,345 @@
+package com.faceunity.pta_art.core;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+
+import com.faceunity.pta_art.constant.ColorConstant;
+import com.faceunity.pta_art.core.base.BaseCore;
+import com.faceunity.pta_art.core.base.FUItemHandler;
+import com.faceunity.pta_art.core.driver.ar.AvatarARDriveHandle;
+import com.faceunity.pta_art.core.driver.body.AvatarBodyHandle;
+import com.faceunity.pta_art.core.driver.text.AvatarTextDriveHandle;
+import com.faceunity.pta_art.entity.AvatarPTA;
+import com.faceunity.pta_art.entity.StaBsBlendBean;
+import com.faceunity.wrapper.faceunity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 稳定状态下每帧的渲染路径不分配对象
+ * <p>
+ * 使用src/test中的faceunity代替SDK，每帧通过FUPTARenderer.onDrawFrame渲染（状态采样、事件执行、道具池、
+ * FrameMetrics、FPS回调与模式的onDrawFrame），首页、AR、身体驱动、文字驱动各用一个模拟对应模式每帧操作的BaseCore
+ * （真正的模式依赖MainActivity，不能在JVM中创建）。预热后用ThreadMXBean统计当前线程分配的字节数，
+ * 所有轮次的总和不能超过JIT的预算，否则GC停顿会导致掉帧。
+ */
+public class SteadyStateAllocationTest {
+
+    private static final int CONTROLLER = 1;
+    private static final int ANIMATION = 2;
+    private static final int TEXTURE = 3;
+    private static final int WIDTH = 720;
+    private static final int HEIGHT = 1280;
+    private static final int WARMUP_FRAMES = 20000;
+    private static final int ROUNDS = 5;
+    private static final int FRAMES_PER_ROUND = 20000;
+    // 模拟切换模式时的重新绑定
+    private static final int REBIND_INTERVAL = 30;
+    // C2编译替换代码时会在当前线程分配少量对象（只解释执行或者只用C1时为0），
+    // 每帧哪怕分配一个对象，所有轮次的总和也会远超该值
+    private static final long JIT_BUDGET_BYTES = 16 * 1024;
+
+    private final byte[] mImage = new byte[WIDTH * HEIGHT * 3 / 2];
+    private Context mContext;
+    private FUPTARenderer mRenderer;
+    private FUItemHandler mItemHandler;
+
+    @Before
+    public void setUp() {
+        faceunity.reset();
+        ColorConstant.lip_color = colors(4);
+        ColorConstant.iris_color = colors(3);
+        ColorConstant.hair_color = colors(4);
+        ColorConstant.glass_color = colors(3);
+        ColorConstant.glass_frame_color = colors(3);
+        ColorConstant.beard_color = colors(3);
+        ColorConstant.hat_color = colors(3);
+        StaBsBlendBean staBsBlend = new StaBsBlendBean();
+        staBsBlend.setExpression_weight0(new double[57]);
+        staBsBlend.setExpression_weight1(new double[57]);
+        ColorConstant.sta_bs_blend = staBsBlend;
+
+        mContext = new ContextWrapper(null);
+        mRenderer = new FUPTARenderer(mContext);
+        // 类加载、JIT造成的超时会把事件推迟到下一帧并打印日志，与稳定状态无关
+        mRenderer.setEventBudget(0);
+        // 每帧采样跟踪状态与错误信息，每DEBUG_INTERVAL_FRAMES帧回调FPS
+        mRenderer.setStatusPollInterval(1, 0);
+        mRenderer.setOnFUDebugListener(new FUPTARenderer.OnFUDebugListener() {
+            @Override
+            public void onFpsChange(double fps, double renderTime) {
+            }
+        });
+        mItemHandler = new FixedItemHandler();
+    }
+
+    @After
+    public void tearDown() {
+        mRenderer.release();
+        ColorConstant.release();
+        ColorConstant.sta_bs_blend = null;
+        faceunity.reset();
+    }
+
+    private static double[][] colors(int length) {
+        double[][] colors = new double[3][length];
+        for (int i = 0; i < colors.length; i++) {
+            for (int j = 0; j < length; j++) {
+                colors[i][j] = i * 10 + j;
+            }
+        }
+        return colors;
+    }
+
+    private void frame(ModeCore core) {
+        core.onInput();
+        mRenderer.onDrawFrame(mImage, TEXTURE, WIDTH, HEIGHT, 0);
+    }
+
+    private void assertSteadyStateDoesNotAllocate(ModeCore core) {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        mRenderer.setFUCore(core);
+        for (int i = 0; i < WARMUP_FRAMES; i++) {
+            frame(core);
+        }
+        // getThreadAllocatedBytes本身的分配
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        long overhead = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        long total = 0;
+        StringBuilder rounds = new StringBuilder();
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = threadBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < FRAMES_PER_ROUND; i++) {
+                frame(core);
+            }
+            long allocated = threadBean.getThreadAllocatedBytes(threadId) - start - overhead;
+            total += allocated;
+            rounds.append(' ').append(allocated);
+        }
+        assertTrue("bytes allocated per " + FRAMES_PER_ROUND + " frames:" + rounds, total <= JIT_BUDGET_BYTES);
+    }
+
+    @Test
+    public void homeFrameDoesNotAllocate() {
+        assertSteadyStateDoesNotAllocate(new HomeCore(mContext, mRenderer, mItemHandler));
+    }
+
+    @Test
+    public void arFrameDoesNotAllocate() {
+        assertSteadyStateDoesNotAllocate(new ARCore(mContext, mRenderer, mItemHandler));
+    }
+
+    @Test
+    public void bodyFrameDoesNotAllocate() {
+        assertSteadyStateDoesNotAllocate(new BodyCore(mContext, mRenderer, mItemHandler));
+    }
+
+    @Test
+    public void textFrameDoesNotAllocate() {
+        assertSteadyStateDoesNotAllocate(new TextCore(mContext, mRenderer, mItemHandler));
+    }
+
+    @Test
+    public void steadyStateFrameCallsSdk() {
+        HomeCore core = new HomeCore(mContext, mRenderer, mItemHandler);
+        mRenderer.setFUCore(core);
+        faceunity.sRecord = true;
+        frame(core);
+        // 参数先于之后提交的unBindAll/bindAll生效
+        assertEquals("set " + CONTROLLER + " rot_delta " + (double) 0.01f, faceunity.sCalls.get(0));
+        assertEquals("set " + CONTROLLER + " translate_delta " + (double) 0.02f, faceunity.sCalls.get(1));
+        assertEquals("set " + CONTROLLER + " scale_delta " + (double) 0.03f, faceunity.sCalls.get(2));
+        assertEquals("unbind " + CONTROLLER, faceunity.sCalls.get(3));
+        assertEquals("bind " + CONTROLLER, faceunity.sCalls.get(4));
+        // 颜色在bindAll之后的事件中设置，第一个是唇色
+        assertEquals("set " + CONTROLLER + " lip_color 15.0 16.0 17.0 13.0", faceunity.sCalls.get(5));
+    }
+
+    /**
+     * 同步加载道具时直接返回新的句柄，不读取bundle
+     */
+    private static class FixedItemHandler extends FUItemHandler {
+        private int mNextHandle = 100;
+
+        FixedItemHandler() {
+            super(null, null);
+        }
+
+        @Override
+        public int loadFUItem(String bundle) {
+            return mNextHandle++;
+        }
+    }
+
+    /**
+     * 模式每帧的操作，onInput模拟手势、UI线程的调用，onDrawFrame与对应模式相同（去掉MainActivity的回调）
+     */
+    private abstract static class ModeCore extends BaseCore {
+        final int[] mItems = new int[3];
+        int mInputCount;
+
+        ModeCore(Context context, FUPTARenderer renderer) {
+            super(context, renderer);
+        }
+
+        void onInput() {
+            mInputCount++;
+        }
+
+        @Override
+        public int[] itemsArray() {
+            return mItems;
+        }
+
+        @Override
+        public void unBind() {
+        }
+
+        @Override
+        public void bind() {
+        }
+
+        @Override
+        public void release() {
+        }
+    }
+
+    /**
+     * 首页（PTACore）：手势旋转、缩放、平移，查询动画进度
+     */
+    private static class HomeCore extends ModeCore {
+        final AvatarHandle mHandle;
+
+        HomeCore(Context context, FUPTARenderer renderer, FUItemHandler itemHandler) {
+            super(context, renderer);
+            mHandle = new AvatarHandle(this, itemHandler, CONTROLLER);
+            AvatarPTA avatar = new AvatarPTA();
+            avatar.setLipColorValue(1.5);
+            avatar.setHairColorValue(0.5);
+            mHandle.setAvatarP2A(avatar);
+            mHandle.expressionItem.handle = ANIMATION;
+            mHandle.setCurrentAniLoadCount(1000);
+        }
+
+        @Override
+        void onInput() {
+            mHandle.setRotDelta(0.01f);
+            mHandle.setTranslateDelta(0.02f);
+            mHandle.setScaleDelta(0.03f);
+            if (mInputCount % REBIND_INTERVAL == 0) {
+                mHandle.unBindAll();
+                mHandle.bindAll();
+            }
+            super.onInput();
+        }
+
+        @Override
+        public int onDrawFrame(byte[] img, int tex, int w, int h, int rotation) {
+            mItems[1] = mHandle.controllerItem;
+            if (mHandle.getLoadCount() != Integer.MAX_VALUE && mHandle.expressionItem.handle > 0) {
+                mHandle.getAnimateProgress(mHandle.expressionItem.handle);
+            }
+            return faceunity.fuRenderBundles(avatarInfo, 0, w, h, mFrameId++, itemsArray());
+        }
+    }
+
+    /**
+     * AR驱动（PTAARDriveCore）：读取人脸点位，按屏幕方向设置参数
+     */
+    private static class ARCore extends ModeCore {
+        final AvatarARDriveHandle mHandle;
+
+        ARCore(Context context, FUPTARenderer renderer, FUItemHandler itemHandler) {
+            super(context, renderer);
+            mHandle = new AvatarARDriveHandle(this, itemHandler, CONTROLLER);
+        }
+
+        @Override
+        public int onDrawFrame(byte[] img, int tex, int w, int h, int rotation) {
+            // 偶尔旋转屏幕
+            int rotationMode = (mFrameId / 1000) % 4;
+            getLandmarksData();
+            mHandle.setScreenOrientation(rotationMode);
+            faceunity.fuSetDefaultRotationMode(rotationMode);
+            mItems[1] = mHandle.controllerItem;
+            mItems[2] = mHandle.filterItem.handle;
+            return faceunity.fuRenderBundlesWithCamera(img, tex, faceunity.FU_ADM_FLAG_EXTERNAL_OES_TEXTURE, w, h, mFrameId++, itemsArray());
+        }
+    }
+
+    /**
+     * 身体驱动（PTABodyCore）：读取人脸点位，界面查询驱动状态
+     */
+    private static class BodyCore extends ModeCore {
+        final AvatarBodyHandle mHandle;
+
+        BodyCore(Context context, FUPTARenderer renderer, FUItemHandler itemHandler) {
+            super(context, renderer);
+            mHandle = new AvatarBodyHandle(this, itemHandler, CONTROLLER);
+        }
+
+        @Override
+        void onInput() {
+            mHandle.getBodyDriveStatus();
+            super.onInput();
+        }
+
+        @Override
+        public int onDrawFrame(byte[] img, int tex, int w, int h, int rotation) {
+            getLandmarksData();
+            mItems[1] = mHandle.controllerItem;
+            return faceunity.fuRenderBundlesWithCamera(img, tex, faceunity.FU_ADM_FLAG_EXTERNAL_OES_TEXTURE, w, h, mFrameId++, itemsArray());
+        }
+    }
+
+    /**
+     * 文字驱动（PTATextDriveCore）：循环播放口型系数
+     */
+    private static class TextCore extends ModeCore {
+        final AvatarTextDriveHandle mHandle;
+        final List<float[]> mExpressions = new ArrayList<>();
+        final double[] mBlendExpression = new double[57];
+        int mPlayFrame;
+
+        TextCore(Context context, FUPTARenderer renderer, FUItemHandler itemHandler) {
+            super(context, renderer);
+            mHandle = new AvatarTextDriveHandle(this, itemHandler, CONTROLLER);
+            for (int i = 0; i < 100; i++) {
+                float[] expression = new float[57];
+                expression[i % 57] = 1;
+                mExpressions.add(expression);
+            }
+        }
+
+        @Override
+        public int onDrawFrame(byte[] img, int tex, int w, int h, int rotation) {
+            faceunity.fuItemSetParam(mHandle.controllerItem, "face_detector_status", 0);
+            avatarInfo.mRotationMode[0] = 0;
+            avatarInfo.mIsValid = false;
+            float[] expression = mExpressions.get(mPlayFrame++ % mExpressions.size());
+            for (int i = 0; i < mBlendExpression.length; i++) {
+                mBlendExpression[i] = expression[i];
+            }
+            faceunity.fuItemSetParam(mHandle.controllerItem, "blend_expression", mBlendExpression);
+            mItems[1] = mHandle.controllerItem;
+            return faceunity.fuRenderBundles(avatarInfo, 0, w, h, mFrameId++, itemsArray());
+        }
+    }
+}
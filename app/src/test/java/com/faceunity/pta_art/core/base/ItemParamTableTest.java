@@ -0,0 +1,154 @@
+package com.faceunity.pta_art.core.base;
+
+import com.faceunity.wrapper.faceunity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ItemParamTable的合并与执行顺序：参数按提交顺序生效，增量参数累加，销毁的道具不再设置参数
+ */
+public class ItemParamTableTest {
+
+    private RenderEventQueue mQueue;
+    private ItemParamTable mTable;
+
+    @Before
+    public void setUp() {
+        faceunity.reset();
+        faceunity.sRecord = true;
+        mQueue = new RenderEventQueue();
+        mTable = new ItemParamTable(mQueue);
+    }
+
+    @After
+    public void tearDown() {
+        FUItemPool.getInstance().setOnItemDestroyedListener(null);
+        faceunity.reset();
+    }
+
+    private Runnable record(final String call) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                faceunity.sCalls.add(call);
+            }
+        };
+    }
+
+    private List<String> calls(String... calls) {
+        List<String> list = new ArrayList<>();
+        for (String call : calls) {
+            list.add(call);
+        }
+        return list;
+    }
+
+    @Test
+    public void setKeepsLatestValue() {
+        mTable.set(1, "color", 1);
+        mTable.set(1, "color", 2);
+        mTable.set(1, "scale", 3);
+        mTable.set(1, "color", 4);
+        assertEquals(1, mQueue.drain());
+        assertEquals(calls("set 1 color 4.0", "set 1 scale 3.0"), faceunity.sCalls);
+    }
+
+    @Test
+    public void arrayValueIsCopied() {
+        double[] values = {1, 2};
+        mTable.set(1, "color", values);
+        values[0] = 5;
+        mQueue.drain();
+        assertEquals(calls("set 1 color 1.0 2.0"), faceunity.sCalls);
+    }
+
+    @Test
+    public void accumulateAddsToPendingValue() {
+        mTable.accumulate(1, "rot_delta", 1);
+        mTable.accumulate(1, "rot_delta", 2);
+        mTable.set(1, "scale_delta", 5);
+        mTable.accumulate(1, "scale_delta", 0.5);
+        mQueue.drain();
+        assertEquals(calls("set 1 rot_delta 3.0", "set 1 scale_delta 5.5"), faceunity.sCalls);
+    }
+
+    @Test
+    public void mixedValueKindsAreRejected() {
+        mTable.set(1, "color", new double[]{1, 2});
+        // 增量参数不能把数组变成数值
+        mTable.accumulate(1, "color", 0.5);
+        mTable.set(1, "color", 3);
+        mTable.set(1, "scale", 4);
+        mTable.set(1, "scale", new double[]{5});
+        mQueue.drain();
+        assertEquals(calls("set 1 color 1.0 2.0", "set 1 scale 4.0"), faceunity.sCalls);
+    }
+
+    @Test
+    public void paramsKeepOrderWithOtherEvents() {
+        mTable.set(1, "color", 1);
+        mQueue.queueEvent(record("bind"));
+        // 绑定之后设置的参数不能合并到绑定之前的批次中
+        mTable.set(1, "color", 2);
+        mTable.set(1, "color", 3);
+        mQueue.queueEvent(record("read"));
+        mQueue.drain();
+        assertEquals(calls("set 1 color 1.0", "bind", "set 1 color 3.0", "read"), faceunity.sCalls);
+    }
+
+    @Test
+    public void accumulateIsNotMergedAcrossEvents() {
+        mTable.accumulate(1, "rot_delta", 1);
+        mQueue.queueEvent(record("bind"));
+        mTable.accumulate(1, "rot_delta", 2);
+        mQueue.drain();
+        assertEquals(calls("set 1 rot_delta 1.0", "bind", "set 1 rot_delta 2.0"), faceunity.sCalls);
+    }
+
+    @Test
+    public void paramsSetDuringFlushGoToNextBatch() {
+        mTable.set(1, "color", 1);
+        mQueue.drain();
+        mTable.set(1, "color", 2);
+        mQueue.drain();
+        assertEquals(calls("set 1 color 1.0", "set 1 color 2.0"), faceunity.sCalls);
+    }
+
+    @Test
+    public void destroyedItemParamsAreDropped() {
+        FUItemPool.getInstance().setOnItemDestroyedListener(new FUItemPool.OnItemDestroyedListener() {
+            @Override
+            public void onItemDestroyed(int handle) {
+                mTable.remove(handle);
+            }
+        });
+        mQueue.queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                FUItemPool.getInstance().destroy(1);
+            }
+        });
+        // 在销毁事件之后才执行的参数不能设置到已经销毁（可能被复用）的句柄上
+        mTable.set(1, "color", 1);
+        mTable.set(2, "color", 2);
+        mQueue.drain();
+        assertEquals(calls("destroy 1", "set 2 color 2.0"), faceunity.sCalls);
+    }
+
+    @Test
+    public void clearDropsQueuedParams() {
+        mTable.set(1, "color", 1);
+        mTable.clear();
+        mQueue.drain();
+        mTable.set(1, "color", 2);
+        mQueue.drain();
+        assertEquals(calls("set 1 color 2.0"), faceunity.sCalls);
+    }
+}
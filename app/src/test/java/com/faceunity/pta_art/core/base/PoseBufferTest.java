@@ -0,0 +1,194 @@
+package com.faceunity.pta_art.core.base;
+
+import com.faceunity.wrapper.faceunity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * PoseBuffer按时间插值、外推：旋转取最短路径的球面插值，外推不超过maxExtrapolationNanos，
+ * 环形缓存只保留最近CAPACITY次结果，没有人脸的结果不参与插值
+ */
+public class PoseBufferTest {
+
+    private static final long MS = 1000000L;
+    private static final float EPSILON = 1e-5f;
+    private static final float[] IDENTITY = {0f, 0f, 0f, 1f};
+
+    private PoseBuffer mBuffer;
+    private faceunity.AvatarInfo mInfo;
+    private float[] mLandmarks;
+
+    @Before
+    public void setUp() {
+        mBuffer = new PoseBuffer();
+        mInfo = new faceunity.AvatarInfo();
+        mInfo.mRotation = new float[PoseBuffer.ROTATION_SIZE];
+        mInfo.mExpression = new float[PoseBuffer.EXPRESSION_SIZE];
+        mInfo.mPupilPos = new float[PoseBuffer.PUPIL_SIZE];
+        mInfo.mRotationMode = new float[1];
+        mLandmarks = new float[PoseBuffer.LANDMARKS_SIZE];
+    }
+
+    /**
+     * 绕z轴旋转degrees度的四元数
+     */
+    private static float[] rotationZ(double degrees) {
+        double half = Math.toRadians(degrees) / 2;
+        return new float[]{0f, 0f, (float) Math.sin(half), (float) Math.cos(half)};
+    }
+
+    /**
+     * 写入一次结果，表情系数与点位都为value，瞳孔位置为(value, 2 * value)，人脸方向为value
+     */
+    private void push(long time, boolean valid, float[] rotation, float value) {
+        float[] expression = new float[PoseBuffer.EXPRESSION_SIZE];
+        Arrays.fill(expression, value);
+        float[] landmarks = new float[PoseBuffer.LANDMARKS_SIZE];
+        Arrays.fill(landmarks, value);
+        mBuffer.push(time, valid, rotation, expression, new float[]{value, 2 * value}, value, landmarks);
+    }
+
+    private void assertSample(float value) {
+        assertEquals(value, mInfo.mPupilPos[0], EPSILON);
+        assertEquals(2 * value, mInfo.mPupilPos[1], EPSILON);
+        assertEquals(value, mLandmarks[0], EPSILON);
+        assertEquals(value, mLandmarks[PoseBuffer.LANDMARKS_SIZE - 1], EPSILON);
+    }
+
+    @Test
+    public void emptyBufferKeepsOutput() {
+        mInfo.mPupilPos[0] = 7f;
+        assertFalse(mBuffer.sample(0, mInfo, mLandmarks));
+        assertEquals(7f, mInfo.mPupilPos[0], 0f);
+        assertEquals(0, mBuffer.getLatestTime());
+
+        push(10 * MS, true, IDENTITY, 0.5f);
+        mBuffer.clear();
+        assertFalse(mBuffer.sample(10 * MS, mInfo, mLandmarks));
+        assertEquals(7f, mInfo.mPupilPos[0], 0f);
+    }
+
+    @Test
+    public void interpolatesBetweenSamples() {
+        push(0, true, IDENTITY, 0f);
+        push(100 * MS, true, rotationZ(90), 0.8f);
+
+        assertTrue(mBuffer.sample(25 * MS, mInfo, mLandmarks));
+        assertTrue(mInfo.mIsValid);
+        assertArrayEquals(rotationZ(22.5), mInfo.mRotation, EPSILON);
+        assertEquals(0.2f, mInfo.mExpression[0], EPSILON);
+        assertEquals(0.2f, mInfo.mExpression[PoseBuffer.EXPRESSION_SIZE - 1], EPSILON);
+        assertSample(0.2f);
+        // 人脸方向不插值，取较新的结果
+        assertEquals(0.8f, mInfo.mRotationMode[0], 0f);
+
+        // 点位可以不输出
+        assertTrue(mBuffer.sample(50 * MS, mInfo, null));
+        assertArrayEquals(rotationZ(45), mInfo.mRotation, EPSILON);
+        assertEquals(0.2f, mLandmarks[0], EPSILON);
+    }
+
+    @Test
+    public void slerpTakesShortestPath() {
+        // q与-q表示同一个旋转，插值时不能绕远路
+        float[] negative = rotationZ(90);
+        for (int i = 0; i < negative.length; i++) {
+            negative[i] = -negative[i];
+        }
+        push(0, true, IDENTITY, 0f);
+        push(100 * MS, true, negative, 0f);
+
+        assertTrue(mBuffer.sample(50 * MS, mInfo, mLandmarks));
+        assertArrayEquals(rotationZ(45), mInfo.mRotation, EPSILON);
+        float length = 0f;
+        for (float v : mInfo.mRotation) {
+            length += v * v;
+        }
+        assertEquals(1f, length, EPSILON);
+    }
+
+    @Test
+    public void extrapolationIsClamped() {
+        push(0, true, IDENTITY, 0.5f);
+        push(100 * MS, true, rotationZ(20), 0.9f);
+
+        // 晚于最新结果20ms，沿最近两次结果的方向外推
+        assertTrue(mBuffer.sample(120 * MS, mInfo, mLandmarks));
+        assertArrayEquals(rotationZ(24), mInfo.mRotation, EPSILON);
+        assertSample(0.98f);
+        // 表情系数限制在0~1
+        assertEquals(0.98f, mInfo.mExpression[0], EPSILON);
+
+        // 最多外推50ms，之后保持不变
+        assertTrue(mBuffer.sample(500 * MS, mInfo, mLandmarks));
+        assertArrayEquals(rotationZ(30), mInfo.mRotation, EPSILON);
+        assertSample(1.1f);
+        assertEquals(1f, mInfo.mExpression[0], 0f);
+
+        mBuffer.setMaxExtrapolationNanos(0);
+        assertTrue(mBuffer.sample(500 * MS, mInfo, mLandmarks));
+        assertArrayEquals(rotationZ(20), mInfo.mRotation, EPSILON);
+        assertSample(0.9f);
+    }
+
+    @Test
+    public void wrapsAroundCapacity() {
+        int count = PoseBuffer.CAPACITY + 3;
+        for (int i = 0; i < count; i++) {
+            push(i * 10 * MS, true, IDENTITY, i);
+        }
+        assertEquals(count, mBuffer.getCount());
+        assertEquals((count - 1) * 10 * MS, mBuffer.getLatestTime());
+
+        // 覆盖位置前后的两次结果
+        assertTrue(mBuffer.sample(((count - 1) * 10 - 5) * MS, mInfo, mLandmarks));
+        assertSample(count - 1.5f);
+        assertTrue(mBuffer.sample(75 * MS, mInfo, mLandmarks));
+        assertSample(7.5f);
+        // 最旧的3次结果已被覆盖，早于保留的最旧结果时使用最旧结果
+        assertTrue(mBuffer.sample(35 * MS, mInfo, mLandmarks));
+        assertSample(3.5f);
+        assertTrue(mBuffer.sample(0, mInfo, mLandmarks));
+        assertSample(3f);
+    }
+
+    @Test
+    public void invalidSamplesAreNotInterpolated() {
+        push(0, true, IDENTITY, 0.1f);
+        push(100 * MS, false, rotationZ(90), 0.5f);
+        push(200 * MS, true, rotationZ(40), 0.9f);
+
+        // 有一端没有人脸时使用时间上最近的结果
+        assertTrue(mBuffer.sample(40 * MS, mInfo, mLandmarks));
+        assertTrue(mInfo.mIsValid);
+        assertArrayEquals(IDENTITY, mInfo.mRotation, 0f);
+        assertSample(0.1f);
+
+        assertFalse(mBuffer.sample(60 * MS, mInfo, mLandmarks));
+        assertFalse(mInfo.mIsValid);
+        assertSample(0.5f);
+
+        assertTrue(mBuffer.sample(150 * MS, mInfo, mLandmarks));
+        assertTrue(mInfo.mIsValid);
+        assertArrayEquals(rotationZ(40), mInfo.mRotation, 0f);
+        assertSample(0.9f);
+
+        // 外推的上一次结果没有人脸时不外推
+        assertTrue(mBuffer.sample(230 * MS, mInfo, mLandmarks));
+        assertArrayEquals(rotationZ(40), mInfo.mRotation, 0f);
+        assertSample(0.9f);
+
+        // 最新结果没有人脸
+        push(300 * MS, false, IDENTITY, 0.3f);
+        assertFalse(mBuffer.sample(310 * MS, mInfo, mLandmarks));
+        assertSample(0.3f);
+    }
+}
@@ -0,0 +1,216 @@
+package com.faceunity.pta_art.core.base;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Control;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RenderEventQueue与原来FUPTARenderer中Collections.synchronizedList + remove(0)实现的对比
+ * <p>
+ * 运行：./gradlew :app:jmh -Pjmh.include=RenderEventQueueBenchmark
+ * <ul>
+ * <li>drain：另一个线程提交size个事件后，GL线程一次执行完的耗时</li>
+ * <li>contended：3个线程持续提交、GL线程持续执行时GL线程每秒执行的事件数（events），积压超过MAX_BACKLOG时生产者等待</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderEventQueueBenchmark {
+
+    public static final String IMPL_SYNCHRONIZED_LIST = "synchronizedList";
+    public static final String IMPL_RENDER_EVENT_QUEUE = "renderEventQueue";
+
+    /**
+     * contended中允许的最大积压事件数，原实现不限制时积压越多remove(0)越慢，结果取决于运行时间
+     */
+    private static final int MAX_BACKLOG = 1024;
+
+    /**
+     * 两种实现共同的接口
+     */
+    interface EventQueue {
+        void queueEvent(Runnable r);
+
+        int drain();
+    }
+
+    /**
+     * 原FUPTARenderer的实现
+     */
+    static class SynchronizedListQueue implements EventQueue {
+        private final List<Runnable> mEventQueue = Collections.synchronizedList(new ArrayList<Runnable>());
+        private final List<Runnable> mNextEventQueue = Collections.synchronizedList(new ArrayList<Runnable>());
+
+        @Override
+        public void queueEvent(Runnable r) {
+            mEventQueue.add(r);
+        }
+
+        @Override
+        public int drain() {
+            int count = 0;
+            while (!mEventQueue.isEmpty()) {
+                Runnable r = mEventQueue.remove(0);
+                if (r != null) {
+                    r.run();
+                    count++;
+                }
+            }
+            mEventQueue.addAll(mNextEventQueue);
+            mNextEventQueue.clear();
+            return count;
+        }
+    }
+
+    static class RenderEventQueueAdapter implements EventQueue {
+        private final RenderEventQueue mQueue = new RenderEventQueue();
+
+        @Override
+        public void queueEvent(Runnable r) {
+            mQueue.queueEvent(r);
+        }
+
+        @Override
+        public int drain() {
+            return mQueue.drain();
+        }
+    }
+
+    static EventQueue create(String impl) {
+        return IMPL_SYNCHRONIZED_LIST.equals(impl) ? new SynchronizedListQueue() : new RenderEventQueueAdapter();
+    }
+
+    static final Runnable NO_OP = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    @State(Scope.Thread)
+    public static class DrainState {
+        @Param({"64", "256", "1024"})
+        public int size;
+        @Param({IMPL_SYNCHRONIZED_LIST, IMPL_RENDER_EVENT_QUEUE})
+        public String impl;
+
+        EventQueue queue;
+        ExecutorService producer;
+        Runnable fill;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            queue = create(impl);
+            producer = Executors.newSingleThreadExecutor();
+            fill = new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < size; i++) {
+                        queue.queueEvent(NO_OP);
+                    }
+                }
+            };
+        }
+
+        /**
+         * 每次测量前由另一个线程提交事件，不计入耗时
+         */
+        @Setup(Level.Invocation)
+        public void fill() throws Exception {
+            producer.submit(fill).get();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            producer.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public int drain(DrainState state) {
+        return state.queue.drain();
+    }
+
+    @State(Scope.Group)
+    public static class ContendedState {
+        @Param({IMPL_SYNCHRONIZED_LIST, IMPL_RENDER_EVENT_QUEUE})
+        public String impl;
+
+        EventQueue queue;
+        final AtomicLong queued = new AtomicLong();
+        final AtomicLong drained = new AtomicLong();
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            queue = create(impl);
+            queued.set(0);
+            drained.set(0);
+        }
+    }
+
+    /**
+     * GL线程执行的事件数
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class DrainedEvents {
+        public long events;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            events = 0;
+        }
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(3)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void produce(ContendedState state, Control control) {
+        while (state.queued.get() - state.drained.get() >= MAX_BACKLOG) {
+            // 测量结束时GL线程不再执行事件，生产者不能继续等待或者提交
+            if (control.stopMeasurement) {
+                return;
+            }
+            Thread.yield();
+        }
+        state.queued.incrementAndGet();
+        state.queue.queueEvent(NO_OP);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(1)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void consume(ContendedState state, DrainedEvents drainedEvents) {
+        int count = state.queue.drain();
+        state.drained.addAndGet(count);
+        drainedEvents.events += count;
+    }
+}
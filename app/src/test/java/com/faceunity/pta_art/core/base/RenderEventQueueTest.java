@@ -0,0 +1,227 @@
+package com.faceunity.pta_art.core.base;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * RenderEventQueue的执行顺序：所有线程提交的事件保持同一个FIFO顺序，queueNextEvent延后一帧且不会被饿死
+ */
+public class RenderEventQueueTest {
+
+    private final List<String> mOrder = new ArrayList<>();
+
+    private Runnable record(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                synchronized (mOrder) {
+                    mOrder.add(name);
+                }
+            }
+        };
+    }
+
+    private Runnable recordAndSleep(final String name, final long ms) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                record(name).run();
+                sleep(ms);
+            }
+        };
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void runOnOtherThread(Runnable r) throws InterruptedException {
+        Thread thread = new Thread(r);
+        thread.start();
+        thread.join();
+    }
+
+    private List<String> order(String... names) {
+        List<String> list = new ArrayList<>();
+        for (String name : names) {
+            list.add(name);
+        }
+        return list;
+    }
+
+    @Test
+    public void glThreadEventsKeepSubmissionOrder() throws InterruptedException {
+        final RenderEventQueue queue = new RenderEventQueue();
+        runOnOtherThread(new Runnable() {
+            @Override
+            public void run() {
+                queue.queueEvent(new Runnable() {
+                    @Override
+                    public void run() {
+                        record("bind").run();
+                        // GL线程执行事件时提交的事件排在其它线程之前提交的事件之后
+                        queue.queueEvent(record("gl"));
+                    }
+                });
+                queue.queueEvent(record("a"));
+                queue.queueEvent(record("b"));
+            }
+        });
+        assertEquals(4, queue.drain());
+        assertEquals(order("bind", "a", "b", "gl"), mOrder);
+    }
+
+    @Test
+    public void nextEventRunsOneFrameLater() throws InterruptedException {
+        final RenderEventQueue queue = new RenderEventQueue();
+        runOnOtherThread(new Runnable() {
+            @Override
+            public void run() {
+                queue.queueNextEvent(record("next"));
+                queue.queueEvent(record("a"));
+            }
+        });
+        queue.drain();
+        assertEquals(order("a"), mOrder);
+        queue.drain();
+        assertEquals(order("a", "next"), mOrder);
+    }
+
+    @Test
+    public void nextEventQueuedDuringDrainRunsInNextDrain() {
+        final RenderEventQueue queue = new RenderEventQueue();
+        queue.queueEvent(new Runnable() {
+            @Override
+            public void run() {
+                record("a").run();
+                queue.queueNextEvent(record("next"));
+                queue.queueEvent(record("b"));
+            }
+        });
+        queue.drain();
+        assertEquals(order("a", "b"), mOrder);
+        queue.queueEvent(record("c"));
+        queue.drain();
+        assertEquals(order("a", "b", "c", "next"), mOrder);
+    }
+
+    @Test
+    public void nextEventFollowsEventsDeferredByBudget() throws InterruptedException {
+        final RenderEventQueue queue = new RenderEventQueue();
+        queue.setBudget(1);
+        runOnOtherThread(new Runnable() {
+            @Override
+            public void run() {
+                queue.queueEvent(recordAndSleep("bind1", 3));
+                queue.queueEvent(recordAndSleep("bind2", 3));
+                queue.queueEvent(recordAndSleep("bind3", 3));
+                queue.queueNextEvent(record("destroy"));
+            }
+        });
+        for (int i = 0; i < 5; i++) {
+            queue.drain();
+        }
+        assertEquals(order("bind1", "bind2", "bind3", "destroy"), mOrder);
+    }
+
+    @Test
+    public void nextEventIsNotStarvedUnderSustainedLoad() {
+        RenderEventQueue queue = new RenderEventQueue();
+        queue.setBudget(1);
+        queue.queueNextEvent(record("next"));
+        for (int frame = 0; frame < 20 && !mOrder.contains("next"); frame++) {
+            // 每帧提交的事件都超过预算，队列一直不空
+            queue.queueEvent(recordAndSleep("load", 2));
+            queue.queueEvent(recordAndSleep("load", 2));
+            queue.drain();
+        }
+        assertTrue(mOrder.contains("next"));
+        // 延后的事件在之前提交的事件之后执行
+        assertEquals(4, mOrder.indexOf("next"));
+    }
+
+    @Test
+    public void chainedEventIgnoresBudget() {
+        RenderEventQueue queue = new RenderEventQueue();
+        queue.setBudget(1);
+        queue.queueEvent(recordAndSleep("a", 3));
+        queue.queueEvent(new RenderEventQueue.Chained() {
+            @Override
+            public void run() {
+                record("chained").run();
+            }
+        });
+        queue.queueEvent(record("b"));
+        assertEquals(2, queue.drain());
+        assertEquals(order("a", "chained"), mOrder);
+        assertEquals(1, queue.getLastDeferredCount());
+        queue.drain();
+        assertEquals(order("a", "chained", "b"), mOrder);
+    }
+
+    @Test
+    public void multipleProducersKeepFifoThroughOverflow() throws InterruptedException {
+        // 容量很小，生产者一定会进入溢出队列
+        final RenderEventQueue queue = new RenderEventQueue(8);
+        final int producers = 4;
+        final int perProducer = 50000;
+        final int[] last = new int[producers];
+        final boolean[] reordered = new boolean[1];
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            last[p] = -1;
+            final int producer = p;
+            threads[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        final int sequence = i;
+                        queue.queueEvent(new Runnable() {
+                            @Override
+                            public void run() {
+                                if (sequence != last[producer] + 1) {
+                                    reordered[0] = true;
+                                }
+                                last[producer] = sequence;
+                            }
+                        });
+                    }
+                }
+            });
+            threads[p].start();
+        }
+        int total = 0;
+        while (total < producers * perProducer) {
+            total += queue.drain();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(reordered[0]);
+        assertEquals(0, queue.drain());
+        for (int p = 0; p < producers; p++) {
+            assertEquals(perProducer - 1, last[p]);
+        }
+    }
+
+    @Test
+    public void clearDropsPendingEvents() {
+        RenderEventQueue queue = new RenderEventQueue();
+        queue.queueEvent(record("a"));
+        queue.queueNextEvent(record("next"));
+        queue.drain();
+        queue.clear();
+        assertEquals(0, queue.drain());
+        assertEquals(order("a"), mOrder);
+    }
+}
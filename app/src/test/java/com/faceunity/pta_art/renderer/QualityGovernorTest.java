@@ -0,0 +1,146 @@
+package com.faceunity.pta_art.renderer;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * 用耗时与温度序列（src/test/resources中的quality_*.trace）驱动QualityGovernor
+ * <p>
+ * trace每行一条指令，#开头为注释：
+ * <ul>
+ * <li>fps &lt;n&gt;：setTargetFps</li>
+ * <li>frames &lt;count&gt; &lt;us&gt;：count帧，每帧耗时us微秒</li>
+ * <li>temp &lt;celsius&gt;：onThermal</li>
+ * <li>expect tier|changes|reason &lt;value&gt;：检查当前状态</li>
+ * </ul>
+ */
+public class QualityGovernorTest {
+
+    private void replay(String trace) throws IOException {
+        replay(new QualityGovernor(null), trace);
+    }
+
+    private void replay(QualityGovernor governor, String trace) throws IOException {
+        InputStream in = getClass().getResourceAsStream(trace);
+        assertNotNull(trace, in);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] args = line.split("\\s+");
+                String where = trace + ":" + lineNumber + " " + line + " (" + governor + ")";
+                switch (args[0]) {
+                    case "fps":
+                        governor.setTargetFps(Integer.parseInt(args[1]));
+                        break;
+                    case "frames":
+                        int count = Integer.parseInt(args[1]);
+                        long nanos = Long.parseLong(args[2]) * 1000;
+                        for (int i = 0; i < count; i++) {
+                            governor.onFrame(nanos);
+                        }
+                        break;
+                    case "temp":
+                        governor.onThermal(Float.parseFloat(args[1]));
+                        break;
+                    case "expect":
+                        if ("tier".equals(args[1])) {
+                            assertEquals(where, Integer.parseInt(args[2]), governor.getTier());
+                        } else if ("changes".equals(args[1])) {
+                            assertEquals(where, Integer.parseInt(args[2]), governor.getChangeCount());
+                        } else if ("reason".equals(args[1])) {
+                            assertEquals(where, args[2], governor.getLastReason());
+                        } else {
+                            throw new IllegalArgumentException(where);
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException(where);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void degradeUnderLoad() throws IOException {
+        replay("quality_degrade.trace");
+    }
+
+    @Test
+    public void recoverWhenLoadDrops() throws IOException {
+        replay("quality_recover.trace");
+    }
+
+    @Test
+    public void thermalHold() throws IOException {
+        replay("quality_thermal.trace");
+    }
+
+    @Test
+    public void maxTier() {
+        QualityGovernor.Config config = new QualityGovernor.Config();
+        config.maxTier = QualityGovernor.TIER_NO_FXAA;
+        QualityGovernor governor = new QualityGovernor(config);
+        for (int i = 0; i < QualityGovernor.WINDOW_FRAMES * 20; i++) {
+            governor.onFrame(40000000L);
+        }
+        assertFalse(governor.onThermal(50f));
+        assertEquals(QualityGovernor.TIER_NO_FXAA, governor.getTier());
+        assertEquals(1, governor.getChangeCount());
+    }
+
+    @Test
+    public void clampsConfig() {
+        QualityGovernor.Config config = new QualityGovernor.Config();
+        config.maxTier = 10;
+        config.startTier = 10;
+        assertEquals(QualityGovernor.TIER_LOW, new QualityGovernor(config).getTier());
+        assertEquals(QualityGovernor.TIER_LOW, config.maxTier);
+
+        config = new QualityGovernor.Config();
+        config.maxTier = QualityGovernor.TIER_NO_SHADOW;
+        config.startTier = QualityGovernor.TIER_LOW;
+        assertEquals(QualityGovernor.TIER_NO_SHADOW, new QualityGovernor(config).getTier());
+
+        config = new QualityGovernor.Config();
+        config.maxTier = -1;
+        config.startTier = -1;
+        QualityGovernor governor = new QualityGovernor(config);
+        assertEquals(QualityGovernor.TIER_HIGH, governor.getTier());
+        // maxTier为TIER_HIGH时不降档
+        for (int i = 0; i < QualityGovernor.WINDOW_FRAMES * 10; i++) {
+            governor.onFrame(40000000L);
+        }
+        assertEquals(QualityGovernor.TIER_HIGH, governor.getTier());
+        assertEquals(0, governor.getChangeCount());
+    }
+
+    @Test
+    public void startTierRecovers() {
+        QualityGovernor.Config config = new QualityGovernor.Config();
+        config.startTier = QualityGovernor.TIER_NO_SHADOW;
+        QualityGovernor governor = new QualityGovernor(config);
+        assertEquals(QualityGovernor.TIER_NO_SHADOW, governor.getTier());
+        // 初始档位不丢弃窗口，5个低窗口后升一档
+        for (int i = 0; i < QualityGovernor.WINDOW_FRAMES * 5; i++) {
+            governor.onFrame(5000000L);
+        }
+        assertEquals(QualityGovernor.TIER_NO_FXAA, governor.getTier());
+    }
+}
@@ -0,0 +1,141 @@
+package com.faceunity.pta_art.renderer;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+
+/**
+ * 用耗时序列（src/test/resources中的.trace）驱动ResolutionGovernor
+ * <p>
+ * trace每行一条指令，#开头为注释：
+ * <ul>
+ * <li>fps &lt;n&gt;：setTargetFps</li>
+ * <li>frames &lt;count&gt; &lt;us&gt;：count帧，每帧SDK耗时us微秒</li>
+ * <li>pin / unpin：setPinned</li>
+ * <li>expect level|changes|scale &lt;value&gt;：检查当前状态</li>
+ * </ul>
+ */
+public class ResolutionGovernorTest {
+
+    private void replay(String trace) throws IOException {
+        replay(new ResolutionGovernor(), trace);
+    }
+
+    private void replay(ResolutionGovernor governor, String trace) throws IOException {
+        InputStream in = getClass().getResourceAsStream(trace);
+        assertNotNull(trace, in);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+        try {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] args = line.split("\\s+");
+                String where = trace + ":" + lineNumber + " " + line + " (" + governor + ")";
+                switch (args[0]) {
+                    case "fps":
+                        governor.setTargetFps(Integer.parseInt(args[1]));
+                        break;
+                    case "frames":
+                        int count = Integer.parseInt(args[1]);
+                        long nanos = Long.parseLong(args[2]) * 1000;
+                        for (int i = 0; i < count; i++) {
+                            governor.onFrame(nanos);
+                        }
+                        break;
+                    case "pin":
+                        governor.setPinned(true);
+                        break;
+                    case "unpin":
+                        governor.setPinned(false);
+                        break;
+                    case "expect":
+                        if ("level".equals(args[1])) {
+                            assertEquals(where, Integer.parseInt(args[2]), governor.getLevel());
+                        } else if ("changes".equals(args[1])) {
+                            assertEquals(where, Integer.parseInt(args[2]), governor.getChangeCount());
+                        } else if ("scale".equals(args[1])) {
+                            assertEquals(where, Float.parseFloat(args[2]), governor.getScale(), 0f);
+                        } else {
+                            throw new IllegalArgumentException(where);
+                        }
+                        break;
+                    default:
+                        throw new IllegalArgumentException(where);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void stepDown() throws IOException {
+        replay("step_down.trace");
+    }
+
+    @Test
+    public void stepUp() throws IOException {
+        replay("step_up.trace");
+    }
+
+    @Test
+    public void hysteresis() throws IOException {
+        replay("hysteresis.trace");
+    }
+
+    @Test
+    public void pinnedDuringPhoto() throws IOException {
+        replay("photo_pin.trace");
+    }
+
+    @Test
+    public void targetFpsChange() throws IOException {
+        replay("fps_change.trace");
+    }
+
+    @Test
+    public void maxLevel() throws IOException {
+        ResolutionGovernor governor = new ResolutionGovernor(1);
+        for (int i = 0; i < ResolutionGovernor.WINDOW_FRAMES * 10; i++) {
+            governor.onFrame(20000000L);
+        }
+        assertEquals(1, governor.getLevel());
+        assertEquals(1, governor.getChangeCount());
+    }
+
+    @Test
+    public void scaleKeepsEvenSize() {
+        ResolutionGovernor governor = new ResolutionGovernor();
+        // 降到第1档（0.85）
+        for (int i = 0; i < ResolutionGovernor.WINDOW_FRAMES; i++) {
+            governor.onFrame(20000000L);
+        }
+        assertEquals(1280, new ResolutionGovernor().scale(1280));
+        assertEquals(1088, governor.scale(1280));
+        // 719 * 0.85 = 611.15
+        assertEquals(610, governor.scale(719));
+        governor.setPinned(true);
+        assertEquals(719, governor.scale(719));
+    }
+
+    @Test
+    public void ignoresMissingSamples() {
+        ResolutionGovernor governor = new ResolutionGovernor();
+        for (int i = 0; i < ResolutionGovernor.WINDOW_FRAMES * 10; i++) {
+            assertFalse(governor.onFrame(0));
+        }
+        assertEquals(0, governor.getLastWindowMeanNanos());
+    }
+}
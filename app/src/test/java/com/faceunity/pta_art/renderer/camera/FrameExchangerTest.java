@@ -0,0 +1,175 @@
+package com.faceunity.pta_art.renderer.camera;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * FrameExchanger的帧归还时机：未取出的旧帧在offer时归还，GL线程使用的帧在取到新帧或者clear后的acquire时归还
+ */
+public class FrameExchangerTest {
+
+    private final List<CameraFrame> mRecycled = new ArrayList<>();
+    private final CameraFrame.Owner mOwner = new CameraFrame.Owner() {
+        @Override
+        public void recycle(CameraFrame frame) {
+            mRecycled.add(frame);
+        }
+    };
+
+    private FrameExchanger mExchanger;
+    private long mSequence;
+
+    @Before
+    public void setUp() {
+        mRecycled.clear();
+        mExchanger = new FrameExchanger();
+        mSequence = 0;
+    }
+
+    /**
+     * 采集端写入一帧
+     *
+     * @param ageNanos 到达时间距现在的时间
+     */
+    private CameraFrame frame(long ageNanos) {
+        CameraFrame frame = new CameraFrame(mOwner, 4, 2);
+        assertTrue(frame.acquire());
+        frame.sequence = ++mSequence;
+        frame.arrivalTimeNanos = System.nanoTime() - ageNanos;
+        frame.captureTimeNanos = frame.arrivalTimeNanos;
+        return frame;
+    }
+
+    private CameraFrame frame() {
+        return frame(0);
+    }
+
+    @Test
+    public void offerReleasesStaleFrame() {
+        CameraFrame first = frame();
+        CameraFrame second = frame();
+        mExchanger.offer(first);
+        assertTrue(mRecycled.isEmpty());
+
+        mExchanger.offer(second);
+        assertEquals(1, mRecycled.size());
+        assertSame(first, mRecycled.get(0));
+        assertFalse(first.isInUse());
+        assertTrue(second.isInUse());
+
+        assertSame(second, mExchanger.acquire());
+        assertTrue(mExchanger.isNewFrame());
+        assertEquals(1, mExchanger.getDroppedSinceLastAcquire());
+        assertEquals(2, mExchanger.getOfferedCount());
+        assertEquals(1, mExchanger.getDroppedCount());
+        assertEquals(1, mExchanger.getAcquiredCount());
+    }
+
+    @Test
+    public void acquireReleasesPreviousFrameOnNewFrame() {
+        CameraFrame first = frame();
+        mExchanger.offer(first);
+        assertSame(first, mExchanger.acquire());
+
+        // 没有新的帧时继续使用上一帧，不归还
+        assertSame(first, mExchanger.acquire());
+        assertFalse(mExchanger.isNewFrame());
+        assertTrue(mRecycled.isEmpty());
+        assertTrue(first.isInUse());
+
+        CameraFrame second = frame();
+        mExchanger.offer(second);
+        // 新的帧放入时GL线程可能还在读取上一帧
+        assertTrue(first.isInUse());
+        assertSame(second, mExchanger.acquire());
+        assertTrue(mExchanger.isNewFrame());
+        assertEquals(0, mExchanger.getDroppedSinceLastAcquire());
+        assertEquals(1, mRecycled.size());
+        assertSame(first, mRecycled.get(0));
+
+        mExchanger.releaseCurrent();
+        assertFalse(second.isInUse());
+        assertEquals(2, mRecycled.size());
+        assertEquals(0, mExchanger.getDroppedCount());
+    }
+
+    @Test
+    public void clearReleasesByGeneration() {
+        CameraFrame current = frame();
+        mExchanger.offer(current);
+        assertSame(current, mExchanger.acquire());
+        CameraFrame pending = frame();
+        mExchanger.offer(pending);
+
+        // 可能在采集线程调用：只归还待渲染的帧，GL线程正在使用的帧留到下一次acquire
+        mExchanger.clear();
+        assertEquals(1, mRecycled.size());
+        assertSame(pending, mRecycled.get(0));
+        assertTrue(current.isInUse());
+
+        assertNull(mExchanger.acquire());
+        assertFalse(mExchanger.isNewFrame());
+        assertFalse(current.isInUse());
+        assertEquals(2, mRecycled.size());
+        // clear归还的帧不计为丢弃
+        assertEquals(0, mExchanger.getDroppedCount());
+
+        // 重新打开相机后的帧不受之前clear的影响
+        CameraFrame reopened = frame();
+        mExchanger.offer(reopened);
+        assertSame(reopened, mExchanger.acquire());
+        assertSame(reopened, mExchanger.acquire());
+        assertTrue(reopened.isInUse());
+    }
+
+    @Test
+    public void countsDroppedAndLateFrames() {
+        mExchanger.setLateThresholdNanos(10 * 1000000L);
+        for (int i = 0; i < 3; i++) {
+            mExchanger.offer(frame());
+        }
+        mExchanger.acquire();
+        assertEquals(2, mExchanger.getDroppedSinceLastAcquire());
+        assertFalse(mExchanger.isLate());
+
+        // 到达后50ms才被取出
+        mExchanger.offer(frame(50 * 1000000L));
+        mExchanger.acquire();
+        assertEquals(0, mExchanger.getDroppedSinceLastAcquire());
+        assertTrue(mExchanger.isLate());
+        assertTrue(mExchanger.getLastAgeNanos() >= 50 * 1000000L);
+
+        // 没有取到新帧时保持上一次的结果
+        mExchanger.acquire();
+        assertTrue(mExchanger.isLate());
+
+        mExchanger.offer(frame());
+        mExchanger.acquire();
+        assertFalse(mExchanger.isLate());
+
+        assertEquals(5, mExchanger.getOfferedCount());
+        assertEquals(2, mExchanger.getDroppedCount());
+        assertEquals(3, mExchanger.getAcquiredCount());
+        assertEquals(1, mExchanger.getLateCount());
+    }
+
+    @Test
+    public void releaseIsIdempotent() {
+        CameraFrame frame = frame();
+        frame.release();
+        frame.release();
+        assertEquals(1, mRecycled.size());
+        // 归还后采集端可以再次占用
+        assertTrue(frame.acquire());
+        assertFalse(frame.acquire());
+    }
+}
@@ -0,0 +1,88 @@
+package com.faceunity.pta_art.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 卡顿阈值：最近JANK_WINDOW个帧间隔中位数的JANK_FACTOR倍，目标帧率变化时重新统计
+ */
+public class FrameMetricsTest {
+
+    private static final long MS = 1000000L;
+
+    private FrameMetrics mMetrics;
+
+    @Before
+    public void setUp() {
+        mMetrics = new FrameMetrics();
+        mMetrics.setTargetFps(60);
+    }
+
+    private int record(long interval, int count) {
+        int jank = 0;
+        for (int i = 0; i < count; i++) {
+            if (mMetrics.recordInterval(interval)) {
+                jank++;
+            }
+        }
+        return jank;
+    }
+
+    @Test
+    public void noJankBeforeWarmUp() {
+        record(16 * MS, 29);
+        assertEquals(0, mMetrics.getJankThresholdNanos());
+        assertFalse(mMetrics.recordInterval(100 * MS));
+        assertEquals((long) (16 * MS * FrameMetrics.JANK_FACTOR), mMetrics.getJankThresholdNanos());
+        assertTrue(mMetrics.recordInterval(100 * MS));
+    }
+
+    @Test
+    public void ignoresMissingIntervals() {
+        record(16 * MS, 29);
+        // 第一帧或者暂停后没有帧间隔
+        assertFalse(mMetrics.recordInterval(0));
+        assertEquals(0, mMetrics.getJankThresholdNanos());
+    }
+
+    @Test
+    public void thresholdFollowsRecentIntervals() {
+        record(16 * MS, 300);
+        // 整个运行期间的中位数仍然是16ms，只看最近的帧间隔时是33ms
+        record(33 * MS, FrameMetrics.JANK_WINDOW);
+        assertEquals((long) (33 * MS * FrameMetrics.JANK_FACTOR), mMetrics.getJankThresholdNanos());
+        assertFalse(mMetrics.recordInterval(40 * MS));
+        assertTrue(mMetrics.recordInterval(70 * MS));
+    }
+
+    @Test
+    public void targetFpsChangeRestartsWarmUp() {
+        record(16 * MS, 60);
+        assertTrue(mMetrics.getJankThresholdNanos() > 0);
+
+        // 同样的帧率不清空
+        mMetrics.setTargetFps(60);
+        assertTrue(mMetrics.getJankThresholdNanos() > 0);
+
+        mMetrics.setTargetFps(30);
+        assertEquals(0, mMetrics.getJankThresholdNanos());
+        // 降到30fps后正常的33ms帧间隔不计为卡顿
+        assertEquals(0, record(33 * MS, 100));
+        assertEquals((long) (33 * MS * FrameMetrics.JANK_FACTOR), mMetrics.getJankThresholdNanos());
+    }
+
+    @Test
+    public void occasionalJankDoesNotMoveThreshold() {
+        int jank = 0;
+        for (int i = 0; i < 300; i++) {
+            jank += record(i % 10 == 9 ? 50 * MS : 16 * MS, 1);
+        }
+        assertEquals((long) (16 * MS * FrameMetrics.JANK_FACTOR), mMetrics.getJankThresholdNanos());
+        // 预热后的每10帧中有一帧卡顿
+        assertEquals(27, jank);
+    }
+}
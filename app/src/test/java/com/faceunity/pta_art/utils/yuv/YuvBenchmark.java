@@ -0,0 +1,87 @@
+package com.faceunity.pta_art.utils.yuv;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 1280x720 NV21的YuvTransform、YuvUtil耗时
+ * <p>
+ * 运行：./gradlew :app:jmh -Pjmh.include=YuvBenchmark
+ * <ul>
+ * <li>rotate：分块旋转与镜像，reference为逐像素正向映射（YuvFixtures.referenceRotate）的对比</li>
+ * <li>nv21ToI420、swapUV、downscale：相机帧预处理中的其它操作</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class YuvBenchmark {
+
+    private static final int WIDTH = 1280;
+    private static final int HEIGHT = 720;
+
+    @State(Scope.Thread)
+    public static class FrameState {
+        byte[] src;
+        byte[] dst;
+        byte[] scaled;
+
+        @Setup
+        public void setUp() {
+            src = YuvFixtures.randomFrame(WIDTH, HEIGHT, 1);
+            dst = new byte[src.length];
+            scaled = new byte[YuvUtil.getFrameSize(YuvTransform.getScaledSize(WIDTH, 2),
+                    YuvTransform.getScaledSize(HEIGHT, 2))];
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class RotateState extends FrameState {
+        @Param({"0", "90", "180", "270"})
+        public int degrees;
+        @Param({"false", "true"})
+        public boolean mirror;
+    }
+
+    @Benchmark
+    public byte[] rotate(RotateState state) {
+        YuvTransform.rotate(state.src, WIDTH, HEIGHT, YuvUtil.FORMAT_NV21, state.degrees, state.mirror, state.dst);
+        return state.dst;
+    }
+
+    @Benchmark
+    public byte[] rotateReference(RotateState state) {
+        return YuvFixtures.referenceRotate(state.src, WIDTH, HEIGHT, YuvUtil.FORMAT_NV21, state.degrees, state.mirror);
+    }
+
+    @Benchmark
+    public byte[] nv21ToI420(FrameState state) {
+        YuvUtil.nv21ToI420(state.src, state.dst, WIDTH, HEIGHT);
+        return state.dst;
+    }
+
+    @Benchmark
+    public byte[] swapUV(FrameState state) {
+        YuvUtil.swapUV(state.src, state.dst, WIDTH, HEIGHT);
+        return state.dst;
+    }
+
+    @Benchmark
+    public byte[] downscale(FrameState state) {
+        YuvTransform.downscale(state.src, WIDTH, HEIGHT, YuvUtil.FORMAT_NV21, 2, state.scaled);
+        return state.scaled;
+    }
+}
@@ -0,0 +1,94 @@
+package com.faceunity.pta_art.utils.yuv;
+
+import java.util.Random;
+
+/**
+ * YUV测试数据
+ * <p>
+ * NV21_6X4是一帧6x4的NV21：Y为1~24，色度为3x2个像素，每个像素的V、U分别为100+10*i、101+10*i，
+ * 所以输出中每个字节都能看出来自哪个源像素。
+ */
+class YuvFixtures {
+
+    static final int WIDTH = 6;
+    static final int HEIGHT = 4;
+
+    static final byte[] NV21_6X4 = bytes(
+            1, 2, 3, 4, 5, 6,
+            7, 8, 9, 10, 11, 12,
+            13, 14, 15, 16, 17, 18,
+            19, 20, 21, 22, 23, 24,
+            100, 101, 110, 111, 120, 121,
+            130, 131, 140, 141, 150, 151);
+
+    private YuvFixtures() {
+    }
+
+    /**
+     * 0~255的整数转为byte数组
+     */
+    static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    /**
+     * 随机内容的一帧
+     */
+    static byte[] randomFrame(int width, int height, long seed) {
+        byte[] frame = new byte[YuvUtil.getFrameSize(width, height)];
+        new Random(seed).nextBytes(frame);
+        return frame;
+    }
+
+    /**
+     * 逐像素正向映射的旋转（顺时针）与镜像，作为YuvTransform.rotate的参照：
+     * 源像素(x, y)旋转后的位置再水平翻转
+     */
+    static byte[] referenceRotate(byte[] src, int width, int height, int format, int degrees, boolean mirror) {
+        byte[] dst = new byte[src.length];
+        int ySize = width * height;
+        referencePlane(src, 0, width, height, 1, dst, 0, degrees, mirror);
+        if (YuvUtil.isSemiPlanar(format)) {
+            referencePlane(src, ySize, width / 2, height / 2, 2, dst, ySize, degrees, mirror);
+        } else {
+            referencePlane(src, ySize, width / 2, height / 2, 1, dst, ySize, degrees, mirror);
+            referencePlane(src, ySize * 5 / 4, width / 2, height / 2, 1, dst, ySize * 5 / 4, degrees, mirror);
+        }
+        return dst;
+    }
+
+    private static void referencePlane(byte[] src, int srcOffset, int width, int height, int pixelSize,
+                                       byte[] dst, int dstOffset, int degrees, boolean mirror) {
+        boolean swap = degrees == 90 || degrees == 270;
+        int outWidth = swap ? height : width;
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int ox;
+                int oy;
+                if (degrees == 90) {
+                    ox = height - 1 - y;
+                    oy = x;
+                } else if (degrees == 180) {
+                    ox = width - 1 - x;
+                    oy = height - 1 - y;
+                } else if (degrees == 270) {
+                    ox = y;
+                    oy = width - 1 - x;
+                } else {
+                    ox = x;
+                    oy = y;
+                }
+                if (mirror) {
+                    ox = outWidth - 1 - ox;
+                }
+                for (int b = 0; b < pixelSize; b++) {
+                    dst[dstOffset + (oy * outWidth + ox) * pixelSize + b] = src[srcOffset + (y * width + x) * pixelSize + b];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.faceunity.pta_art.utils.yuv;
+
+import org.junit.Test;
+
+import static com.faceunity.pta_art.utils.yuv.YuvFixtures.HEIGHT;
+import static com.faceunity.pta_art.utils.yuv.YuvFixtures.NV21_6X4;
+import static com.faceunity.pta_art.utils.yuv.YuvFixtures.WIDTH;
+import static com.faceunity.pta_art.utils.yuv.YuvFixtures.bytes;
+import static org.junit.Assert.assertArrayEquals;
+
+/**
+ * YuvTransform的逐字节对比：6x4 NV21在每个角度、是否镜像下的输出（手算），
+ * 以及I420/NV12、跨多个分块的大尺寸与逐像素参照实现的对比
+ */
+public class YuvTransformTest {
+
+    private static byte[] rotate(byte[] src, int width, int height, int format, int degrees, boolean mirror) {
+        byte[] dst = new byte[src.length];
+        YuvTransform.rotate(src, width, height, format, degrees, mirror, dst);
+        return dst;
+    }
+
+    private static void assertRotateNV21(int degrees, boolean mirror, byte[] expected) {
+        assertArrayEquals(expected, rotate(NV21_6X4, WIDTH, HEIGHT, YuvUtil.FORMAT_NV21, degrees, mirror));
+    }
+
+    @Test
+    public void rotate0() {
+        assertRotateNV21(0, false, NV21_6X4);
+    }
+
+    @Test
+    public void rotate0Mirror() {
+        assertRotateNV21(0, true, bytes(
+                6, 5, 4, 3, 2, 1,
+                12, 11, 10, 9, 8, 7,
+                18, 17, 16, 15, 14, 13,
+                24, 23, 22, 21, 20, 19,
+                120, 121, 110, 111, 100, 101,
+                150, 151, 140, 141, 130, 131));
+    }
+
+    @Test
+    public void rotate90() {
+        assertRotateNV21(90, false, bytes(
+                19, 13, 7, 1,
+                20, 14, 8, 2,
+                21, 15, 9, 3,
+                22, 16, 10, 4,
+                23, 17, 11, 5,
+                24, 18, 12, 6,
+                130, 131, 100, 101,
+                140, 141, 110, 111,
+                150, 151, 120, 121));
+    }
+
+    @Test
+    public void rotate90Mirror() {
+        assertRotateNV21(90, true, bytes(
+                1, 7, 13, 19,
+                2, 8, 14, 20,
+                3, 9, 15, 21,
+                4, 10, 16, 22,
+                5, 11, 17, 23,
+                6, 12, 18, 24,
+                100, 101, 130, 131,
+                110, 111, 140, 141,
+                120, 121, 150, 151));
+    }
+
+    @Test
+    public void rotate180() {
+        assertRotateNV21(180, false, bytes(
+                24, 23, 22, 21, 20, 19,
+                18, 17, 16, 15, 14, 13,
+                12, 11, 10, 9, 8, 7,
+                6, 5, 4, 3, 2, 1,
+                150, 151, 140, 141, 130, 131,
+                120, 121, 110, 111, 100, 101));
+    }
+
+    @Test
+    public void rotate180Mirror() {
+        assertRotateNV21(180, true, bytes(
+                19, 20, 21, 22, 23, 24,
+                13, 14, 15, 16, 17, 18,
+                7, 8, 9, 10, 11, 12,
+                1, 2, 3, 4, 5, 6,
+                130, 131, 140, 141, 150, 151,
+                100, 101, 110, 111, 120, 121));
+    }
+
+    @Test
+    public void rotate270() {
+        assertRotateNV21(270, false, bytes(
+                6, 12, 18, 24,
+                5, 11, 17, 23,
+                4, 10, 16, 22,
+                3, 9, 15, 21,
+                2, 8, 14, 20,
+                1, 7, 13, 19,
+                120, 121, 150, 151,
+                110, 111, 140, 141,
+                100, 101, 130, 131));
+    }
+
+    @Test
+    public void rotate270Mirror() {
+        assertRotateNV21(270, true, bytes(
+                24, 18, 12, 6,
+                23, 17, 11, 5,
+                22, 16, 10, 4,
+                21, 15, 9, 3,
+                20, 14, 8, 2,
+                19, 13, 7, 1,
+                150, 151, 120, 121,
+                140, 141, 110, 111,
+                130, 131, 100, 101));
+    }
+
+    @Test
+    public void mirrorIsRotate0Mirror() {
+        byte[] dst = new byte[NV21_6X4.length];
+        YuvTransform.mirror(NV21_6X4, WIDTH, HEIGHT, YuvUtil.FORMAT_NV21, dst);
+        assertArrayEquals(rotate(NV21_6X4, WIDTH, HEIGHT, YuvUtil.FORMAT_NV21, 0, true), dst);
+    }
+
+    @Test
+    public void otherFormatsMatchNV21() {
+        // 先转换格式再旋转，与旋转NV21后再转换的结果相同
+        int[] formats = {YuvUtil.FORMAT_I420, YuvUtil.FORMAT_NV12};
+        for (int format : formats) {
+            byte[] src = new byte[NV21_6X4.length];
+            YuvUtil.convert(NV21_6X4, YuvUtil.FORMAT_NV21, src, format, WIDTH, HEIGHT);
+            for (int degrees = 0; degrees < 360; degrees += 90) {
+                boolean swap = degrees == 90 || degrees == 270;
+                int outWidth = swap ? HEIGHT : WIDTH;
+                int outHeight = swap ? WIDTH : HEIGHT;
+                for (int m = 0; m < 2; m++) {
+                    byte[] expected = new byte[src.length];
+                    YuvUtil.convert(rotate(NV21_6X4, WIDTH, HEIGHT, YuvUtil.FORMAT_NV21, degrees, m == 1),
+                            YuvUtil.FORMAT_NV21, expected, format, outWidth, outHeight);
+                    assertArrayEquals("format " + format + " degrees " + degrees + " mirror " + (m == 1),
+                            expected, rotate(src, WIDTH, HEIGHT, format, degrees, m == 1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void largeFramesMatchReference() {
+        // 宽高不是分块大小的整数倍，覆盖不完整的分块
+        int[][] sizes = {{130, 66}, {64, 128}, {200, 2}};
+        int[] formats = {YuvUtil.FORMAT_I420, YuvUtil.FORMAT_NV12, YuvUtil.FORMAT_NV21};
+        for (int[] size : sizes) {
+            byte[] src = YuvFixtures.randomFrame(size[0], size[1], size[0] * 31 + size[1]);
+            for (int format : formats) {
+                for (int degrees = 0; degrees < 360; degrees += 90) {
+                    for (int m = 0; m < 2; m++) {
+                        assertArrayEquals(size[0] + "x" + size[1] + " format " + format + " degrees " + degrees
+                                        + " mirror " + (m == 1),
+                                YuvFixtures.referenceRotate(src, size[0], size[1], format, degrees, m == 1),
+                                rotate(src, size[0], size[1], format, degrees, m == 1));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsupportedRotation() {
+        rotate(NV21_6X4, WIDTH, HEIGHT, YuvUtil.FORMAT_NV21, 45, false);
+    }
+
+    @Test
+    public void cropNV21() {
+        byte[] dst = new byte[4 * 2 * 3 / 2];
+        YuvTransform.crop(NV21_6X4, WIDTH, HEIGHT, YuvUtil.FORMAT_NV21, 2, 2, 4, 2, dst);
+        assertArrayEquals(bytes(
+                15, 16, 17, 18,
+                21, 22, 23, 24,
+                140, 141, 150, 151), dst);
+    }
+
+    @Test
+    public void cropI420() {
+        byte[] i420 = new byte[NV21_6X4.length];
+        YuvUtil.nv21ToI420(NV21_6X4, i420, WIDTH, HEIGHT);
+        byte[] dst = new byte[4 * 2 * 3 / 2];
+        YuvTransform.crop(i420, WIDTH, HEIGHT, YuvUtil.FORMAT_I420, 2, 2, 4, 2, dst);
+        assertArrayEquals(bytes(
+                15, 16, 17, 18,
+                21, 22, 23, 24,
+                141, 151,
+                140, 150), dst);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOddCrop() {
+        YuvTransform.crop(NV21_6X4, WIDTH, HEIGHT, YuvUtil.FORMAT_NV21, 1, 0, 4, 2, new byte[12]);
+    }
+
+    @Test
+    public void downscaleNV21() {
+        // 6/2=3取偶数为2，输出2x2
+        byte[] dst = new byte[2 * 2 * 3 / 2];
+        YuvTransform.downscale(NV21_6X4, WIDTH, HEIGHT, YuvUtil.FORMAT_NV21, 2, dst);
+        assertArrayEquals(bytes(
+                1, 3,
+                13, 15,
+                100, 101), dst);
+    }
+
+    @Test
+    public void downscaleI420() {
+        byte[] i420 = new byte[NV21_6X4.length];
+        YuvUtil.nv21ToI420(NV21_6X4, i420, WIDTH, HEIGHT);
+        byte[] dst = new byte[2 * 2 * 3 / 2];
+        YuvTransform.downscale(i420, WIDTH, HEIGHT, YuvUtil.FORMAT_I420, 2, dst);
+        assertArrayEquals(bytes(
+                1, 3,
+                13, 15,
+                101,
+                100), dst);
+    }
+}
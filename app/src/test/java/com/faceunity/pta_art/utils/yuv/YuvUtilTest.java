@@ -0,0 +1,120 @@
+package com.faceunity.pta_art.utils.yuv;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.faceunity.pta_art.utils.yuv.YuvFixtures.HEIGHT;
+import static com.faceunity.pta_art.utils.yuv.YuvFixtures.NV21_6X4;
+import static com.faceunity.pta_art.utils.yuv.YuvFixtures.WIDTH;
+import static com.faceunity.pta_art.utils.yuv.YuvFixtures.bytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * YuvUtil格式转换与平面拷贝的逐字节对比
+ */
+public class YuvUtilTest {
+
+    private static final byte[] Y_6X4 = Arrays.copyOf(NV21_6X4, WIDTH * HEIGHT);
+
+    private static byte[] withY(int... chroma) {
+        byte[] frame = Arrays.copyOf(Y_6X4, NV21_6X4.length);
+        byte[] c = bytes(chroma);
+        System.arraycopy(c, 0, frame, Y_6X4.length, c.length);
+        return frame;
+    }
+
+    private static final byte[] I420_6X4 = withY(
+            101, 111, 121, 131, 141, 151,
+            100, 110, 120, 130, 140, 150);
+
+    private static final byte[] NV12_6X4 = withY(
+            101, 100, 111, 110, 121, 120,
+            131, 130, 141, 140, 151, 150);
+
+    @Test
+    public void frameSize() {
+        assertEquals(36, YuvUtil.getFrameSize(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void nv21ToI420() {
+        byte[] dst = new byte[NV21_6X4.length];
+        YuvUtil.nv21ToI420(NV21_6X4, dst, WIDTH, HEIGHT);
+        assertArrayEquals(I420_6X4, dst);
+    }
+
+    @Test
+    public void nv12ToI420() {
+        byte[] dst = new byte[NV21_6X4.length];
+        YuvUtil.nv12ToI420(NV12_6X4, dst, WIDTH, HEIGHT);
+        assertArrayEquals(I420_6X4, dst);
+    }
+
+    @Test
+    public void i420ToSemiPlanar() {
+        byte[] dst = new byte[NV21_6X4.length];
+        YuvUtil.i420ToNV21(I420_6X4, dst, WIDTH, HEIGHT);
+        assertArrayEquals(NV21_6X4, dst);
+        YuvUtil.i420ToNV12(I420_6X4, dst, WIDTH, HEIGHT);
+        assertArrayEquals(NV12_6X4, dst);
+    }
+
+    @Test
+    public void swapUV() {
+        byte[] dst = new byte[NV21_6X4.length];
+        YuvUtil.swapUV(NV21_6X4, dst, WIDTH, HEIGHT);
+        assertArrayEquals(NV12_6X4, dst);
+    }
+
+    @Test
+    public void swapUVInPlace() {
+        byte[] frame = NV21_6X4.clone();
+        YuvUtil.swapUV(frame, frame, WIDTH, HEIGHT);
+        assertArrayEquals(NV12_6X4, frame);
+    }
+
+    @Test
+    public void convertBetweenAllFormats() {
+        byte[][] frames = new byte[3][];
+        frames[YuvUtil.FORMAT_I420] = I420_6X4;
+        frames[YuvUtil.FORMAT_NV12] = NV12_6X4;
+        frames[YuvUtil.FORMAT_NV21] = NV21_6X4;
+        for (int src = 0; src < frames.length; src++) {
+            for (int dst = 0; dst < frames.length; dst++) {
+                byte[] out = new byte[NV21_6X4.length];
+                YuvUtil.convert(frames[src], src, out, dst, WIDTH, HEIGHT);
+                assertArrayEquals("src " + src + " dst " + dst, frames[dst], out);
+            }
+        }
+    }
+
+    @Test
+    public void copyPlaneWithRowStride() {
+        // 6x4的Y平面，每行末尾有2个字节的填充，拷贝(1, 1)开始的4x2
+        ByteBuffer src = ByteBuffer.allocate(8 * 4);
+        for (int row = 0; row < HEIGHT; row++) {
+            src.position(row * 8);
+            src.put(Y_6X4, row * WIDTH, WIDTH);
+        }
+        byte[] dst = new byte[8];
+        YuvUtil.copyPlane(src, 8, 1, 1, 1, 4, 2, dst, 0, 1, null);
+        assertArrayEquals(bytes(8, 9, 10, 11, 14, 15, 16, 17), dst);
+    }
+
+    @Test
+    public void copyPlaneWithPixelStride() {
+        // Image的U平面：pixelStride为2，内容是交错的UV（最后一个V不在缓冲区中），交错写入NV21的U位置
+        ByteBuffer u = ByteBuffer.wrap(bytes(
+                101, 100, 111, 110, 121, 120,
+                131, 130, 141, 140, 151));
+        byte[] dst = new byte[12];
+        byte[] scratch = new byte[YuvUtil.getRowScratchSize(3, 2)];
+        YuvUtil.copyPlane(u, 6, 2, 0, 0, 3, 2, dst, 1, 2, scratch);
+        assertArrayEquals(bytes(
+                0, 101, 0, 111, 0, 121,
+                0, 131, 0, 141, 0, 151), dst);
+    }
+}
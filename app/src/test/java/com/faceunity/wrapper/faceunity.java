@@ -0,0 +1,101 @@
+package com.faceunity.wrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 单元测试中代替nama.jar的faceunity（测试类在classpath中排在nama.jar之前）
+ * <p>
+ * 真正的faceunity在静态初始化时加载so，不能在JVM中运行。这里只实现测试用到的接口，
+ * 打开sRecord时按调用顺序记录道具相关的调用，用于检查调用顺序；关闭时不分配对象。
+ */
+public class faceunity {
+
+    public static final int FU_ADM_FLAG_EXTERNAL_OES_TEXTURE = 1;
+
+    public static boolean sRecord = false;
+    public static final List<String> sCalls = new ArrayList<>();
+
+    public static void reset() {
+        sRecord = false;
+        sCalls.clear();
+    }
+
+    private static void record(String call, int item) {
+        if (sRecord) {
+            sCalls.add(call + " " + item);
+        }
+    }
+
+    public static class AvatarInfo {
+        public float[] mTranslation;
+        public float[] mRotation;
+        public float[] mExpression;
+        public float[] mRotationMode;
+        public float[] mPupilPos;
+        public boolean mIsValid;
+    }
+
+    public static int fuBindItems(int item, int[] items) {
+        record("bind", item);
+        return items.length;
+    }
+
+    public static int fuUnBindItems(int item, int[] items) {
+        record("unbind", item);
+        return items.length;
+    }
+
+    public static double fuItemGetParam(int item, String key) {
+        return 0;
+    }
+
+    public static void fuDestroyItem(int item) {
+        record("destroy", item);
+    }
+
+    public static int fuItemSetParam(int item, String key, double value) {
+        if (sRecord) {
+            sCalls.add("set " + item + " " + key + " " + value);
+        }
+        return 1;
+    }
+
+    public static int fuItemSetParam(int item, String key, double[] values) {
+        if (sRecord) {
+            StringBuilder builder = new StringBuilder("set " + item + " " + key);
+            for (double value : values) {
+                builder.append(' ').append(value);
+            }
+            sCalls.add(builder.toString());
+        }
+        return 1;
+    }
+
+    public static int fuGetFaceInfo(int faceId, String name, float[] ret) {
+        return 0;
+    }
+
+    public static int fuIsTracking() {
+        return 0;
+    }
+
+    public static int fuGetSystemError() {
+        return 0;
+    }
+
+    public static String fuGetSystemErrorString(int code) {
+        return null;
+    }
+
+    public static void fuSetDefaultRotationMode(int rotationMode) {
+    }
+
+    public static int fuRenderBundles(AvatarInfo info, int flags, int w, int h, int frameId, int[] items) {
+        return 1;
+    }
+
+    public static int fuRenderBundlesWithCamera(byte[] img, int tex, int flags, int w, int h, int frameId, int[] items) {
+        return tex;
+    }
+}